@@ -0,0 +1,85 @@
+-- The PL/SQL procedures in sql/procedures, declared as Java routines for the
+-- local (HSQLDB) backend. The implementations are in
+-- com.johnkusner.cse241final.db.local.LocalProcedures.
+
+create procedure begin_transaction
+    ( out trans_id integer )
+    modifies sql data
+    language java
+    external name 'CLASSPATH:com.johnkusner.cse241final.db.local.LocalProcedures.beginTransaction';
+
+create procedure purchase_product
+    ( in trans_id integer,
+      in loc_id integer,
+      in wanted_product_id integer,
+      in wanted_qty integer,
+      in wanted_unit_price double,
+      in min_unit_price double,
+      out qty_got integer,
+      out total_paid double )
+    modifies sql data
+    language java
+    external name 'CLASSPATH:com.johnkusner.cse241final.db.local.LocalProcedures.purchaseProduct';
+
+create procedure finish_online_transaction
+    ( in trans_id integer,
+      in tax_rate double,
+      in pmt_mthd_id integer,
+      in est_arrival_date timestamp,
+      in pickup_order_name varchar(50),
+      in pickup_order_loc integer,
+      in shipping_address integer,
+      in track_num varchar(50),
+      out tot double )
+    modifies sql data
+    language java
+    external name 'CLASSPATH:com.johnkusner.cse241final.db.local.LocalProcedures.finishOnlineTransaction';
+
+create procedure order_inventory
+    ( in l_id integer,
+      in p_id integer,
+      in v_id integer,
+      in wanted_shipments integer,
+      in new_price double )
+    modifies sql data
+    language java
+    external name 'CLASSPATH:com.johnkusner.cse241final.db.local.LocalProcedures.orderInventory';
+
+create procedure checkout_cart
+    ( in loc_id integer,
+      in cart varchar(32000),
+      in tax_rate double,
+      in pmt_mthd_id integer,
+      in est_arrival_date timestamp,
+      in pickup_order_name varchar(50),
+      in pickup_order_loc integer,
+      in shipping_address integer,
+      in track_num varchar(50),
+      inout trans_id integer,
+      out line_results varchar(32000),
+      out tot double )
+    modifies sql data
+    language java
+    external name 'CLASSPATH:com.johnkusner.cse241final.db.local.LocalProcedures.checkoutCart';
+
+create procedure roll_up_sales
+    ( in trans_id integer )
+    modifies sql data
+    language java
+    external name 'CLASSPATH:com.johnkusner.cse241final.db.local.LocalProcedures.rollUpSales';
+
+create procedure rebuild_sales_rollup
+    ( )
+    modifies sql data
+    language java
+    external name 'CLASSPATH:com.johnkusner.cse241final.db.local.LocalProcedures.rebuildSalesRollup';
+
+-- Oracle's built-in hash, which HSQLDB doesn't have, for the fingerprint
+-- queries in Query. The values aren't Oracle's, but are as stable.
+create function ora_hash
+    ( in v varchar(32000) )
+    returns bigint
+    deterministic
+    no sql
+    language java
+    external name 'CLASSPATH:com.johnkusner.cse241final.db.local.LocalProcedures.oraHash';
@@ -0,0 +1,174 @@
+-- Views from sql/views.sql translated for the local (HSQLDB) backend.
+-- Date formatting uses year()/week()/quarter() instead of Oracle's to_char
+-- patterns, and derived tables need an alias.
+
+-- Top Selling Products --
+
+-- The windows filter transaction.timestamp directly, so only its index range
+-- covering the window is read (partitions, on Oracle).
+
+create view top_selling_products
+as
+select product_id, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold, product_name
+from purchased natural join product
+group by product_id, product_name
+order by amount_sold desc;
+
+create view top_selling_products_year
+as
+select product_id, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold, product_name
+from transaction inner join purchased using (transaction_id) inner join product using (product_id)
+where timestamp > localtimestamp - interval '1' year
+group by product_id, product_name
+order by amount_sold desc;
+
+create view top_selling_products_quarter
+as
+select product_id, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold, product_name
+from transaction inner join purchased using (transaction_id) inner join product using (product_id)
+where timestamp > localtimestamp - interval '3' month
+group by product_id, product_name
+order by amount_sold desc;
+
+create view top_selling_products_month
+as
+select product_id, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold, product_name
+from transaction inner join purchased using (transaction_id) inner join product using (product_id)
+where timestamp > localtimestamp - interval '1' month
+group by product_id, product_name
+order by amount_sold desc;
+
+create view top_selling_products_week
+as
+select product_id, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold, product_name
+from transaction inner join purchased using (transaction_id) inner join product using (product_id)
+where timestamp > localtimestamp - interval '7' day
+group by product_id, product_name
+order by amount_sold desc;
+
+create view top_selling_products_day
+as
+select product_id, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold, product_name
+from transaction inner join purchased using (transaction_id) inner join product using (product_id)
+where timestamp > localtimestamp - interval '1' day
+group by product_id, product_name
+order by amount_sold desc;
+
+-- Sales Totals --
+
+create view sales_totals_per_day
+as
+select to_char(timestamp, 'MON DD, YYYY') as date_str, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold,
+    count(distinct transaction_id) as num_trans
+from transaction inner join purchased using (transaction_id)
+group by to_char(timestamp, 'YYYY/MM/DD'), to_char(timestamp, 'MON DD, YYYY')
+order by to_char(timestamp, 'YYYY/MM/DD') desc;
+
+create view sales_totals_per_week
+as
+select 'Week ' || week(timestamp) || ', ' || year(timestamp) as date_str, sum(qty * unit_price) as total_sales,
+    sum(qty) as amount_sold, count(distinct transaction_id) as num_trans
+from transaction inner join purchased using (transaction_id)
+group by year(timestamp), week(timestamp)
+order by year(timestamp) desc, week(timestamp) desc;
+
+create view sales_totals_per_month
+as
+select to_char(timestamp, 'MON YYYY') as date_str, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold,
+    count(distinct transaction_id) as num_trans
+from transaction inner join purchased using (transaction_id)
+group by to_char(timestamp, 'MON YYYY'), to_char(timestamp, 'YYYY/MM')
+order by to_char(timestamp, 'YYYY/MM') desc;
+
+create view sales_totals_per_quarter
+as
+select 'Q' || quarter(timestamp) || ', ' || year(timestamp) as date_str, sum(qty * unit_price) as total_sales,
+    sum(qty) as amount_sold, count(distinct transaction_id) as num_trans
+from transaction inner join purchased using (transaction_id)
+group by year(timestamp), quarter(timestamp)
+order by year(timestamp) desc, quarter(timestamp) desc;
+
+-- Sales Rollups --
+
+create view sales_rollup_per_day
+as
+select to_char(sale_day, 'MON DD, YYYY') as date_str, sum(total_sales) as total_sales,
+    sum(amount_sold) as amount_sold, sum(num_trans) as num_trans
+from sales_daily_rollup
+group by sale_day
+order by sale_day desc;
+
+create view sales_rollup_per_week
+as
+select 'Week ' || week(sale_day) || ', ' || year(sale_day) as date_str, sum(total_sales) as total_sales,
+    sum(amount_sold) as amount_sold, sum(num_trans) as num_trans
+from sales_daily_rollup
+group by year(sale_day), week(sale_day)
+order by year(sale_day) desc, week(sale_day) desc;
+
+create view sales_rollup_per_month
+as
+select to_char(sale_day, 'MON YYYY') as date_str, sum(total_sales) as total_sales,
+    sum(amount_sold) as amount_sold, sum(num_trans) as num_trans
+from sales_daily_rollup
+group by to_char(sale_day, 'MON YYYY'), to_char(sale_day, 'YYYY/MM')
+order by to_char(sale_day, 'YYYY/MM') desc;
+
+create view sales_rollup_per_quarter
+as
+select 'Q' || quarter(sale_day) || ', ' || year(sale_day) as date_str, sum(total_sales) as total_sales,
+    sum(amount_sold) as amount_sold, sum(num_trans) as num_trans
+from sales_daily_rollup
+group by year(sale_day), quarter(sale_day)
+order by year(sale_day) desc, quarter(sale_day) desc;
+
+-- Open Sales Periods --
+-- The labels the sales_totals_per_X and sales_rollup_per_X views give the
+-- day, week, month and quarter open now, and when each started (week() weeks
+-- start on Monday, or January 1st). stats.StatisticsCache keeps closed
+-- periods and only adds up the purchases since these
+
+create view sales_period_now
+as
+select to_char(localtimestamp, 'MON DD, YYYY') as day_str,
+    trunc(localtimestamp, 'DD') as day_start,
+    'Week ' || week(localtimestamp) || ', ' || year(localtimestamp) as week_str,
+    greatest(trunc(localtimestamp, 'DD') - mod(dayofweek(localtimestamp) + 5, 7) day,
+        trunc(localtimestamp, 'YY')) as week_start,
+    to_char(localtimestamp, 'MON YYYY') as month_str,
+    trunc(localtimestamp, 'MM') as month_start,
+    'Q' || quarter(localtimestamp) || ', ' || year(localtimestamp) as quarter_str,
+    add_months(trunc(localtimestamp, 'MM'), -mod(month(localtimestamp) - 1, 3)) as quarter_start
+from dual;
+
+-- Warehouse Stock --
+
+create view warehouse_stock
+as
+select product_id, product_name, qty, unit_price
+from (
+    select product_id, sum(qty) as qty, unit_price
+    from stock natural join warehouse
+    group by product_id, unit_price
+) ws
+natural join product
+order by unit_price;
+
+-- Store Transactions --
+
+create view store_transactions
+as
+select location_id, transaction_id, total, subtotal, tax, timestamp, 1 as isPickup
+from transaction natural join pickup_order
+union
+select location_id, transaction_id, total, subtotal, tax, timestamp, 0 as isPickup
+from transaction natural join physical_transaction;
+
+-- Oracle's dictionary view of sequences, db.TransactionIds checks that
+-- trans_id_seq counts in blocks before it hands out ids from them.
+
+create view user_sequences
+as
+select sequence_name, cast(increment as integer) as increment_by
+from information_schema.sequences
+where sequence_schema = current_schema;
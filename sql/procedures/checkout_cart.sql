@@ -0,0 +1,83 @@
+create or replace procedure checkout_cart
+    ( loc_id in number, /* null means warehouse purchase */
+      cart in varchar2, /* product_id:qty:unit_price, one per line, lines separated by ',' */
+      tax_rate in number,
+      pmt_mthd_id in number,
+      est_arrival_date in timestamp,
+      pickup_order_name in varchar,
+      pickup_order_loc in number,
+      shipping_address in number,
+      track_num in varchar,
+      trans_id in out number, /* an id from db.TransactionIds, or null for begin_transaction to find one */
+      line_results out varchar2, /* qty_got:total_paid for each cart line, same order */
+      tot out number )
+as
+    line_start number := 1;
+    line_end number;
+    line varchar2(100);
+    first_colon number;
+    second_colon number;
+    unit_price number;
+    qty_got number;
+    total_paid number;
+    items_got number := 0;
+begin
+    dbms_output.put_line('Checking out cart: ' || cart);
+
+    if trans_id is null
+    then
+        begin_transaction(trans_id);
+    else
+        insert into transaction
+            (transaction_id, subtotal, tax, total)
+        values
+            (trans_id, 0, 0, 0);
+    end if;
+    line_results := null;
+    tot := 0;
+
+    while cart is not null and line_start <= length(cart)
+    loop
+        line_end := instr(cart, ',', line_start);
+        if line_end = 0
+        then
+            line_end := length(cart) + 1;
+        end if;
+
+        line := substr(cart, line_start, line_end - line_start);
+        line_start := line_end + 1;
+
+        first_colon := instr(line, ':');
+        second_colon := instr(line, ':', first_colon + 1);
+
+        unit_price := to_number(substr(line, second_colon + 1), '9999999990D99',
+            'NLS_NUMERIC_CHARACTERS=''.,''');
+
+        -- Each line is bought at exactly its price, so it can't take cheaper
+        -- units another cart is holding (see inventory.ReservationLedger)
+        purchase_product(trans_id, loc_id,
+            to_number(substr(line, 1, first_colon - 1)),
+            to_number(substr(line, first_colon + 1, second_colon - first_colon - 1)),
+            unit_price, unit_price,
+            qty_got, total_paid);
+
+        items_got := items_got + qty_got;
+        if line_results is not null
+        then
+            line_results := line_results || ',';
+        end if;
+        line_results := line_results || qty_got || ':'
+            || to_char(total_paid, 'FM9999999990D00', 'NLS_NUMERIC_CHARACTERS=''.,''');
+    end loop;
+
+    -- Nothing bought, leave the empty transaction for the caller to roll back
+    if items_got > 0
+    then
+        finish_online_transaction(trans_id, tax_rate, pmt_mthd_id, est_arrival_date,
+            pickup_order_name, pickup_order_loc, shipping_address, track_num, tot);
+        -- Last, so the rollup row is locked for as little as possible
+        roll_up_sales(trans_id);
+    end if;
+
+    dbms_output.put_line('Cart checked out: ' || line_results || ', total ' || tot);
+end;
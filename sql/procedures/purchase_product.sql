@@ -4,54 +4,65 @@ create or replace procedure purchase_product
       wanted_product_id in number,
       wanted_qty in number,
       wanted_unit_price in number,
+      min_unit_price in number, /* null for any price up to wanted_unit_price */
       qty_got out number,
       total_paid out number )
 as
     remaining number := wanted_qty;
+    -- Every matching stock row, locked when the cursor is opened and held
+    -- until commit. They're locked in location order whatever their price,
+    -- so two buyers of the same product queue on the same first row rather
+    -- than each holding rows the other is waiting for
+    cursor lockStock is
+        select location_id
+        from stock
+        where
+            qty > 0 and product_id = wanted_product_id and unit_price <= wanted_unit_price
+            and (min_unit_price is null or unit_price >= min_unit_price)
+            and (location_id = loc_id
+                or (loc_id is null and location_id in (select location_id from warehouse)))
+        order by location_id
+        for update of qty;
+    -- The same rows, now ours, cheapest first
     cursor findStock is
         select location_id, product_id, qty, unit_price
         from stock
         where
             qty > 0 and product_id = wanted_product_id and unit_price <= wanted_unit_price
+            and (min_unit_price is null or unit_price >= min_unit_price)
             and (location_id = loc_id
                 or (loc_id is null and location_id in (select location_id from warehouse)))
-        order by unit_price;
-    stockRow stock%rowtype;
+        order by unit_price, location_id;
     already_purchased number;
+
+    -- Take what we can from a stock row we hold the lock on
+    procedure take(row_loc_id number, row_qty number, row_unit_price number)
+    is
+        taking number := least(row_qty, remaining);
+    begin
+        dbms_output.put_line('Remaining: ' || remaining || ', stock@' || row_loc_id || ': ' || row_qty);
+        qty_got := qty_got + taking;
+        total_paid := total_paid + row_unit_price * taking;
+        remaining := remaining - taking;
+
+        -- Relative to the locked row, never a value read earlier
+        update stock
+        set qty = qty - taking
+        where location_id = row_loc_id and product_id = wanted_product_id;
+    end;
 begin
     qty_got := 0;
     total_paid := 0;
     
     dbms_output.put_line('Starting purchase for transaction_id ' || trans_id);
     
+    -- Opening it locks all the rows at once, closing it doesn't unlock them
+    open lockStock;
+    close lockStock;
+
     for row in findStock
     loop
-        dbms_output.put_line('Remaining: ' || remaining || ', stock@' || row.location_id || ': ' || row.qty);
-        if row.qty >= remaining
-        then
-            -- This location has enough stock to fulfill our request
-            qty_got := qty_got + remaining;
-            total_paid := total_paid + row.unit_price * remaining;
-            
-            update stock
-            set qty = row.qty - remaining
-            where location_id = row.location_id and product_id = wanted_product_id;
-            
-            remaining := 0;
-            dbms_output.put_line('Finished purchase at ' || row.location_id);
-        else
-            -- We are purchasing all the stock at this location
-            qty_got := qty_got + row.qty;
-            total_paid := total_paid + row.unit_price * row.qty;
-            remaining := remaining - row.qty;
-            
-            update stock
-            set qty = 0
-            where location_id = row.location_id and product_id = wanted_product_id;
-            
-            dbms_output.put_line('Bought out all stock at ' || row.location_id);
-        end if;
-        
+        take(row.location_id, row.qty, row.unit_price);
         exit when remaining = 0;
     end loop;
     
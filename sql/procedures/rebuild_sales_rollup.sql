@@ -0,0 +1,18 @@
+create or replace procedure rebuild_sales_rollup
+as
+begin
+    dbms_output.put_line('Rebuilding sales_daily_rollup');
+
+    -- Waits for checkouts that already rolled up to commit, and holds off the
+    -- rest until this commits, so each is counted exactly once
+    lock table sales_daily_rollup in exclusive mode;
+
+    delete from sales_daily_rollup;
+
+    insert into sales_daily_rollup
+        (sale_day, slot, total_sales, amount_sold, num_trans)
+    select trunc(timestamp), mod(transaction_id, 16), sum(qty * unit_price), sum(qty),
+        count(distinct transaction_id)
+    from transaction inner join purchased using (transaction_id)
+    group by trunc(timestamp), mod(transaction_id, 16);
+end;
@@ -0,0 +1,44 @@
+create or replace procedure roll_up_sales
+    ( trans_id in number )
+as
+    day date;
+    sales number;
+    items number;
+begin
+    select trunc(timestamp), sum(qty * unit_price), sum(qty)
+    into day, sales, items
+    from transaction inner join purchased using (transaction_id)
+    where transaction_id = trans_id
+    group by trunc(timestamp);
+
+    dbms_output.put_line('Rolling up ' || items || ' items into ' || day);
+
+    update sales_daily_rollup
+    set
+        total_sales = total_sales + sales,
+        amount_sold = amount_sold + items,
+        num_trans = num_trans + 1
+    where
+        sale_day = day and slot = mod(trans_id, 16);
+
+    -- First sale in this slot today
+    if sql%rowcount = 0
+    then
+        begin
+            insert into sales_daily_rollup
+                (sale_day, slot, total_sales, amount_sold, num_trans)
+            values
+                (day, mod(trans_id, 16), sales, items, 1);
+        exception
+            -- Another checkout inserted it first
+            when dup_val_on_index then
+                update sales_daily_rollup
+                set
+                    total_sales = total_sales + sales,
+                    amount_sold = amount_sold + items,
+                    num_trans = num_trans + 1
+                where
+                    sale_day = day and slot = mod(trans_id, 16);
+        end;
+    end if;
+end;
@@ -266,7 +266,9 @@ create table bitcoin (
         on delete cascade
 );
 
-create sequence trans_id_seq start with 1;
+/* each value reserves a block of 100 transaction ids, handed out by the
+application without probing (see db.TransactionIds) */
+create sequence trans_id_seq start with 1 increment by 100;
 
 create table transaction (
     transaction_id number(8) not null,
@@ -276,9 +278,16 @@ create table transaction (
         check (tax >= 0),
     total number(10, 2),
         check (total >= 0),
-    timestamp timestamp default current_timestamp,
+    timestamp timestamp default current_timestamp not null,
     primary key (transaction_id)
-);
+)
+/* one partition per month, added as sales come in, so a query over a recent
+window only reads the newest ones. purchased is partitioned along with it */
+partition by range (timestamp) interval (numtoyminterval(1, 'MONTH'))
+    (partition transaction_before_2000 values less than (timestamp '2000-01-01 00:00:00'))
+enable row movement;
+
+CREATE INDEX trans_timestamp_index ON transaction (timestamp) LOCAL;
 
 create table online_transaction (
     transaction_id number(8) not null,
@@ -321,14 +330,15 @@ create table purchased (
     unit_price number(8,2),
         check (unit_price >= 0),
     primary key (transaction_id, product_id, unit_price),
-    foreign key (transaction_id) references transaction
+    constraint purchased_trans_fk foreign key (transaction_id) references transaction
         on delete cascade,
     foreign key (product_id) references product
         on delete cascade
-);
+)
+partition by reference (purchased_trans_fk);
 
-CREATE INDEX purchased_product_index ON purchased (product_id);
-CREATE INDEX purchased_transaction_index ON purchased (transaction_id);
+CREATE INDEX purchased_product_index ON purchased (product_id) LOCAL;
+CREATE INDEX purchased_transaction_index ON purchased (transaction_id) LOCAL;
 
 create table used_payment_method (
     transaction_id number(8) not null,
@@ -370,4 +380,17 @@ create table shipped_order (
         on delete cascade
 );
 
-CREATE INDEX shipped_order_address_index ON shipped_order (address_id);
\ No newline at end of file
+CREATE INDEX shipped_order_address_index ON shipped_order (address_id);
+
+/* sales per day, kept up to date by checkout_cart (roll_up_sales) and rebuilt
+from transaction and purchased by rebuild_sales_rollup. Each day is split over
+16 slots by transaction_id so concurrent checkouts don't all update one row;
+the sales_rollup_per_X views add them back up */
+create table sales_daily_rollup (
+    sale_day date not null,
+    slot number(2) not null,
+    total_sales number(14,2) not null,
+    amount_sold number(12) not null,
+    num_trans number(10) not null,
+    primary key (sale_day, slot)
+);
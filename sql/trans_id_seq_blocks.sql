@@ -0,0 +1,4 @@
+/* For databases created before trans_id_seq counted in blocks. Each value
+reserves the next 100 transaction ids (see db.TransactionIds), until this
+is run checkouts fall back to begin_transaction. */
+alter sequence trans_id_seq increment by 100;
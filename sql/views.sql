@@ -1,5 +1,9 @@
 -- Top Selling Products --
 
+-- The windows filter transaction.timestamp directly against localtimestamp,
+-- which is a plain timestamp like the column, so only the partitions (or, on
+-- the local backend, the index range) covering the window are read.
+
 create or replace view top_selling_products
 as
 select product_id, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold, product_name
@@ -10,40 +14,40 @@ order by amount_sold desc;
 create or replace view top_selling_products_year
 as
 select product_id, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold, product_name
-from purchased natural join product
-where transaction_id in (select transaction_id from transaction where timestamp > current_timestamp - interval '1' year)
+from transaction inner join purchased using (transaction_id) inner join product using (product_id)
+where timestamp > localtimestamp - interval '1' year
 group by product_id, product_name
 order by amount_sold desc;
 
 create or replace view top_selling_products_quarter
 as
 select product_id, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold, product_name
-from purchased natural join product
-where transaction_id in (select transaction_id from transaction where timestamp > current_timestamp - interval '3' month)
+from transaction inner join purchased using (transaction_id) inner join product using (product_id)
+where timestamp > localtimestamp - interval '3' month
 group by product_id, product_name
 order by amount_sold desc;
 
 create or replace view top_selling_products_month
 as
 select product_id, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold, product_name
-from purchased natural join product
-where transaction_id in (select transaction_id from transaction where timestamp > current_timestamp - interval '1' month)
+from transaction inner join purchased using (transaction_id) inner join product using (product_id)
+where timestamp > localtimestamp - interval '1' month
 group by product_id, product_name
 order by amount_sold desc;
 
-create or replace view top_selling_products_day
+create or replace view top_selling_products_week
 as
 select product_id, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold, product_name
-from purchased natural join product
-where transaction_id in (select transaction_id from transaction where timestamp > current_timestamp - interval '7' day)
+from transaction inner join purchased using (transaction_id) inner join product using (product_id)
+where timestamp > localtimestamp - interval '7' day
 group by product_id, product_name
 order by amount_sold desc;
 
 create or replace view top_selling_products_day
 as
 select product_id, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold, product_name
-from purchased natural join product
-where transaction_id in (select transaction_id from transaction where timestamp > current_timestamp - interval '1' day)
+from transaction inner join purchased using (transaction_id) inner join product using (product_id)
+where timestamp > localtimestamp - interval '1' day
 group by product_id, product_name
 order by amount_sold desc;
 
@@ -51,10 +55,10 @@ order by amount_sold desc;
 
 create or replace view sales_totals_per_day
 as
-select to_char(timestamp, 'MON D, YYYY') as date_str, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold,
+select to_char(timestamp, 'MON DD, YYYY') as date_str, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold,
     count(distinct transaction_id) as num_trans
 from transaction inner join purchased using (transaction_id)
-group by to_char(timestamp, 'YYYY/MM/DD'), to_char(timestamp, 'MON D, YYYY')
+group by to_char(timestamp, 'YYYY/MM/DD'), to_char(timestamp, 'MON DD, YYYY')
 order by to_char(timestamp, 'YYYY/MM/DD') desc;
 
 create or replace view sales_totals_per_week
@@ -81,6 +85,60 @@ from transaction inner join purchased using (transaction_id)
 group by 'Q' || to_char(timestamp, 'Q, YYYY'), to_char(timestamp, 'YYYY/Q')
 order by to_char(timestamp, 'YYYY/Q') desc;
 
+-- Sales Rollups --
+-- The same totals as sales_totals_per_X, added up from sales_daily_rollup
+-- (one row per day and slot) instead of every purchase
+
+create or replace view sales_rollup_per_day
+as
+select to_char(sale_day, 'MON DD, YYYY') as date_str, sum(total_sales) as total_sales,
+    sum(amount_sold) as amount_sold, sum(num_trans) as num_trans
+from sales_daily_rollup
+group by sale_day
+order by sale_day desc;
+
+create or replace view sales_rollup_per_week
+as
+select 'Week ' || to_char(sale_day, 'WW, YYYY') as date_str, sum(total_sales) as total_sales,
+    sum(amount_sold) as amount_sold, sum(num_trans) as num_trans
+from sales_daily_rollup
+group by 'Week ' || to_char(sale_day, 'WW, YYYY'), to_char(sale_day, 'YYYY/WW')
+order by to_char(sale_day, 'YYYY/WW') desc;
+
+create or replace view sales_rollup_per_month
+as
+select to_char(sale_day, 'MON YYYY') as date_str, sum(total_sales) as total_sales,
+    sum(amount_sold) as amount_sold, sum(num_trans) as num_trans
+from sales_daily_rollup
+group by to_char(sale_day, 'MON YYYY'), to_char(sale_day, 'YYYY/MM')
+order by to_char(sale_day, 'YYYY/MM') desc;
+
+create or replace view sales_rollup_per_quarter
+as
+select 'Q' || to_char(sale_day, 'Q, YYYY') as date_str, sum(total_sales) as total_sales,
+    sum(amount_sold) as amount_sold, sum(num_trans) as num_trans
+from sales_daily_rollup
+group by 'Q' || to_char(sale_day, 'Q, YYYY'), to_char(sale_day, 'YYYY/Q')
+order by to_char(sale_day, 'YYYY/Q') desc;
+
+-- Open Sales Periods --
+-- The labels the sales_totals_per_X and sales_rollup_per_X views give the
+-- day, week, month and quarter open now, and when each started.
+-- stats.StatisticsCache keeps closed periods and only adds up the purchases
+-- since these
+
+create or replace view sales_period_now
+as
+select to_char(localtimestamp, 'MON DD, YYYY') as day_str,
+    trunc(localtimestamp) as day_start,
+    'Week ' || to_char(localtimestamp, 'WW, YYYY') as week_str,
+    trunc(localtimestamp, 'WW') as week_start,
+    to_char(localtimestamp, 'MON YYYY') as month_str,
+    trunc(localtimestamp, 'MM') as month_start,
+    'Q' || to_char(localtimestamp, 'Q, YYYY') as quarter_str,
+    trunc(localtimestamp, 'Q') as quarter_start
+from dual;
+
 -- Warehouse Stock --
 
 create or replace view warehouse_stock
@@ -0,0 +1,217 @@
+package com.johnkusner.cse241final;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+
+/**
+ * Number, money and date formatting shared by everything that prints. The
+ * locale's separators and currency symbol are looked up once, and the
+ * append methods write straight into the caller's StringBuilder, so building
+ * a row doesn't create any formatter objects. The output is the same as
+ * NumberFormat's, bench.FormatsCheck compares the two.
+ */
+public final class Formats {
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("hh:mm:ss a");
+
+    private static final Style NUMBER = new Style(NumberFormat.getNumberInstance(), 0);
+    private static final Style MONEY = new Style(NumberFormat.getCurrencyInstance(), -1);
+
+    // From here up a double's spacing is too coarse for rounding its exact
+    // value to always agree with NumberFormat rounding its shortest digits
+    private static final double MAX_EXACT = 1e12;
+
+    private static final String SPACES = "                                        ";
+
+    private Formats() {
+    }
+
+    public static String number(long n) {
+        return appendNumber(new StringBuilder(16), n).toString();
+    }
+
+    public static String money(double amount) {
+        return appendMoney(new StringBuilder(16), amount).toString();
+    }
+
+    public static String date(TemporalAccessor t) {
+        return DATE.format(t);
+    }
+
+    public static String time(TemporalAccessor t) {
+        return TIME.format(t);
+    }
+
+    public static StringBuilder appendNumber(StringBuilder sb, long n) {
+        // Digits without the sign, Math.abs(Long.MIN_VALUE) is still negative
+        String digits = Long.toString(n);
+        return NUMBER.append(sb, n < 0, n < 0 ? digits.substring(1) : digits);
+    }
+
+    public static StringBuilder appendMoney(StringBuilder sb, double amount) {
+        double abs = Math.abs(amount);
+        if (!(abs < MAX_EXACT)) {
+            // NaN, infinite or a trillion and up, rare enough to format slowly
+            return sb.append(NumberFormat.getCurrencyInstance().format(amount));
+        }
+        // Like NumberFormat: the sign is kept when the amount rounds to zero,
+        // and halves are rounded the way the double's exact value lies (0.995
+        // is 0.99499... so it prints $0.99), or half-even if it is exactly a
+        // half. fma gives what rounding the product to a double dropped.
+        boolean negative = amount < 0 || (amount == 0 && 1 / amount < 0);
+        double scaled = abs * MONEY.scale;
+        long units = (long) scaled;
+        double fraction = scaled - units;
+        double dropped = Math.fma(abs, MONEY.scale, -scaled);
+        if (fraction > 0.5 || (fraction == 0.5 && (dropped > 0 || (dropped == 0 && (units & 1) != 0)))) {
+            units++;
+        }
+        return MONEY.append(sb, negative, units);
+    }
+
+    public static StringBuilder appendDate(StringBuilder sb, TemporalAccessor t) {
+        DATE.formatTo(t, sb);
+        return sb;
+    }
+
+    public static StringBuilder appendTime(StringBuilder sb, TemporalAccessor t) {
+        TIME.formatTo(t, sb);
+        return sb;
+    }
+
+    /**
+     * Right-align everything appended since start in a column of the given
+     * width, the StringBuilder equivalent of "%10s".
+     */
+    public static StringBuilder alignRight(StringBuilder sb, int start, int width) {
+        int missing = width - (sb.length() - start);
+        while (missing > 0) {
+            int n = Math.min(missing, SPACES.length());
+            sb.insert(start, SPACES, 0, n);
+            missing -= n;
+        }
+        return sb;
+    }
+
+    public static StringBuilder column(StringBuilder sb, CharSequence value, int width) {
+        int start = sb.length();
+        sb.append(value);
+        return alignRight(sb, start, width);
+    }
+
+    public static StringBuilder numberColumn(StringBuilder sb, long n, int width) {
+        int start = sb.length();
+        appendNumber(sb, n);
+        return alignRight(sb, start, width);
+    }
+
+    public static StringBuilder moneyColumn(StringBuilder sb, double amount, int width) {
+        int start = sb.length();
+        appendMoney(sb, amount);
+        return alignRight(sb, start, width);
+    }
+
+    /**
+     * The pieces of a locale's DecimalFormat pattern needed to print whole
+     * numbers and fixed-point amounts by hand.
+     */
+    private static class Style {
+        final String positivePrefix;
+        final String positiveSuffix;
+        final String negativePrefix;
+        final String negativeSuffix;
+        final char groupingSeparator;
+        final int groupingSize;
+        final char decimalSeparator;
+        final int fractionDigits;
+        // 10 to the fractionDigits
+        final long scale;
+
+        Style(NumberFormat format, int fractionDigits) {
+            DecimalFormat df = format instanceof DecimalFormat
+                    ? (DecimalFormat) format
+                    : new DecimalFormat("#,##0.00");
+            DecimalFormatSymbols symbols = df.getDecimalFormatSymbols();
+
+            positivePrefix = df.getPositivePrefix();
+            positiveSuffix = df.getPositiveSuffix();
+            negativePrefix = df.getNegativePrefix();
+            negativeSuffix = df.getNegativeSuffix();
+            groupingSeparator = fractionDigits < 0
+                    ? symbols.getMonetaryGroupingSeparator()
+                    : symbols.getGroupingSeparator();
+            groupingSize = df.isGroupingUsed() ? df.getGroupingSize() : 0;
+            decimalSeparator = symbols.getMonetaryDecimalSeparator();
+            this.fractionDigits = fractionDigits < 0 ? df.getMinimumFractionDigits() : fractionDigits;
+            long scale = 1;
+            for (int i = 0; i < this.fractionDigits; i++) {
+                scale *= 10;
+            }
+            this.scale = scale;
+        }
+
+        /**
+         * Append an amount given as its unsigned digits, the last
+         * fractionDigits of them after the decimal separator.
+         */
+        StringBuilder append(StringBuilder sb, boolean negative, String digits) {
+            sb.append(negative ? negativePrefix : positivePrefix);
+            int whole = digits.length() - fractionDigits;
+            if (whole > 0) {
+                appendGrouped(sb, digits, whole);
+            } else {
+                sb.append('0');
+            }
+            if (fractionDigits > 0) {
+                sb.append(decimalSeparator);
+                for (int i = whole; i < 0; i++) {
+                    sb.append('0');
+                }
+                sb.append(digits, Math.max(whole, 0), digits.length());
+            }
+            return sb.append(negative ? negativeSuffix : positiveSuffix);
+        }
+
+        /**
+         * Append an amount given in units of the last fraction digit, which
+         * must not be negative, without making a String of it.
+         */
+        StringBuilder append(StringBuilder sb, boolean negative, long units) {
+            sb.append(negative ? negativePrefix : positivePrefix);
+            int start = sb.length();
+            sb.append(units / scale);
+            group(sb, start);
+            if (fractionDigits > 0) {
+                sb.append(decimalSeparator);
+                long fraction = units % scale;
+                for (long place = scale / 10; place > 1 && fraction < place; place /= 10) {
+                    sb.append('0');
+                }
+                sb.append(fraction);
+            }
+            return sb.append(negative ? negativeSuffix : positiveSuffix);
+        }
+
+        private void appendGrouped(StringBuilder sb, String digits, int length) {
+            int start = sb.length();
+            sb.append(digits, 0, length);
+            group(sb, start);
+        }
+
+        /**
+         * Put grouping separators into the whole number appended since start.
+         */
+        private void group(StringBuilder sb, int start) {
+            if (groupingSize <= 0) {
+                return;
+            }
+            for (int i = sb.length() - groupingSize; i > start; i -= groupingSize) {
+                sb.insert(i, groupingSeparator);
+            }
+        }
+    }
+}
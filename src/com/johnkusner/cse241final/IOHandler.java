@@ -1,11 +1,15 @@
 package com.johnkusner.cse241final;
 import java.io.PrintStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Scanner;
 
 public class IOHandler {
     private final boolean DEBUG_MODE = true;
     private final String PROMPT_STRING = "> ";
     private final int CLEAR_BLANK_LINES = 100;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("M/d/uuuu");
     
     protected Scanner in;
     protected PrintStream out;
@@ -55,6 +59,20 @@ public class IOHandler {
         return promptDouble(prompt, Double.MIN_VALUE, Double.MAX_VALUE);
     }
     
+    /**
+     * A date typed as MM/DD/YYYY.
+     */
+    public LocalDate promptDate(String prompt) {
+        while (true) {
+            try {
+                return LocalDate.parse(promptString(prompt).trim(), DATE_FORMAT);
+            }
+            catch (DateTimeParseException e) {
+                out.println("Please enter a date like 01/31/2017");
+            }
+        }
+    }
+    
     public boolean promptBool(String prompt) {
         while (true) {
             String input = promptString(prompt + " (y/n)").trim();
@@ -71,19 +89,20 @@ public class IOHandler {
     
     public String promptString(String prompt) {
         out.print(prompt + PROMPT_STRING);
+        out.flush();
         return in.nextLine();
     }
     
     public String promptSqlSafeString(String prompt, int minLength) {
-        String thing = promptString(prompt).toLowerCase();
-        thing = thing.replaceAll("[^a-z0-9_\\- #()]", "").trim();
-        
-        if (thing.length() < minLength) {
+        while (true) {
+            String thing = promptString(prompt).toLowerCase();
+            thing = thing.replaceAll("[^a-z0-9_\\- #()]", "").trim();
+            
+            if (thing.length() >= minLength) {
+                return thing;
+            }
             out.println("You entered \"" + thing + "\". Please enter at least " + minLength + " characters.");
-            return promptSqlSafeString(prompt, minLength);
         }
-        
-        return thing;
     }
     
     public String promptSqlSafeString(String prompt) {
@@ -96,10 +115,15 @@ public class IOHandler {
     
     public void pause(String prompt) {
         out.println(prompt);
+        out.flush();
         in.nextLine();
     }
         
     public void clear() {
+        if (out instanceof Terminal) {
+            ((Terminal) out).clearScreen();
+            return;
+        }
         for (int i = 0; i < CLEAR_BLANK_LINES; i++) {
             out.println();
         }
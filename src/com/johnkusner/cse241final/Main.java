@@ -1,5 +1,7 @@
 package com.johnkusner.cse241final;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.util.Scanner;
 
 import com.johnkusner.cse241final.interfaces.ConnectInterface;
@@ -9,9 +11,13 @@ public class Main {
     public static void main(String[] args) {
         Scanner scan = new Scanner(System.in);
         
-        UserInterface i = new ConnectInterface(scan, System.out);
+        // Screens are written straight to stdout, one write per prompt
+        Terminal out = Terminal.fromSystemProperties(new FileOutputStream(FileDescriptor.out));
+        
+        UserInterface i = new ConnectInterface(scan, out);
         i.run();
         
+        out.flush();
         scan.close();
     }
 }
@@ -0,0 +1,206 @@
+package com.johnkusner.cse241final;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Output stream for the interfaces that collects everything printed for a
+ * screen in one reusable buffer and writes it out in a single write when
+ * the user is prompted for input (IOHandler flushes before reading).
+ *
+ * Clearing the screen is one escape sequence when the terminal understands
+ * ANSI codes, and the old 100 blank lines otherwise. With brc.render.diff set,
+ * only the lines that changed since the last screen are redrawn.
+ */
+public class Terminal extends PrintStream {
+    private static final String CLEAR_SCREEN = "\033[H\033[2J";
+    private static final String CLEAR_LINE = "\033[K";
+    private static final String CLEAR_BELOW = "\033[J";
+    private static final int CLEAR_BLANK_LINES = 100;
+
+    private final OutputStream target;
+    private final ByteArrayOutputStream frame;
+    private final boolean ansi;
+    private final boolean diff;
+    private final int rows;
+
+    // What we last drew, for diff redraws. Null when the screen no longer
+    // matches it (something was printed outside of a frame).
+    private List<String> lastFrame;
+    private boolean inFrame = false;
+
+    private long frames;
+    private long writes;
+    private long bytes;
+    private int lastFrameBytes;
+
+    public Terminal(OutputStream target, boolean ansi, boolean diff, int rows) {
+        this(target, new ByteArrayOutputStream(8192), ansi, diff, rows);
+    }
+
+    private Terminal(OutputStream target, ByteArrayOutputStream frame, boolean ansi, boolean diff, int rows) {
+        super(frame, false);
+        this.target = target;
+        this.frame = frame;
+        this.ansi = ansi;
+        this.diff = diff && ansi;
+        this.rows = rows;
+    }
+
+    /**
+     * Terminal configured by brc.render.ansi (defaults to guessing from TERM),
+     * brc.render.diff and brc.render.rows.
+     */
+    public static Terminal fromSystemProperties(OutputStream target) {
+        String term = System.getenv("TERM");
+        boolean guess = System.console() != null && term != null && !term.equals("dumb");
+        String ansi = System.getProperty("brc.render.ansi");
+        return new Terminal(target,
+                ansi == null ? guess : Boolean.parseBoolean(ansi),
+                Boolean.getBoolean("brc.render.diff"),
+                Integer.getInteger("brc.render.rows", 24));
+    }
+
+    /**
+     * Start a new screen. Anything printed but not flushed yet is sent first,
+     * so a message shown while waiting on the database isn't lost.
+     */
+    public synchronized void clearScreen() {
+        flush();
+        inFrame = true;
+
+        if (diff) {
+            // Written at flush time, once we can compare with the last frame
+            return;
+        }
+        if (ansi) {
+            print(CLEAR_SCREEN);
+        } else {
+            for (int i = 0; i < CLEAR_BLANK_LINES; i++) {
+                println();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        super.flush();
+        if (frame.size() == 0) {
+            return;
+        }
+
+        try {
+            if (diff && inFrame) {
+                byte[] out = redraw();
+                target.write(out);
+                bytes += out.length;
+                lastFrameBytes = out.length;
+            } else {
+                // Printed outside of a frame, the screen no longer matches lastFrame
+                lastFrame = null;
+                frame.writeTo(target);
+                bytes += frame.size();
+                if (inFrame) {
+                    lastFrameBytes = frame.size();
+                }
+            }
+            writes++;
+            if (inFrame) {
+                frames++;
+            }
+            target.flush();
+        } catch (IOException e) {
+            setError();
+        }
+
+        frame.reset();
+        inFrame = false;
+    }
+
+    /**
+     * Escape sequences that turn the last frame into this one: every changed
+     * line is rewritten in place, the rest are left alone. Falls back to a
+     * full redraw if the screen doesn't match the last frame or the frame is
+     * taller than the terminal (it would have scrolled).
+     */
+    private byte[] redraw() {
+        List<String> lines = Arrays.asList(frame.toString().split("\n", -1));
+        StringBuilder sb = new StringBuilder(frame.size() + 64);
+
+        if (lastFrame == null || lines.size() > rows || lastFrame.size() > rows) {
+            sb.append(CLEAR_SCREEN);
+            sb.append(String.join("\n", lines));
+        } else {
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
+                // The last line held the prompt, and whatever was typed after it
+                boolean promptLine = i == lastFrame.size() - 1;
+                if (!promptLine && i < lastFrame.size() && lastFrame.get(i).equals(line)) {
+                    continue;
+                }
+                sb.append("\033[").append(i + 1).append(";1H").append(line).append(CLEAR_LINE);
+            }
+            // Wipe what's below, then leave the cursor at the end of the prompt
+            int last = lines.size() - 1;
+            sb.append("\033[").append(last + 2).append(";1H").append(CLEAR_BELOW);
+            sb.append("\033[").append(last + 1).append(';').append(lines.get(last).length() + 1).append('H');
+        }
+
+        lastFrame = new ArrayList<>(lines);
+        return sb.toString().getBytes();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(ansi, diff, frames, writes, bytes, lastFrameBytes);
+    }
+
+    public static class Stats {
+        private final boolean ansi;
+        private final boolean diff;
+        private final long frames;
+        private final long writes;
+        private final long bytes;
+        private final int lastFrameBytes;
+
+        Stats(boolean ansi, boolean diff, long frames, long writes, long bytes, int lastFrameBytes) {
+            this.ansi = ansi;
+            this.diff = diff;
+            this.frames = frames;
+            this.writes = writes;
+            this.bytes = bytes;
+            this.lastFrameBytes = lastFrameBytes;
+        }
+
+        public long getFrames() {
+            return frames;
+        }
+
+        public long getWrites() {
+            return writes;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public double getBytesPerFrame() {
+            return frames == 0 ? 0 : (double) bytes / frames;
+        }
+
+        public double getWritesPerFrame() {
+            return frames == 0 ? 0 : (double) writes / frames;
+        }
+
+        public String toString() {
+            return String.format("%s%s | frames %d, writes %d, bytes %d | %.1f writes/frame, "
+                    + "%.0f bytes/frame, last frame %d bytes",
+                    ansi ? "ansi" : "plain", diff ? " (diff redraw)" : "",
+                    frames, writes, bytes, getWritesPerFrame(), getBytesPerFrame(), lastFrameBytes);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.johnkusner.cse241final.bench;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.local.LocalBackend;
+import com.johnkusner.cse241final.objects.SalesTotals;
+import com.johnkusner.cse241final.stats.SalesColumns;
+import com.johnkusner.cse241final.stats.TopSellers;
+
+/**
+ * The statistics screens from the SQL views against SalesColumns, on a local
+ * database of generated transactions spread over the past three years:
+ * sales totals per period, top sellers per window and top sellers over an
+ * arbitrary 45 day range. Every answer is compared with the view's (or an
+ * equivalent query's) rows.
+ *
+ *     java -cp jjk320.jar:hsqldb.jar com.johnkusner.cse241final.bench.AnalyticsBenchmark [transactions] [products]
+ *
+ * Defaults to 400,000 transactions of 1,000 products. The local views
+ * number weeks with HSQLDB's week() rather than Oracle's WW, so per week
+ * totals are only compared overall, and their month names are put in
+ * Oracle's case first. Run with
+ * -Djava.util.concurrent.ForkJoinPool.common.parallelism=1 to see the
+ * columns on one core. Run from the project directory, or point
+ * brc.sql.dir at the sql scripts.
+ */
+public class AnalyticsBenchmark {
+    private static final String URL = "jdbc:hsqldb:mem:brc_analytics_bench;sql.syntax_ora=true;hsqldb.tx=mvcc";
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final int TOP = 100;
+
+    public static void main(String[] args) throws Exception {
+        int transactions = args.length > 0 ? Integer.parseInt(args[0]) : 400000;
+        int products = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        LocalBackend backend = new LocalBackend(URL, Paths.get(System.getProperty("brc.sql.dir", "sql")), null);
+        try (ConnectionPool pool = new ConnectionPool(backend, 2)) {
+            long now = System.currentTimeMillis();
+            fill(pool, transactions, products, now);
+
+            try (SalesColumns columns = new SalesColumns(pool, true, 0)) {
+                long start = System.nanoTime();
+                columns.start();
+                while (!columns.isReady()) {
+                    Thread.sleep(10);
+                }
+                System.out.printf("%,d transactions of %,d products, columns loaded in %,.0f ms, %d cores%n",
+                        transactions, products, (System.nanoTime() - start) / 1e6,
+                        Runtime.getRuntime().availableProcessors());
+
+                compareTotals(pool, columns, Query.SALES_PER_DAY, SalesColumns.Period.DAY);
+                compareTotals(pool, columns, Query.SALES_PER_WEEK, SalesColumns.Period.WEEK);
+                compareTotals(pool, columns, Query.SALES_PER_MONTH, SalesColumns.Period.MONTH);
+                compareTotals(pool, columns, Query.SALES_PER_QUARTER, SalesColumns.Period.QUARTER);
+
+                for (TopSellers.Window window : TopSellers.Window.values()) {
+                    compareTopSellers(pool, columns, window);
+                }
+                compareRange(pool, columns, now - 200 * DAY, now - 155 * DAY);
+                System.out.println(columns);
+            }
+        }
+    }
+
+    private static void compareTotals(ConnectionPool pool, SalesColumns columns, Query view,
+            SalesColumns.Period period) throws SQLException {
+        List<String> viewRows = new ArrayList<>();
+        long[] viewSums = new long[3];
+        int runs = 5;
+        long start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            viewRows.clear();
+            viewSums = new long[3];
+            try (Connection db = pool.borrow();
+                    PreparedStatement s = view.prepare(db);
+                    ResultSet r = s.executeQuery()) {
+                while (r.next()) {
+                    SalesTotals t = new SalesTotals(oracleMonth(r.getString("date_str")), r.getDouble("total_sales"),
+                            r.getInt("amount_sold"), r.getInt("num_trans"));
+                    viewRows.add(t.toString());
+                    viewSums[0] += Math.round(r.getDouble("total_sales") * 100);
+                    viewSums[1] += r.getLong("amount_sold");
+                    viewSums[2] += r.getLong("num_trans");
+                }
+            }
+        }
+        double viewMs = (System.nanoTime() - start) / 1e6 / runs;
+
+        runs = 50;
+        List<SalesTotals> totals = null;
+        start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            totals = columns.totals(period, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        double columnsMs = (System.nanoTime() - start) / 1e6 / runs;
+
+        List<String> columnRows = new ArrayList<>();
+        for (SalesTotals t : totals) {
+            columnRows.add(t.toString());
+        }
+        // Overall sums, from the same query over every row
+        long[] columnSums = new long[3];
+        try (Connection db = pool.borrow();
+                PreparedStatement s = db.prepareStatement("select sum(qty * unit_price), sum(qty), "
+                        + "count(distinct transaction_id) from purchased");
+                ResultSet r = s.executeQuery()) {
+            r.next();
+            columnSums[0] = Math.round(r.getDouble(1) * 100);
+            columnSums[1] = r.getLong(2);
+            columnSums[2] = r.getLong(3);
+        }
+        String same = viewRows.equals(columnRows) ? "same"
+                : Arrays.equals(viewSums, columnSums) && period == SalesColumns.Period.WEEK
+                        ? "same overall" : "DIFFERENT";
+        System.out.printf("  %-18s view %,9.2f ms | columns %,7.2f ms | %,d rows, %s%n",
+                view.name(), viewMs, columnsMs, viewRows.size(), same);
+    }
+
+    private static void compareTopSellers(ConnectionPool pool, SalesColumns columns, TopSellers.Window window)
+            throws SQLException {
+        List<Long> viewQtys = new ArrayList<>();
+        int runs = 5;
+        long start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            viewQtys.clear();
+            try (Connection db = pool.borrow();
+                    PreparedStatement s = view(window).prepare(db);
+                    ResultSet r = s.executeQuery()) {
+                while (r.next() && viewQtys.size() < TOP) {
+                    viewQtys.add(r.getLong("amount_sold"));
+                }
+            }
+        }
+        double viewMs = (System.nanoTime() - start) / 1e6 / runs;
+
+        runs = 50;
+        TopSellers.Ranking ranking = null;
+        start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            ranking = columns.topSellers(window, TOP);
+        }
+        double columnsMs = (System.nanoTime() - start) / 1e6 / runs;
+
+        System.out.printf("  %-18s view %,9.2f ms | columns %,7.2f ms | top %d, %s%n",
+                "TOP_SELLERS " + window, viewMs, columnsMs, viewQtys.size(),
+                viewQtys.equals(quantities(ranking)) ? "same" : "DIFFERENT");
+    }
+
+    private static void compareRange(ConnectionPool pool, SalesColumns columns, long from, long to)
+            throws SQLException {
+        List<Long> sqlQtys = new ArrayList<>();
+        int runs = 5;
+        long start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            sqlQtys.clear();
+            try (Connection db = pool.borrow();
+                    PreparedStatement s = db.prepareStatement("select product_id, sum(qty) as sold "
+                            + "from transaction inner join purchased using (transaction_id) "
+                            + "where timestamp >= ? and timestamp < ? group by product_id order by sold desc")) {
+                s.setTimestamp(1, new Timestamp(from / 1000 * 1000));
+                s.setTimestamp(2, new Timestamp(to / 1000 * 1000));
+                try (ResultSet r = s.executeQuery()) {
+                    while (r.next() && sqlQtys.size() < TOP) {
+                        sqlQtys.add(r.getLong("sold"));
+                    }
+                }
+            }
+        }
+        double sqlMs = (System.nanoTime() - start) / 1e6 / runs;
+
+        runs = 50;
+        TopSellers.Ranking ranking = null;
+        start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            ranking = columns.topSellers(from / 1000, to / 1000, TOP);
+        }
+        double columnsMs = (System.nanoTime() - start) / 1e6 / runs;
+
+        System.out.printf("  %-18s query %,8.2f ms | columns %,7.2f ms | top %d, %s%n",
+                "45 day range", sqlMs, columnsMs, sqlQtys.size(),
+                sqlQtys.equals(quantities(ranking)) ? "same" : "DIFFERENT");
+    }
+
+    /**
+     * HSQLDB's to_char gives MON as "Oct" or "Sept" where Oracle, and the
+     * columns, give "OCT" and "SEP".
+     */
+    private static String oracleMonth(String label) {
+        return label.toUpperCase(Locale.US).replace("SEPT", "SEP");
+    }
+
+    private static List<Long> quantities(TopSellers.Ranking ranking) {
+        List<Long> qtys = new ArrayList<>();
+        for (TopSellers.Seller seller : ranking.getSellers()) {
+            qtys.add(seller.getAmountSold());
+        }
+        return qtys;
+    }
+
+    private static Query view(TopSellers.Window window) {
+        switch (window) {
+        case YEAR:
+            return Query.TOP_SELLERS_YEAR;
+        case QUARTER:
+            return Query.TOP_SELLERS_QUARTER;
+        case MONTH:
+            return Query.TOP_SELLERS_MONTH;
+        case WEEK:
+            return Query.TOP_SELLERS_WEEK;
+        case DAY:
+            return Query.TOP_SELLERS_DAY;
+        default:
+            return Query.TOP_SELLERS;
+        }
+    }
+
+    private static void fill(ConnectionPool pool, int transactions, int products, long now) throws SQLException {
+        Random random = new Random(1);
+        try (Connection db = pool.borrow()) {
+            db.setAutoCommit(false);
+            try (PreparedStatement s = db.prepareStatement("insert into brand (brand_id, brand_name) "
+                    + "values (1, 'Bench')")) {
+                s.executeUpdate();
+            }
+            try (PreparedStatement s = db.prepareStatement("insert into product "
+                    + "(product_id, product_name, brand_id) values (?, ?, 1)")) {
+                for (int p = 1; p <= products; p++) {
+                    s.setInt(1, p);
+                    s.setString(2, "Product " + p);
+                    s.addBatch();
+                }
+                s.executeBatch();
+            }
+            try (PreparedStatement trans = db.prepareStatement("insert into transaction "
+                    + "(transaction_id, subtotal, tax, total, timestamp) values (?, 0, 0, 0, ?)");
+                    PreparedStatement line = db.prepareStatement("insert into purchased "
+                            + "(transaction_id, product_id, qty, unit_price) values (?, ?, ?, ?)")) {
+                for (int t = 1; t <= transactions; t++) {
+                    trans.setInt(1, t);
+                    // Whole seconds, as the columns keep them
+                    trans.setTimestamp(2, new Timestamp((now - (long) (random.nextDouble() * 3 * 365 * DAY))
+                            / 1000 * 1000));
+                    trans.addBatch();
+                    // 1 to 3 different products
+                    int lines = 1 + random.nextInt(3);
+                    int first = 1 + random.nextInt(products - lines);
+                    for (int l = 0; l < lines; l++) {
+                        line.setInt(1, t);
+                        line.setInt(2, first + l);
+                        line.setInt(3, 1 + random.nextInt(4));
+                        line.setDouble(4, 1 + random.nextInt(5000) / 100.0);
+                        line.addBatch();
+                    }
+                    if (t % 10000 == 0 || t == transactions) {
+                        trans.executeBatch();
+                        line.executeBatch();
+                        db.commit();
+                    }
+                }
+            }
+            db.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.johnkusner.cse241final.bench;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.johnkusner.cse241final.Formats;
+
+/**
+ * Checks Formats.number and Formats.money against NumberFormat's number and
+ * currency instances for the default locale: the edges (halves that round
+ * either way, amounts that round to zero, the ends of long) and then random
+ * amounts. Prints each difference and exits with 1 if there were any.
+ *
+ *     java -cp jjk320.jar com.johnkusner.cse241final.bench.FormatsCheck [random amounts]
+ *
+ * Defaults to 1,000,000 random amounts. Pass -Duser.language and
+ * -Duser.country to check another locale.
+ */
+public class FormatsCheck {
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        NumberFormat numbers = NumberFormat.getNumberInstance();
+        NumberFormat money = NumberFormat.getCurrencyInstance();
+
+        List<Long> longs = new ArrayList<>();
+        for (long n : new long[] { 0, 1, -1, 999, 1000, -1000, 999999, 1000000, 1234567,
+                Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1 }) {
+            longs.add(n);
+        }
+        List<Double> amounts = new ArrayList<>();
+        for (double d : new double[] { 0, -0.0, 0.004, -0.004, 0.005, -0.005, 0.015, 0.025, 0.995, -0.995,
+                1.005, 2.675, 1.115, 0.125, 0.375, 10.235, 999.995, 1000, -1000, 1234567.891,
+                99999999.995, 999999999999.995, 1e12, 1e15, -1e15, 1e20, 12345678901234567890.0,
+                Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY }) {
+            amounts.add(d);
+        }
+
+        Random random = new Random(1);
+        for (int i = 0; i < count; i++) {
+            longs.add(random.nextLong() >> random.nextInt(64));
+            switch (i % 3) {
+            case 0:
+                // Cents, and halves of a cent, as prices and totals are
+                amounts.add((random.nextInt(2000001) - 1000000) / 200.0);
+                break;
+            case 1:
+                amounts.add((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(16)));
+                break;
+            default:
+                amounts.add(Double.longBitsToDouble(random.nextLong()));
+                break;
+            }
+        }
+
+        int differences = 0;
+        for (long n : longs) {
+            differences += check("number(" + n + ")", numbers.format(n), Formats.number(n));
+        }
+        for (double d : amounts) {
+            differences += check("money(" + d + ")", money.format(d), Formats.money(d));
+        }
+        System.out.printf("%,d numbers and %,d amounts, %,d different from NumberFormat%n",
+                longs.size(), amounts.size(), differences);
+        if (differences > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static int check(String what, String expected, String actual) {
+        if (expected.equals(actual)) {
+            return 0;
+        }
+        System.out.println("  " + what + ": NumberFormat \"" + expected + "\", Formats \"" + actual + "\"");
+        return 1;
+    }
+}
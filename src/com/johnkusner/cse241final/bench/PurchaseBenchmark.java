@@ -0,0 +1,216 @@
+package com.johnkusner.cse241final.bench;
+
+import java.nio.file.Paths;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.local.LocalBackend;
+
+/**
+ * Flash sale stress test: many buyers at once checking out the same product
+ * from the warehouses, with less stock than they want between them. Runs
+ * the old read-then-write stock update and then purchase_product, each on a
+ * fresh local database, and checks that every unit sold came out of stock
+ * exactly once: sold + left in stock must equal what was there.
+ *
+ *     java -cp jjk320.jar:hsqldb.jar com.johnkusner.cse241final.bench.PurchaseBenchmark [buyers] [purchases] [warehouses]
+ *
+ * Defaults to 16 buyers making 4,000 purchases of 1 to 3 units from 8
+ * warehouses holding 6,000 units. Run from the project directory, or point
+ * brc.sql.dir at the sql scripts.
+ */
+public class PurchaseBenchmark {
+    private static final String URL = "jdbc:hsqldb:mem:brc_purchase_bench_%s;sql.syntax_ora=true;hsqldb.tx=mvcc";
+    private static final int PRODUCT = 1;
+
+    public static void main(String[] args) throws Exception {
+        int buyers = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int purchases = args.length > 1 ? Integer.parseInt(args[1]) : 4000;
+        int warehouses = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        // Three quarters of the average demand, so it sells out
+        int perWarehouse = Math.max(1, purchases * 2 * 3 / 4 / warehouses);
+
+        System.out.printf("%d buyers, %,d purchases, %d warehouses with %,d units each%n",
+                buyers, purchases, warehouses, perWarehouse);
+        run("Read then write", false, buyers, purchases, warehouses, perWarehouse);
+        run("purchase_product", true, buyers, purchases, warehouses, perWarehouse);
+    }
+
+    private static void run(String name, boolean procedure, int buyers, int purchases,
+            int warehouses, int perWarehouse) throws Exception {
+        LocalBackend backend = new LocalBackend(String.format(URL, procedure ? "proc" : "naive"),
+                Paths.get(System.getProperty("brc.sql.dir", "sql")), null);
+        try (ConnectionPool pool = new ConnectionPool(backend, buyers)) {
+            fill(pool, warehouses, perWarehouse);
+
+            AtomicInteger next = new AtomicInteger();
+            AtomicInteger got = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(buyers);
+            List<Future<?>> running = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int b = 0; b < buyers; b++) {
+                Random random = new Random(b);
+                running.add(executor.submit(() -> {
+                    while (next.getAndIncrement() < purchases) {
+                        try {
+                            got.addAndGet(purchase(pool, procedure, 1 + random.nextInt(3)));
+                        } catch (SQLException e) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : running) {
+                f.get();
+            }
+            long nanos = System.nanoTime() - start;
+            executor.shutdown();
+
+            int stocked = warehouses * perWarehouse;
+            int left = count(pool, "select sum(qty) from stock where product_id = " + PRODUCT);
+            int sold = count(pool, "select sum(qty) from purchased where product_id = " + PRODUCT);
+            System.out.printf("%-18s %,8.0f purchases/s | sold %,d, reported %,d, left %,d of %,d"
+                    + " | oversold %,d | failed %,d%n",
+                    name, purchases / (nanos / 1e9), sold, got.get(), left, stocked,
+                    sold + left - stocked, failed.get());
+        }
+    }
+
+    /**
+     * One checkout of qty units in its own transaction, returns how many
+     * were bought.
+     */
+    private static int purchase(ConnectionPool pool, boolean procedure, int qty) throws SQLException {
+        try (Connection db = pool.borrow()) {
+            db.setAutoCommit(false);
+            try {
+                int transId;
+                try (CallableStatement cs = Query.BEGIN_TRANSACTION.call(db)) {
+                    cs.registerOutParameter(1, Types.INTEGER);
+                    cs.execute();
+                    transId = cs.getInt(1);
+                }
+
+                int got;
+                if (procedure) {
+                    try (CallableStatement cs = Query.PURCHASE_PRODUCT.call(db)) {
+                        cs.setInt(1, transId);
+                        cs.setNull(2, Types.INTEGER);
+                        cs.setInt(3, PRODUCT);
+                        cs.setInt(4, qty);
+                        cs.setDouble(5, 100.0);
+                        cs.setNull(6, Types.DOUBLE);
+                        cs.registerOutParameter(7, Types.INTEGER);
+                        cs.registerOutParameter(8, Types.DOUBLE);
+                        cs.execute();
+                        got = cs.getInt(7);
+                    }
+                } else {
+                    got = readThenWrite(db, transId, qty);
+                }
+                db.commit();
+                return got;
+            } catch (SQLException e) {
+                db.rollback();
+                throw e;
+            } finally {
+                db.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * What purchase_product used to do: read each row's qty, then write
+     * back qty minus what was taken. Two buyers reading the same qty both
+     * write it, and one of the decrements is lost.
+     */
+    private static int readThenWrite(Connection db, int transId, int qty) throws SQLException {
+        int remaining = qty;
+        double paid = 0;
+        try (PreparedStatement find = db.prepareStatement("select location_id, qty, unit_price "
+                + "from stock where qty > 0 and product_id = ? "
+                + "and location_id in (select location_id from warehouse) order by unit_price");
+                PreparedStatement update = db.prepareStatement(
+                        "update stock set qty = ? where location_id = ? and product_id = ?")) {
+            find.setInt(1, PRODUCT);
+            try (ResultSet r = find.executeQuery()) {
+                while (remaining > 0 && r.next()) {
+                    int taking = Math.min(r.getInt(2), remaining);
+                    update.setInt(1, r.getInt(2) - taking);
+                    update.setInt(2, r.getInt(1));
+                    update.setInt(3, PRODUCT);
+                    update.executeUpdate();
+                    paid += taking * r.getDouble(3);
+                    remaining -= taking;
+                }
+            }
+        }
+        int got = qty - remaining;
+        if (got > 0) {
+            try (PreparedStatement s = db.prepareStatement("insert into purchased "
+                    + "(transaction_id, product_id, qty, unit_price) values (?, ?, ?, ?)")) {
+                s.setInt(1, transId);
+                s.setInt(2, PRODUCT);
+                s.setInt(3, got);
+                s.setDouble(4, paid / got);
+                s.executeUpdate();
+            }
+            try (PreparedStatement s = db.prepareStatement("update transaction "
+                    + "set subtotal = subtotal + ?, total = subtotal + ? where transaction_id = ?")) {
+                s.setDouble(1, paid);
+                s.setDouble(2, paid);
+                s.setInt(3, transId);
+                s.executeUpdate();
+            }
+        }
+        return got;
+    }
+
+    private static void fill(ConnectionPool pool, int warehouses, int perWarehouse) throws SQLException {
+        try (Connection db = pool.borrow()) {
+            execute(db, "insert into brand (brand_id, brand_name) values (1, 'Bench')");
+            execute(db, "insert into product (product_id, product_name, brand_id) values ("
+                    + PRODUCT + ", 'Flash Sale Item', 1)");
+            execute(db, "insert into address (address_id, line1, city, state) "
+                    + "values (1, '1 Warehouse Way', 'Bethlehem', 'PA')");
+            for (int w = 1; w <= warehouses; w++) {
+                execute(db, "insert into location (location_id, location_name, address_id) values ("
+                        + w + ", 'Warehouse " + w + "', 1)");
+                execute(db, "insert into warehouse (location_id) values (" + w + ")");
+                // All at the same price, like one product restocked everywhere
+                execute(db, "insert into stock (location_id, product_id, qty, unit_price) values ("
+                        + w + ", " + PRODUCT + ", " + perWarehouse + ", 9.99)");
+            }
+        }
+    }
+
+    private static void execute(Connection db, String sql) throws SQLException {
+        try (PreparedStatement s = db.prepareStatement(sql)) {
+            s.executeUpdate();
+        }
+    }
+
+    private static int count(ConnectionPool pool, String sql) throws SQLException {
+        try (Connection db = pool.borrow();
+                PreparedStatement s = db.prepareStatement(sql);
+                ResultSet r = s.executeQuery()) {
+            r.next();
+            return r.getInt(1);
+        }
+    }
+}
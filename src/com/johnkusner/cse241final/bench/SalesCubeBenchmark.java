@@ -0,0 +1,310 @@
+package com.johnkusner.cse241final.bench;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.local.LocalBackend;
+import com.johnkusner.cse241final.stats.SalesColumns;
+import com.johnkusner.cse241final.stats.SalesCube;
+
+/**
+ * Slices of the SalesCube against the same questions asked in SQL, on a
+ * local database of generated sales over the past three years: 10 root
+ * categories of 10 subcategories each, some products in two of them, and
+ * sales split between stores, pickup orders and shipped (online) orders.
+ * The cube is fed by a SalesColumns, as in the app. After the first round,
+ * more sales are inserted and the columns are given a moment to read them,
+ * then every slice is checked again.
+ *
+ *     java -cp jjk320.jar:hsqldb.jar com.johnkusner.cse241final.bench.SalesCubeBenchmark [transactions] [products] [stores]
+ *
+ * Defaults to 200,000 transactions, 2,000 products and 20 stores. Run from
+ * the project directory, or point brc.sql.dir at the sql scripts.
+ */
+public class SalesCubeBenchmark {
+    private static final String URL = "jdbc:hsqldb:mem:brc_sales_cube_bench;sql.syntax_ora=true;hsqldb.tx=mvcc";
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final int ROOTS = 10;
+    private static final int LATER = 2000;
+
+    // Location of each line, 0 for shipped orders, and what it's in
+    private static final String LINES = "from transaction inner join purchased using (transaction_id) "
+            + "left join physical_transaction using (transaction_id) "
+            + "left join pickup_order using (transaction_id) ";
+    private static final String LOCATION = "coalesce(physical_transaction.location_id, pickup_order.location_id, 0)";
+
+    public static void main(String[] args) throws Exception {
+        int transactions = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int products = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int stores = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        LocalBackend backend = new LocalBackend(URL, Paths.get(System.getProperty("brc.sql.dir", "sql")), null);
+        try (ConnectionPool pool = new ConnectionPool(backend, 4)) {
+            Random random = new Random(1);
+            long now = System.currentTimeMillis();
+            fill(pool, products, stores);
+            insertSales(pool, random, 1, transactions, products, stores, now, 3 * 365 * DAY);
+
+            try (SalesColumns columns = new SalesColumns(pool, true, 500);
+                    SalesCube cube = new SalesCube(pool, columns, true)) {
+                long start = System.nanoTime();
+                cube.start();
+                columns.start();
+                while (!cube.isReady()) {
+                    Thread.sleep(10);
+                }
+                System.out.printf("%,d transactions, %,d products, %d stores, loaded in %,.0f ms%n",
+                        transactions, products, stores, (System.nanoTime() - start) / 1e6);
+                compareAll(pool, cube);
+
+                insertSales(pool, random, transactions + 1, LATER, products, stores, System.currentTimeMillis(), 0);
+                Thread.sleep(2000);
+                System.out.printf("After %,d more sales:%n", LATER);
+                compareAll(pool, cube);
+                System.out.println(cube);
+            }
+        }
+    }
+
+    private static void compareAll(ConnectionPool pool, SalesCube cube) throws SQLException {
+        LocalDate today = LocalDate.now();
+        LocalDate quarterAgo = today.minusMonths(3);
+        int root = 1;
+        int child = 100 + 3;
+        String underRoot = "product_id in (select product_id from product_category where category_id in "
+                + "(select category_id from category where category_id = " + root + " or parent_id = " + root + "))";
+
+        SalesCube.Slice category = SalesCube.Slice.ALL.withCategory(root).between(quarterAgo, today);
+        compare(pool, cube, "category by store, last quarter", category, SalesCube.By.LOCATION,
+                "select " + LOCATION + ", sum(qty), sum(qty * unit_price) " + LINES
+                        + "where " + underRoot + " and timestamp >= ? and timestamp < ? group by " + LOCATION,
+                quarterAgo, today);
+        compare(pool, cube, "drill down into its subcategories", category, SalesCube.By.CATEGORY,
+                "select category_id, sum(qty), sum(qty * unit_price) " + LINES
+                        + "inner join product_category using (product_id) "
+                        + "where category_id in (select category_id from category where parent_id = " + root + ") "
+                        + "and timestamp >= ? and timestamp < ? group by category_id",
+                quarterAgo, today);
+        compare(pool, cube, "one subcategory at store 1 by product", SalesCube.Slice.ALL.withCategory(child)
+                .withLocation(1), SalesCube.By.PRODUCT,
+                "select product_id, sum(qty), sum(qty * unit_price) " + LINES
+                        + "where product_id in (select product_id from product_category where category_id = "
+                        + child + ") and " + LOCATION + " = 1 group by product_id",
+                null, null);
+        compare(pool, cube, "every root category, all time", SalesCube.Slice.ALL, SalesCube.By.CATEGORY,
+                "select root_id, sum(qty), sum(qty * unit_price) " + LINES
+                        + "inner join (select distinct product_id, coalesce(parent_id, category_id) as root_id "
+                        + "from product_category inner join category using (category_id)) roots using (product_id) "
+                        + "group by root_id",
+                null, null);
+        compare(pool, cube, "online sales per month", SalesCube.Slice.ALL.withLocation(SalesCube.ONLINE),
+                SalesCube.By.MONTH,
+                "select extract(year from timestamp) * 100 + extract(month from timestamp), sum(qty), "
+                        + "sum(qty * unit_price) " + LINES + "where " + LOCATION + " = 0 "
+                        + "group by extract(year from timestamp) * 100 + extract(month from timestamp)",
+                null, null);
+        compare(pool, cube, "everything per quarter", SalesCube.Slice.ALL, SalesCube.By.QUARTER,
+                "select extract(year from timestamp) * 10 + (extract(month from timestamp) + 2) / 3, sum(qty), "
+                        + "sum(qty * unit_price) " + LINES
+                        + "group by extract(year from timestamp) * 10 + (extract(month from timestamp) + 2) / 3",
+                null, null);
+    }
+
+    /**
+     * Time the cube's answer and the query's (filtered to from through to
+     * when given), and check they're the same.
+     */
+    private static void compare(ConnectionPool pool, SalesCube cube, String name, SalesCube.Slice slice,
+            SalesCube.By by, String sql, LocalDate from, LocalDate to) throws SQLException {
+        int runs = 3;
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        long start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            expected.clear();
+            try (Connection db = pool.borrow();
+                    PreparedStatement s = db.prepareStatement(sql)) {
+                if (from != null) {
+                    s.setTimestamp(1, Timestamp.valueOf(from.atStartOfDay()));
+                    s.setTimestamp(2, Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+                }
+                try (ResultSet r = s.executeQuery()) {
+                    while (r.next()) {
+                        expected.put(r.getInt(1), r.getLong(2) + " " + Math.round(r.getDouble(3) * 100));
+                    }
+                }
+            }
+        }
+        double sqlMs = (System.nanoTime() - start) / 1e6 / runs;
+
+        runs = 50;
+        List<SalesCube.Cell> cells = null;
+        start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            cells = cube.query(slice, by);
+        }
+        double cubeMs = (System.nanoTime() - start) / 1e6 / runs;
+
+        TreeMap<Integer, String> actual = new TreeMap<>();
+        for (SalesCube.Cell cell : cells) {
+            actual.put(periodKey(by, cell.getKey()), cell.getAmountSold() + " "
+                    + Math.round(cell.getTotalSales() * 100));
+        }
+        System.out.printf("  %-40s SQL %,9.2f ms | cube %,7.3f ms | %,d rows, %s%n",
+                name, sqlMs, cubeMs, actual.size(), actual.equals(expected) ? "same" : "DIFFERENT");
+    }
+
+    /**
+     * The query's key for a period's cell: yyyymm for months, yyyyq for
+     * quarters.
+     */
+    private static int periodKey(SalesCube.By by, int key) {
+        LocalDate start = LocalDate.ofEpochDay(key);
+        switch (by) {
+        case MONTH:
+            return start.getYear() * 100 + start.getMonthValue();
+        case QUARTER:
+            return start.getYear() * 10 + (start.getMonthValue() + 2) / 3;
+        default:
+            return key;
+        }
+    }
+
+    private static void fill(ConnectionPool pool, int products, int stores) throws SQLException {
+        try (Connection db = pool.borrow()) {
+            db.setAutoCommit(false);
+            try (PreparedStatement s = db.prepareStatement("insert into address "
+                    + "(address_id, line1, city, state) values (1, '1 Main St', 'Bethlehem', 'PA')")) {
+                s.executeUpdate();
+            }
+            try (PreparedStatement location = db.prepareStatement("insert into location "
+                    + "(location_id, location_name, address_id) values (?, ?, 1)");
+                    PreparedStatement store = db.prepareStatement("insert into store "
+                            + "(location_id, hour_open, minute_open, hour_close, minute_close) "
+                            + "values (?, 8, 0, 22, 0)")) {
+                for (int l = 1; l <= stores; l++) {
+                    location.setInt(1, l);
+                    location.setString(2, "Store " + l);
+                    location.executeUpdate();
+                    store.setInt(1, l);
+                    store.executeUpdate();
+                }
+            }
+            try (PreparedStatement s = db.prepareStatement("insert into brand (brand_id, brand_name) "
+                    + "values (1, 'Bench')")) {
+                s.executeUpdate();
+            }
+            try (PreparedStatement s = db.prepareStatement("insert into category "
+                    + "(category_id, category_name, parent_id) values (?, ?, ?)")) {
+                for (int r = 1; r <= ROOTS; r++) {
+                    s.setInt(1, r);
+                    s.setString(2, "Category " + r);
+                    s.setNull(3, java.sql.Types.INTEGER);
+                    s.executeUpdate();
+                }
+                // Subcategory 100 + i is under root i / 10 + 1
+                for (int i = 0; i < ROOTS * 10; i++) {
+                    s.setInt(1, 100 + i);
+                    s.setString(2, "Category " + (i / 10 + 1) + "." + (i % 10 + 1));
+                    s.setInt(3, i / 10 + 1);
+                    s.executeUpdate();
+                }
+            }
+            try (PreparedStatement product = db.prepareStatement("insert into product "
+                    + "(product_id, product_name, brand_id) values (?, ?, 1)");
+                    PreparedStatement category = db.prepareStatement("insert into product_category "
+                            + "(product_id, category_id) values (?, ?)")) {
+                for (int p = 1; p <= products; p++) {
+                    product.setInt(1, p);
+                    product.setString(2, "Product " + p);
+                    product.addBatch();
+                    category.setInt(1, p);
+                    category.setInt(2, 100 + p % (ROOTS * 10));
+                    category.addBatch();
+                    // Every 7th is also in the next subcategory, under the
+                    // same root most of the time
+                    if (p % 7 == 0) {
+                        category.setInt(1, p);
+                        category.setInt(2, 100 + (p + 1) % (ROOTS * 10));
+                        category.addBatch();
+                    }
+                }
+                product.executeBatch();
+                category.executeBatch();
+            }
+            db.commit();
+            db.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Insert count transactions starting at firstId, at random times up to
+     * spreadMs before now: half at stores, a quarter picked up and a
+     * quarter shipped.
+     */
+    private static void insertSales(ConnectionPool pool, Random random, int firstId, int count, int products,
+            int stores, long now, long spreadMs) throws SQLException {
+        try (Connection db = pool.borrow();
+                PreparedStatement trans = db.prepareStatement("insert into transaction "
+                        + "(transaction_id, subtotal, tax, total, timestamp) values (?, 0, 0, 0, ?)");
+                PreparedStatement physical = db.prepareStatement("insert into physical_transaction "
+                        + "(transaction_id, location_id) values (?, ?)");
+                PreparedStatement online = db.prepareStatement("insert into online_transaction "
+                        + "(transaction_id, est_arrival) values (?, ?)");
+                PreparedStatement pickup = db.prepareStatement("insert into pickup_order "
+                        + "(transaction_id, location_id, pickup_name) values (?, ?, 'Bench')");
+                PreparedStatement line = db.prepareStatement("insert into purchased "
+                        + "(transaction_id, product_id, qty, unit_price) values (?, ?, ?, ?)")) {
+            db.setAutoCommit(false);
+            for (int i = 0; i < count; i++) {
+                int t = firstId + i;
+                long when = now - (long) (random.nextDouble() * spreadMs);
+                trans.setInt(1, t);
+                trans.setTimestamp(2, new Timestamp(when));
+                trans.addBatch();
+                int kind = random.nextInt(4);
+                int store = 1 + random.nextInt(stores);
+                if (kind < 2) {
+                    physical.setInt(1, t);
+                    physical.setInt(2, store);
+                    physical.addBatch();
+                } else {
+                    online.setInt(1, t);
+                    online.setDate(2, new java.sql.Date(when + 2 * DAY));
+                    online.addBatch();
+                    if (kind == 2) {
+                        pickup.setInt(1, t);
+                        pickup.setInt(2, store);
+                        pickup.addBatch();
+                    }
+                }
+                int lines = 1 + random.nextInt(3);
+                int first = 1 + random.nextInt(products - lines);
+                for (int l = 0; l < lines; l++) {
+                    line.setInt(1, t);
+                    line.setInt(2, first + l);
+                    line.setInt(3, 1 + random.nextInt(4));
+                    line.setDouble(4, 1 + random.nextInt(5000) / 100.0);
+                    line.addBatch();
+                }
+                if ((i + 1) % 10000 == 0 || i == count - 1) {
+                    trans.executeBatch();
+                    physical.executeBatch();
+                    online.executeBatch();
+                    pickup.executeBatch();
+                    line.executeBatch();
+                    db.commit();
+                }
+            }
+            db.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.johnkusner.cse241final.bench;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.local.LocalBackend;
+import com.johnkusner.cse241final.stats.SalesRollup;
+
+/**
+ * Sales totals per day, week, month and quarter from the sales_totals_per_X
+ * views against the sales_rollup_per_X ones, on local databases holding more
+ * and more history. Each size gets a fresh database of generated
+ * transactions spread over the past three years, the rollup is rebuilt from
+ * them, and every query's rows are compared with the view's.
+ *
+ *     java -cp jjk320.jar:hsqldb.jar com.johnkusner.cse241final.bench.SalesTotalsBenchmark [transactions...]
+ *
+ * Defaults to 25,000, 100,000 and 400,000 transactions. Run from the project
+ * directory, or point brc.sql.dir at the sql scripts.
+ */
+public class SalesTotalsBenchmark {
+    private static final String URL = "jdbc:hsqldb:mem:brc_sales_totals_bench_%d;sql.syntax_ora=true;hsqldb.tx=mvcc";
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final int PRODUCTS = 1000;
+
+    private static final Query[][] QUERIES = {
+        { Query.SALES_PER_DAY, Query.SALES_ROLLUP_PER_DAY },
+        { Query.SALES_PER_WEEK, Query.SALES_ROLLUP_PER_WEEK },
+        { Query.SALES_PER_MONTH, Query.SALES_ROLLUP_PER_MONTH },
+        { Query.SALES_PER_QUARTER, Query.SALES_ROLLUP_PER_QUARTER },
+    };
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = { 25000, 100000, 400000 };
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        for (int transactions : sizes) {
+            run(transactions);
+        }
+    }
+
+    private static void run(int transactions) throws Exception {
+        LocalBackend backend = new LocalBackend(String.format(URL, transactions),
+                Paths.get(System.getProperty("brc.sql.dir", "sql")), null);
+        try (ConnectionPool pool = new ConnectionPool(backend, 2)) {
+            fill(pool, transactions);
+            long start = System.nanoTime();
+            new SalesRollup(pool).rebuild();
+            System.out.printf("%,d transactions, rollup rebuilt in %,.0f ms%n", transactions,
+                    (System.nanoTime() - start) / 1e6);
+
+            for (Query[] pair : QUERIES) {
+                List<String> viewRows = new ArrayList<>();
+                List<String> rollupRows = new ArrayList<>();
+                double viewMs = time(pool, pair[0], viewRows);
+                double rollupMs = time(pool, pair[1], rollupRows);
+                System.out.printf("  %-18s view %,9.2f ms | rollup %,7.2f ms | %,d rows, %s%n",
+                        pair[0].name(), viewMs, rollupMs, viewRows.size(),
+                        viewRows.equals(rollupRows) ? "same" : "DIFFERENT");
+            }
+        }
+    }
+
+    /**
+     * Average ms to read all of the query's rows, which are left in rows.
+     */
+    private static double time(ConnectionPool pool, Query query, List<String> rows) throws SQLException {
+        int runs = 5;
+        long start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            rows.clear();
+            try (Connection db = pool.borrow();
+                    PreparedStatement s = query.prepare(db);
+                    ResultSet r = s.executeQuery()) {
+                while (r.next()) {
+                    rows.add(r.getString("date_str") + " " + r.getBigDecimal("total_sales").stripTrailingZeros()
+                            + " " + r.getLong("amount_sold") + " " + r.getLong("num_trans"));
+                }
+            }
+        }
+        return (System.nanoTime() - start) / 1e6 / runs;
+    }
+
+    private static void fill(ConnectionPool pool, int transactions) throws SQLException {
+        Random random = new Random(1);
+        long now = System.currentTimeMillis();
+        try (Connection db = pool.borrow()) {
+            db.setAutoCommit(false);
+            try (PreparedStatement s = db.prepareStatement("insert into brand (brand_id, brand_name) "
+                    + "values (1, 'Bench')")) {
+                s.executeUpdate();
+            }
+            try (PreparedStatement s = db.prepareStatement("insert into product "
+                    + "(product_id, product_name, brand_id) values (?, ?, 1)")) {
+                for (int p = 1; p <= PRODUCTS; p++) {
+                    s.setInt(1, p);
+                    s.setString(2, "Product " + p);
+                    s.addBatch();
+                }
+                s.executeBatch();
+            }
+            try (PreparedStatement trans = db.prepareStatement("insert into transaction "
+                    + "(transaction_id, subtotal, tax, total, timestamp) values (?, 0, 0, 0, ?)");
+                    PreparedStatement line = db.prepareStatement("insert into purchased "
+                            + "(transaction_id, product_id, qty, unit_price) values (?, ?, ?, ?)")) {
+                for (int t = 1; t <= transactions; t++) {
+                    trans.setInt(1, t);
+                    trans.setTimestamp(2, new Timestamp(now - (long) (random.nextDouble() * 3 * 365 * DAY)));
+                    trans.addBatch();
+                    // 1 to 3 different products
+                    int lines = 1 + random.nextInt(3);
+                    int first = 1 + random.nextInt(PRODUCTS - lines);
+                    for (int l = 0; l < lines; l++) {
+                        line.setInt(1, t);
+                        line.setInt(2, first + l);
+                        line.setInt(3, 1 + random.nextInt(4));
+                        line.setDouble(4, 1 + random.nextInt(5000) / 100.0);
+                        line.addBatch();
+                    }
+                    if (t % 10000 == 0 || t == transactions) {
+                        trans.executeBatch();
+                        line.executeBatch();
+                        db.commit();
+                    }
+                }
+            }
+            db.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.johnkusner.cse241final.bench;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.local.LocalBackend;
+import com.johnkusner.cse241final.search.SearchCache;
+import com.johnkusner.cse241final.search.SearchService;
+
+/**
+ * Compares product search through the SQL query (what ProductSearchInterface
+ * ran before) with the in-memory TrigramIndex, and times type-ahead
+ * suggestions from the PrefixIndex, on a local database filled with
+ * generated product names.
+ *
+ *     java -cp jjk320.jar:hsqldb.jar com.johnkusner.cse241final.bench.SearchBenchmark [products] [queries]
+ *
+ * Defaults to 1,000,000 products and 50 queries. Run from the project
+ * directory, or point brc.sql.dir at the sql scripts.
+ */
+public class SearchBenchmark {
+    private static final String URL = "jdbc:hsqldb:mem:brc_search_bench;sql.syntax_ora=true;hsqldb.tx=mvcc";
+    private static final int LIMIT = 100;
+
+    static final String[] ADJECTIVES = { "Plain", "BBQ", "Organic", "Spicy", "Large", "Small",
+            "Deluxe", "Classic", "Wireless", "Stainless", "Frozen", "Fresh", "Vintage", "Compact",
+            "Premium", "Red", "Blue", "Green", "Black", "White", "Travel", "Kids", "Family", "Pro" };
+    static final String[] NOUNS = { "Potato Chips", "Chocolate Bar", "Apple", "Banana", "Coffee",
+            "Headphones", "Keyboard", "Monitor", "Blender", "Toaster", "Frying Pan", "Backpack",
+            "Notebook", "Pencil", "Desk Lamp", "Sneakers", "Jacket", "Umbrella", "Water Bottle",
+            "Phone Case", "Garden Hose", "Board Game", "Puzzle", "Shampoo", "Toothpaste", "Novel" };
+
+    public static void main(String[] args) throws Exception {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        LocalBackend backend = new LocalBackend(URL,
+                Paths.get(System.getProperty("brc.sql.dir", "sql")), null);
+        try (ConnectionPool pool = new ConnectionPool(backend, 2)) {
+            long start = System.currentTimeMillis();
+            fill(pool, products);
+            System.out.printf("Loaded %,d products in %,dms%n", products, System.currentTimeMillis() - start);
+
+            // No cache, the terms repeat
+            SearchService service = new SearchService(pool, true, 0, new SearchCache(0, 0, 0));
+            start = System.currentTimeMillis();
+            service.start();
+            while (!service.isReady()) {
+                Thread.sleep(10);
+            }
+            System.out.printf("Built index in %,dms: %s%n", System.currentTimeMillis() - start, service.getStats());
+
+            String[] terms = terms(queries, new Random(42));
+
+            // Warm up both paths before timing
+            for (int i = 0; i < Math.min(5, terms.length); i++) {
+                sql(pool, terms[i]);
+            }
+            for (int i = 0; i < 1000; i++) {
+                service.search(terms[i % terms.length], LIMIT);
+            }
+
+            long[] sqlNanos = new long[terms.length];
+            long[] indexNanos = new long[terms.length];
+            int mismatches = 0;
+            for (int i = 0; i < terms.length; i++) {
+                long t = System.nanoTime();
+                int[] fromSql = sql(pool, terms[i]);
+                sqlNanos[i] = System.nanoTime() - t;
+
+                t = System.nanoTime();
+                int found = service.search(terms[i], LIMIT).size();
+                indexNanos[i] = System.nanoTime() - t;
+
+                // Both return the first 100 matches, in a different order
+                if (Math.min(fromSql.length, LIMIT) != found) {
+                    mismatches++;
+                }
+            }
+
+            // Type-ahead: every prefix of each term, as if typed a letter at a time
+            List<String> prefixes = new ArrayList<>();
+            for (String term : terms) {
+                for (int i = 1; i <= term.length(); i++) {
+                    prefixes.add(term.substring(0, i));
+                }
+            }
+            for (int i = 0; i < 1000; i++) {
+                service.suggest(prefixes.get(i % prefixes.size()), 10);
+            }
+            long[] suggestNanos = new long[prefixes.size()];
+            for (int i = 0; i < suggestNanos.length; i++) {
+                long t = System.nanoTime();
+                service.suggest(prefixes.get(i), 10);
+                suggestNanos[i] = System.nanoTime() - t;
+            }
+
+            report("SQL like '%term%'", sqlNanos);
+            report("Trigram index", indexNanos);
+            report("Prefix suggestions", suggestNanos);
+            System.out.printf("Result count mismatches: %d of %d queries%n", mismatches, terms.length);
+            service.close();
+        }
+    }
+
+    private static void fill(ConnectionPool pool, int products) throws Exception {
+        Random random = new Random(1);
+        try (Connection db = pool.borrow()) {
+            db.setAutoCommit(false);
+            try (PreparedStatement s = db.prepareStatement(
+                    "insert into brand (brand_id, brand_name) values (1, 'Bench')")) {
+                s.executeUpdate();
+            }
+            try (PreparedStatement s = db.prepareStatement(
+                    "insert into product (product_id, product_name, brand_id) values (?, ?, 1)")) {
+                for (int id = 1; id <= products; id++) {
+                    s.setInt(1, id);
+                    s.setString(2, name(random, id));
+                    s.addBatch();
+                    if (id % 10000 == 0) {
+                        s.executeBatch();
+                        db.commit();
+                    }
+                }
+                if (products % 10000 != 0) {
+                    s.executeBatch();
+                }
+                db.commit();
+            }
+            db.setAutoCommit(true);
+        }
+    }
+
+    static String name(Random random, int id) {
+        return ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                + NOUNS[random.nextInt(NOUNS.length)] + " #" + id;
+    }
+
+    /**
+     * A mix of what people type: word fragments, whole words, two words and
+     * the odd search that matches nothing.
+     */
+    static String[] terms(int n, Random random) {
+        List<String> terms = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String noun = NOUNS[random.nextInt(NOUNS.length)].toLowerCase();
+            switch (i % 5) {
+                case 0:
+                    int at = random.nextInt(noun.length() - 2);
+                    terms.add(noun.substring(at, at + 3));
+                    break;
+                case 1:
+                    terms.add(noun);
+                    break;
+                case 2:
+                    terms.add(ADJECTIVES[random.nextInt(ADJECTIVES.length)].toLowerCase() + " " + noun);
+                    break;
+                case 3:
+                    terms.add("#" + (1 + random.nextInt(99999)));
+                    break;
+                default:
+                    terms.add(noun + " xyz");
+            }
+        }
+        return terms.toArray(new String[0]);
+    }
+
+    private static int[] sql(ConnectionPool pool, String term) throws Exception {
+        int[] ids = new int[LIMIT];
+        int n = 0;
+        try (Connection db = pool.borrow();
+                PreparedStatement s = Query.PRODUCT_SEARCH.prepare(db, "%" + term + "%");
+                ResultSet r = s.executeQuery()) {
+            while (r.next()) {
+                ids[n++] = r.getInt("product_id");
+            }
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    static void report(String name, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long n : sorted) {
+            total += n;
+        }
+        System.out.printf("%-20s mean %10.1fus  p50 %10.1fus  p95 %10.1fus  max %10.1fus%n", name,
+                total / 1e3 / sorted.length,
+                sorted[sorted.length / 2] / 1e3,
+                sorted[(int) (sorted.length * 0.95)] / 1e3,
+                sorted[sorted.length - 1] / 1e3);
+    }
+}
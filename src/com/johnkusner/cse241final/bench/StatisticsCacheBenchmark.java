@@ -0,0 +1,254 @@
+package com.johnkusner.cse241final.bench;
+
+import java.nio.file.Paths;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Mappers;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.local.LocalBackend;
+import com.johnkusner.cse241final.stats.SalesColumns;
+import com.johnkusner.cse241final.stats.SalesRollup;
+import com.johnkusner.cse241final.stats.StatisticsCache;
+
+/**
+ * The sales totals screens read through StatisticsCache against reading
+ * their views every time, on a local database of generated sales going
+ * back from now: the first read, reads while the open period is kept, and
+ * reads of the open period after a checkout. Then new sales are added and
+ * the cache is checked against the views. Last, the dashboard's loads
+ * (with the cache off, so each runs its view) one after another and all
+ * at once.
+ *
+ *     java -cp jjk320.jar:hsqldb.jar com.johnkusner.cse241final.bench.StatisticsCacheBenchmark [transactions] [connections]
+ *
+ * Defaults to 300,000 transactions, 2,000 a day, and 8 connections. Run from
+ * the project directory, or point brc.sql.dir at the sql scripts.
+ */
+public class StatisticsCacheBenchmark {
+    private static final String URL = "jdbc:hsqldb:mem:brc_statistics_cache_bench;sql.syntax_ora=true;hsqldb.tx=mvcc";
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final int PER_DAY = 2000;
+    private static final int PRODUCTS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        int transactions = args.length > 0 ? Integer.parseInt(args[0]) : 300000;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        LocalBackend backend = new LocalBackend(URL, Paths.get(System.getProperty("brc.sql.dir", "sql")), null);
+        try (ConnectionPool pool = new ConnectionPool(backend, connections)) {
+            Random random = new Random(1);
+            fill(pool);
+            insertSales(pool, random, 1, transactions, System.currentTimeMillis());
+
+            // Rebuilt from the generated sales, as a manager would after loading them
+            SalesRollup rollup = SalesRollup.forPool(pool);
+            if (!rollup.check()) {
+                rollup.rebuild();
+            }
+            System.out.printf("%,d transactions over %,d days%n", transactions, transactions / PER_DAY);
+
+            try (StatisticsCache cache = new StatisticsCache(pool, true, 60000)) {
+                for (SalesColumns.Period period : SalesColumns.Period.values()) {
+                    double salesView = time(pool, salesView(period), 3);
+                    double rollupView = time(pool, rollupView(period), 3);
+
+                    long start = System.nanoTime();
+                    cache.totals(period);
+                    double first = (System.nanoTime() - start) / 1e6;
+
+                    int runs = 1000;
+                    start = System.nanoTime();
+                    for (int run = 0; run < runs; run++) {
+                        cache.totals(period);
+                    }
+                    double kept = (System.nanoTime() - start) / 1e6 / runs;
+
+                    runs = 20;
+                    start = System.nanoTime();
+                    for (int run = 0; run < runs; run++) {
+                        cache.salesRecorded();
+                        cache.totals(period);
+                    }
+                    double open = (System.nanoTime() - start) / 1e6 / runs;
+
+                    System.out.printf("  per %-8s sales view %,9.2f ms | rollup view %,7.2f ms | cache: first %,7.2f ms,"
+                            + " kept %,7.4f ms, open period read %,6.2f ms%n",
+                            period.name().toLowerCase(), salesView, rollupView, first, kept, open);
+                }
+
+                // Sales since the cache read, as if checked out
+                insertSales(pool, random, transactions + 1, PER_DAY / 4, System.currentTimeMillis());
+                try (Connection db = pool.borrow()) {
+                    db.setAutoCommit(false);
+                    try (CallableStatement cs = Query.REBUILD_SALES_ROLLUP.call(db)) {
+                        cs.execute();
+                        db.commit();
+                    } finally {
+                        db.setAutoCommit(true);
+                    }
+                }
+                cache.salesRecorded();
+                for (SalesColumns.Period period : SalesColumns.Period.values()) {
+                    List<String> cached = strings(cache.totals(period));
+                    List<String> fresh;
+                    try (Connection db = pool.borrow();
+                            PreparedStatement s = rollupView(period).prepare(db);
+                            ResultSet r = s.executeQuery()) {
+                        fresh = strings(Mappers.SALES_TOTALS.list(r));
+                    }
+                    System.out.printf("  after %,d more sales, per %-8s %s%n", PER_DAY / 4,
+                            period.name().toLowerCase(), cached.equals(fresh) ? "same" : "DIFFERENT");
+                }
+                System.out.println("  " + cache);
+            }
+
+            try (StatisticsCache uncached = new StatisticsCache(pool, false, 0)) {
+                List<Callable<Object>> loads = new ArrayList<>();
+                for (Query view : new Query[] { Query.TOP_SELLERS_DAY, Query.TOP_SELLERS_WEEK,
+                        Query.TOP_SELLERS_MONTH }) {
+                    loads.add(() -> uncached.topSellers(view));
+                }
+                for (SalesColumns.Period period : SalesColumns.Period.values()) {
+                    loads.add(() -> uncached.totals(period));
+                }
+
+                uncached.loadAll(loads);
+                int runs = 3;
+                long start = System.nanoTime();
+                for (int run = 0; run < runs; run++) {
+                    for (Callable<Object> load : loads) {
+                        load.call();
+                    }
+                }
+                double sequential = (System.nanoTime() - start) / 1e6 / runs;
+                start = System.nanoTime();
+                for (int run = 0; run < runs; run++) {
+                    uncached.loadAll(loads);
+                }
+                double together = (System.nanoTime() - start) / 1e6 / runs;
+                System.out.printf("Dashboard, %d views on %d connections, %d cores (cache %s): "
+                        + "one after another %,.0f ms | all at once %,.0f ms%n",
+                        loads.size(), connections, Runtime.getRuntime().availableProcessors(), uncached,
+                        sequential, together);
+            }
+        }
+    }
+
+    private static List<String> strings(List<?> rows) {
+        List<String> out = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            out.add(row.toString());
+        }
+        return out;
+    }
+
+    private static Query salesView(SalesColumns.Period period) {
+        switch (period) {
+        case DAY:
+            return Query.SALES_PER_DAY;
+        case WEEK:
+            return Query.SALES_PER_WEEK;
+        case MONTH:
+            return Query.SALES_PER_MONTH;
+        default:
+            return Query.SALES_PER_QUARTER;
+        }
+    }
+
+    private static Query rollupView(SalesColumns.Period period) {
+        switch (period) {
+        case DAY:
+            return Query.SALES_ROLLUP_PER_DAY;
+        case WEEK:
+            return Query.SALES_ROLLUP_PER_WEEK;
+        case MONTH:
+            return Query.SALES_ROLLUP_PER_MONTH;
+        default:
+            return Query.SALES_ROLLUP_PER_QUARTER;
+        }
+    }
+
+    /**
+     * Average ms to read every row of query.
+     */
+    private static double time(ConnectionPool pool, Query query, int runs) throws SQLException {
+        long start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            try (Connection db = pool.borrow();
+                    PreparedStatement s = query.prepare(db);
+                    ResultSet r = s.executeQuery()) {
+                while (r.next()) {
+                    r.getLong("amount_sold");
+                }
+            }
+        }
+        return (System.nanoTime() - start) / 1e6 / runs;
+    }
+
+    private static void fill(ConnectionPool pool) throws SQLException {
+        try (Connection db = pool.borrow()) {
+            db.setAutoCommit(false);
+            try (PreparedStatement s = db.prepareStatement("insert into brand (brand_id, brand_name) "
+                    + "values (1, 'Bench')")) {
+                s.executeUpdate();
+            }
+            try (PreparedStatement s = db.prepareStatement("insert into product "
+                    + "(product_id, product_name, brand_id) values (?, ?, 1)")) {
+                for (int p = 1; p <= PRODUCTS; p++) {
+                    s.setInt(1, p);
+                    s.setString(2, "Product " + p);
+                    s.addBatch();
+                }
+                s.executeBatch();
+            }
+            db.commit();
+            db.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Insert count transactions from firstId, PER_DAY a day going back from
+     * now.
+     */
+    private static void insertSales(ConnectionPool pool, Random random, int firstId, int count, long now)
+            throws SQLException {
+        try (Connection db = pool.borrow();
+                PreparedStatement trans = db.prepareStatement("insert into transaction "
+                        + "(transaction_id, subtotal, tax, total, timestamp) values (?, 0, 0, 0, ?)");
+                PreparedStatement line = db.prepareStatement("insert into purchased "
+                        + "(transaction_id, product_id, qty, unit_price) values (?, ?, ?, ?)")) {
+            db.setAutoCommit(false);
+            for (int i = 0; i < count; i++) {
+                int t = firstId + i;
+                trans.setInt(1, t);
+                trans.setTimestamp(2, new Timestamp(now - (long) i * DAY / PER_DAY));
+                trans.addBatch();
+                int lines = 1 + random.nextInt(3);
+                int first = 1 + random.nextInt(PRODUCTS - lines);
+                for (int l = 0; l < lines; l++) {
+                    line.setInt(1, t);
+                    line.setInt(2, first + l);
+                    line.setInt(3, 1 + random.nextInt(4));
+                    line.setDouble(4, 1 + random.nextInt(5000) / 100.0);
+                    line.addBatch();
+                }
+                if ((i + 1) % 10000 == 0 || i == count - 1) {
+                    trans.executeBatch();
+                    line.executeBatch();
+                    db.commit();
+                }
+            }
+            db.setAutoCommit(true);
+        }
+    }
+}
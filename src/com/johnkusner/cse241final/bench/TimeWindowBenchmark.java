@@ -0,0 +1,160 @@
+package com.johnkusner.cse241final.bench;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Random;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.local.LocalBackend;
+
+/**
+ * The past day and past week top sellers as history grows, on local
+ * databases that get the same 2,000 transactions a day but go further and
+ * further back. The views as they are now are timed first, then the way
+ * they were before: an IN over transaction ids compared with
+ * current_timestamp, without the index on transaction.timestamp.
+ *
+ *     java -Xmx4g -cp jjk320.jar:hsqldb.jar com.johnkusner.cse241final.bench.TimeWindowBenchmark [transactions...]
+ *
+ * Defaults to 250,000, 500,000, 1,000,000 and 2,000,000 transactions, each
+ * with 1 to 3 purchased lines. HSQLDB has no partitions, so this shows the
+ * index range scan the local backend gets instead; on Oracle the same views
+ * read only the newest month's partition. Run from the project directory,
+ * or point brc.sql.dir at the sql scripts.
+ */
+public class TimeWindowBenchmark {
+    private static final String URL = "jdbc:hsqldb:mem:brc_time_window_bench_%d;sql.syntax_ora=true;hsqldb.tx=mvcc";
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final int PER_DAY = 2000;
+    private static final int PRODUCTS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = { 250000, 500000, 1000000, 2000000 };
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        for (int transactions : sizes) {
+            run(transactions);
+        }
+    }
+
+    private static void run(int transactions) throws Exception {
+        LocalBackend backend = new LocalBackend(String.format(URL, transactions),
+                Paths.get(System.getProperty("brc.sql.dir", "sql")), null);
+        try (ConnectionPool pool = new ConnectionPool(backend, 2)) {
+            int lines = fill(pool, transactions);
+            double dayMs = time(pool, Query.TOP_SELLERS_DAY.getSql());
+            double weekMs = time(pool, Query.TOP_SELLERS_WEEK.getSql());
+
+            try (Connection db = pool.borrow(); Statement s = db.createStatement()) {
+                s.execute("drop index trans_timestamp_index");
+            }
+            double dayBeforeMs = time(pool, before("1", "day"));
+            double weekBeforeMs = time(pool, before("7", "day"));
+
+            System.out.printf("%,9d transactions, %,9d lines over %,5d days | past day %,8.2f ms (was %,9.2f)"
+                    + " | past week %,8.2f ms (was %,9.2f)%n",
+                    transactions, lines, transactions / PER_DAY, dayMs, dayBeforeMs, weekMs, weekBeforeMs);
+
+            // Free it before the next, bigger one
+            try (Connection db = pool.borrow(); Statement s = db.createStatement()) {
+                s.execute("shutdown");
+            }
+        }
+    }
+
+    /**
+     * The top_selling_products_X views before they were rewritten.
+     */
+    private static String before(String amount, String unit) {
+        return "select product_id, sum(qty * unit_price) as total_sales, sum(qty) as amount_sold, product_name "
+                + "from purchased natural join product "
+                + "where transaction_id in (select transaction_id from transaction "
+                + "where timestamp > current_timestamp - interval '" + amount + "' " + unit + ") "
+                + "group by product_id, product_name "
+                + "order by amount_sold desc";
+    }
+
+    /**
+     * Average ms to read every row of sql, after a first run to warm up.
+     */
+    private static double time(ConnectionPool pool, String sql) throws SQLException {
+        int runs = 5;
+        long start = 0;
+        for (int run = -1; run < runs; run++) {
+            if (run == 0) {
+                start = System.nanoTime();
+            }
+            try (Connection db = pool.borrow();
+                    PreparedStatement s = db.prepareStatement(sql);
+                    ResultSet r = s.executeQuery()) {
+                while (r.next()) {
+                    r.getLong("amount_sold");
+                }
+            }
+        }
+        return (System.nanoTime() - start) / 1e6 / runs;
+    }
+
+    /**
+     * Insert transactions PER_DAY a day going back from now, returning how
+     * many purchased lines they have.
+     */
+    private static int fill(ConnectionPool pool, int transactions) throws SQLException {
+        Random random = new Random(1);
+        long now = System.currentTimeMillis();
+        int lineCount = 0;
+        try (Connection db = pool.borrow()) {
+            db.setAutoCommit(false);
+            try (PreparedStatement s = db.prepareStatement("insert into brand (brand_id, brand_name) "
+                    + "values (1, 'Bench')")) {
+                s.executeUpdate();
+            }
+            try (PreparedStatement s = db.prepareStatement("insert into product "
+                    + "(product_id, product_name, brand_id) values (?, ?, 1)")) {
+                for (int p = 1; p <= PRODUCTS; p++) {
+                    s.setInt(1, p);
+                    s.setString(2, "Product " + p);
+                    s.addBatch();
+                }
+                s.executeBatch();
+            }
+            try (PreparedStatement trans = db.prepareStatement("insert into transaction "
+                    + "(transaction_id, subtotal, tax, total, timestamp) values (?, 0, 0, 0, ?)");
+                    PreparedStatement line = db.prepareStatement("insert into purchased "
+                            + "(transaction_id, product_id, qty, unit_price) values (?, ?, ?, ?)")) {
+                for (int t = 1; t <= transactions; t++) {
+                    trans.setInt(1, t);
+                    trans.setTimestamp(2, new Timestamp(now - (long) t * DAY / PER_DAY));
+                    trans.addBatch();
+                    int lines = 1 + random.nextInt(3);
+                    int first = 1 + random.nextInt(PRODUCTS - lines);
+                    for (int l = 0; l < lines; l++) {
+                        line.setInt(1, t);
+                        line.setInt(2, first + l);
+                        line.setInt(3, 1 + random.nextInt(4));
+                        line.setDouble(4, 1 + random.nextInt(5000) / 100.0);
+                        line.addBatch();
+                    }
+                    lineCount += lines;
+                    if (t % 10000 == 0 || t == transactions) {
+                        trans.executeBatch();
+                        line.executeBatch();
+                        db.commit();
+                    }
+                }
+            }
+            db.setAutoCommit(true);
+        }
+        return lineCount;
+    }
+}
@@ -0,0 +1,233 @@
+package com.johnkusner.cse241final.bench;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.local.LocalBackend;
+import com.johnkusner.cse241final.stats.SalesColumns;
+import com.johnkusner.cse241final.stats.TopSellers;
+
+/**
+ * Top sellers from the TopSellers engine against the exact SQL views, on a
+ * local database of generated sales spread over the past 400 days. Product
+ * popularity is skewed and drifts from month to month, so each window has
+ * different best sellers. The engine counts the rows of a SalesColumns the
+ * way the app's does. After the history has loaded, some more sales are
+ * made "now" and passed to the columns the way checkouts are.
+ *
+ * For each window it reports how long the view and the engine take, then
+ * checks the engine against exact totals since the time its window starts
+ * (the top of an hour or a day, a little before the view's): how many of
+ * its top N really sold at least as much as the Nth best seller, and the
+ * largest quantity error among them against the bound the engine reports.
+ *
+ *     java -cp jjk320.jar:hsqldb.jar com.johnkusner.cse241final.bench.TopSellersBenchmark [products] [sales] [k] [n]
+ *
+ * Defaults to 5,000 products, 200,000 sales, k of 500 and the top 20. Run
+ * from the project directory, or point brc.sql.dir at the sql scripts.
+ */
+public class TopSellersBenchmark {
+    private static final String URL = "jdbc:hsqldb:mem:brc_top_sellers_bench;sql.syntax_ora=true;hsqldb.tx=mvcc";
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    private static final int LIVE_SALES = 2000;
+
+    public static void main(String[] args) throws Exception {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int sales = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        int k = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        int n = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        LocalBackend backend = new LocalBackend(URL, Paths.get(System.getProperty("brc.sql.dir", "sql")), null);
+        try (ConnectionPool pool = new ConnectionPool(backend, 4)) {
+            System.out.printf("%,d products, %,d sales over 400 days, k %d, top %d%n", products, sales, k, n);
+            Random random = new Random(1);
+            double[] zipf = zipf(products);
+            long now = System.currentTimeMillis();
+            fill(pool, products);
+            insertSales(pool, random, zipf, sales, 1, now, 400 * DAY, null);
+
+            try (SalesColumns columns = new SalesColumns(pool, true, 0);
+                    TopSellers engine = new TopSellers(columns, k)) {
+                long start = System.nanoTime();
+                engine.start();
+                columns.start();
+                while (!engine.isReady()) {
+                    Thread.sleep(10);
+                }
+                System.out.printf("History read in %,.0f ms%n", (System.nanoTime() - start) / 1e6);
+                insertSales(pool, random, zipf, LIVE_SALES, sales + 1, System.currentTimeMillis(), 0, columns);
+
+                for (TopSellers.Window window : TopSellers.Window.values()) {
+                    compare(pool, engine, window, n);
+                }
+                System.out.println(engine);
+            }
+        }
+    }
+
+    private static void compare(ConnectionPool pool, TopSellers engine, TopSellers.Window window, int n)
+            throws SQLException {
+        int runs = 5;
+        long start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            try (Connection db = pool.borrow();
+                    PreparedStatement s = view(window).prepare(db);
+                    ResultSet r = s.executeQuery()) {
+                while (r.next()) {
+                    r.getLong("amount_sold");
+                }
+            }
+        }
+        double viewMs = (System.nanoTime() - start) / 1e6 / runs;
+
+        runs = 1000;
+        TopSellers.Ranking ranking = null;
+        start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            ranking = engine.top(window, n);
+        }
+        double engineMicros = (System.nanoTime() - start) / 1e3 / runs;
+
+        // Exact totals over the engine's window, most sold first
+        Map<Integer, Long> exact = new HashMap<>();
+        List<Long> ranked = new ArrayList<>();
+        try (Connection db = pool.borrow();
+                PreparedStatement s = db.prepareStatement("select product_id, sum(qty) as sold "
+                        + "from transaction inner join purchased using (transaction_id) "
+                        + "where timestamp >= ? group by product_id order by sold desc")) {
+            s.setTimestamp(1, new Timestamp(ranking.getSince()));
+            try (ResultSet r = s.executeQuery()) {
+                while (r.next()) {
+                    exact.put(r.getInt(1), r.getLong(2));
+                    ranked.add(r.getLong(2));
+                }
+            }
+        }
+
+        long nth = ranked.size() >= n ? ranked.get(n - 1) : 0;
+        int correct = 0;
+        long maxError = 0;
+        for (TopSellers.Seller seller : ranking.getSellers()) {
+            long sold = exact.getOrDefault(seller.getProductId(), 0L);
+            if (sold >= nth) {
+                correct++;
+            }
+            maxError = Math.max(maxError, Math.abs(seller.getAmountSold() - sold));
+        }
+        System.out.printf("%-8s view %,8.2f ms | engine %,7.1f us | %d/%d of top %d right"
+                + " | qty off by %,d, bound %,d%n",
+                window, viewMs, engineMicros, correct, ranking.getSellers().size(), n,
+                maxError, ranking.getMaxError());
+    }
+
+    private static Query view(TopSellers.Window window) {
+        switch (window) {
+        case YEAR:
+            return Query.TOP_SELLERS_YEAR;
+        case QUARTER:
+            return Query.TOP_SELLERS_QUARTER;
+        case MONTH:
+            return Query.TOP_SELLERS_MONTH;
+        case WEEK:
+            return Query.TOP_SELLERS_WEEK;
+        case DAY:
+            return Query.TOP_SELLERS_DAY;
+        default:
+            return Query.TOP_SELLERS;
+        }
+    }
+
+    /**
+     * Cumulative Zipf weights, so a few products sell most.
+     */
+    private static double[] zipf(int products) {
+        double[] cumulative = new double[products];
+        double sum = 0;
+        for (int i = 0; i < products; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < products; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Insert count single line transactions starting at firstId, at random
+     * times up to spreadMs before now, and pass them to the columns if given.
+     */
+    private static void insertSales(ConnectionPool pool, Random random, double[] zipf, int count, int firstId,
+            long now, long spreadMs, SalesColumns columns) throws SQLException {
+        try (Connection db = pool.borrow();
+                PreparedStatement trans = db.prepareStatement("insert into transaction "
+                        + "(transaction_id, subtotal, tax, total, timestamp) values (?, ?, 0, ?, ?)");
+                PreparedStatement line = db.prepareStatement("insert into purchased "
+                        + "(transaction_id, product_id, qty, unit_price) values (?, ?, ?, ?)")) {
+            db.setAutoCommit(false);
+            for (int i = 0; i < count; i++) {
+                long when = now - (long) (random.nextDouble() * spreadMs);
+                int rank = -Arrays.binarySearch(zipf, random.nextDouble()) - 1;
+                // Popularity shifts every 30 days
+                int product = 1 + (int) ((Math.min(rank, zipf.length - 1) + (now - when) / DAY / 30 * 17)
+                        % zipf.length);
+                int qty = 1 + random.nextInt(3);
+                double price = 1 + product % 50;
+
+                trans.setInt(1, firstId + i);
+                trans.setDouble(2, qty * price);
+                trans.setDouble(3, qty * price);
+                trans.setTimestamp(4, new Timestamp(when));
+                trans.addBatch();
+                line.setInt(1, firstId + i);
+                line.setInt(2, product);
+                line.setInt(3, qty);
+                line.setDouble(4, price);
+                line.addBatch();
+                if ((i + 1) % 10000 == 0 || i == count - 1) {
+                    trans.executeBatch();
+                    line.executeBatch();
+                    db.commit();
+                }
+                if (columns != null) {
+                    columns.recordCheckout(firstId + i, when, 0, new int[] { product }, new int[] { qty },
+                            new double[] { qty * price });
+                }
+            }
+            db.setAutoCommit(true);
+        }
+    }
+
+    private static void fill(ConnectionPool pool, int products) throws SQLException {
+        try (Connection db = pool.borrow()) {
+            try (PreparedStatement s = db.prepareStatement("insert into brand (brand_id, brand_name) "
+                    + "values (1, 'Bench')")) {
+                s.executeUpdate();
+            }
+            db.setAutoCommit(false);
+            try (PreparedStatement s = db.prepareStatement("insert into product "
+                    + "(product_id, product_name, brand_id) values (?, ?, 1)")) {
+                for (int p = 1; p <= products; p++) {
+                    s.setInt(1, p);
+                    s.setString(2, "Product " + p);
+                    s.addBatch();
+                }
+                s.executeBatch();
+            }
+            db.commit();
+            db.setAutoCommit(true);
+        }
+    }
+}
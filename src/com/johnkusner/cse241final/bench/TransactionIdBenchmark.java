@@ -0,0 +1,145 @@
+package com.johnkusner.cse241final.bench;
+
+import java.nio.file.Paths;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.TransactionIds;
+import com.johnkusner.cse241final.db.local.LocalBackend;
+
+/**
+ * Transaction ids allocated per second by concurrent checkouts, on a local
+ * database whose low ids are mostly taken already, like after loading the
+ * generator's random ones. Compares begin_transaction probing one id at a
+ * time (with trans_id_seq counting by 1, as it used to) against
+ * TransactionIds handing out blocks. Each checkout gets an id and inserts
+ * its transaction row in its own transaction.
+ *
+ *     java -cp jjk320.jar:hsqldb.jar com.johnkusner.cse241final.bench.TransactionIdBenchmark [threads] [checkouts] [taken%]
+ *
+ * Defaults to 16 threads, 20,000 checkouts and 90% of the ids taken. Run
+ * from the project directory, or point brc.sql.dir at the sql scripts.
+ */
+public class TransactionIdBenchmark {
+    private static final String URL = "jdbc:hsqldb:mem:brc_trans_id_bench_%s;sql.syntax_ora=true;hsqldb.tx=mvcc";
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int checkouts = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int takenPercent = args.length > 2 ? Integer.parseInt(args[2]) : 90;
+        // Enough ids that the free ones cover every checkout twice over
+        int range = (int) Math.min(99_999_999L, checkouts * 200L / Math.max(1, 100 - takenPercent));
+
+        System.out.printf("%d threads, %,d checkouts, %d%% of ids 1 to %,d taken%n",
+                threads, checkouts, takenPercent, range);
+        run("begin_transaction", false, threads, checkouts, takenPercent, range);
+        run("TransactionIds", true, threads, checkouts, takenPercent, range);
+    }
+
+    private static void run(String name, boolean blocks, int threads, int checkouts, int takenPercent,
+            int range) throws Exception {
+        LocalBackend backend = new LocalBackend(String.format(URL, blocks ? "blocks" : "probe"),
+                Paths.get(System.getProperty("brc.sql.dir", "sql")), null);
+        try (ConnectionPool pool = new ConnectionPool(backend, threads)) {
+            fill(pool, takenPercent, range, blocks);
+            TransactionIds ids = new TransactionIds();
+
+            AtomicInteger next = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> running = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                running.add(executor.submit(() -> {
+                    while (next.getAndIncrement() < checkouts) {
+                        try {
+                            checkout(pool, blocks ? ids : null);
+                        } catch (SQLException e) {
+                            // A duplicate id would end up here
+                            failed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : running) {
+                f.get();
+            }
+            long nanos = System.nanoTime() - start;
+            executor.shutdown();
+
+            System.out.printf("%-18s %,9.0f ids/s | failed %,d%s%n", name, checkouts / (nanos / 1e9),
+                    failed.get(), blocks ? " | " + ids : "");
+        }
+    }
+
+    private static void checkout(ConnectionPool pool, TransactionIds ids) throws SQLException {
+        try (Connection db = pool.borrow()) {
+            db.setAutoCommit(false);
+            try {
+                if (ids == null) {
+                    try (CallableStatement cs = Query.BEGIN_TRANSACTION.call(db)) {
+                        cs.registerOutParameter(1, Types.INTEGER);
+                        cs.execute();
+                    }
+                } else {
+                    try (PreparedStatement s = db.prepareStatement("insert into transaction "
+                            + "(transaction_id, subtotal, tax, total) values (?, 0, 0, 0)")) {
+                        s.setInt(1, ids.next(db));
+                        s.executeUpdate();
+                    }
+                }
+                db.commit();
+            } catch (SQLException e) {
+                db.rollback();
+                throw e;
+            } finally {
+                db.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static void fill(ConnectionPool pool, int takenPercent, int range, boolean blocks)
+            throws SQLException {
+        Random random = new Random(1);
+        try (Connection db = pool.borrow()) {
+            if (!blocks) {
+                // How trans_id_seq was declared before it handed out blocks
+                try (PreparedStatement s = db.prepareStatement("alter sequence trans_id_seq increment by 1")) {
+                    s.executeUpdate();
+                }
+            }
+            db.setAutoCommit(false);
+            try (PreparedStatement s = db.prepareStatement("insert into transaction "
+                    + "(transaction_id, subtotal, tax, total) values (?, 0, 0, 0)")) {
+                int batched = 0;
+                for (int id = 1; id <= range; id++) {
+                    if (random.nextInt(100) < takenPercent) {
+                        s.setInt(1, id);
+                        s.addBatch();
+                        if (++batched % 10000 == 0) {
+                            s.executeBatch();
+                        }
+                    }
+                }
+                if (batched % 10000 != 0) {
+                    s.executeBatch();
+                }
+            }
+            db.commit();
+            db.setAutoCommit(true);
+        }
+    }
+}
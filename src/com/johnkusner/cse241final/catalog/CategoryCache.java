@@ -0,0 +1,232 @@
+package com.johnkusner.cse241final.catalog;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Query;
+
+/**
+ * The CategoryTree for one connection pool, shared by every interface using
+ * it, and the ProductCategoryIndex built on it. Each is loaded the first
+ * time it is asked for. After that fingerprints of the category and
+ * product_category tables are compared in the background, at most once per
+ * brc.category.refresh seconds (default 300), and new copies are swapped in
+ * when they differ. Callers never wait on the database except for the first
+ * load.
+ */
+public class CategoryCache implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final long refreshMs;
+    private final ExecutorService refresher;
+    private final AtomicBoolean checking = new AtomicBoolean();
+
+    private final AtomicReference<Loaded> current = new AtomicReference<>();
+    private volatile long nextCheck;
+    private volatile long loads;
+    private volatile long productLoads;
+    private volatile long checks;
+
+    public CategoryCache(ConnectionPool pool, long refreshMs) {
+        this.pool = pool;
+        this.refreshMs = refreshMs;
+        this.refresher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "category-cache");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static CategoryCache forPool(ConnectionPool pool) {
+        return pool.service(CategoryCache.class,
+                p -> new CategoryCache(p, Long.getLong("brc.category.refresh", 300) * 1000));
+    }
+
+    /**
+     * The current tree, loading it if this is the first time.
+     */
+    public CategoryTree get() throws SQLException {
+        return loaded().tree;
+    }
+
+    /**
+     * Which products are in which categories, loading it if this is the
+     * first time.
+     */
+    public ProductCategoryIndex getProducts() throws SQLException {
+        Loaded loaded = loaded();
+        if (loaded.products == null) {
+            synchronized (this) {
+                loaded = current.get();
+                if (loaded.products == null) {
+                    Loaded withProducts = loadProducts(loaded);
+                    // A new tree may have been swapped in meanwhile, use ours this once
+                    current.compareAndSet(loaded, withProducts);
+                    loaded = withProducts;
+                }
+            }
+        }
+        return loaded.products;
+    }
+
+    private Loaded loaded() throws SQLException {
+        Loaded loaded = current.get();
+        if (loaded == null) {
+            synchronized (this) {
+                loaded = current.get();
+                if (loaded == null) {
+                    loaded = load();
+                    current.set(loaded);
+                    nextCheck = System.currentTimeMillis() + refreshMs;
+                }
+            }
+        } else {
+            checkForChanges();
+        }
+        return loaded;
+    }
+
+    private void checkForChanges() {
+        long now = System.currentTimeMillis();
+        if (refreshMs <= 0 || now < nextCheck || !checking.compareAndSet(false, true)) {
+            return;
+        }
+        nextCheck = now + refreshMs;
+        refresher.execute(() -> {
+            try {
+                checks++;
+                Loaded loaded = current.get();
+                Loaded fresh = loaded;
+                if (!fingerprint(Query.CATEGORY_FINGERPRINT).equals(loaded.fingerprint)) {
+                    fresh = load();
+                }
+                if (loaded.products != null && (fresh != loaded
+                        || !fingerprint(Query.PRODUCT_CATEGORY_FINGERPRINT).equals(loaded.productsFingerprint))) {
+                    fresh = loadProducts(fresh);
+                }
+                // Only replace what we compared against
+                current.compareAndSet(loaded, fresh);
+            } catch (SQLException e) {
+                // Keep the old tree, we'll check again later
+            } finally {
+                checking.set(false);
+            }
+        });
+    }
+
+    private Loaded load() throws SQLException {
+        int[] ids = new int[256];
+        String[] names = new String[256];
+        int[] parents = new int[256];
+        int n = 0;
+        String fingerprint;
+        try (Connection db = pool.borrow()) {
+            // Fingerprint first, a change while loading gets picked up next time
+            fingerprint = fingerprint(db, Query.CATEGORY_FINGERPRINT);
+            try (PreparedStatement s = Query.ALL_CATEGORIES.prepare(db);
+                    ResultSet r = s.executeQuery()) {
+                while (r.next()) {
+                    if (n == ids.length) {
+                        ids = Arrays.copyOf(ids, n * 2);
+                        names = Arrays.copyOf(names, n * 2);
+                        parents = Arrays.copyOf(parents, n * 2);
+                    }
+                    ids[n] = r.getInt(1);
+                    names[n] = r.getString(2);
+                    parents[n] = r.getInt(3);
+                    n++;
+                }
+            }
+        }
+        loads++;
+        return new Loaded(CategoryTree.build(Arrays.copyOf(ids, n), Arrays.copyOf(names, n),
+                Arrays.copyOf(parents, n)), fingerprint, null, null);
+    }
+
+    private Loaded loadProducts(Loaded loaded) throws SQLException {
+        int[] products = new int[1024];
+        int[] categories = new int[1024];
+        int n = 0;
+        String fingerprint;
+        try (Connection db = pool.borrow()) {
+            fingerprint = fingerprint(db, Query.PRODUCT_CATEGORY_FINGERPRINT);
+            try (PreparedStatement s = Query.PRODUCT_CATEGORIES.prepare(db)) {
+                s.setFetchSize(1000);
+                try (ResultSet r = s.executeQuery()) {
+                    while (r.next()) {
+                        if (n == products.length) {
+                            products = Arrays.copyOf(products, n * 2);
+                            categories = Arrays.copyOf(categories, n * 2);
+                        }
+                        products[n] = r.getInt(1);
+                        categories[n] = r.getInt(2);
+                        n++;
+                    }
+                }
+            }
+        }
+        productLoads++;
+        ProductCategoryIndex index = ProductCategoryIndex.build(loaded.tree,
+                Arrays.copyOf(products, n), Arrays.copyOf(categories, n));
+        return new Loaded(loaded.tree, loaded.fingerprint, index, fingerprint);
+    }
+
+    private String fingerprint(Query query) throws SQLException {
+        try (Connection db = pool.borrow()) {
+            return fingerprint(db, query);
+        }
+    }
+
+    private static String fingerprint(Connection db, Query query) throws SQLException {
+        try (PreparedStatement s = query.prepare(db);
+                ResultSet r = s.executeQuery()) {
+            r.next();
+            StringBuilder sb = new StringBuilder();
+            for (int i = 1; i <= r.getMetaData().getColumnCount(); i++) {
+                sb.append(r.getLong(i)).append(':');
+            }
+            return sb.toString();
+        }
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    public String toString() {
+        Loaded loaded = current.get();
+        return loaded == null
+                ? "not loaded"
+                : String.format("%d categories, loaded %d times | product index %s, loaded %d times | "
+                        + "%d change checks",
+                        loaded.tree.size(), loads,
+                        loaded.products == null
+                                ? "not loaded"
+                                : String.format("%.1f KB", loaded.products.getMemoryBytes() / 1024.0),
+                        productLoads, checks);
+    }
+
+    private static class Loaded {
+        final CategoryTree tree;
+        final String fingerprint;
+        // Null until someone asks for it
+        final ProductCategoryIndex products;
+        final String productsFingerprint;
+
+        Loaded(CategoryTree tree, String fingerprint, ProductCategoryIndex products,
+                String productsFingerprint) {
+            this.tree = tree;
+            this.fingerprint = fingerprint;
+            this.products = products;
+            this.productsFingerprint = productsFingerprint;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.johnkusner.cse241final.catalog;
+
+import java.util.Arrays;
+
+import com.johnkusner.cse241final.objects.Category;
+
+/**
+ * Immutable copy of the whole category table. Nodes are numbered 0 to
+ * size() - 1 in category id order, and the children of each node are kept
+ * in one flat array (compressed sparse rows): the children of node n are
+ * children[childStart[n]] up to children[childStart[n + 1]]. The root
+ * categories are the children of the virtual node size().
+ *
+ * Each node's Category object is made once here and handed out to every
+ * caller, so browsing the tree creates no objects and runs no queries.
+ *
+ * Every node also gets an Euler tour interval: nodes are numbered in
+ * pre-order, and a node's subtree is exactly the nodes numbered
+ * getEnter(node) up to getExit(node). "Is a under b" is then two
+ * comparisons, and anything sorted by pre-order number (like the
+ * ProductCategoryIndex) has each subtree in one contiguous range.
+ */
+public final class CategoryTree {
+    private final int[] ids;
+    private final int[] parents;
+    private final int[] childStart;
+    private final int[] children;
+    private final Category[] categories;
+    // Pre-order number of each node, the end of its subtree, and the inverse
+    private final int[] enter;
+    private final int[] exit;
+    private final int[] preOrder;
+
+    private CategoryTree(int[] ids, int[] parents, int[] childStart, int[] children,
+            Category[] categories) {
+        this.ids = ids;
+        this.parents = parents;
+        this.childStart = childStart;
+        this.children = children;
+        this.categories = categories;
+
+        int n = ids.length;
+        this.enter = new int[n];
+        this.exit = new int[n];
+        this.preOrder = new int[n];
+        // Iterative depth first walk from the virtual root, stack[i] is the
+        // node at depth i and next[i] the next of its children to visit
+        int[] stack = new int[n + 1];
+        int[] next = new int[n + 1];
+        int depth = 0;
+        int count = 0;
+        stack[0] = n;
+        next[0] = childStart[n];
+        while (depth >= 0) {
+            int node = stack[depth];
+            if (next[depth] < childStart[node + 1]) {
+                int child = children[next[depth]++];
+                enter[child] = count;
+                preOrder[count++] = child;
+                depth++;
+                stack[depth] = child;
+                next[depth] = childStart[child];
+            } else {
+                if (node < n) {
+                    exit[node] = count;
+                }
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Build the tree from the category rows. parentIds[i] is 0 for a root
+     * category, parents that don't exist are treated as roots too.
+     */
+    public static CategoryTree build(int[] ids, String[] names, int[] parentIds) {
+        int n = ids.length;
+        long[] sorted = new long[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = ((long) ids[i] << 32) | i;
+        }
+        Arrays.sort(sorted);
+
+        int[] nodeIds = new int[n];
+        Category[] categories = new Category[n];
+        for (int node = 0; node < n; node++) {
+            int row = (int) sorted[node];
+            nodeIds[node] = ids[row];
+            categories[node] = new Category(ids[row], names[row], parentIds[row]);
+        }
+
+        // Parent node of each node, n for the roots
+        int[] parents = new int[n];
+        int[] childStart = new int[n + 2];
+        for (int node = 0; node < n; node++) {
+            int parent = Arrays.binarySearch(nodeIds, categories[node].getParentId());
+            parents[node] = parent < 0 || categories[node].getParentId() == 0 ? n : parent;
+            childStart[parents[node] + 1]++;
+        }
+        for (int node = 0; node <= n; node++) {
+            childStart[node + 1] += childStart[node];
+        }
+        int[] children = new int[n];
+        int[] next = Arrays.copyOf(childStart, n + 1);
+        for (int node = 0; node < n; node++) {
+            children[next[parents[node]]++] = node;
+        }
+        return new CategoryTree(nodeIds, parents, childStart, children, categories);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Node for the given category id, or -1 if there isn't one.
+     */
+    public int node(int categoryId) {
+        int node = Arrays.binarySearch(ids, categoryId);
+        return node < 0 ? -1 : node;
+    }
+
+    public Category getCategory(int node) {
+        return categories[node];
+    }
+
+    /**
+     * Parent node, or -1 for a root category.
+     */
+    public int getParent(int node) {
+        return parents[node] == ids.length ? -1 : parents[node];
+    }
+
+    public int getChildCount(int node) {
+        int n = node < 0 ? ids.length : node;
+        return childStart[n + 1] - childStart[n];
+    }
+
+    /**
+     * The i'th child of node, or of the root categories when node is -1.
+     */
+    public int getChild(int node, int i) {
+        int n = node < 0 ? ids.length : node;
+        return children[childStart[n] + i];
+    }
+
+    public boolean isLeaf(int node) {
+        return getChildCount(node) == 0;
+    }
+
+    /**
+     * Pre-order number of node, the start of its subtree's interval.
+     */
+    public int getEnter(int node) {
+        return enter[node];
+    }
+
+    /**
+     * One past the pre-order number of the last node in node's subtree.
+     */
+    public int getExit(int node) {
+        return exit[node];
+    }
+
+    /**
+     * The node with the given pre-order number.
+     */
+    public int atPreOrder(int number) {
+        return preOrder[number];
+    }
+
+    /**
+     * Whether node is ancestor or one of its descendants.
+     */
+    public boolean isUnder(int node, int ancestor) {
+        return enter[node] >= enter[ancestor] && enter[node] < exit[ancestor];
+    }
+}
@@ -0,0 +1,89 @@
+package com.johnkusner.cse241final.catalog;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * In-memory copy of product_category, grouped by each category's pre-order
+ * number in a CategoryTree. Because a subtree is a contiguous run of
+ * pre-order numbers, every product anywhere under a category is one range
+ * of the products array, no recursive query or query per subcategory.
+ */
+public final class ProductCategoryIndex {
+    private final CategoryTree tree;
+    // Products of the category with pre-order number p are
+    // products[start[p]] up to products[start[p + 1]]
+    private final int[] start;
+    private final int[] products;
+
+    private ProductCategoryIndex(CategoryTree tree, int[] start, int[] products) {
+        this.tree = tree;
+        this.start = start;
+        this.products = products;
+    }
+
+    /**
+     * Index the product_category rows (productIds[i], categoryIds[i]) against
+     * the given tree. Rows for categories not in the tree are left out.
+     */
+    public static ProductCategoryIndex build(CategoryTree tree, int[] productIds, int[] categoryIds) {
+        int n = tree.size();
+        int[] start = new int[n + 1];
+        int[] at = new int[productIds.length];
+        for (int i = 0; i < productIds.length; i++) {
+            int node = tree.node(categoryIds[i]);
+            at[i] = node < 0 ? -1 : tree.getEnter(node);
+            if (at[i] >= 0) {
+                start[at[i] + 1]++;
+            }
+        }
+        for (int p = 0; p < n; p++) {
+            start[p + 1] += start[p];
+        }
+        int[] products = new int[start[n]];
+        int[] next = Arrays.copyOf(start, n);
+        for (int i = 0; i < productIds.length; i++) {
+            if (at[i] >= 0) {
+                products[next[at[i]]++] = productIds[i];
+            }
+        }
+        return new ProductCategoryIndex(tree, start, products);
+    }
+
+    public CategoryTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Products directly in the category at node.
+     */
+    public int[] productsIn(int node) {
+        int p = tree.getEnter(node);
+        return Arrays.copyOfRange(products, start[p], start[p + 1]);
+    }
+
+    /**
+     * Products in the category at node or any category under it, each once,
+     * grouped by category in pre-order.
+     */
+    public int[] productsUnder(int node) {
+        int from = start[tree.getEnter(node)];
+        int to = start[tree.getExit(node)];
+        // A product can be in more than one of the categories
+        BitSet seen = new BitSet();
+        int[] out = new int[to - from];
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            int id = products[i];
+            if (!seen.get(id)) {
+                seen.set(id);
+                out[n++] = id;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    public long getMemoryBytes() {
+        return 4L * (start.length + products.length);
+    }
+}
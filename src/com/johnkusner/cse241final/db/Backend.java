@@ -0,0 +1,9 @@
+package com.johnkusner.cse241final.db;
+
+/**
+ * Where connections come from. The Oracle backend is the class database, the
+ * local backend is an in-process database that stands in for it when testing.
+ */
+public interface Backend extends ConnectionFactory {
+    String getName();
+}
@@ -0,0 +1,8 @@
+package com.johnkusner.cse241final.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+public interface ConnectionFactory {
+    Connection create() throws SQLException;
+}
@@ -0,0 +1,470 @@
+package com.johnkusner.cse241final.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fixed-size pool of JDBC connections. Interfaces borrow a connection for a
+ * single unit of work and close() it when they are done, which returns it here.
+ *
+ * The caches and background services built on a pool (search index,
+ * category tree, sales analytics...) are kept here too, one of each kind,
+ * see service(). They are closed along with the pool.
+ *
+ * Connections held longer than the leak threshold are logged. Where each was
+ * borrowed is only recorded with brc.pool.debug set, it costs a stack trace
+ * per borrow.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(ConnectionPool.class.getName());
+
+    private static final long HOUSEKEEPING_INTERVAL_MS = 5000;
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+
+    private int validationTimeoutSeconds = 2;
+    private long idleTimeoutMs = 5 * 60 * 1000;
+    private long leakThresholdMs = 60 * 1000;
+    private boolean traceLeaks = Boolean.getBoolean("brc.pool.debug");
+    private long borrowTimeoutMs = 30 * 1000;
+    private int statementCacheSize = 32;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> leased = new HashSet<>();
+    private int pending = 0;
+    private boolean closed = false;
+
+    private final ScheduledExecutorService housekeeper;
+    // In the order they were made, guarded by itself
+    private final Map<Class<?>, AutoCloseable> services = new LinkedHashMap<>();
+    private boolean servicesClosed = false;
+
+    private long borrows;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long timeouts;
+    private long created;
+    private long destroyed;
+    private long validationFailures;
+    private long leaksDetected;
+    private final StatementCache.Counters statementCounters = new StatementCache.Counters();
+
+    public ConnectionPool(ConnectionFactory factory, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep,
+                HOUSEKEEPING_INTERVAL_MS, HOUSEKEEPING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public ConnectionPool setValidationTimeout(int seconds) {
+        this.validationTimeoutSeconds = seconds;
+        return this;
+    }
+
+    public ConnectionPool setIdleTimeout(long millis) {
+        this.idleTimeoutMs = millis;
+        return this;
+    }
+
+    public ConnectionPool setLeakThreshold(long millis) {
+        this.leakThresholdMs = millis;
+        return this;
+    }
+
+    /**
+     * Record where each connection is borrowed, so a leak's log entry shows
+     * the code that is holding it.
+     */
+    public ConnectionPool setLeakTraces(boolean traceLeaks) {
+        this.traceLeaks = traceLeaks;
+        return this;
+    }
+
+    public ConnectionPool setBorrowTimeout(long millis) {
+        this.borrowTimeoutMs = millis;
+        return this;
+    }
+
+    /**
+     * Number of prepared/callable statements kept open per connection, 0 to
+     * disable statement caching. Only affects connections opened afterwards.
+     */
+    public ConnectionPool setStatementCacheSize(int size) {
+        this.statementCacheSize = size;
+        return this;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Borrow a connection, waiting up to the borrow timeout if every connection
+     * is in use. Idle connections are validated before they are handed out.
+     */
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMs);
+
+        while (true) {
+            PooledConnection candidate = null;
+            boolean createNew = false;
+
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("Connection pool is closed");
+                    }
+                    if (!idle.isEmpty()) {
+                        candidate = idle.pollFirst();
+                        leased.add(candidate);
+                        break;
+                    }
+                    if (leased.size() + pending < maxSize) {
+                        pending++;
+                        createNew = true;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeouts++;
+                        throw new SQLException("Timed out after " + borrowTimeoutMs
+                                + "ms waiting for a database connection (pool size " + maxSize + ")");
+                    }
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection", e);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (createNew) {
+                candidate = open();
+            } else if (!candidate.isValid(validationTimeoutSeconds)) {
+                discard(candidate, true);
+                continue;
+            }
+
+            long waited = System.nanoTime() - start;
+            lock.lock();
+            try {
+                borrows++;
+                totalWaitNanos += waited;
+                maxWaitNanos = Math.max(maxWaitNanos, waited);
+            } finally {
+                lock.unlock();
+            }
+
+            return candidate.lease(leakThresholdMs > 0 && traceLeaks);
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection raw;
+        try {
+            raw = factory.create();
+        } catch (SQLException | RuntimeException e) {
+            lock.lock();
+            try {
+                pending--;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+
+        PooledConnection pc = new PooledConnection(this, raw, statementCacheSize, statementCounters);
+        lock.lock();
+        try {
+            pending--;
+            created++;
+            leased.add(pc);
+        } finally {
+            lock.unlock();
+        }
+        return pc;
+    }
+
+    void giveBack(PooledConnection pc) {
+        boolean healthy = pc.reset();
+
+        lock.lock();
+        try {
+            if (!leased.remove(pc)) {
+                return;
+            }
+            pc.markReturned();
+            if (healthy && !closed) {
+                idle.addFirst(pc);
+            } else {
+                destroyed++;
+                pc.closeQuietly();
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void discard(PooledConnection pc, boolean failedValidation) {
+        pc.closeQuietly();
+        lock.lock();
+        try {
+            leased.remove(pc);
+            destroyed++;
+            if (failedValidation) {
+                validationFailures++;
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> expired = new ArrayList<>();
+        List<PooledConnection> leaks = new ArrayList<>();
+
+        lock.lock();
+        try {
+            if (idleTimeoutMs > 0) {
+                // Oldest idle connections are at the tail, keep one around so the
+                // next borrower doesn't pay for a fresh login.
+                while (idle.size() > 1 && now - idle.peekLast().getLastReturnedAt() > idleTimeoutMs) {
+                    expired.add(idle.pollLast());
+                    destroyed++;
+                }
+            }
+            if (leakThresholdMs > 0) {
+                for (PooledConnection pc : leased) {
+                    if (!pc.isLeakReported() && now - pc.getBorrowedAt() > leakThresholdMs) {
+                        pc.setLeakReported();
+                        leaksDetected++;
+                        leaks.add(pc);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (PooledConnection pc : expired) {
+            pc.closeQuietly();
+        }
+        for (PooledConnection pc : leaks) {
+            LOG.log(Level.WARNING, "Possible connection leak: connection held for "
+                    + (now - pc.getBorrowedAt()) + "ms", pc.getBorrowSite());
+        }
+    }
+
+    public PoolStats getStats() {
+        lock.lock();
+        try {
+            return new PoolStats(maxSize, leased.size(), idle.size(), borrows, totalWaitNanos,
+                    maxWaitNanos, timeouts, created, destroyed, validationFailures, leaksDetected,
+                    statementCounters.hits.get(), statementCounters.misses.get(),
+                    statementCounters.evictions.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * This pool's instance of a service, made with create the first time it
+     * is asked for. Services are closed, newest first, when the pool is.
+     */
+    public <T extends AutoCloseable> T service(Class<T> type, Function<ConnectionPool, T> create) {
+        synchronized (services) {
+            if (servicesClosed) {
+                throw new IllegalStateException("Connection pool is closed");
+            }
+            T service = type.cast(services.get(type));
+            if (service == null) {
+                // Not computeIfAbsent, create may ask for the services it uses
+                service = create.apply(this);
+                services.put(type, service);
+            }
+            return service;
+        }
+    }
+
+    /**
+     * This pool's instance of a service, or null if nothing has asked for it
+     * yet.
+     */
+    public <T extends AutoCloseable> T existingService(Class<T> type) {
+        synchronized (services) {
+            return type.cast(services.get(type));
+        }
+    }
+
+    private void closeServices() {
+        List<AutoCloseable> toClose;
+        synchronized (services) {
+            if (servicesClosed) {
+                return;
+            }
+            servicesClosed = true;
+            toClose = new ArrayList<>(services.values());
+            services.clear();
+        }
+        for (int i = toClose.size() - 1; i >= 0; i--) {
+            try {
+                toClose.get(i).close();
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Could not close " + toClose.get(i).getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        // First, so their background work stops before its connections do
+        closeServices();
+
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        housekeeper.shutdownNow();
+        for (PooledConnection pc : toClose) {
+            pc.closeQuietly();
+        }
+    }
+
+    public static class PoolStats {
+        private final int maxSize;
+        private final int active;
+        private final int idle;
+        private final long borrows;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+        private final long timeouts;
+        private final long created;
+        private final long destroyed;
+        private final long validationFailures;
+        private final long leaksDetected;
+        private final long statementHits;
+        private final long statementMisses;
+        private final long statementEvictions;
+
+        PoolStats(int maxSize, int active, int idle, long borrows, long totalWaitNanos,
+                long maxWaitNanos, long timeouts, long created, long destroyed,
+                long validationFailures, long leaksDetected, long statementHits,
+                long statementMisses, long statementEvictions) {
+            this.maxSize = maxSize;
+            this.active = active;
+            this.idle = idle;
+            this.borrows = borrows;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+            this.timeouts = timeouts;
+            this.created = created;
+            this.destroyed = destroyed;
+            this.validationFailures = validationFailures;
+            this.leaksDetected = leaksDetected;
+            this.statementHits = statementHits;
+            this.statementMisses = statementMisses;
+            this.statementEvictions = statementEvictions;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public long getBorrows() {
+            return borrows;
+        }
+
+        public double getAverageWaitMillis() {
+            return borrows == 0 ? 0 : totalWaitNanos / 1e6 / borrows;
+        }
+
+        public double getMaxWaitMillis() {
+            return maxWaitNanos / 1e6;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getLeaksDetected() {
+            return leaksDetected;
+        }
+
+        public long getStatementHits() {
+            return statementHits;
+        }
+
+        public long getStatementMisses() {
+            return statementMisses;
+        }
+
+        /**
+         * Fraction of prepareStatement/prepareCall requests served from the
+         * statement cache, i.e. ones that only need a soft parse.
+         */
+        public double getStatementHitRate() {
+            long total = statementHits + statementMisses;
+            return total == 0 ? 0 : (double) statementHits / total;
+        }
+
+        public String toString() {
+            return String.format("active %d, idle %d, max %d | borrows %d, avg wait %.3fms, max wait %.3fms, "
+                    + "timeouts %d | opened %d, closed %d, failed validation %d, leaks %d | "
+                    + "statement cache hits %d, misses %d, evictions %d (%.1f%% hit rate)",
+                    active, idle, maxSize, borrows, getAverageWaitMillis(), getMaxWaitMillis(),
+                    timeouts, created, destroyed, validationFailures, leaksDetected,
+                    statementHits, statementMisses, statementEvictions, getStatementHitRate() * 100);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.johnkusner.cse241final.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+public class DriverManagerFactory implements ConnectionFactory {
+    private final String url;
+    private final String username;
+    private final String password;
+
+    public DriverManagerFactory(String url, String username, String password) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    @Override
+    public Connection create() throws SQLException {
+        return DriverManager.getConnection(url, username, password);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+}
@@ -0,0 +1,209 @@
+package com.johnkusner.cse241final.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.johnkusner.cse241final.menu.Menu;
+import com.johnkusner.cse241final.menu.MenuItem;
+import com.johnkusner.cse241final.menu.MenuSource;
+
+/**
+ * Menu source that pages through a query with keyset pagination: each page
+ * is "the next PAGE_SIZE rows after the last key we saw", so showing page 50
+ * doesn't read the 490 rows before it. Only a few pages are kept in memory,
+ * and the row count is only queried once someone pages past the first page.
+ * Each page's query reads one row more than fits, which is kept as the first
+ * item of the next page so asking for it doesn't run the next page's query.
+ *
+ * The key columns must be in the base query's output and together be unique,
+ * otherwise rows sharing a key across a page boundary are skipped. The base
+ * query should not have an order by, the pages are ordered by the key.
+ */
+public class KeysetSource<T> implements MenuSource<T> {
+    private static final int WINDOW_PAGES = 4;
+
+    private final ConnectionPool pool;
+    private final RowMapper<T> mapper;
+    private final Object[] params;
+    private final String[] keys;
+    private final int pageSize;
+
+    private final String firstPageSql;
+    private final String nextPageSql;
+    private final String countSql;
+
+    private final Map<Integer, List<MenuItem<T>>> window =
+            new LinkedHashMap<Integer, List<MenuItem<T>>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, List<MenuItem<T>>> eldest) {
+                    return size() > WINDOW_PAGES;
+                }
+            };
+
+    // Key of the last row on each page we have read so far
+    private final List<Object[]> pageEndKeys = new ArrayList<>();
+    private int lastPage = -1;
+    private int size = -1;
+    private int pagesLoaded = 0;
+
+    public KeysetSource(ConnectionPool pool, Query base, String[] keys, RowMapper<T> mapper,
+            Object... params) {
+        this(pool, base.getSql(), keys, mapper, params);
+    }
+
+    public KeysetSource(ConnectionPool pool, String baseSql, String[] keys, RowMapper<T> mapper,
+            Object... params) {
+        this.pool = pool;
+        this.mapper = mapper;
+        this.params = params;
+        this.keys = keys;
+        this.pageSize = Menu.PAGE_SIZE;
+
+        String orderBy = " order by " + String.join(", ", keys);
+        String limit = " fetch first " + (pageSize + 1) + " rows only";
+        String from = "select * from (" + baseSql + ") page_rows";
+
+        this.firstPageSql = from + orderBy + limit;
+        this.nextPageSql = from + " where " + after(keys) + orderBy + limit;
+        this.countSql = "select count(*) from (" + baseSql + ") page_rows";
+    }
+
+    /**
+     * (k1 > ?) or (k1 = ? and k2 > ?) or ..., i.e. the row comes after the
+     * given key when sorting by every key column.
+     */
+    private static String after(String[] keys) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                sb.append(" or ");
+            }
+            sb.append('(');
+            for (int j = 0; j < i; j++) {
+                sb.append(keys[j]).append(" = ? and ");
+            }
+            sb.append(keys[i]).append(" > ?)");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public MenuItem<T> get(int index) {
+        int page = index / pageSize;
+        if (lastPage >= 0 && page > lastPage) {
+            return null;
+        }
+
+        int offset = index % pageSize;
+        List<MenuItem<T>> items = window.get(page);
+        if (items == null) {
+            List<MenuItem<T>> before = offset == 0 ? window.get(page - 1) : null;
+            if (before != null && before.size() > pageSize) {
+                // The look-ahead row, the page itself is read when it's shown
+                return before.get(pageSize);
+            }
+            items = load(page);
+        }
+
+        return offset < items.size() ? items.get(offset) : null;
+    }
+
+    @Override
+    public int size() {
+        if (size < 0 && pagesLoaded > 1) {
+            // They're paging through, worth one count(*)
+            size = count();
+        }
+        return size;
+    }
+
+    private List<MenuItem<T>> load(int page) {
+        // Walk forward from the furthest page we know the start of
+        List<MenuItem<T>> items = null;
+        for (int p = Math.min(page, pageEndKeys.size()); p <= page; p++) {
+            if (lastPage >= 0 && p > lastPage) {
+                return new ArrayList<>();
+            }
+            items = fetch(p);
+            window.put(p, items);
+        }
+        return items;
+    }
+
+    private List<MenuItem<T>> fetch(int page) {
+        List<MenuItem<T>> items = new ArrayList<>(pageSize + 1);
+        try (Connection db = pool.borrow();
+                PreparedStatement s = db.prepareStatement(page == 0 ? firstPageSql : nextPageSql)) {
+            int p = 1;
+            for (Object param : params) {
+                s.setObject(p++, param);
+            }
+            if (page > 0) {
+                Object[] from = pageEndKeys.get(page - 1);
+                for (int i = 0; i < keys.length; i++) {
+                    for (int j = 0; j < i; j++) {
+                        s.setObject(p++, from[j]);
+                    }
+                    s.setObject(p++, from[i]);
+                }
+            }
+
+            boolean more = false;
+            try (ResultSet r = s.executeQuery()) {
+                RowMapper.Bound<T> rows = mapper.bind(r);
+                Object[] endKey = null;
+                while (r.next()) {
+                    items.add(new MenuItem<>(rows.map()));
+                    if (items.size() > pageSize) {
+                        // The look-ahead row, so the key stays this page's last
+                        more = true;
+                        break;
+                    }
+                    endKey = readKey(r);
+                }
+                if (endKey != null && page == pageEndKeys.size()) {
+                    pageEndKeys.add(endKey);
+                }
+            }
+
+            pagesLoaded++;
+            if (!more) {
+                lastPage = page;
+                size = page * pageSize + items.size();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        return items;
+    }
+
+    private Object[] readKey(ResultSet r) throws SQLException {
+        Object[] key = new Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            key[i] = r.getObject(keys[i]);
+        }
+        return key;
+    }
+
+    private int count() {
+        try (Connection db = pool.borrow();
+                PreparedStatement s = db.prepareStatement(countSql)) {
+            for (int i = 0; i < params.length; i++) {
+                s.setObject(i + 1, params[i]);
+            }
+            try (ResultSet r = s.executeQuery()) {
+                r.next();
+                return r.getInt(1);
+            }
+        } catch (SQLException e) {
+            // Not worth failing the page over, try again next time
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.johnkusner.cse241final.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import com.johnkusner.cse241final.objects.Address;
+import com.johnkusner.cse241final.objects.Location;
+import com.johnkusner.cse241final.objects.Product;
+import com.johnkusner.cse241final.objects.ProductSale;
+import com.johnkusner.cse241final.objects.SalesTotals;
+import com.johnkusner.cse241final.objects.Stock;
+import com.johnkusner.cse241final.objects.Transaction;
+
+public final class Mappers {
+
+    private Mappers() {
+    }
+
+    public static final RowMapper<Product> PRODUCT = new RowMapper<Product>(
+            "product_id", "product_name") {
+        @Override
+        protected Product map(ResultSet rs, int[] idx) throws SQLException {
+            return new Product(rs.getInt(idx[0]), rs.getString(idx[1]));
+        }
+    };
+
+    public static final RowMapper<Stock> STOCK = new RowMapper<Stock>(
+            "product_id", "product_name", "qty", "unit_price") {
+        @Override
+        protected Stock map(ResultSet rs, int[] idx) throws SQLException {
+            return new Stock(rs.getInt(idx[0]), rs.getString(idx[1]), rs.getInt(idx[2]), rs.getDouble(idx[3]));
+        }
+    };
+
+    public static final RowMapper<Transaction> TRANSACTION = new RowMapper<Transaction>(
+            "transaction_id", "subtotal", "tax", "total", "timestamp") {
+        @Override
+        protected Transaction map(ResultSet rs, int[] idx) throws SQLException {
+            return new Transaction(rs.getInt(idx[0]), rs.getDouble(idx[1]), rs.getDouble(idx[2]),
+                    rs.getDouble(idx[3]), localDateTime(rs.getTimestamp(idx[4])));
+        }
+    };
+
+    public static final RowMapper<ProductSale> PRODUCT_SALE = new RowMapper<ProductSale>(
+            "product_id", "product_name", "amount_sold", "total_sales") {
+        @Override
+        protected ProductSale map(ResultSet rs, int[] idx) throws SQLException {
+            return new ProductSale(rs.getInt(idx[0]), rs.getString(idx[1]), rs.getInt(idx[2]), rs.getDouble(idx[3]));
+        }
+    };
+
+    public static final RowMapper<SalesTotals> SALES_TOTALS = new RowMapper<SalesTotals>(
+            "date_str", "total_sales", "amount_sold", "num_trans") {
+        @Override
+        protected SalesTotals map(ResultSet rs, int[] idx) throws SQLException {
+            return new SalesTotals(rs.getString(idx[0]), rs.getDouble(idx[1]), rs.getInt(idx[2]), rs.getInt(idx[3]));
+        }
+    };
+
+    private static final String[] ADDRESS_COLUMNS = {
+            "address_id", "line1", "line2", "line3", "city", "state", "zip", "active" };
+
+    public static final RowMapper<Address> ADDRESS = new RowMapper<Address>(ADDRESS_COLUMNS) {
+        @Override
+        protected Address map(ResultSet rs, int[] idx) throws SQLException {
+            return address(rs, idx, 0);
+        }
+    };
+
+    public static final RowMapper<Location> LOCATION = newLocationMapper(Location.Type.BOTH);
+    public static final RowMapper<Location> STORE = newLocationMapper(Location.Type.STORE);
+    public static final RowMapper<Location> WAREHOUSE = newLocationMapper(Location.Type.WAREHOUSE);
+
+    public static RowMapper<Location> location(Location.Type type) {
+        switch (type) {
+        case STORE:
+            return STORE;
+        case WAREHOUSE:
+            return WAREHOUSE;
+        default:
+            return LOCATION;
+        }
+    }
+
+    private static RowMapper<Location> newLocationMapper(Location.Type type) {
+        String[] columns = new String[ADDRESS_COLUMNS.length + 2];
+        columns[0] = "location_id";
+        columns[1] = "location_name";
+        System.arraycopy(ADDRESS_COLUMNS, 0, columns, 2, ADDRESS_COLUMNS.length);
+
+        return new RowMapper<Location>(columns) {
+            @Override
+            protected Location map(ResultSet rs, int[] idx) throws SQLException {
+                return new Location(rs.getInt(idx[0]), rs.getString(idx[1]), address(rs, idx, 2), type);
+            }
+        };
+    }
+
+    private static Address address(ResultSet rs, int[] idx, int offset) throws SQLException {
+        return new Address(rs.getInt(idx[offset]), rs.getString(idx[offset + 1]), rs.getString(idx[offset + 2]),
+                rs.getString(idx[offset + 3]), rs.getString(idx[offset + 4]), rs.getString(idx[offset + 5]),
+                rs.getString(idx[offset + 6]), rs.getBoolean(idx[offset + 7]));
+    }
+
+    private static LocalDateTime localDateTime(Timestamp ts) {
+        return ts == null ? null : ts.toLocalDateTime();
+    }
+}
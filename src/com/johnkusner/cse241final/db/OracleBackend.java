@@ -0,0 +1,24 @@
+package com.johnkusner.cse241final.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+public class OracleBackend implements Backend {
+    public static final String DEFAULT_URL = "jdbc:oracle:thin:@edgar0.cse.lehigh.edu:1521:cse241";
+
+    private final DriverManagerFactory factory;
+
+    public OracleBackend(String url, String username, String password) {
+        this.factory = new DriverManagerFactory(url, username, password);
+    }
+
+    @Override
+    public Connection create() throws SQLException {
+        return factory.create();
+    }
+
+    @Override
+    public String getName() {
+        return "Oracle (" + factory.getUrl() + ")";
+    }
+}
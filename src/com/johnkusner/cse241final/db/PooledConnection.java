@@ -0,0 +1,155 @@
+package com.johnkusner.cse241final.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A physical connection owned by a {@link ConnectionPool}. Each time it is
+ * borrowed, callers get a fresh proxy whose close() hands the connection back
+ * to the pool instead of closing the socket.
+ */
+class PooledConnection {
+    private final ConnectionPool pool;
+    private final Connection raw;
+    private final long createdAt;
+    private final StatementCache statements;
+
+    private long lastReturnedAt;
+    private long borrowedAt;
+    private Throwable borrowSite;
+    private boolean leakReported;
+
+    PooledConnection(ConnectionPool pool, Connection raw, int statementCacheSize,
+            StatementCache.Counters counters) {
+        this.pool = pool;
+        this.raw = raw;
+        this.statements = statementCacheSize > 0
+                ? new StatementCache(raw, statementCacheSize, counters)
+                : null;
+        this.createdAt = System.currentTimeMillis();
+        this.lastReturnedAt = createdAt;
+    }
+
+    Connection lease(boolean trackBorrowSite) {
+        borrowedAt = System.currentTimeMillis();
+        borrowSite = trackBorrowSite ? new Throwable("Connection borrowed here") : null;
+        leakReported = false;
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new Handle());
+    }
+
+    void markReturned() {
+        lastReturnedAt = System.currentTimeMillis();
+        borrowSite = null;
+    }
+
+    boolean isValid(int timeoutSeconds) {
+        try {
+            return !raw.isClosed() && raw.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Undo anything the last borrower left behind so the next one starts clean.
+     */
+    boolean reset() {
+        try {
+            if (raw.isClosed()) {
+                return false;
+            }
+            if (!raw.getAutoCommit()) {
+                raw.rollback();
+                raw.setAutoCommit(true);
+            }
+            raw.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void closeQuietly() {
+        try {
+            raw.close();
+        } catch (SQLException e) {
+            // already gone
+        }
+    }
+
+    Connection getRaw() {
+        return raw;
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    long getLastReturnedAt() {
+        return lastReturnedAt;
+    }
+
+    long getBorrowedAt() {
+        return borrowedAt;
+    }
+
+    Throwable getBorrowSite() {
+        return borrowSite;
+    }
+
+    boolean isLeakReported() {
+        return leakReported;
+    }
+
+    void setLeakReported() {
+        leakReported = true;
+    }
+
+    private class Handle implements InvocationHandler {
+        private boolean closed = false;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (name.equals("close")) {
+                if (!closed) {
+                    closed = true;
+                    pool.giveBack(PooledConnection.this);
+                }
+                return null;
+            } else if (name.equals("isClosed")) {
+                return closed || raw.isClosed();
+            } else if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.equals("toString")) {
+                return "Pooled" + raw;
+            }
+
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            if (statements != null && args != null && args.length == 1) {
+                if (name.equals("prepareStatement")) {
+                    return statements.prepare((String) args[0]);
+                } else if (name.equals("prepareCall")) {
+                    return statements.prepareCall((String) args[0]);
+                }
+            }
+
+            try {
+                return method.invoke(raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.johnkusner.cse241final.db;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Every statement the interfaces run, written with bind variables so each one
+ * has a single SQL text. Pooled connections cache the prepared statement for
+ * each of these, so repeat executions only need a soft parse.
+ */
+public enum Query {
+    // Locations
+    ALL_LOCATIONS("SELECT * FROM location natural join address"),
+    ALL_STORES("SELECT * FROM location natural join address natural join store"),
+    ALL_WAREHOUSES("SELECT * FROM location natural join address natural join warehouse"),
+
+    // Customers
+    // Paged by (username_key, customer_id), see KeysetSource
+    ONLINE_CUSTOMERS("select oc.*, lower(username) as username_key "
+            + "from (select * from online_customer natural join customer) oc"),
+    PAYMENT_METHODS("SELECT * FROM payment_method "
+            + "where customer_id = ? "
+            + "order by lower(payment_method_name)"),
+    CUSTOMER_ADDRESSES("select * "
+            + "from address natural join customer_address "
+            + "where customer_id = ?"),
+
+    // Products and categories
+    ALL_PRODUCTS("SELECT * FROM PRODUCT"),
+    PRODUCT_SEARCH("select * "
+            + "from product "
+            + "where lower(product_name) like ? "
+            + "order by lower(product_name) "
+            + "fetch first 100 rows only"),
+    // Loaded into search.TrigramIndex, which wants them in name order
+    PRODUCT_NAMES("select product_id, product_name "
+            + "from product "
+            + "order by lower(product_name), product_id"),
+    // Names for cached search results, unused slots are bound to -1
+    PRODUCTS_BY_ID("select product_id, product_name "
+            + "from product "
+            + "where product_id in (" + placeholders(100) + ")"),
+    // Weights for search.PrefixIndex's suggestions
+    PRODUCT_SALES_COUNTS("select product_id, sum(qty) "
+            + "from purchased "
+            + "group by product_id"),
+    // Cheap check for whether product changed since the index was built. The
+    // hash of each whole row changes with any rename, however long the name.
+    PRODUCT_FINGERPRINT("select count(*), max(product_id), sum(ora_hash(product_id || '|' || product_name)) "
+            + "from product"),
+    PRODUCTS_IN_CATEGORY("select * "
+            + "from product natural join product_category "
+            + "where category_id = ?"),
+    // Loaded once into catalog.CategoryTree
+    ALL_CATEGORIES("select category_id, category_name, parent_id "
+            + "from category"),
+    // Loaded into catalog.ProductCategoryIndex
+    PRODUCT_CATEGORIES("select product_id, category_id "
+            + "from product_category"),
+    // By row hash, moving two products between the same two categories
+    // leaves the id sums alone
+    PRODUCT_CATEGORY_FINGERPRINT("select count(*), sum(ora_hash(product_id || '|' || category_id)) "
+            + "from product_category"),
+    // Hashes each whole row, so a rename or a new parent shows up even when
+    // it leaves the sums of the columns the same
+    CATEGORY_FINGERPRINT("select count(*), "
+            + "sum(ora_hash(category_id || '|' || coalesce(parent_id, 0) || '|' || category_name)) "
+            + "from category"),
+
+    // Stock
+    // What warehouse_stock has for one product, without its join and sort
+    // of every product. Kept by inventory.AvailabilityIndex
+    WAREHOUSE_TIERS("select unit_price, sum(qty) "
+            + "from stock natural join warehouse "
+            + "where product_id = ? and qty > 0 "
+            + "group by unit_price "
+            + "order by unit_price"),
+    STORE_AVAILABILITY("select * from stock "
+            + "natural join product where "
+            + "product_id = ? and "
+            + "location_id = ? and "
+            + "qty > 0"),
+    STOCK_AT_LOCATION("SELECT * FROM stock natural join product "
+            + "where location_id = ?"),
+    VENDOR_SUPPLY_FOR_PRODUCT("select * "
+            + "from vendor_supply natural join vendor "
+            + "where product_id = ? "
+            + "order by shipment_price / shipment_qty"),
+    UPDATE_STOCK_PRICE("update stock"
+            + " set unit_price = ?"
+            + " where location_id = ?"
+            + " and product_id = ?"),
+
+    // Transactions
+    STORE_TRANSACTIONS("SELECT * FROM store_transactions "
+            + "where location_id = ? "
+            + "order by timestamp desc "
+            + "fetch first 100 rows only"),
+    CUSTOMER_TRANSACTIONS("select * "
+            + "from used_payment_method inner join transaction using (transaction_id) "
+            + "where payment_method_id in ( "
+            + "    select payment_method_id "
+            + "    from payment_method "
+            + "    where customer_id = ? "
+            + ") "
+            + "order by timestamp desc "
+            + "fetch first 100 rows only"),
+    // Each value reserves the TransactionIds.BLOCK_SIZE ids starting at it
+    NEXT_TRANSACTION_ID_BLOCK("select trans_id_seq.nextval from dual"),
+    TRANSACTION_ID_STEP("select increment_by "
+            + "from user_sequences "
+            + "where sequence_name = 'TRANS_ID_SEQ'"),
+    TRANSACTION_IDS_BETWEEN("select transaction_id "
+            + "from transaction "
+            + "where transaction_id between ? and ?"),
+    // When a transaction was made, by the database's clock
+    TRANSACTION_TIMESTAMP("select timestamp "
+            + "from transaction "
+            + "where transaction_id = ?"),
+    TRANSACTION_DETAIL("select product_id, product_name, unit_price * qty as total_sales, qty as amount_sold "
+            + "from transaction natural join purchased natural join product "
+            + "where transaction_id = ?"),
+
+    // Statistics
+    TOP_SELLERS("SELECT * FROM top_selling_products"),
+    TOP_SELLERS_YEAR("SELECT * FROM top_selling_products_year"),
+    TOP_SELLERS_QUARTER("SELECT * FROM top_selling_products_quarter"),
+    TOP_SELLERS_MONTH("SELECT * FROM top_selling_products_month"),
+    TOP_SELLERS_WEEK("SELECT * FROM top_selling_products_week"),
+    TOP_SELLERS_DAY("SELECT * FROM top_selling_products_day"),
+    SALES_PER_DAY("SELECT * FROM sales_totals_per_day"),
+    SALES_PER_WEEK("SELECT * FROM sales_totals_per_week"),
+    SALES_PER_MONTH("SELECT * FROM sales_totals_per_month"),
+    SALES_PER_QUARTER("SELECT * FROM sales_totals_per_quarter"),
+    SALES_ROLLUP_PER_DAY("SELECT * FROM sales_rollup_per_day"),
+    SALES_ROLLUP_PER_WEEK("SELECT * FROM sales_rollup_per_week"),
+    SALES_ROLLUP_PER_MONTH("SELECT * FROM sales_rollup_per_month"),
+    SALES_ROLLUP_PER_QUARTER("SELECT * FROM sales_rollup_per_quarter"),
+    // The periods open now and the totals since one started, from purchased
+    // or the rollup like the view they go with, see stats.StatisticsCache
+    SALES_PERIOD_NOW("select day_str, day_start, week_str, week_start, month_str, month_start, "
+            + "quarter_str, quarter_start "
+            + "from sales_period_now"),
+    SALES_TOTALS_SINCE("select sum(qty * unit_price), sum(qty), count(distinct transaction_id) "
+            + "from transaction inner join purchased using (transaction_id) "
+            + "where timestamp >= ?"),
+    SALES_ROLLUP_SINCE("select sum(total_sales), sum(amount_sold), sum(num_trans) "
+            + "from sales_daily_rollup "
+            + "where sale_day >= ?"),
+    // Loaded into stats.SalesColumns, in time order, with where each line was
+    // sold: the store for physical and pickup orders, 0 (online) for shipped
+    // ones
+    SALES_COLUMNS("select transaction_id, timestamp, product_id, qty, unit_price, "
+            + "coalesce(physical_transaction.location_id, pickup_order.location_id, 0) "
+            + "from transaction inner join purchased using (transaction_id) "
+            + "left join physical_transaction using (transaction_id) "
+            + "left join pickup_order using (transaction_id) "
+            + "order by timestamp, transaction_id"),
+    SALES_COLUMNS_SINCE("select transaction_id, timestamp, product_id, qty, unit_price, "
+            + "coalesce(physical_transaction.location_id, pickup_order.location_id, 0) "
+            + "from transaction inner join purchased using (transaction_id) "
+            + "left join physical_transaction using (transaction_id) "
+            + "left join pickup_order using (transaction_id) "
+            + "where timestamp > ? "
+            + "order by timestamp, transaction_id"),
+    // Whether sales_daily_rollup covers every purchase, see stats.SalesRollup
+    // One statement, so both sides are read as of the same moment
+    SALES_ROLLUP_CHECK("select r.num_trans, r.amount_sold, p.num_trans, p.amount_sold "
+            + "from (select sum(num_trans) as num_trans, sum(amount_sold) as amount_sold "
+            + "from sales_daily_rollup) r, "
+            + "(select count(distinct transaction_id) as num_trans, sum(qty) as amount_sold "
+            + "from purchased) p"),
+
+    // Stored procedures
+    BEGIN_TRANSACTION("{ call begin_transaction(?) }"),
+    PURCHASE_PRODUCT("{ call purchase_product(?, ?, ?, ?, ?, ?, ?, ?) }"),
+    FINISH_ONLINE_TRANSACTION("{ call finish_online_transaction(?, ?, ?, ?, ?, ?, ?, ?, ?) }"),
+    CHECKOUT_CART("{ call checkout_cart(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) }"),
+    ORDER_INVENTORY("{ call order_inventory(?, ?, ?, ?, ?) }"),
+    REBUILD_SALES_ROLLUP("{ call rebuild_sales_rollup() }");
+
+    private final String sql;
+
+    Query(String sql) {
+        this.sql = sql;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    private static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder(n * 3);
+        for (int i = 0; i < n; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    public boolean isCall() {
+        return sql.startsWith("{");
+    }
+
+    /**
+     * Prepare this query on the given connection. Bind each of the values in
+     * order, remaining parameters are left for the caller.
+     */
+    public PreparedStatement prepare(Connection db, Object... params) throws SQLException {
+        if (isCall()) {
+            throw new IllegalStateException(name() + " is a procedure call, use call() instead");
+        }
+        PreparedStatement stmt = db.prepareStatement(sql);
+        for (int i = 0; i < params.length; i++) {
+            stmt.setObject(i + 1, params[i]);
+        }
+        return stmt;
+    }
+
+    public CallableStatement call(Connection db) throws SQLException {
+        if (!isCall()) {
+            throw new IllegalStateException(name() + " is not a procedure call, use prepare() instead");
+        }
+        return db.prepareCall(sql);
+    }
+
+    public String toString() {
+        return sql;
+    }
+}
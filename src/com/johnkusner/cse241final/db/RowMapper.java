@@ -0,0 +1,103 @@
+package com.johnkusner.cse241final.db;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns rows into objects by column index. The column names are looked up in
+ * the result set's metadata once, instead of once per row and column.
+ */
+public abstract class RowMapper<T> {
+
+    private final String[] columns;
+    private volatile Resolved lastResolved;
+
+    protected RowMapper(String... columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Map a single row. idx[i] holds the index of the i-th column passed to
+     * the constructor.
+     */
+    protected abstract T map(ResultSet rs, int[] idx) throws SQLException;
+
+    public Bound<T> bind(ResultSet rs) throws SQLException {
+        return new Bound<>(this, rs, resolve(rs.getMetaData()));
+    }
+
+    public T map(ResultSet rs) throws SQLException {
+        return map(rs, resolve(rs.getMetaData()));
+    }
+
+    public List<T> list(ResultSet rs) throws SQLException {
+        List<T> result = new ArrayList<>();
+        Bound<T> rows = bind(rs);
+        while (rs.next()) {
+            result.add(rows.map());
+        }
+        return result;
+    }
+
+    private int[] resolve(ResultSetMetaData meta) throws SQLException {
+        Resolved last = lastResolved;
+        if (last != null && last.meta == meta) {
+            return last.idx;
+        }
+
+        int count = meta.getColumnCount();
+        String[] labels = new String[count];
+        for (int i = 0; i < count; i++) {
+            labels[i] = meta.getColumnLabel(i + 1);
+        }
+
+        int[] idx = new int[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            idx[c] = 0;
+            for (int i = 0; i < count; i++) {
+                if (columns[c].equalsIgnoreCase(labels[i])) {
+                    idx[c] = i + 1;
+                    break;
+                }
+            }
+            if (idx[c] == 0) {
+                throw new SQLException("Result set has no column named " + columns[c]);
+            }
+        }
+
+        lastResolved = new Resolved(meta, idx);
+        return idx;
+    }
+
+    private static class Resolved {
+        final ResultSetMetaData meta;
+        final int[] idx;
+
+        Resolved(ResultSetMetaData meta, int[] idx) {
+            this.meta = meta;
+            this.idx = idx;
+        }
+    }
+
+    /**
+     * A mapper tied to one result set, with its column indices already found.
+     */
+    public static class Bound<T> {
+        private final RowMapper<T> mapper;
+        private final ResultSet rs;
+        private final int[] idx;
+
+        Bound(RowMapper<T> mapper, ResultSet rs, int[] idx) {
+            this.mapper = mapper;
+            this.rs = rs;
+            this.idx = idx;
+        }
+
+        public T map() throws SQLException {
+            return mapper.map(rs, idx);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.johnkusner.cse241final.db;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Reads the plain SQL scripts in the sql directory (and the generator output)
+ * and splits them into statements that can be run over JDBC. SQL*Plus commands
+ * like "whenever sqlerror" and "set define off" are dropped.
+ */
+public class SqlScript {
+
+    private final List<String> statements;
+
+    private SqlScript(List<String> statements) {
+        this.statements = statements;
+    }
+
+    public static SqlScript read(Path path) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        return parse(new String(bytes, detectCharset(bytes)));
+    }
+
+    public static SqlScript parse(String text) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inString = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            char next = i + 1 < text.length() ? text.charAt(i + 1) : '\0';
+
+            if (!inString && c == '-' && next == '-') {
+                while (i < text.length() && text.charAt(i) != '\n') {
+                    i++;
+                }
+                current.append('\n');
+                continue;
+            }
+            if (!inString && c == '/' && next == '*') {
+                int end = text.indexOf("*/", i + 2);
+                i = end < 0 ? text.length() : end + 1;
+                current.append(' ');
+                continue;
+            }
+            if (c == '\'') {
+                inString = !inString;
+            }
+            if (!inString && c == ';') {
+                add(statements, current.toString());
+                current.setLength(0);
+                continue;
+            }
+            current.append(c);
+        }
+        add(statements, current.toString());
+
+        return new SqlScript(statements);
+    }
+
+    private static void add(List<String> statements, String sql) {
+        sql = sql.trim();
+        String lower = sql.toLowerCase();
+        if (sql.isEmpty() || lower.startsWith("whenever ") || lower.startsWith("set ")
+                || lower.startsWith("prompt ") || lower.equals("exit")) {
+            return;
+        }
+        statements.add(sql);
+    }
+
+    private static Charset detectCharset(byte[] bytes) {
+        // The generator output redirected from PowerShell is UTF-16 with a BOM
+        if (bytes.length >= 2) {
+            int first = bytes[0] & 0xff;
+            int second = bytes[1] & 0xff;
+            if ((first == 0xff && second == 0xfe) || (first == 0xfe && second == 0xff)) {
+                return StandardCharsets.UTF_16;
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    public List<String> getStatements() {
+        return statements;
+    }
+
+    public int run(Connection db) throws SQLException {
+        return run(db, UnaryOperator.identity());
+    }
+
+    /**
+     * Run every statement, passing each one through the translator first.
+     * Returns the number of statements executed.
+     */
+    public int run(Connection db, UnaryOperator<String> translator) throws SQLException {
+        int count = 0;
+        try (Statement s = db.createStatement()) {
+            for (String sql : statements) {
+                String translated = translator.apply(sql);
+                if (translated == null || translated.isEmpty()) {
+                    continue;
+                }
+                try {
+                    s.execute(translated);
+                } catch (SQLException e) {
+                    throw new SQLException("Failed running: " + translated, e.getSQLState(), e);
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+}
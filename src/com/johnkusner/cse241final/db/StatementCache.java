@@ -0,0 +1,163 @@
+package com.johnkusner.cse241final.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-connection cache of prepared and callable statements, keyed by SQL text.
+ * Callers get a proxy whose close() clears the parameters and keeps the
+ * statement (and its server-side cursor) around for the next caller.
+ */
+class StatementCache {
+
+    private final Connection raw;
+    private final int maxSize;
+    private final Counters counters;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection raw, int maxSize, Counters counters) {
+        this.raw = raw;
+        this.maxSize = maxSize;
+        this.counters = counters;
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+        return (PreparedStatement) get("S:" + sql, sql, false);
+    }
+
+    CallableStatement prepareCall(String sql) throws SQLException {
+        return (CallableStatement) get("C:" + sql, sql, true);
+    }
+
+    private Statement get(String key, String sql, boolean call) throws SQLException {
+        Entry entry = entries.get(key);
+
+        if (entry != null && !entry.inUse) {
+            counters.hits.incrementAndGet();
+            return entry.checkOut();
+        }
+
+        counters.misses.incrementAndGet();
+        PreparedStatement stmt = call ? raw.prepareCall(sql) : raw.prepareStatement(sql);
+
+        if (entry != null) {
+            // The cached copy is still open further up the stack, hand out a
+            // plain statement rather than sharing it.
+            return stmt;
+        }
+
+        entry = new Entry(stmt, call);
+        entries.put(key, entry);
+        evict();
+        return entry.checkOut();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            if (!eldest.inUse) {
+                it.remove();
+                eldest.closeQuietly();
+                counters.evictions.incrementAndGet();
+            }
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    static class Counters {
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong evictions = new AtomicLong();
+    }
+
+    private static class Entry {
+        private final PreparedStatement stmt;
+        private final Class<?> type;
+        private boolean inUse;
+
+        Entry(PreparedStatement stmt, boolean call) {
+            this.stmt = stmt;
+            this.type = call ? CallableStatement.class : PreparedStatement.class;
+        }
+
+        Statement checkOut() {
+            inUse = true;
+            return (Statement) Proxy.newProxyInstance(type.getClassLoader(),
+                    new Class<?>[] { type }, new Lease());
+        }
+
+        void closeQuietly() {
+            try {
+                stmt.close();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+
+        private class Lease implements InvocationHandler {
+            private boolean closed = false;
+            private ResultSet lastResult;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+
+                if (name.equals("close")) {
+                    release();
+                    return null;
+                } else if (name.equals("isClosed")) {
+                    return closed || stmt.isClosed();
+                } else if (name.equals("equals")) {
+                    return proxy == args[0];
+                } else if (name.equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                }
+
+                if (closed) {
+                    throw new SQLException("Statement has already been closed");
+                }
+
+                try {
+                    Object result = method.invoke(stmt, args);
+                    if (result instanceof ResultSet) {
+                        lastResult = (ResultSet) result;
+                    }
+                    return result;
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+
+            private void release() throws SQLException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    if (lastResult != null) {
+                        lastResult.close();
+                    }
+                    stmt.clearParameters();
+                } finally {
+                    inUse = false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.johnkusner.cse241final.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.BitSet;
+
+/**
+ * Hands out transaction ids from blocks reserved in the database, so a
+ * checkout gets its id without a query. trans_id_seq counts in steps of
+ * BLOCK_SIZE and each value reserves the BLOCK_SIZE ids starting at it,
+ * for this pool only. Ids already in the transaction table (the generator
+ * makes random ones) are found with one range query when the block is
+ * reserved and skipped, so the ids handed out never collide.
+ *
+ * The sequence's step is checked once. A database created before it counted
+ * in blocks (see sql/trans_id_seq_blocks.sql) gets no ids from here, and
+ * checkout_cart falls back to begin_transaction.
+ */
+public class TransactionIds implements AutoCloseable {
+    /** The increment of trans_id_seq in sql/tables.sql. */
+    public static final int BLOCK_SIZE = 100;
+
+    private int blockStart;
+    // Ids of the current block that are taken or already handed out
+    private BitSet used = new BitSet(BLOCK_SIZE);
+    private int next = BLOCK_SIZE;
+    // Null until trans_id_seq's step has been checked
+    private Boolean inBlocks;
+
+    private long allocated;
+    private long blocks;
+    private long skipped;
+
+    public static TransactionIds forPool(ConnectionPool pool) {
+        return pool.service(TransactionIds.class, p -> new TransactionIds());
+    }
+
+    /**
+     * A transaction id nobody else has or will be given, or null if
+     * trans_id_seq doesn't count in blocks of BLOCK_SIZE. db is only used
+     * when a new block is needed. Reserving one isn't undone by rolling
+     * back, so the ids of a rolled back checkout are just never used.
+     */
+    public synchronized Integer next(Connection db) throws SQLException {
+        if (inBlocks == null) {
+            inBlocks = step(db) == BLOCK_SIZE;
+        }
+        if (!inBlocks) {
+            return null;
+        }
+        next = used.nextClearBit(next);
+        while (next >= BLOCK_SIZE) {
+            reserve(db);
+            next = used.nextClearBit(0);
+        }
+        used.set(next);
+        allocated++;
+        return blockStart + next;
+    }
+
+    private static int step(Connection db) throws SQLException {
+        try (PreparedStatement s = Query.TRANSACTION_ID_STEP.prepare(db);
+                ResultSet r = s.executeQuery()) {
+            return r.next() ? r.getInt(1) : 0;
+        }
+    }
+
+    private void reserve(Connection db) throws SQLException {
+        int start;
+        try (PreparedStatement s = Query.NEXT_TRANSACTION_ID_BLOCK.prepare(db);
+                ResultSet r = s.executeQuery()) {
+            r.next();
+            start = r.getInt(1);
+        }
+        BitSet taken = new BitSet(BLOCK_SIZE);
+        try (PreparedStatement s = Query.TRANSACTION_IDS_BETWEEN.prepare(db, start, start + BLOCK_SIZE - 1);
+                ResultSet r = s.executeQuery()) {
+            while (r.next()) {
+                taken.set(r.getInt(1) - start);
+                skipped++;
+            }
+        }
+        // Only now, a failure above leaves the old block exhausted
+        used = taken;
+        blockStart = start;
+        blocks++;
+    }
+
+    @Override
+    public void close() {
+        // Nothing runs in the background
+    }
+
+    public synchronized String toString() {
+        if (inBlocks != null && !inBlocks) {
+            return "off, trans_id_seq doesn't count by " + BLOCK_SIZE + " (run sql/trans_id_seq_blocks.sql)";
+        }
+        return String.format("%,d ids handed out from %,d blocks of %d, %,d taken ids skipped",
+                allocated, blocks, BLOCK_SIZE, skipped);
+    }
+}
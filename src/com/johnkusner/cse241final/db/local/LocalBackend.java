@@ -0,0 +1,115 @@
+package com.johnkusner.cse241final.db.local;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.johnkusner.cse241final.db.Backend;
+import com.johnkusner.cse241final.db.SqlScript;
+
+/**
+ * In-process HSQLDB database running in Oracle compatibility mode, so the app
+ * can be run and benchmarked without the class database. The first connection
+ * loads sql/tables.sql, the translated views and procedures in sql/local, and
+ * optionally a data script produced by the generator.
+ *
+ * hsqldb.jar needs to be on the classpath at runtime, the same way ojdbc7.jar
+ * is for the Oracle backend.
+ */
+public class LocalBackend implements Backend {
+    public static final String DEFAULT_URL = "jdbc:hsqldb:mem:brc;sql.syntax_ora=true;hsqldb.tx=mvcc";
+
+    private final String url;
+    private final Path sqlDir;
+    private final Path dataScript;
+
+    private boolean initialized = false;
+
+    static {
+        // HSQLDB only lets routines call Java methods that are listed here
+        if (System.getProperty("hsqldb.method_class_names") == null) {
+            System.setProperty("hsqldb.method_class_names", LocalProcedures.class.getName() + ".*");
+        }
+    }
+
+    public LocalBackend(String url, Path sqlDir, Path dataScript) {
+        this.url = url;
+        this.sqlDir = sqlDir;
+        this.dataScript = dataScript;
+    }
+
+    /**
+     * Backend configured by brc.local.url, brc.sql.dir and brc.local.data.
+     */
+    public static LocalBackend fromSystemProperties() {
+        String data = System.getProperty("brc.local.data");
+        return new LocalBackend(System.getProperty("brc.local.url", DEFAULT_URL),
+                Paths.get(System.getProperty("brc.sql.dir", "sql")),
+                data == null ? null : Paths.get(data));
+    }
+
+    @Override
+    public Connection create() throws SQLException {
+        Connection con = DriverManager.getConnection(url, "SA", "");
+        try {
+            initialize(con);
+        } catch (SQLException | RuntimeException e) {
+            con.close();
+            throw e;
+        }
+        return con;
+    }
+
+    @Override
+    public String getName() {
+        return "Local (" + url + ")";
+    }
+
+    private synchronized void initialize(Connection con) throws SQLException {
+        if (initialized) {
+            return;
+        }
+        // A file database keeps its schema between runs
+        if (!hasSchema(con)) {
+            try {
+                SqlScript.read(sqlDir.resolve("tables.sql")).run(con, LocalBackend::translateTable);
+                SqlScript.read(sqlDir.resolve("local").resolve("views.sql")).run(con);
+                SqlScript.read(sqlDir.resolve("local").resolve("procedures.sql")).run(con);
+                if (dataScript != null) {
+                    if (!Files.exists(dataScript)) {
+                        throw new SQLException("Data script " + dataScript + " does not exist");
+                    }
+                    SqlScript.read(dataScript).run(con);
+                }
+            } catch (IOException e) {
+                throw new SQLException("Could not read schema scripts from " + sqlDir, e);
+            }
+        }
+        initialized = true;
+    }
+
+    /**
+     * Oracle identity columns start at 1, HSQLDB's start at 0 unless told
+     * otherwise. HSQLDB has no partitioning, so partition clauses and LOCAL
+     * indexes are dropped; the plain index on transaction.timestamp still
+     * lets time windows be read with a range scan. Everything else in
+     * tables.sql works as-is in Oracle mode.
+     */
+    static String translateTable(String sql) {
+        return sql.replaceAll("(?i)generated by default as identity(?!\\s*\\()",
+                "generated by default as identity (start with 1)")
+                .replaceAll("(?is)\\)\\s*partition by\\b.*", ")")
+                .replaceAll("(?i)\\)\\s*local\\s*$", ")");
+    }
+
+    private static boolean hasSchema(Connection con) throws SQLException {
+        try (ResultSet r = con.getMetaData().getTables(null, null, "TRANSACTION", null)) {
+            return r.next();
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.johnkusner.cse241final.db.local;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Java versions of the PL/SQL procedures in sql/procedures, registered with
+ * the local database by sql/local/procedures.sql. Each one runs on the
+ * caller's connection, so it takes part in the caller's transaction. Out
+ * parameters are single element arrays.
+ */
+public class LocalProcedures {
+
+    private LocalProcedures() {
+    }
+
+    public static void beginTransaction(Connection db, Integer[] transId) throws SQLException {
+        int id;
+        try (PreparedStatement next = db.prepareStatement("select trans_id_seq.nextval from dual");
+                PreparedStatement exists = db.prepareStatement(
+                        "select transaction_id from transaction where transaction_id = ?")) {
+            while (true) {
+                try (ResultSet r = next.executeQuery()) {
+                    r.next();
+                    id = r.getInt(1);
+                }
+                exists.setInt(1, id);
+                try (ResultSet r = exists.executeQuery()) {
+                    if (!r.next()) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        try (PreparedStatement s = db.prepareStatement("insert into transaction "
+                + "(transaction_id, subtotal, tax, total) values (?, 0, 0, 0)")) {
+            s.setInt(1, id);
+            s.executeUpdate();
+        }
+        transId[0] = id;
+    }
+
+    public static void purchaseProduct(Connection db, Integer transId, Integer locId,
+            Integer wantedProductId, Integer wantedQty, Double wantedUnitPrice, Double minUnitPrice,
+            Integer[] qtyGot, Double[] totalPaid) throws SQLException {
+        int remaining = wantedQty;
+        int got = 0;
+        BigDecimal paid = BigDecimal.ZERO;
+
+        String findStock = "select location_id, qty, unit_price from stock "
+                + "where qty > 0 and product_id = ? and unit_price <= ? and "
+                + (minUnitPrice == null ? "" : "unit_price >= ? and ")
+                + (locId == null
+                        ? "location_id in (select location_id from warehouse) "
+                        : "location_id = ? ")
+                + "order by unit_price, location_id";
+
+        List<int[]> rows = new ArrayList<>();
+        List<BigDecimal> prices = new ArrayList<>();
+        try (PreparedStatement find = db.prepareStatement(findStock)) {
+            find.setInt(1, wantedProductId);
+            find.setDouble(2, wantedUnitPrice);
+            int param = 3;
+            if (minUnitPrice != null) {
+                find.setDouble(param++, minUnitPrice);
+            }
+            if (locId != null) {
+                find.setInt(param, locId);
+            }
+            try (ResultSet r = find.executeQuery()) {
+                while (r.next()) {
+                    rows.add(new int[] { r.getInt("location_id"), r.getInt("qty") });
+                    prices.add(r.getBigDecimal("unit_price"));
+                }
+            }
+        }
+
+        try (PreparedStatement take = db.prepareStatement("update stock set qty = qty - ? "
+                + "where location_id = ? and product_id = ? and qty >= ?");
+                PreparedStatement current = db.prepareStatement(
+                        "select qty from stock where location_id = ? and product_id = ?")) {
+            // Cheapest first, in one order for every buyer, so two buyers of
+            // the same product never each wait on a row the other has taken
+            for (int i = 0; i < rows.size() && remaining > 0; i++) {
+                int location = rows.get(i)[0];
+                int available = rows.get(i)[1];
+                BigDecimal unitPrice = prices.get(i);
+
+                // Decrement only if the stock is still there, otherwise
+                // someone bought it after we looked: see what's left and
+                // try again, never writing back a quantity read earlier
+                while (available > 0 && remaining > 0) {
+                    int taking = Math.min(available, remaining);
+                    take.setInt(1, taking);
+                    take.setInt(2, location);
+                    take.setInt(3, wantedProductId);
+                    take.setInt(4, taking);
+                    if (take.executeUpdate() == 1) {
+                        got += taking;
+                        paid = paid.add(unitPrice.multiply(BigDecimal.valueOf(taking)));
+                        remaining -= taking;
+                        break;
+                    }
+                    current.setInt(1, location);
+                    current.setInt(2, wantedProductId);
+                    try (ResultSet r = current.executeQuery()) {
+                        available = r.next() ? r.getInt(1) : 0;
+                    }
+                }
+            }
+        }
+
+        if (got > 0) {
+            BigDecimal unitPrice = paid.divide(BigDecimal.valueOf(got), 2, RoundingMode.HALF_UP);
+
+            int updated;
+            try (PreparedStatement s = db.prepareStatement("update purchased set qty = qty + ? "
+                    + "where transaction_id = ? and unit_price = ? and product_id = ?")) {
+                s.setInt(1, got);
+                s.setInt(2, transId);
+                s.setBigDecimal(3, unitPrice);
+                s.setInt(4, wantedProductId);
+                updated = s.executeUpdate();
+            }
+            if (updated == 0) {
+                try (PreparedStatement s = db.prepareStatement("insert into purchased "
+                        + "(transaction_id, product_id, qty, unit_price) values (?, ?, ?, ?)")) {
+                    s.setInt(1, transId);
+                    s.setInt(2, wantedProductId);
+                    s.setInt(3, got);
+                    s.setBigDecimal(4, unitPrice);
+                    s.executeUpdate();
+                }
+            }
+
+            try (PreparedStatement s = db.prepareStatement("update transaction "
+                    + "set subtotal = subtotal + ?, total = subtotal + ? "
+                    + "where transaction_id = ?")) {
+                s.setBigDecimal(1, paid);
+                s.setBigDecimal(2, paid);
+                s.setInt(3, transId);
+                s.executeUpdate();
+            }
+        }
+
+        qtyGot[0] = got;
+        totalPaid[0] = paid.doubleValue();
+    }
+
+    public static void finishOnlineTransaction(Connection db, Integer transId, Double taxRate,
+            Integer paymentMethodId, Timestamp estArrival, String pickupName, Integer pickupLocation,
+            Integer shippingAddress, String trackingNumber, Double[] total) throws SQLException {
+        BigDecimal subtotal;
+        try (PreparedStatement s = db.prepareStatement(
+                "select subtotal from transaction where transaction_id = ?")) {
+            s.setInt(1, transId);
+            try (ResultSet r = s.executeQuery()) {
+                if (!r.next()) {
+                    throw new SQLException("No transaction " + transId, "02000");
+                }
+                subtotal = r.getBigDecimal(1);
+            }
+        }
+
+        // Round the same way the number(10, 2) columns do in Oracle
+        BigDecimal tax = subtotal.multiply(BigDecimal.valueOf(taxRate)).setScale(2, RoundingMode.HALF_UP);
+        BigDecimal tot = subtotal.add(tax);
+
+        try (PreparedStatement s = db.prepareStatement("update transaction "
+                + "set tax = ?, total = ? where transaction_id = ?")) {
+            s.setBigDecimal(1, tax);
+            s.setBigDecimal(2, tot);
+            s.setInt(3, transId);
+            s.executeUpdate();
+        }
+
+        try (PreparedStatement s = db.prepareStatement("insert into online_transaction "
+                + "(transaction_id, est_arrival) values (?, ?)")) {
+            s.setInt(1, transId);
+            s.setTimestamp(2, estArrival);
+            s.executeUpdate();
+        }
+
+        try (PreparedStatement s = db.prepareStatement("insert into used_payment_method "
+                + "(transaction_id, payment_method_id, amount) values (?, ?, ?)")) {
+            s.setInt(1, transId);
+            s.setInt(2, paymentMethodId);
+            s.setBigDecimal(3, tot);
+            s.executeUpdate();
+        }
+
+        if (shippingAddress != null) {
+            try (PreparedStatement s = db.prepareStatement("insert into shipped_order "
+                    + "(transaction_id, address_id, tracking_number) values (?, ?, ?)")) {
+                s.setInt(1, transId);
+                s.setInt(2, shippingAddress);
+                s.setString(3, trackingNumber);
+                s.executeUpdate();
+            }
+        }
+
+        if (pickupName != null) {
+            try (PreparedStatement s = db.prepareStatement("insert into pickup_order "
+                    + "(transaction_id, location_id, pickup_name) values (?, ?, ?)")) {
+                s.setInt(1, transId);
+                if (pickupLocation == null) {
+                    s.setNull(2, Types.INTEGER);
+                } else {
+                    s.setInt(2, pickupLocation);
+                }
+                s.setString(3, pickupName);
+                s.executeUpdate();
+            }
+        }
+
+        total[0] = tot.doubleValue();
+    }
+
+    public static void orderInventory(Connection db, Integer locationId, Integer productId,
+            Integer vendorId, Integer wantedShipments, Double newPrice) throws SQLException {
+        int shipQty;
+        try (PreparedStatement s = db.prepareStatement("select shipment_qty from vendor_supply "
+                + "where vendor_id = ? and product_id = ?")) {
+            s.setInt(1, vendorId);
+            s.setInt(2, productId);
+            try (ResultSet r = s.executeQuery()) {
+                if (!r.next()) {
+                    throw new SQLException("Vendor " + vendorId + " does not supply product "
+                            + productId, "02000");
+                }
+                shipQty = r.getInt(1) * wantedShipments;
+            }
+        }
+
+        int updated;
+        try (PreparedStatement s = db.prepareStatement("update stock set qty = qty + ? "
+                + "where location_id = ? and product_id = ?")) {
+            s.setInt(1, shipQty);
+            s.setInt(2, locationId);
+            s.setInt(3, productId);
+            updated = s.executeUpdate();
+        }
+        if (updated == 0) {
+            try (PreparedStatement s = db.prepareStatement("insert into stock "
+                    + "(location_id, product_id, qty, unit_price) values (?, ?, ?, ?)")) {
+                s.setInt(1, locationId);
+                s.setInt(2, productId);
+                s.setInt(3, shipQty);
+                s.setDouble(4, newPrice);
+                s.executeUpdate();
+            }
+        }
+    }
+
+    public static void checkoutCart(Connection db, Integer locId, String cart, Double taxRate,
+            Integer paymentMethodId, Timestamp estArrival, String pickupName, Integer pickupLocation,
+            Integer shippingAddress, String trackingNumber, Integer[] transId, String[] lineResults,
+            Double[] total) throws SQLException {
+        if (transId[0] == null) {
+            beginTransaction(db, transId);
+        } else {
+            try (PreparedStatement s = db.prepareStatement("insert into transaction "
+                    + "(transaction_id, subtotal, tax, total) values (?, 0, 0, 0)")) {
+                s.setInt(1, transId[0]);
+                s.executeUpdate();
+            }
+        }
+
+        StringBuilder results = new StringBuilder();
+        int itemsGot = 0;
+        Integer[] qtyGot = new Integer[1];
+        Double[] totalPaid = new Double[1];
+        for (String line : cart == null || cart.isEmpty() ? new String[0] : cart.split(",")) {
+            String[] fields = line.split(":");
+            // Exactly the line's price, see checkout_cart.sql
+            Double unitPrice = Double.valueOf(fields[2]);
+            purchaseProduct(db, transId[0], locId, Integer.valueOf(fields[0]),
+                    Integer.valueOf(fields[1]), unitPrice, unitPrice, qtyGot, totalPaid);
+
+            itemsGot += qtyGot[0];
+            if (results.length() > 0) {
+                results.append(',');
+            }
+            results.append(qtyGot[0]).append(':')
+                    .append(BigDecimal.valueOf(totalPaid[0]).setScale(2, RoundingMode.HALF_UP).toPlainString());
+        }
+
+        // Nothing bought, leave the empty transaction for the caller to roll back
+        total[0] = 0.0;
+        if (itemsGot > 0) {
+            finishOnlineTransaction(db, transId[0], taxRate, paymentMethodId, estArrival, pickupName,
+                    pickupLocation, shippingAddress, trackingNumber, total);
+            rollUpSales(db, transId[0]);
+        }
+        lineResults[0] = results.length() == 0 ? null : results.toString();
+    }
+
+    public static void rollUpSales(Connection db, Integer transId) throws SQLException {
+        Timestamp day;
+        BigDecimal sales;
+        long items;
+        try (PreparedStatement s = db.prepareStatement("select trunc(timestamp), sum(qty * unit_price), sum(qty) "
+                + "from transaction inner join purchased using (transaction_id) "
+                + "where transaction_id = ? group by trunc(timestamp)")) {
+            s.setInt(1, transId);
+            try (ResultSet r = s.executeQuery()) {
+                if (!r.next()) {
+                    throw new SQLException("No purchases in transaction " + transId);
+                }
+                day = r.getTimestamp(1);
+                sales = r.getBigDecimal(2);
+                items = r.getLong(3);
+            }
+        }
+
+        try (PreparedStatement update = db.prepareStatement("update sales_daily_rollup "
+                + "set total_sales = total_sales + ?, amount_sold = amount_sold + ?, num_trans = num_trans + 1 "
+                + "where sale_day = ? and slot = ?")) {
+            update.setBigDecimal(1, sales);
+            update.setLong(2, items);
+            update.setTimestamp(3, day);
+            update.setInt(4, transId % 16);
+            if (update.executeUpdate() > 0) {
+                return;
+            }
+            // First sale in this slot today
+            try (PreparedStatement insert = db.prepareStatement("insert into sales_daily_rollup "
+                    + "(sale_day, slot, total_sales, amount_sold, num_trans) values (?, ?, ?, ?, 1)")) {
+                insert.setTimestamp(1, day);
+                insert.setInt(2, transId % 16);
+                insert.setBigDecimal(3, sales);
+                insert.setLong(4, items);
+                insert.executeUpdate();
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // Another checkout inserted it first
+                update.executeUpdate();
+            }
+        }
+    }
+
+    public static void rebuildSalesRollup(Connection db) throws SQLException {
+        // HSQLDB's version of "in exclusive mode", see rebuild_sales_rollup.sql
+        try (PreparedStatement s = db.prepareStatement("lock table sales_daily_rollup write")) {
+            s.execute();
+        }
+        try (PreparedStatement s = db.prepareStatement("delete from sales_daily_rollup")) {
+            s.executeUpdate();
+        }
+        try (PreparedStatement s = db.prepareStatement("insert into sales_daily_rollup "
+                + "(sale_day, slot, total_sales, amount_sold, num_trans) "
+                + "select trunc(timestamp), mod(transaction_id, 16), sum(qty * unit_price), sum(qty), "
+                + "count(distinct transaction_id) "
+                + "from transaction inner join purchased using (transaction_id) "
+                + "group by trunc(timestamp), mod(transaction_id, 16)")) {
+            s.executeUpdate();
+        }
+    }
+
+    /**
+     * ora_hash: a CRC-32 of the value's UTF-8 bytes, from 0 to 2^32 - 1 like
+     * Oracle's, or null for null.
+     */
+    public static Long oraHash(String value) {
+        if (value == null) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(value.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
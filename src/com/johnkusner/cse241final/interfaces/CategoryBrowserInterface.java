@@ -1,11 +1,11 @@
 package com.johnkusner.cse241final.interfaces;
 
 import java.io.PrintStream;
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.Statement;
 import java.util.Scanner;
 
+import com.johnkusner.cse241final.catalog.CategoryCache;
+import com.johnkusner.cse241final.catalog.CategoryTree;
+import com.johnkusner.cse241final.db.ConnectionPool;
 import com.johnkusner.cse241final.menu.Menu;
 import com.johnkusner.cse241final.menu.MenuItem;
 import com.johnkusner.cse241final.objects.Category;
@@ -15,29 +15,35 @@ public class CategoryBrowserInterface extends UserInterface {
     private Category parent;
     
     public CategoryBrowserInterface(Category parent, Scanner in, PrintStream out,
-            Connection db) {
-        super(in, out, db);
+            ConnectionPool pool) {
+        super(in, out, pool);
         this.parent = parent;
     }
     
-    public CategoryBrowserInterface(Scanner in, PrintStream out, Connection db) {
-        this(null, in, out, db);
+    public CategoryBrowserInterface(Scanner in, PrintStream out, ConnectionPool pool) {
+        this(null, in, out, pool);
     }
 
     @Override
     public void run() {
-        try (Statement s = db.createStatement();
-                ResultSet rs = s.executeQuery(getQuery())) {
+        CategoryTree tree;
+        try {
+            tree = CategoryCache.forPool(pool).get();
+        } catch (Exception e) {
+            handleException(e);
+            return;
+        }
+        
+        // Walk down the tree until a leaf is reached or the user stops
+        int node = parent == null ? -1 : tree.node(parent.getId());
+        if (parent != null && node < 0) {
+            // Deleted since it was chosen
+            return;
+        }
+        while (!tree.isLeaf(node)) {
             Menu<Category> menu = new Menu<>("Choose a category", this);
-            
-            boolean foundAny = false;
-            while (rs.next()) {
-                foundAny = true;
-                menu.addItem(new Category(rs));
-            }
-            
-            if (!foundAny) {
-                return;
+            for (int i = 0; i < tree.getChildCount(node); i++) {
+                menu.addItem(tree.getCategory(tree.getChild(node, i)));
             }
             
             MenuItem<Category> choice;
@@ -48,12 +54,11 @@ public class CategoryBrowserInterface extends UserInterface {
                 choice = menu.promptOptional();
             }
             
-            if (choice != null && choice.get() != null) {
-                parent = choice.get();
-                run();
+            if (choice == null || choice.get() == null) {
+                return;
             }
-        } catch (Exception e) {
-            handleException(e);
+            parent = choice.get();
+            node = tree.node(parent.getId());
         }
     }
 
@@ -61,11 +66,6 @@ public class CategoryBrowserInterface extends UserInterface {
         return parent;
     }
     
-    private String getQuery() {
-        return "SELECT * FROM category WHERE parent_id "
-                + (parent == null ? "is null" : ("= " + parent.getId()));
-    }
-    
     @Override
     public String getInterfaceName() {
         return "Category Browser";
@@ -1,22 +1,25 @@
 package com.johnkusner.cse241final.interfaces;
 
 import java.io.PrintStream;
-import java.sql.Connection;
 import java.util.Scanner;
 
+import com.johnkusner.cse241final.db.ConnectionPool;
 import com.johnkusner.cse241final.interfaces.customer.CustomerInterface;
 import com.johnkusner.cse241final.interfaces.manager.ManagerInterface;
 import com.johnkusner.cse241final.interfaces.statistics.StatisticsInterface;
 import com.johnkusner.cse241final.menu.Menu;
 import com.johnkusner.cse241final.menu.MenuItem;
+import com.johnkusner.cse241final.nav.Navigation;
+import com.johnkusner.cse241final.nav.Navigator;
 
 public class ChooseInterfaceInterface extends UserInterface {
 
     private Menu<UserInterface> menu;
+    private boolean returning = false;
 
     public ChooseInterfaceInterface(Scanner in, PrintStream out,
-            Connection db) {
-        super(in, out, db);
+            ConnectionPool pool) {
+        super(in, out, pool);
     }
 
     @Override
@@ -26,26 +29,36 @@ public class ChooseInterfaceInterface extends UserInterface {
 
     @Override
     public void run() {
+        new Navigator().run(this);
+    }
+    
+    @Override
+    public Navigation show() {
+        if (returning) {
+            returning = false;
+            if (!promptBool("Would you like to run another interface?")) {
+                out.println("Goodbye!");
+                return Navigation.back();
+            }
+        }
+        
         clear();
         rebuildMenu();
         
         MenuItem<UserInterface> choice = menu.promptOptional();
-        if (choice != null && choice.get() != null) {
-            choice.get().run();            
-
-            if (promptBool("Would you like to run another interface?")) {
-                this.run();
-            } else {
-                out.println("Goodbye!");
-            }
+        if (choice == null || choice.get() == null) {
+            return Navigation.back();
         }
+        
+        returning = true;
+        return Navigation.push(choice.get());
     }
 
     private void rebuildMenu() {
         menu = new Menu<>("Chose an interface", this);
-        menu.addItem(new CustomerInterface(in, out, db));
-        menu.addItem(new ManagerInterface(in, out, db));
-        menu.addItem(new StatisticsInterface(in, out, db));
+        menu.addItem(new CustomerInterface(in, out, pool));
+        menu.addItem(new ManagerInterface(in, out, pool));
+        menu.addItem(new StatisticsInterface(in, out, pool));
     }
 
 }
@@ -2,10 +2,14 @@ package com.johnkusner.cse241final.interfaces;
 
 import java.io.PrintStream;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.Statement;
 import java.util.Scanner;
 
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Mappers;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.RowMapper;
 import com.johnkusner.cse241final.menu.Menu;
 import com.johnkusner.cse241final.menu.MenuItem;
 import com.johnkusner.cse241final.objects.Location;
@@ -16,30 +20,32 @@ public class ChooseLocationInterface extends UserInterface {
     private Location.Type locType;
     private Location location;
     
-	public ChooseLocationInterface(Location.Type type, Scanner in, PrintStream out, Connection db) {
-		super(in, out, db);
+	public ChooseLocationInterface(Location.Type type, Scanner in, PrintStream out, ConnectionPool pool) {
+		super(in, out, pool);
 		locType = type;
 	}
 
 	@Override
 	public void run() {
-		try (Statement s = db.createStatement();
-				ResultSet r = s.executeQuery("SELECT * FROM location natural join address" + locTypeQuery())) {
+		Menu<Location> locations = new Menu<Location>("Choose a Location", Location.HEADER, this);
+		
+		try (Connection db = borrow();
+				PreparedStatement s = locTypeQuery().prepare(db);
+				ResultSet r = s.executeQuery()) {
 			
-			Menu<Location> locations = new Menu<Location>("Choose a Location", Location.HEADER, this);
+			RowMapper.Bound<Location> rows = Mappers.location(locType).bind(r);
 			while (r.next()) {
-				locations.addItem(new Location(r, locType));
-			}
-
-            r.close();
-            
-			MenuItem<Location> chosen = locations.display();
-			if (chosen != null && chosen.get() != null) {
-			    clear();
-				this.location = chosen.get();
+				locations.addItem(rows.map());
 			}
 		} catch (Exception e) {
 			handleException(e);
+			return;
+		}
+		
+		MenuItem<Location> chosen = locations.display();
+		if (chosen != null && chosen.get() != null) {
+		    clear();
+			this.location = chosen.get();
 		}
 		
 		clear();
@@ -54,11 +60,11 @@ public class ChooseLocationInterface extends UserInterface {
 		return "Choose Location";
 	}
 
-	private String locTypeQuery() {
+	private Query locTypeQuery() {
 	    if (locType == Location.Type.BOTH) {
-	        return "";
+	        return Query.ALL_LOCATIONS;
 	    }
-	    return " natural join " + (locType == Location.Type.STORE ? "store" : "warehouse"); 
+	    return locType == Location.Type.STORE ? Query.ALL_STORES : Query.ALL_WAREHOUSES; 
 	}
 
 }
@@ -1,18 +1,24 @@
 package com.johnkusner.cse241final.interfaces;
 
 import java.io.PrintStream;
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.util.Scanner;
 
+import com.johnkusner.cse241final.db.Backend;
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.OracleBackend;
+import com.johnkusner.cse241final.db.local.LocalBackend;
+import com.johnkusner.cse241final.search.SearchService;
+
 public class ConnectInterface extends UserInterface {
     public ConnectInterface(Scanner in, PrintStream out) {
         super(in, out, null);
     }
 
-    private final String DB_USERNAME = "jjk320";
-    private final String CONNECTION_STRING = "jdbc:oracle:thin:@edgar0.cse.lehigh.edu:1521:cse241";
-    
+    private final String DB_USERNAME = System.getProperty("brc.db.user", "jjk320");
+    private final String CONNECTION_STRING = System.getProperty("brc.db.url", OracleBackend.DEFAULT_URL);
+    private final boolean LOCAL_BACKEND = System.getProperty("brc.backend", "oracle").equalsIgnoreCase("local");
+    private final int POOL_SIZE = Integer.getInteger("brc.pool.size", 4);
+
     @Override
     public String getInterfaceName() {
         return "Login";
@@ -22,37 +28,48 @@ public class ConnectInterface extends UserInterface {
     public void run() {
         out.println("Welcome to Big River Crossing!\n");
         out.println("=== For the best user experience, please make sure this entire sentence fits on one line. ===\n");
+        if (LOCAL_BACKEND) {
+            // Nothing to log in to, a failure here is a setup problem
+            if (!connect(LocalBackend.fromSystemProperties())) {
+                out.println("\nFailed to start the local database.");
+            }
+            return;
+        }
         while (true) {
             String password = promptString("Enter password for " + DB_USERNAME);
-            if (connect(password)) {
+            if (connect(new OracleBackend(CONNECTION_STRING, DB_USERNAME, password))) {
                 // Connection was made, work is finished.
                 return;
             }
             out.println("\nFailed to connect. Please re-enter password.");
         }
     }
-    
-    private boolean connect(String password) {
-        out.println("Connecting...");
+
+    private boolean connect(Backend backend) {
+        out.println("Connecting to " + backend.getName() + "...");
+        out.flush();
 
         boolean connected = false;
-        
-        try (Connection con = DriverManager.getConnection(
-                CONNECTION_STRING,
-                DB_USERNAME, password)) {
-            
+
+        try (ConnectionPool pool = new ConnectionPool(backend, POOL_SIZE)) {
+
+            // Borrow once up front so a bad password fails here
+            pool.borrow().close();
             connected = true;
-            this.db = con;
-            
-            ChooseInterfaceInterface choose = new ChooseInterfaceInterface(in, out, this.db);
+            this.pool = pool;
+
+            // Starts building the product search index in the background.
+            // The pool closes the services registered with it.
+            SearchService.forPool(pool);
+            ChooseInterfaceInterface choose = new ChooseInterfaceInterface(in, out, this.pool);
             choose.run();
         }
         catch (Exception e) {
-            if (connected) {
+            if (connected || LOCAL_BACKEND) {
                 handleException(e);
             }
         }
-        
+
         return connected;
     }
 
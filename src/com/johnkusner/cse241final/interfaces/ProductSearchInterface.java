@@ -5,95 +5,172 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
 import java.util.Scanner;
 
+import com.johnkusner.cse241final.catalog.CategoryCache;
+import com.johnkusner.cse241final.catalog.ProductCategoryIndex;
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Mappers;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.RowMapper;
 import com.johnkusner.cse241final.menu.Menu;
 import com.johnkusner.cse241final.menu.MenuItem;
 import com.johnkusner.cse241final.objects.Category;
 import com.johnkusner.cse241final.objects.Product;
+import com.johnkusner.cse241final.search.ProductIdSource;
+import com.johnkusner.cse241final.search.SearchService;
 
 public class ProductSearchInterface extends UserInterface {
 
+    // Same as the fetch first in Query.PRODUCT_SEARCH
+    private static final int SEARCH_LIMIT = 100;
+
     private Product chosenProduct;
     
-    public ProductSearchInterface(Scanner in, PrintStream out, Connection db) {
-        super(in, out, db);
+    public ProductSearchInterface(Scanner in, PrintStream out, ConnectionPool pool) {
+        super(in, out, pool);
     }
 
     @Override
     public void run() {
-        clear();
-        
-        Menu<Runnable> menu = new Menu<>("How would you like to search?", this);
-        menu.addItem("Browse by category", () -> browseByCategory());
-        menu.addItem("Search for a product by name/id/product", () -> search());
-        
-        MenuItem<Runnable> chosen = menu.promptOptional();
-        
-        if (chosen != null && chosen.get() != null) {
+        while (true) {
+            clear();
+            
+            Menu<Runnable> menu = new Menu<>("How would you like to search?", this);
+            menu.addItem("Browse by category", () -> browseByCategory());
+            menu.addItem("Search for a product by name/id/product", () -> search());
+            menu.addItem("Type-ahead search by the start of the name", () -> typeAhead());
+            
+            MenuItem<Runnable> chosen = menu.promptOptional();
+            
+            if (chosen == null || chosen.get() == null) {
+                return;
+            }
             chosen.get().run();
-
-            if (this.chosenProduct == null) {
-                if (promptBool("No products matched your search. Search again?")) {
-                    run();
-                }
+            
+            if (this.chosenProduct != null
+                    || !promptBool("No products matched your search. Search again?")) {
+                return;
             }
         }
     }
 
     private void browseByCategory() {
-        CategoryBrowserInterface catBrowser = new CategoryBrowserInterface(in, out, db);
+        CategoryBrowserInterface catBrowser = new CategoryBrowserInterface(in, out, pool);
         catBrowser.run();
         Category cat = catBrowser.getChosenCategory();
+        
+        if (cat == null) {
+            return;
+        }
 
-        try (Statement s = db.createStatement();
-                ResultSet rs = s.executeQuery("select * "
-                        + "from product natural join product_category "
-                        + "where category_id = " + cat.getId())) {
-            showProducts(rs);
+        Menu<Product> results = new Menu<>("Matched products", this);
+        
+        try {
+            // Stopped above the leaves, offer everything under the category
+            ProductCategoryIndex index = CategoryCache.forPool(pool).getProducts();
+            int node = index.getTree().node(cat.getId());
+            if (node >= 0 && !index.getTree().isLeaf(node)
+                    && promptBool("Show all products under " + cat + ", including its subcategories?")) {
+                results.setSource(new ProductIdSource(SearchService.forPool(pool), index.productsUnder(node)));
+                showProducts(results);
+                return;
+            }
         } catch (Exception e) {
             handleException(e);
+            return;
         }
+        
+        try (Connection db = borrow();
+                PreparedStatement s = Query.PRODUCTS_IN_CATEGORY.prepare(db, cat.getId());
+                ResultSet rs = s.executeQuery()) {
+            addProducts(results, rs);
+        } catch (Exception e) {
+            handleException(e);
+            return;
+        }
+        
+        showProducts(results);
     }
     
     private void search() {
         String searchTerm = promptSqlSafeString("Type your search term", 3);
         
-        String query = "select * " + 
-                "from product " + 
-                "where lower(product_name) like ? " + 
-                "order by lower(product_name) " + 
-                "fetch first 100 rows only";
+        Menu<Product> results = new Menu<>("Matched products", this);
         
         try {
-            PreparedStatement s = db.prepareStatement(query);
-            
-            s.setString(1, "%" + searchTerm + "%");
-            
-            ResultSet rs = s.executeQuery();
-            
-            showProducts(rs);
-            
-            rs.close();
-            s.close();
+            for (Product p : SearchService.forPool(pool).search(searchTerm, SEARCH_LIMIT)) {
+                results.addItem(p);
+            }
         } catch (Exception e) {
             handleException(e);
+            return;
         }
+        
+        showProducts(results);
     }
     
-    private void showProducts(ResultSet rs) throws SQLException {
-        Menu<Product> results = new Menu<>("Matched products", this);
-        
-        int resultsCount = 0;
+    /**
+     * Suggest the best selling products starting with what's been typed so
+     * far. Everything typed is added on to the name, so the suggestions
+     * narrow down as you go without going back to the database.
+     */
+    private void typeAhead() {
+        SearchService index = SearchService.forPool(pool);
+        if (!index.isReady()) {
+            // Nothing to suggest from yet
+            search();
+            return;
+        }
         
+        String typed = "";
+        while (true) {
+            clear();
+            out.println("Type the start of a product name and press enter to see suggestions.");
+            out.println("Keep typing to narrow them down, enter a number to choose one, \"-\" to");
+            out.println("erase a letter, or nothing to go back.\n");
+            
+            List<Product> suggestions = typed.isEmpty()
+                    ? Collections.<Product>emptyList()
+                    : index.suggest(typed, Menu.PAGE_SIZE);
+            for (int i = 0; i < suggestions.size(); i++) {
+                out.printf("%2d. %s\n", i + 1, suggestions.get(i).getName());
+            }
+            if (!typed.isEmpty() && suggestions.isEmpty()) {
+                out.println("No products start with \"" + typed + "\"");
+            }
+            
+            String input = promptString("\n" + typed).toLowerCase().replaceAll("[^a-z0-9_\\- #()]", "");
+            if (input.isEmpty()) {
+                return;
+            }
+            if (input.equals("-")) {
+                typed = typed.substring(0, Math.max(0, typed.length() - 1));
+                continue;
+            }
+            if (input.matches("\\d{1,2}")) {
+                int choice = Integer.parseInt(input);
+                if (choice >= 1 && choice <= suggestions.size()) {
+                    this.chosenProduct = suggestions.get(choice - 1);
+                    return;
+                }
+            }
+            typed += input;
+        }
+    }
+    
+    private void addProducts(Menu<Product> results, ResultSet rs) throws SQLException {
+        RowMapper.Bound<Product> rows = Mappers.PRODUCT.bind(rs);
         while (rs.next()) {
-            results.addItem(new Product(rs));
-            resultsCount++;
+            results.addItem(rows.map());
         }
-        
-        if (resultsCount > 0) {
-            results.setPrompt("Matching products (" + resultsCount + " total)");
+    }
+    
+    private void showProducts(Menu<Product> results) {
+        if (!results.isEmpty()) {
+            results.setPrompt("Matching products (" + results.size() + " total)");
             this.chosenProduct = results.prompt().get();
         } else {
             // No matching product, this is handled in run()
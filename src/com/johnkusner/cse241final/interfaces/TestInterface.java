@@ -1,35 +1,36 @@
 package com.johnkusner.cse241final.interfaces;
 
 import java.io.PrintStream;
-import java.sql.Connection;
 import java.sql.ResultSet;
-import java.sql.Statement;
+import java.sql.SQLException;
 import java.util.Scanner;
 
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.KeysetSource;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.RowMapper;
 import com.johnkusner.cse241final.menu.Menu;
 
 public class TestInterface extends UserInterface {
 
-    public TestInterface(Scanner in, PrintStream out, Connection db) {
-        super(in, out, db);
+    private static final RowMapper<String> PRODUCT_NAME = new RowMapper<String>("product_name") {
+        @Override
+        protected String map(ResultSet rs, int[] idx) throws SQLException {
+            return rs.getString(idx[0]);
+        }
+    };
+
+    public TestInterface(Scanner in, PrintStream out, ConnectionPool pool) {
+        super(in, out, pool);
     }
     
     @Override
     public void run() {
         out.println("~~~ Welcome to interface ~~~\n\n");
-        try (Statement s = db.createStatement()) {
-            ResultSet r = s.executeQuery("SELECT * FROM PRODUCT");
-            
-            Menu<String> m = new Menu<String>("Results view", this);
-            while (r.next()) {
-                m.addItem(r.getString("product_name"));
-            }
-            m.display();
-            
-            r.close();
-        } catch (Exception e) {
-            handleException(e);
-        }
+        Menu<String> m = new Menu<String>("Results view", this);
+        m.setSource(new KeysetSource<>(pool, Query.ALL_PRODUCTS,
+                new String[] { "product_id" }, PRODUCT_NAME));
+        m.display();
         pause();
     }
 
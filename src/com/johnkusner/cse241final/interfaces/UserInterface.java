@@ -1,36 +1,54 @@
 package com.johnkusner.cse241final.interfaces;
 import java.io.PrintStream;
 import java.sql.Connection;
-import java.text.NumberFormat;
+import java.sql.SQLException;
 import java.util.Scanner;
 
+import com.johnkusner.cse241final.Formats;
 import com.johnkusner.cse241final.IOHandler;
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.nav.Navigation;
+import com.johnkusner.cse241final.nav.Screen;
 
-public abstract class UserInterface extends IOHandler implements Runnable {
-    protected Connection db;
-    protected NumberFormat numberFormat;
-    protected NumberFormat currencyFormat;
+public abstract class UserInterface extends IOHandler implements Runnable, Screen {
+    protected ConnectionPool pool;
     
-    public UserInterface(Scanner in, PrintStream out, Connection db) {
+    public UserInterface(Scanner in, PrintStream out, ConnectionPool pool) {
         super(in, out);
-        this.db = db;
-        
-        numberFormat = NumberFormat.getNumberInstance();
-        currencyFormat = NumberFormat.getCurrencyInstance();
+        this.pool = pool;
     }
     
     public abstract String getInterfaceName();
     
+    /**
+     * By default an interface runs once and then goes back. Interfaces with a
+     * menu that is shown repeatedly override this and return stay() instead
+     * of calling themselves again.
+     */
+    @Override
+    public Navigation show() {
+        run();
+        return Navigation.back();
+    }
+    
+    /**
+     * Borrow a connection for one unit of work. Always close it (ideally with
+     * try-with-resources) so it goes back to the pool.
+     */
+    protected Connection borrow() throws SQLException {
+        return pool.borrow();
+    }
+    
     public String toString() {
         return getInterfaceName();
     }
 
     protected String numberFormat(int num) {
-        return numberFormat.format(num);
+        return Formats.number(num);
     }
     
     protected String moneyFormat(double num) {
-        return currencyFormat.format(num);
+        return Formats.money(num);
     }
     
     protected String s(int val) {
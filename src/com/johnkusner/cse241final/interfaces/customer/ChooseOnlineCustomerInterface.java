@@ -2,10 +2,15 @@ package com.johnkusner.cse241final.interfaces.customer;
 
 import java.io.PrintStream;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.Statement;
+import java.sql.SQLException;
 import java.util.Scanner;
 
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.KeysetSource;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.RowMapper;
 import com.johnkusner.cse241final.interfaces.UserInterface;
 import com.johnkusner.cse241final.menu.Menu;
 import com.johnkusner.cse241final.menu.MenuItem;
@@ -15,6 +20,13 @@ import com.johnkusner.cse241final.objects.PaymentMethod;
 
 public class ChooseOnlineCustomerInterface extends UserInterface {
 
+    private static final RowMapper<OnlineCustomer> CUSTOMER = new RowMapper<OnlineCustomer>() {
+        @Override
+        protected OnlineCustomer map(ResultSet rs, int[] idx) throws SQLException {
+            return new OnlineCustomer(rs);
+        }
+    };
+
     public static interface LocationChosenCallback {
         void onLocationChosen(Location loc);
     }
@@ -22,34 +34,24 @@ public class ChooseOnlineCustomerInterface extends UserInterface {
     private OnlineCustomer chosen;
     private String prompt;
     
-	public ChooseOnlineCustomerInterface(String prompt, Scanner in, PrintStream out, Connection db) {
-		super(in, out, db);
+	public ChooseOnlineCustomerInterface(String prompt, Scanner in, PrintStream out, ConnectionPool pool) {
+		super(in, out, pool);
 		this.prompt = prompt;
 	}
 	
-	public ChooseOnlineCustomerInterface(Scanner in, PrintStream out, Connection db) {
-	    this("Log in as...", in, out, db);
+	public ChooseOnlineCustomerInterface(Scanner in, PrintStream out, ConnectionPool pool) {
+	    this("Log in as...", in, out, pool);
 	}
 
 	@Override
 	public void run() {
-		try (Statement s = db.createStatement();
-				ResultSet rs = s.executeQuery("SELECT * FROM online_customer natural join customer "
-				        + "order by lower(username)")) {
-			
-			Menu<OnlineCustomer> customers = new Menu<>(prompt, this);
-			while (rs.next()) {
-				customers.addItem(new OnlineCustomer(rs));
-			}
-
-            rs.close();
-            
-			MenuItem<OnlineCustomer> chosen = customers.promptOptional();
-			if (chosen != null && chosen.get() != null) {
-			    this.chosen = chosen.get();
-			}
-		} catch (Exception e) {
-			handleException(e);
+		Menu<OnlineCustomer> customers = new Menu<>(prompt, this);
+		customers.setSource(new KeysetSource<>(pool, Query.ONLINE_CUSTOMERS,
+				new String[] { "username_key", "customer_id" }, CUSTOMER));
+		
+		MenuItem<OnlineCustomer> chosen = customers.promptOptional();
+		if (chosen != null && chosen.get() != null) {
+		    this.chosen = chosen.get();
 		}
 		
 		clear();
@@ -61,24 +63,23 @@ public class ChooseOnlineCustomerInterface extends UserInterface {
 	}
 
 	public PaymentMethod choosePaymentMethod() {
-        try (Statement s = db.createStatement();
-                ResultSet rs = s.executeQuery("SELECT * FROM payment_method "
-                        + "where customer_id = " + chosen.getId() + " "
-                        + "order by lower(payment_method_name)")) {
+        Menu<PaymentMethod> methods = new Menu<>("Welcome back, " + chosen.getCustomer().getFullName() + "! Please select the payment method you would like to use", this);
+        
+        try (Connection db = borrow();
+                PreparedStatement s = Query.PAYMENT_METHODS.prepare(db, chosen.getId());
+                ResultSet rs = s.executeQuery()) {
             
-            Menu<PaymentMethod> methods = new Menu<>("Welcome back, " + chosen.getCustomer().getFullName() + "! Please select the payment method you would like to use", this);
             while (rs.next()) {
                 methods.addItem(new PaymentMethod(rs));
             }
-
-            rs.close();
-            
-            MenuItem<PaymentMethod> chosen = methods.display();
-            if (chosen != null && chosen.get() != null) {
-                return chosen.get();
-            }
         } catch (Exception e) {
             handleException(e);
+            return null;
+        }
+        
+        MenuItem<PaymentMethod> chosen = methods.display();
+        if (chosen != null && chosen.get() != null) {
+            return chosen.get();
         }
         
         return null;
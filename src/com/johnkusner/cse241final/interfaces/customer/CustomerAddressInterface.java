@@ -2,10 +2,14 @@ package com.johnkusner.cse241final.interfaces.customer;
 
 import java.io.PrintStream;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.Statement;
 import java.util.Scanner;
 
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Mappers;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.RowMapper;
 import com.johnkusner.cse241final.interfaces.UserInterface;
 import com.johnkusner.cse241final.menu.Menu;
 import com.johnkusner.cse241final.menu.MenuItem;
@@ -18,35 +22,36 @@ public class CustomerAddressInterface extends UserInterface {
     private Address address;
     
     public CustomerAddressInterface(Customer cust, Scanner in, PrintStream out,
-            Connection db) {
-        super(in, out, db);
+            ConnectionPool pool) {
+        super(in, out, pool);
         this.customer = cust;
     }
 
     @Override
     public void run() {
-        try (Statement s = db.createStatement();
-                ResultSet rs = s.executeQuery("select * "
-                        + "from address natural join customer_address "
-                        + "where customer_id = " + customer.getId())) {
-            Menu<Address> menu = new Menu<>("Choose an address", this);
-            //menu.addItem("Add a new address", null);
-            
+        Menu<Address> menu = new Menu<>("Choose an address", this);
+        //menu.addItem("Add a new address", null);
+        
+        try (Connection db = borrow();
+                PreparedStatement s = Query.CUSTOMER_ADDRESSES.prepare(db, customer.getId());
+                ResultSet rs = s.executeQuery()) {
+            RowMapper.Bound<Address> rows = Mappers.ADDRESS.bind(rs);
             while (rs.next()) {
-                Address next = new Address(rs);
+                Address next = rows.map();
                 menu.addItem(next.toSimpleString(), next);
             }
-            
-            MenuItem<Address> chosen = menu.display();
-            if (chosen == null) {
-                return;
-            } else if (chosen.get() == null) {
-                createAddress();
-            } else {
-                address = chosen.get();
-            }
         } catch (Exception e) {
             handleException(e);
+            return;
+        }
+        
+        MenuItem<Address> chosen = menu.display();
+        if (chosen == null) {
+            return;
+        } else if (chosen.get() == null) {
+            createAddress();
+        } else {
+            address = chosen.get();
         }
     }
 
@@ -1,20 +1,29 @@
 package com.johnkusner.cse241final.interfaces.customer;
 
 import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.sql.CallableStatement;
 import java.sql.Connection;
-import java.sql.Date;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.Statement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.Scanner;
 
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Mappers;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.TransactionIds;
 import com.johnkusner.cse241final.interfaces.ChooseLocationInterface;
 import com.johnkusner.cse241final.interfaces.ProductSearchInterface;
 import com.johnkusner.cse241final.interfaces.UserInterface;
+import com.johnkusner.cse241final.inventory.AvailabilityIndex;
+import com.johnkusner.cse241final.inventory.ReservationLedger;
 import com.johnkusner.cse241final.menu.Menu;
 import com.johnkusner.cse241final.menu.MenuItem;
 import com.johnkusner.cse241final.objects.Address;
@@ -24,6 +33,8 @@ import com.johnkusner.cse241final.objects.OnlineCustomer;
 import com.johnkusner.cse241final.objects.PaymentMethod;
 import com.johnkusner.cse241final.objects.Product;
 import com.johnkusner.cse241final.objects.Stock;
+import com.johnkusner.cse241final.stats.SalesColumns;
+import com.johnkusner.cse241final.stats.StatisticsCache;
 
 public class CustomerInterface extends UserInterface {
 
@@ -54,10 +65,13 @@ public class CustomerInterface extends UserInterface {
     
     private boolean finished = false;
     
-    public CustomerInterface(Scanner in, PrintStream out, Connection db) {
-        super(in, out, db);
+    private final ReservationLedger holds;
+    
+    public CustomerInterface(Scanner in, PrintStream out, ConnectionPool pool) {
+        super(in, out, pool);
         
         cart = new ArrayList<>();
+        holds = ReservationLedger.forPool(pool);
     }
 
     @Override
@@ -65,7 +79,7 @@ public class CustomerInterface extends UserInterface {
         clear();
         
         ChooseOnlineCustomerInterface custLoginInterface = new ChooseOnlineCustomerInterface(
-                "Welcome to BRC Customer Interface! Choose a user to login as...", in, out, db);
+                "Welcome to BRC Customer Interface! Choose a user to login as...", in, out, pool);
         custLoginInterface.run();
         
         customer = custLoginInterface.getChosenCustomer();
@@ -92,7 +106,7 @@ public class CustomerInterface extends UserInterface {
         orderType = chosenType.get();
         
         if (orderType == Type.SHIPPED_ORDER) {
-            CustomerAddressInterface addressInterface = new CustomerAddressInterface(customer.getCustomer(), in, out, db);
+            CustomerAddressInterface addressInterface = new CustomerAddressInterface(customer.getCustomer(), in, out, pool);
             addressInterface.run();
             
             shipTo = addressInterface.getChosenAddress();
@@ -101,7 +115,7 @@ public class CustomerInterface extends UserInterface {
                 return;
             }
         } else {
-            ChooseLocationInterface locationInterface = new ChooseLocationInterface(Location.Type.STORE, in, out, db);
+            ChooseLocationInterface locationInterface = new ChooseLocationInterface(Location.Type.STORE, in, out, pool);
             locationInterface.run();
             pickupLocation = locationInterface.getLocation();
             
@@ -112,10 +126,26 @@ public class CustomerInterface extends UserInterface {
             pickupName = promptSqlSafeString("Who is authorized to pick up this order?", 2);
         }
         
-        showMenu();
+        try {
+            showMenu();
+        } finally {
+            // Whatever is still in the cart goes back on sale
+            holds.releaseAll(this);
+        }
     }
 
     private void showMenu() {
+        while (!finished) {
+            if (!showMenuOnce()) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Returns false once the customer logs out.
+     */
+    private boolean showMenuOnce() {
         String cartStatus = "Your cart is empty.";
         
         Menu<Runnable> menu = new Menu<>("Choose an option", this);
@@ -139,267 +169,326 @@ public class CustomerInterface extends UserInterface {
             choice.get().run();
         } else {
             if (promptBool("Are you sure you want to log out of customer interface?")) {
-                return;                
+                return false;
             }
         }
-        
-        if (!finished) {            
-            showMenu();
-        }
+        return true;
     }
     
     private void productSearch() {
-        ProductSearchInterface search = new ProductSearchInterface(in, out, db);
+        ProductSearchInterface search = new ProductSearchInterface(in, out, pool);
         search.run();
         
         Product chosen = search.getChosenProduct();
         
-        if (chosen != null) {
-            showAvailability(chosen);
+        if (chosen != null && showAvailability(chosen)) {
+            editCart();
         }
     }
     
     private void editCart() {
-        String title = getCartStatusMessage();
-        title += "\nSelect an item below to modify it. Press Exit to view more options.";
-        
-    	Menu<CartItem> cartDisplay = new Menu<>(title, CartItem.HEADER, this);
-    	
-        for (CartItem item : cart) {
-        	cartDisplay.addItem(item);
-        }
-        
-        MenuItem<CartItem> chosen = cartDisplay.promptOptional();
-        
-        if (chosen != null && chosen.get() != null) {
-            editItem(chosen.get());
-            editCart();
+        while (true) {
+            String title = getCartStatusMessage();
+            title += "\nSelect an item below to modify it. Press Exit to view more options.";
+            
+        	Menu<CartItem> cartDisplay = new Menu<>(title, CartItem.HEADER, this);
+        	
+            for (CartItem item : cart) {
+            	cartDisplay.addItem(item);
+            }
+            
+            MenuItem<CartItem> chosen = cartDisplay.promptOptional();
+            
+            if (chosen == null || chosen.get() == null) {
+                return;
+            }
+            CartItem item = chosen.get();
+            showAvailability(new Product(item.getProductId(), item.getProductName()));
         }
     }
     
-    private void editItem(CartItem item) {
-        clear();
-        cart.removeIf(i -> i.getProductId() == item.getProductId());
-        showAvailability(new Product(item.getProductId(), item.getProductName()));
-    }
-    
     private void checkout() {
         if (!promptBool("Are you sure you would like to checkout?")) {
         	return;
         }
         clear();
         out.println("Processing transaction...");
+        // Shown now, checkout_cart can take a while
+        out.flush();
         
-        try {
-        	db.setAutoCommit(false);
-        	
-        	CallableStatement cs = db.prepareCall("{ call begin_transaction(?) }");
-        	
-        	cs.registerOutParameter(1, Types.INTEGER);
-        	
-        	cs.execute();
-        	
-        	int transactionId = cs.getInt(1);
-        	
-        	clear();
-        	out.println("Transaction ID: " + transactionId + "\n");
-        	
-        	cs.close();
-        	
-        	
-        	cs = db.prepareCall("{ call purchase_product(?, ?, ?, ?, ?, ?, ?) }");;
-        	
-        	int totalItemsPurchased = 0;
-        	double totalMoneySpent = 0.00;
+    	int totalItemsPurchased = 0;
+    	double totalMoneySpent = 0.00;
+    	boolean committed = false;
+    	// Shipped orders take warehouse stock, which the availability index keeps
+    	AvailabilityIndex availability = orderType == Type.SHIPPED_ORDER ? AvailabilityIndex.forPool(pool) : null;
+    	boolean updatingAvailability = false;
+    	// Only there once the statistics interface has been opened, it reads
+    	// this checkout itself if it starts loading meanwhile
+    	SalesColumns columns = pool.existingService(SalesColumns.class);
+        
+        try (Connection db = borrow()) {
+            db.setAutoCommit(false);
 
-        	for (CartItem item : cart) {
-        		cs.setInt(1, transactionId);
-        		if (orderType == Type.SHIPPED_ORDER) {
-        		    cs.setNull(2, Types.INTEGER);
-        		} else {
-        		    cs.setInt(2, pickupLocation.getId());
-        		}
-        		cs.setInt(3, item.getProductId());
-        		cs.setInt(4, item.getQty());
-        		cs.setDouble(5, item.getUnitPrice());
-        		cs.registerOutParameter(6, Types.INTEGER); // amount_got
-        		cs.registerOutParameter(7, Types.DOUBLE); // total_paid
-        		
-        		cs.execute();
-        	
-        		int purchasedQty = cs.getInt(6);
-        		double purchasePrice = cs.getDouble(7);
-        		
-        		totalItemsPurchased += purchasedQty;
-        		totalMoneySpent += purchasePrice;
-        		
-        		if (purchasedQty > 0) {
-                    String stockNotice = "";
-                    if (purchasedQty < item.getQty()) {
-                        stockNotice = " (no more stock at this price)";
+            try (CallableStatement cs = Query.CHECKOUT_CART.call(db)) {
+                // The whole cart goes over in one call, so stock rows are
+                // locked for one round trip instead of one per cart line
+                if (orderType == Type.SHIPPED_ORDER) {
+                    cs.setNull(1, Types.INTEGER);
+                } else {
+                    cs.setInt(1, pickupLocation.getId());
+                }
+                cs.setString(2, encodeCart(cart));
+                cs.setDouble(3, 0.0); // tax rate
+                cs.setInt(4, paymentMethod.getId());
+                cs.setTimestamp(5, new Timestamp(System.currentTimeMillis() + (orderType == Type.PICKUP_ORDER
+                        ? (2 * 60 * 60 * 1000) // 2 hour pickup
+                        : (2 * 24 * 60 * 60 * 1000)))); // 2 day shipping
+                if (orderType == Type.PICKUP_ORDER) {
+                    cs.setString(6, pickupName);
+                    cs.setInt(7, pickupLocation.getId());
+                    cs.setNull(8, Types.INTEGER); // shipping address
+                    cs.setNull(9, Types.VARCHAR); // tracking number
+                } else {
+                    cs.setNull(6, Types.VARCHAR); // pickup name
+                    cs.setNull(7, Types.INTEGER); // pickup location
+                    cs.setInt(8, shipTo.getId());
+                    cs.setString(9, getRandomTrackingNumber());
+                }
+                Integer reserved = TransactionIds.forPool(pool).next(db);
+                if (reserved != null) {
+                    cs.setInt(10, reserved); // transaction id
+                } else {
+                    cs.setNull(10, Types.INTEGER); // begin_transaction picks one
+                }
+                cs.registerOutParameter(10, Types.INTEGER);
+                cs.registerOutParameter(11, Types.VARCHAR); // qty_got:total_paid per line
+                cs.registerOutParameter(12, Types.DOUBLE); // final total
+
+                // Before running it, the holds could expire meanwhile
+                boolean allHeld = cart.stream().allMatch(i -> holds.isHeld(this, holdLocation(),
+                        i.getProductId(), i.getUnitPrice(), i.getQty()));
+
+                cs.execute();
+
+                clear();
+                int transId = cs.getInt(10);
+                out.println("Transaction ID: " + transId + "\n");
+
+                String[] results = cs.getString(11) == null ? new String[0] : cs.getString(11).split(",");
+                int[] purchased = new int[cart.size()];
+                double[] paid = new double[cart.size()];
+                for (int i = 0; i < cart.size(); i++) {
+                    CartItem item = cart.get(i);
+                    String[] result = results[i].split(":");
+                    int purchasedQty = Integer.parseInt(result[0]);
+                    double purchasePrice = Double.parseDouble(result[1]);
+                    purchased[i] = purchasedQty;
+                    paid[i] = purchasePrice;
+
+                    totalItemsPurchased += purchasedQty;
+
+                    if (purchasedQty > 0) {
+                        String stockNotice = "";
+                        if (purchasedQty < item.getQty()) {
+                            stockNotice = " (no more stock at this price)";
+                        }
+
+                        out.printf("Got %sx \"%s\" at %s/each (%s total)%s\n", numberFormat(purchasedQty),
+                                item.getProductName(), moneyFormat(purchasePrice/purchasedQty), moneyFormat(purchasePrice), stockNotice);
+                    } else {
+                        out.printf("Out of stock: %s\n", item.getProductName());
                     }
-                    
-                    out.printf("Got %sx \"%s\" at %s/each (%s total)%s\n", numberFormat(purchasedQty),
-                            item.getProductName(), moneyFormat(purchasePrice/purchasedQty), moneyFormat(purchasePrice), stockNotice);
-        		} else {
-        		    out.printf("Out of stock: %s\n", item.getProductName());
-        		}
-        	}
-        	
-        	cs.close();
-            
-        	out.println();
-        	
-        	if (totalItemsPurchased == 0) {
-            	db.rollback();
-            	
-            	finished = true;
-            	out.println("We are sorry, it looks like every item in your cart has sold out.");
-            	pause("Press any key to exit interface");
-            	return;
-        	} else {
-        	    long shippingTime = orderType == Type.PICKUP_ORDER
-        	            ? (2 * 60 * 60 * 1000) // 2 hour pickup
-	                    : (2 * 24 * 60 * 60 * 1000); // 2 day shipping
-        	    Date estArrival = new Date(new java.util.Date().getTime() + shippingTime);
-        	    
-        	    cs = db.prepareCall("{ call finish_online_transaction(?, ?, ?, ?, ?, ?, ?, ?, ?) }");
-        	    
-        	    cs.setInt(1, transactionId);
-        	    cs.setDouble(2, 0.0); // tax rate
-        	    cs.setDouble(3, paymentMethod.getId());
-        	    cs.setDate(4, estArrival);
-        	    if (orderType == Type.PICKUP_ORDER) {
-        	        cs.setString(5, pickupName);
-        	        cs.setInt(6, pickupLocation.getId());
-        	        cs.setNull(7, Types.INTEGER); // shipping address
-        	        cs.setNull(8, Types.VARCHAR); // tracking number
-        	    } else {
-                    cs.setNull(5, Types.VARCHAR); // pickup name
-                    cs.setNull(6, Types.INTEGER); // pickup location
-                    cs.setInt(7, shipTo.getId());
-                    cs.setString(8, getRandomTrackingNumber());
-        	    }
-        	    
-        	    cs.registerOutParameter(9, Types.DOUBLE); // final total
-        	    
-        	    cs.execute();
-        	    
-        	    totalMoneySpent = cs.getDouble(9);
-        	    
-        	    cs.close();
-        	    
-        		db.commit();
-        		
-        		// Committed successfully
-        		finished = true;        		
-        		out.printf("Thank you for shopping with BRC, %s!\n", customer.getCustomer().getFullName());
-        		out.printf("Total items purchased: %s.\n\nCharged %s to %s\n",
-        		        numberFormat(totalItemsPurchased),
-        		        moneyFormat(totalMoneySpent),
-        		        paymentMethod.toString());
-        		
-        		String destination = orderType == Type.SHIPPED_ORDER
-        		        ? shipTo.toSimpleString()
-		                : (pickupLocation.getName() + " for pickup by " + pickupName);
-        		        
-        		out.printf("Your order will arrive soon at %s!\n", destination);
-        		pause("\nPress enter to log out of interface.");
-        		return;
-        	}
-        } catch (Exception e) {
-            try {
+                }
+                out.println();
+
+                long madeAt = 0;
+                if (totalItemsPurchased == 0) {
+                    db.rollback();
+                } else {
+                    totalMoneySpent = cs.getDouble(12);
+                    if (columns != null) {
+                        // The sales columns order rows by the database's clock
+                        try (PreparedStatement s = Query.TRANSACTION_TIMESTAMP.prepare(db, transId);
+                                ResultSet r = s.executeQuery()) {
+                            r.next();
+                            madeAt = r.getTimestamp(1).getTime();
+                        }
+                    }
+                    if (availability != null) {
+                        // Stock read from here until it's updated below isn't kept
+                        availability.purchasing();
+                        updatingAvailability = true;
+                    }
+                    db.commit();
+                    committed = true;
+                }
+                holds.checkedOut(allHeld, totalCartItems(), totalItemsPurchased);
+                if (committed) {
+                    holds.releaseAll(this);
+                    if (columns != null) {
+                        int[] productIds = new int[cart.size()];
+                        for (int i = 0; i < cart.size(); i++) {
+                            productIds[i] = cart.get(i).getProductId();
+                        }
+                        columns.recordCheckout(transId, madeAt, holdLocation(), productIds, purchased, paid);
+                    }
+                    StatisticsCache statistics = pool.existingService(StatisticsCache.class);
+                    if (statistics != null) {
+                        statistics.salesRecorded();
+                    }
+                    if (availability != null) {
+                        // Each line was bought at exactly its price
+                        for (int i = 0; i < cart.size(); i++) {
+                            if (purchased[i] > 0) {
+                                availability.purchased(cart.get(i).getProductId(), cart.get(i).getUnitPrice(),
+                                        purchased[i]);
+                            }
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                totalItemsPurchased = -1;
                 db.rollback();
-            } catch (Exception e2) {
-                // ignore
-            }
-        } finally {
-            try {
+            } finally {
+                if (updatingAvailability) {
+                    availability.purchaseDone();
+                }
                 db.setAutoCommit(true);
             }
-            catch (Exception e) {
-                // ignore
-            }
+        } catch (Exception e) {
+            totalItemsPurchased = -1;
+        }
+        
+        if (committed) {
+    		// Committed successfully
+    		finished = true;        		
+    		out.printf("Thank you for shopping with BRC, %s!\n", customer.getCustomer().getFullName());
+    		out.printf("Total items purchased: %s.\n\nCharged %s to %s\n",
+    		        numberFormat(totalItemsPurchased),
+    		        moneyFormat(totalMoneySpent),
+    		        paymentMethod.toString());
+    		
+    		String destination = orderType == Type.SHIPPED_ORDER
+    		        ? shipTo.toSimpleString()
+	                : (pickupLocation.getName() + " for pickup by " + pickupName);
+    		        
+    		out.printf("Your order will arrive soon at %s!\n", destination);
+    		pause("\nPress enter to log out of interface.");
+    		return;
+        } else if (totalItemsPurchased == 0) {
+        	finished = true;
+        	out.println("We are sorry, it looks like every item in your cart has sold out.");
+        	pause("Press any key to exit interface");
+        	return;
         }
         
         out.println("We are sorry, something went wrong and we were unable to complete your order.");
         finished = !promptBool("Would you like to try again?");
     }
     
-    private void showAvailability(Product prod) {
-    	// If this product is already in cart, editItem instead
-    	CartItem item = cart.stream().filter(i -> i.getProductId() == prod.getId()).findFirst().orElse(null);
-    	if (item != null) {
-    		editItem(item);
-    		return;
+    /**
+     * Ask how many of the product to put in the cart, replacing whatever is
+     * already there for it. Returns true if anything was added.
+     */
+    private boolean showAvailability(Product prod) {
+    	// If this product is already in cart, start over with it
+    	for (CartItem item : cart) {
+    	    if (item.getProductId() == prod.getId()) {
+    	        holds.release(this, holdLocation(), item.getProductId(), item.getUnitPrice());
+    	    }
     	}
-    	
-    	String query;
-    	
-    	if (orderType == Type.SHIPPED_ORDER) {
-    	    query = "select * from warehouse_stock where product_id = "
-                    + prod.getId() + " and qty > 0";
-    	} else {
-    	    query = "select * from stock "
-    	            + "natural join product where "
-    	            + "product_id = " + prod.getId() + " and "
-                    + "location_id = " + pickupLocation.getId() + " and "
-                    + "qty > 0";
+    	if (cart.removeIf(i -> i.getProductId() == prod.getId())) {
+    	    clear();
     	}
     	
-        try (Statement stmt = db.createStatement();
-                ResultSet rs = stmt.executeQuery(query)) {
-            clear();
-            if (!rs.next()) {
-                out.println("Sorry, " + prod.getName() + " is out of stock.");
-                pause();
-            } else {
-                out.println("Availability for \"" + prod.getName() + "\": ");
+    	List<Stock> inStock = new ArrayList<Stock>();
+    	
+        List<Stock> available = new ArrayList<Stock>();
+        
+        try {
+            inStock.addAll(loadAvailability(prod));
+        } catch (Exception e) {
+            handleException(e);
+            return false;
+        }
+        
+        // Leave out what other customers are holding in their carts
+        for (Stock stock : inStock) {
+            int free = holds.available(this, holdLocation(), stock.getProductId(), stock.getUnitPrice(),
+                    stock.getQty());
+            if (free > 0) {
+                available.add(new Stock(stock.getProductId(), stock.getProductName(), free,
+                        stock.getUnitPrice()));
+            }
+        }
+        
+        clear();
+        if (available.isEmpty()) {
+            out.println("Sorry, " + prod.getName() + " is out of stock.");
+            pause();
+            return false;
+        } else {
+            out.println("Availability for \"" + prod.getName() + "\": ");
 
-                List<Stock> available = new ArrayList<Stock>();
-                int totalAvailable = 0;
-                
-                do {
-                    Stock stock = new Stock(rs);
-                    available.add(stock);
-                    totalAvailable += stock.getQty();
+            int totalAvailable = 0;
+            
+            for (int i = 0; i < available.size(); i++) {
+                Stock stock = available.get(i);
+                totalAvailable += stock.getQty();
 
-                    if (available.size() <= 5) {
-                        out.println("- " + stock.toSimpleString(false));                        
-                    }
-                } while (rs.next());
-                
-                double averageCost = available.stream().mapToDouble(st -> st.getQty() * st.getUnitPrice()).sum();
-                averageCost /= totalAvailable;
-                averageCost = Math.ceil(averageCost * 100) / 100.0;
-                
-                if (available.size() > 1) {
-                    out.println("Less expensive items sell first.");
+                if (i < 5) {
+                    out.println("- " + stock.toSimpleString(false));                        
                 }
-                
-                int wanted = promptInt("Enter desired quantity (0 for none)", 0, totalAvailable);
-                
-                if (wanted == 0) {
-                    return;
-                }
-                
-                int remaining = wanted;
-                
-                for (Stock stock : available) {
-                    int qty = Math.min(remaining, stock.getQty());
+            }
+            
+            double averageCost = available.stream().mapToDouble(st -> st.getQty() * st.getUnitPrice()).sum();
+            averageCost /= totalAvailable;
+            averageCost = Math.ceil(averageCost * 100) / 100.0;
+            
+            if (available.size() > 1) {
+                out.println("Less expensive items sell first.");
+            }
+            
+            int wanted = promptInt("Enter desired quantity (0 for none)", 0, totalAvailable);
+            
+            int remaining = wanted;
+            
+            for (int i = 0; i < inStock.size() && remaining > 0; i++) {
+                // Someone may have taken some since we looked
+                Stock stock = inStock.get(i);
+                int qty = holds.hold(this, holdLocation(), stock.getProductId(), stock.getUnitPrice(),
+                        remaining, stock.getQty());
+                if (qty > 0) {
                     cart.add(new CartItem(stock, qty));
-                    
                     remaining -= qty;
-                    
-                    if (remaining <= 0) {
-                        break;
-                    }
                 }
-                
-                editCart();
             }
-        } catch (Exception e) {
-            handleException(e);
+            
+            if (remaining > 0) {
+                out.printf("%s could not be added, other customers just took them.\n",
+                        numberFormat(remaining));
+                pause();
+            }
+            
+            return remaining < wanted;
+        }
+    }
+    
+    /**
+     * Where holds are placed: the pickup store, or 0 for the warehouses.
+     */
+    private int holdLocation() {
+        return orderType == Type.PICKUP_ORDER ? pickupLocation.getId() : 0;
+    }
+    
+    private List<Stock> loadAvailability(Product prod) throws SQLException {
+        if (orderType == Type.SHIPPED_ORDER) {
+            return AvailabilityIndex.forPool(pool).warehouseStock(prod);
+        }
+        try (Connection db = borrow();
+                PreparedStatement stmt = Query.STORE_AVAILABILITY.prepare(db, prod.getId(), pickupLocation.getId());
+                ResultSet rs = stmt.executeQuery()) {
+            return Mappers.STOCK.list(rs);
         }
     }
     
@@ -431,4 +520,20 @@ public class CustomerInterface extends UserInterface {
         return sb.toString();
     }
 
+    /**
+     * The cart as checkout_cart takes it: product_id:qty:unit_price for each
+     * item, separated by commas.
+     */
+    private static String encodeCart(List<CartItem> cart) {
+        StringBuilder sb = new StringBuilder(cart.size() * 24);
+        for (CartItem item : cart) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(item.getProductId()).append(':').append(item.getQty()).append(':')
+                    .append(BigDecimal.valueOf(item.getUnitPrice()).setScale(2, RoundingMode.HALF_UP).toPlainString());
+        }
+        return sb.toString();
+    }
+
 }
@@ -1,21 +1,24 @@
 package com.johnkusner.cse241final.interfaces.manager;
 
 import java.io.PrintStream;
-import java.sql.Connection;
 import java.util.Scanner;
+import java.util.function.Supplier;
 
+import com.johnkusner.cse241final.db.ConnectionPool;
 import com.johnkusner.cse241final.interfaces.UserInterface;
 import com.johnkusner.cse241final.menu.Menu;
 import com.johnkusner.cse241final.menu.MenuItem;
+import com.johnkusner.cse241final.nav.Navigation;
+import com.johnkusner.cse241final.nav.Navigator;
 import com.johnkusner.cse241final.objects.Customer;
 
 public class ManageCustomerInterface extends UserInterface {
 
 	private Customer customer;
-	private Menu<Runnable> menu;
+	private Menu<Supplier<Navigation>> menu;
 	
-	public ManageCustomerInterface(Customer cust, Scanner in, PrintStream out, Connection db) {
-		super(in, out, db);
+	public ManageCustomerInterface(Customer cust, Scanner in, PrintStream out, ConnectionPool pool) {
+		super(in, out, pool);
 		this.customer = cust;
 		
 		menu = new Menu<>("Viewing Customer: \"" + customer.getFullName()
@@ -25,15 +28,20 @@ public class ManageCustomerInterface extends UserInterface {
 
 	@Override
 	public void run() {
-		MenuItem<Runnable> chosen = menu.promptOptional();
-		if (chosen != null && chosen.get() != null) {
-			chosen.get().run();
-			run();
+		new Navigator().run(this);
+	}
+	
+	@Override
+	public Navigation show() {
+		MenuItem<Supplier<Navigation>> chosen = menu.promptOptional();
+		if (chosen == null || chosen.get() == null) {
+			return Navigation.back();
 		}
+		return chosen.get().get();
 	}
 
-	public void showRecentTransactions() {
-	    new RecentTransactionsInterface(in, out, db).showForCustomer(customer);
+	public Navigation showRecentTransactions() {
+	    return Navigation.push(new RecentTransactionsInterface(in, out, pool).forCustomer(customer));
 	}
 	
 	@Override
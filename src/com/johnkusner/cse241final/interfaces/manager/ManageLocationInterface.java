@@ -1,21 +1,24 @@
 package com.johnkusner.cse241final.interfaces.manager;
 
 import java.io.PrintStream;
-import java.sql.Connection;
 import java.util.Scanner;
+import java.util.function.Supplier;
 
+import com.johnkusner.cse241final.db.ConnectionPool;
 import com.johnkusner.cse241final.interfaces.UserInterface;
 import com.johnkusner.cse241final.menu.Menu;
 import com.johnkusner.cse241final.menu.MenuItem;
+import com.johnkusner.cse241final.nav.Navigation;
+import com.johnkusner.cse241final.nav.Navigator;
 import com.johnkusner.cse241final.objects.Location;
 
 public class ManageLocationInterface extends UserInterface {
 
 	private Location loc;
-	private Menu<Runnable> menu;
+	private Menu<Supplier<Navigation>> menu;
 	
-	public ManageLocationInterface(Location loc, Scanner in, PrintStream out, Connection db) {
-		super(in, out, db);
+	public ManageLocationInterface(Location loc, Scanner in, PrintStream out, ConnectionPool pool) {
+		super(in, out, pool);
 		this.loc = loc;
 		
 		menu = new Menu<>("Viewing Location: \"" + loc.getName()
@@ -29,19 +32,24 @@ public class ManageLocationInterface extends UserInterface {
 
 	@Override
 	public void run() {
-		MenuItem<Runnable> chosen = menu.promptOptional();
-		if (chosen != null && chosen.get() != null) {
-			chosen.get().run();
-			run();
+		new Navigator().run(this);
+	}
+	
+	@Override
+	public Navigation show() {
+		MenuItem<Supplier<Navigation>> chosen = menu.promptOptional();
+		if (chosen == null || chosen.get() == null) {
+			return Navigation.back();
 		}
+		return chosen.get().get();
 	}
 
-	private void viewInventory() {
-		new InventoryInterface(loc, in, out, db).run();
+	private Navigation viewInventory() {
+		return Navigation.push(new InventoryInterface(loc, in, out, pool));
 	}
 	
-	private void viewTransactions() {
-		new RecentTransactionsInterface(in, out, db).showForStore(loc);
+	private Navigation viewTransactions() {
+		return Navigation.push(new RecentTransactionsInterface(in, out, pool).forStore(loc));
 	}
 	
 	@Override
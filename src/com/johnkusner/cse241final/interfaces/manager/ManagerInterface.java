@@ -1,45 +1,76 @@
 package com.johnkusner.cse241final.interfaces.manager;
 
 import java.io.PrintStream;
-import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Scanner;
+import java.util.function.Supplier;
 
+import com.johnkusner.cse241final.db.ConnectionPool;
 import com.johnkusner.cse241final.interfaces.ChooseLocationInterface;
 import com.johnkusner.cse241final.interfaces.UserInterface;
 import com.johnkusner.cse241final.interfaces.customer.ChooseOnlineCustomerInterface;
 import com.johnkusner.cse241final.menu.Menu;
 import com.johnkusner.cse241final.menu.MenuItem;
+import com.johnkusner.cse241final.nav.Navigation;
+import com.johnkusner.cse241final.nav.Navigator;
 import com.johnkusner.cse241final.objects.Location;
+import com.johnkusner.cse241final.stats.SalesRollup;
 
 public class ManagerInterface extends UserInterface {
 
-    private Menu<Runnable> menu;
+    private Menu<Supplier<Navigation>> menu;
 
-    public ManagerInterface(Scanner in, PrintStream out, Connection db) {
-        super(in, out, db);
+    public ManagerInterface(Scanner in, PrintStream out, ConnectionPool pool) {
+        super(in, out, pool);
 
         menu = new Menu<>("Manager Interface", this);
-        menu.addItem("View Stores", () -> {
-            ChooseLocationInterface choose = new ChooseLocationInterface(Location.Type.STORE, in, out, db);
-            choose.run();
-            if (choose.getLocation() != null) {
-                new ManageLocationInterface(choose.getLocation(), in, out, db).run();                
-            }
-        });
-        menu.addItem("View Warehouses", () -> {
-            ChooseLocationInterface choose = new ChooseLocationInterface(Location.Type.WAREHOUSE, in, out, db);
-            choose.run();
-            if (choose.getLocation() != null) {
-                new ManageLocationInterface(choose.getLocation(), in, out, db).run();                
-            }
-        });
+        menu.addItem("View Stores", () -> chooseLocation(Location.Type.STORE));
+        menu.addItem("View Warehouses", () -> chooseLocation(Location.Type.WAREHOUSE));
         menu.addItem("View Online Customers", () -> {
-            ChooseOnlineCustomerInterface choose = new ChooseOnlineCustomerInterface("Choose customer", in, out, db);
+            ChooseOnlineCustomerInterface choose = new ChooseOnlineCustomerInterface("Choose customer", in, out, pool);
             choose.run();
-            if (choose.getChosenCustomer() != null) {
-                new ManageCustomerInterface(choose.getChosenCustomer().getCustomer(), in, out, db).run();                
+            if (choose.getChosenCustomer() == null) {
+                return Navigation.stay();
             }
+            return Navigation.push(new ManageCustomerInterface(choose.getChosenCustomer().getCustomer(), in, out, pool));
         });
+        menu.addItem("View System Status", () -> Navigation.push(new SystemStatusInterface(in, out, pool)));
+        menu.addItem("Check Sales Rollup", this::checkSalesRollup);
+    }
+
+    /**
+     * Compare sales_daily_rollup with purchased, and rebuild it if they differ
+     * and the manager agrees. Checkouts wait while it's rebuilt.
+     */
+    private Navigation checkSalesRollup() {
+        clear();
+        out.println("Checking the sales rollup...");
+        out.flush();
+        SalesRollup rollup = SalesRollup.forPool(pool);
+        try {
+            if (rollup.check()) {
+                out.println("The sales rollup is up to date.\n");
+            } else if (promptBool("The sales rollup is out of date. Rebuild it now? "
+                    + "Checkouts will wait until it's done")) {
+                out.println("Rebuilding...");
+                out.flush();
+                rollup.rebuild();
+                out.println("Sales rollup " + rollup + ".\n");
+            }
+        } catch (SQLException e) {
+            handleException(e);
+        }
+        pause();
+        return Navigation.stay();
+    }
+
+    private Navigation chooseLocation(Location.Type type) {
+        ChooseLocationInterface choose = new ChooseLocationInterface(type, in, out, pool);
+        choose.run();
+        if (choose.getLocation() == null) {
+            return Navigation.stay();
+        }
+        return Navigation.push(new ManageLocationInterface(choose.getLocation(), in, out, pool));
     }
 
     @Override
@@ -49,16 +80,19 @@ public class ManagerInterface extends UserInterface {
 
     @Override
     public void run() {
+        new Navigator().run(this);
+    }
+
+    @Override
+    public Navigation show() {
         clear();
 
-        MenuItem<Runnable> choice = menu.promptOptional();
+        MenuItem<Supplier<Navigation>> choice = menu.promptOptional();
         if (choice == null || choice.get() == null) {
-            return;
+            return Navigation.back();
         }
 
-        choice.get().run();
-
-        run();
+        return choice.get().get();
     }
     
 }
@@ -2,21 +2,31 @@ package com.johnkusner.cse241final.interfaces.manager;
 
 import java.io.PrintStream;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.Statement;
 import java.util.Scanner;
 
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Mappers;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.RowMapper;
 import com.johnkusner.cse241final.interfaces.UserInterface;
 import com.johnkusner.cse241final.menu.Menu;
 import com.johnkusner.cse241final.menu.MenuItem;
+import com.johnkusner.cse241final.nav.Navigation;
+import com.johnkusner.cse241final.nav.Navigator;
 import com.johnkusner.cse241final.objects.Customer;
 import com.johnkusner.cse241final.objects.Location;
 import com.johnkusner.cse241final.objects.Transaction;
 
 public class RecentTransactionsInterface extends UserInterface {
 	
-	public RecentTransactionsInterface(Scanner in, PrintStream out, Connection db) {
-		super(in, out, db);
+	private Query query;
+	private int id;
+	private String title;
+	
+	public RecentTransactionsInterface(Scanner in, PrintStream out, ConnectionPool pool) {
+		super(in, out, pool);
 	}
 
 	@Override
@@ -26,61 +36,52 @@ public class RecentTransactionsInterface extends UserInterface {
 	
 	@Override
 	public void run() {
+		new Navigator().run(this);
 	}
 
-    public void showForStore(Location loc) {
-        clear();
-        show("SELECT * FROM store_transactions "
-                    + "where location_id = " + loc.getId() + " "
-                    + "order by timestamp desc "
-                    + "fetch first 100 rows only",
-                    "Recent Transactions at \"" + loc.getName() + "\"");
+    public RecentTransactionsInterface forStore(Location loc) {
+        query = Query.STORE_TRANSACTIONS;
+        id = loc.getId();
+        title = "Recent Transactions at \"" + loc.getName() + "\"";
+        return this;
     }
     
-    public void showForCustomer(Customer cust) {
-        clear();
-        show("select * " + 
-                "from used_payment_method inner join transaction using (transaction_id) "
-                + "where payment_method_id in ( "
-                + "    select payment_method_id "
-                + "    from payment_method "
-                + "    where customer_id = " + cust.getId() + " " 
-                + ") "
-                + "order by timestamp desc "
-                + "fetch first 100 rows only",
-                "Recent Transactions from \"" + cust.getFullName() + "\" (Customer ID#" + cust.getId() + ")");
+    public RecentTransactionsInterface forCustomer(Customer cust) {
+        query = Query.CUSTOMER_TRANSACTIONS;
+        id = cust.getId();
+        title = "Recent Transactions from \"" + cust.getFullName() + "\" (Customer ID#" + cust.getId() + ")";
+        return this;
     }
 	
-	private void show(String query, String title) {
-	    try (Statement s = db.createStatement();
-                ResultSet r = s.executeQuery(query)) {
-            Menu<Transaction> trans = new Menu<Transaction>(title + "\nSelect a transaction to see more info.", Transaction.HEADER, this);
-            boolean foundAny = false;
-            
+	@Override
+	public Navigation show() {
+        clear();
+        Menu<Transaction> trans = new Menu<Transaction>(title + "\nSelect a transaction to see more info.", Transaction.HEADER, this);
+        
+	    try (Connection db = borrow();
+	            PreparedStatement s = query.prepare(db, id);
+                ResultSet r = s.executeQuery()) {
+            RowMapper.Bound<Transaction> rows = Mappers.TRANSACTION.bind(r);
             while (r.next()) {
-                foundAny = true;
-                
-                Transaction t = new Transaction(r);
+                Transaction t = rows.map();
                 
                 trans.addItem(t);
             }
-            
-            r.close();
-            
-            if (!foundAny) {
-                pause("No transactions were found. Press enter to continue.");
-                return;
-            }
-            
-            MenuItem<Transaction> chosen = trans.display();
-            if (chosen != null && chosen.get() != null) {
-                Transaction t = chosen.get();
-                new TransactionDetailInterface(t, in, out, db).run();
-                show(query, title);
-            }
         } catch (Exception e) {
             handleException(e);
+            return Navigation.back();
+        }
+        
+        if (trans.isEmpty()) {
+            pause("No transactions were found. Press enter to continue.");
+            return Navigation.back();
+        }
+        
+        MenuItem<Transaction> chosen = trans.display();
+        if (chosen == null || chosen.get() == null) {
+            return Navigation.back();
         }
+        return Navigation.push(new TransactionDetailInterface(chosen.get(), in, out, pool));
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,73 @@
+package com.johnkusner.cse241final.interfaces.manager;
+
+import java.io.PrintStream;
+import java.util.Scanner;
+
+import com.johnkusner.cse241final.Terminal;
+import com.johnkusner.cse241final.catalog.CategoryCache;
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.TransactionIds;
+import com.johnkusner.cse241final.interfaces.UserInterface;
+import com.johnkusner.cse241final.inventory.AvailabilityIndex;
+import com.johnkusner.cse241final.inventory.ReservationLedger;
+import com.johnkusner.cse241final.search.SearchService;
+import com.johnkusner.cse241final.stats.SalesColumns;
+import com.johnkusner.cse241final.stats.SalesCube;
+import com.johnkusner.cse241final.stats.SalesRollup;
+import com.johnkusner.cse241final.stats.StatisticsCache;
+import com.johnkusner.cse241final.stats.TopSellers;
+
+public class SystemStatusInterface extends UserInterface {
+
+    public SystemStatusInterface(Scanner in, PrintStream out, ConnectionPool pool) {
+        super(in, out, pool);
+    }
+
+    @Override
+    public String getInterfaceName() {
+        return "System Status";
+    }
+
+    @Override
+    public void run() {
+        clear();
+        out.println("System Status\n");
+        out.println("Connection pool:");
+        out.println("  " + pool.getStats());
+        SearchService search = SearchService.forPool(pool);
+        out.println("Product search index:");
+        out.println("  " + search.getStats());
+        out.println("Product search cache:");
+        out.println("  " + search.getCacheStats());
+        out.println("Category tree:");
+        out.println("  " + CategoryCache.forPool(pool));
+        out.println("Transaction ids:");
+        out.println("  " + TransactionIds.forPool(pool));
+        out.println("Warehouse availability:");
+        out.println("  " + AvailabilityIndex.forPool(pool));
+        out.println("Cart holds:");
+        out.println("  " + ReservationLedger.forPool(pool));
+        out.println("Sales rollup:");
+        out.println("  " + SalesRollup.forPool(pool));
+        // Started by the statistics interface, not here
+        out.println("Sales analytics:");
+        out.println("  " + notStarted(pool.existingService(SalesColumns.class)));
+        out.println("Top sellers:");
+        out.println("  " + notStarted(pool.existingService(TopSellers.class)));
+        out.println("Sales cube:");
+        out.println("  " + notStarted(pool.existingService(SalesCube.class)));
+        out.println("Statistics cache:");
+        out.println("  " + notStarted(pool.existingService(StatisticsCache.class)));
+        if (out instanceof Terminal) {
+            out.println("Terminal:");
+            out.println("  " + ((Terminal) out).getStats());
+        }
+        out.println();
+        pause();
+    }
+
+    private static String notStarted(Object service) {
+        return service == null ? "not started" : service.toString();
+    }
+
+}
@@ -2,10 +2,14 @@ package com.johnkusner.cse241final.interfaces.manager;
 
 import java.io.PrintStream;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.Statement;
 import java.util.Scanner;
 
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Mappers;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.RowMapper;
 import com.johnkusner.cse241final.interfaces.UserInterface;
 import com.johnkusner.cse241final.menu.Menu;
 import com.johnkusner.cse241final.objects.ProductSale;
@@ -15,8 +19,8 @@ public class TransactionDetailInterface extends UserInterface {
 
 	private Transaction trans;
 	
-	public TransactionDetailInterface(Transaction trans, Scanner in, PrintStream out, Connection db) {
-		super(in, out, db);
+	public TransactionDetailInterface(Transaction trans, Scanner in, PrintStream out, ConnectionPool pool) {
+		super(in, out, pool);
 		this.trans = trans;
 	}
 
@@ -28,25 +32,26 @@ public class TransactionDetailInterface extends UserInterface {
 	@Override
 	public void run() {
 		clear();
-		try (Statement s = db.createStatement();
-				ResultSet r = s.executeQuery("select product_id, product_name, unit_price * qty as total_sales, qty as amount_sold "
-						+ "from transaction natural join purchased natural join product "
-						+ "where transaction_id = " + trans.getId())) {
+		
+		Menu<ProductSale> soldStuff = new Menu<ProductSale>("Products Purchased in Transaction "
+		        + trans.getId() + " on " + trans.getFormattedTimestamp(), ProductSale.HEADER, this);
+		
+		try (Connection db = borrow();
+				PreparedStatement s = Query.TRANSACTION_DETAIL.prepare(db, trans.getId());
+				ResultSet r = s.executeQuery()) {
 			
-			Menu<ProductSale> soldStuff = new Menu<ProductSale>("Products Purchased in Transaction "
-			        + trans.getId() + " on " + trans.getFormattedTimestamp(), ProductSale.HEADER, this);
+			RowMapper.Bound<ProductSale> rows = Mappers.PRODUCT_SALE.bind(r);
 			while (r.next()) {
-				ProductSale sale = new ProductSale(r);
+				ProductSale sale = rows.map();
 				
 				soldStuff.addItem(sale);
 			}
-			
-			r.close();
-			
-			soldStuff.display();
 		} catch (Exception e) {
 			handleException(e);
+			return;
 		}
+		
+		soldStuff.display();
 	}
 
 }
\ No newline at end of file
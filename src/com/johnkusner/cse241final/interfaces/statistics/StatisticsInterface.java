@@ -1,16 +1,39 @@
 package com.johnkusner.cse241final.interfaces.statistics;
 
 import java.io.PrintStream;
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.Statement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
 
+import com.johnkusner.cse241final.Formats;
+import com.johnkusner.cse241final.catalog.CategoryCache;
+import com.johnkusner.cse241final.catalog.CategoryTree;
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Query;
 import com.johnkusner.cse241final.interfaces.UserInterface;
 import com.johnkusner.cse241final.menu.Menu;
 import com.johnkusner.cse241final.menu.MenuItem;
+import com.johnkusner.cse241final.nav.Navigation;
+import com.johnkusner.cse241final.nav.Navigator;
+import com.johnkusner.cse241final.nav.Screen;
+import com.johnkusner.cse241final.objects.Product;
 import com.johnkusner.cse241final.objects.ProductSale;
 import com.johnkusner.cse241final.objects.SalesTotals;
+import com.johnkusner.cse241final.objects.SliceTotals;
+import com.johnkusner.cse241final.search.SearchService;
+import com.johnkusner.cse241final.stats.SalesColumns;
+import com.johnkusner.cse241final.stats.SalesCube;
+import com.johnkusner.cse241final.stats.StatisticsCache;
+import com.johnkusner.cse241final.stats.TopSellers;
 
 public class StatisticsInterface extends UserInterface {
 
@@ -33,14 +56,30 @@ public class StatisticsInterface extends UserInterface {
 		}
 	}
 	
-	private Menu<Runnable> menu;
+	// How many the in-memory top sellers list, the views list them all
+	private static final int TOP_SELLERS_SHOWN = 100;
+	// How many rows of each list the dashboard shows
+	private static final int DASHBOARD_ROWS = 5;
 	
-	public StatisticsInterface(Scanner in, PrintStream out, Connection db) {
-		super(in, out, db);
+	private Menu<Screen> menu;
+	// What the sales cube screen is looking at, null when it isn't open
+	private SalesCube.Slice cubeSlice;
+	
+	public StatisticsInterface(Scanner in, PrintStream out, ConnectionPool pool) {
+		super(in, out, pool);
+		
+		// Starts loading the sales columns, and the top sellers and the
+		// cube built from them, in the background; nothing outside the
+		// statistics screens needs them
+		TopSellers.forPool(pool);
+		SalesCube.forPool(pool);
 		
 		menu = new Menu<>("Which statistics would you like to view?", this);
-		menu.addItem("Top selling products...", () -> showTopSellers());
-		menu.addItem("Sales totals...", () -> showSalesTotals());
+		menu.addItem("Dashboard", this::showDashboard);
+		menu.addItem("Top selling products...", this::showTopSellers);
+		menu.addItem("Sales totals...", this::showSalesTotals);
+		menu.addItem("Sales between dates...", this::showDateRange);
+		menu.addItem("Slice and dice sales...", this::showSalesCube);
 	}
 
 	@Override
@@ -50,18 +89,21 @@ public class StatisticsInterface extends UserInterface {
 	
 	@Override
 	public void run() {
+		new Navigator().run(this);
+	}
+	
+	@Override
+	public Navigation show() {
 		clear();
-		MenuItem<Runnable> choice = menu.promptOptional();
+		MenuItem<Screen> choice = menu.promptOptional();
 		if (choice == null) {
-			return;
+			return Navigation.back();
 		}
 		
-		choice.get().run();
-		
-		run();
+		return Navigation.push(choice.get());
 	}
 	
-	public void showTopSellers() {
+	public Navigation showTopSellers() {
 		Menu<TimeFrame> timeFrameMenu = new Menu<>("Top Sellers - Choose time frame", this);
 		timeFrameMenu.addItem("All time", TimeFrame.ALL_TIME);
 		timeFrameMenu.addItem("Past year", TimeFrame.YEAR);
@@ -72,58 +114,113 @@ public class StatisticsInterface extends UserInterface {
 		
 		MenuItem<TimeFrame> frameChoice = timeFrameMenu.promptOptional();
 		if (frameChoice == null) {
-			return;
+			return Navigation.back();
 		}
 
 		TimeFrame timeFrame = frameChoice.get();
 		
-		String query;
+		// Estimated by TopSellers, or the view (kept by StatisticsCache) when
+		// it's turned off
+		TopSellers topSellers = TopSellers.forPool(pool);
+		if (topSellers.isEnabled()) {
+			if (stillLoading(SalesColumns.forPool(pool))) {
+				return Navigation.stay();
+			}
+			TopSellers.Window window = TopSellers.Window.valueOf(timeFrame.name());
+			return showRanking("Top sellers (" + timeFrame + ")", topSellers.top(window, TOP_SELLERS_SHOWN),
+					true);
+		}
+		
+		Menu<ProductSale> sales = new Menu<>("Top sellers (" + timeFrame + ")", ProductSale.HEADER, this);
+		
+		try {
+			for (ProductSale sale : StatisticsCache.forPool(pool).topSellers(topSellersView(timeFrame))) {
+				sales.addItem(sale);
+			}
+		} catch (Exception e) {
+			handleException(e);
+		}
+		
+		sales.display();
 		
+		clear();
+		
+		return Navigation.stay();
+	}
+	
+	private static Query topSellersView(TimeFrame timeFrame) {
 		switch (timeFrame) {
 		case YEAR:
-			query = "SELECT * FROM top_selling_products_year";
-			break;
+			return Query.TOP_SELLERS_YEAR;
 		case QUARTER:
-			query = "SELECT * FROM top_selling_products_quarter";
-			break;
+			return Query.TOP_SELLERS_QUARTER;
 		case MONTH:
-			query = "SELECT * FROM top_selling_products_month";
-			break;
+			return Query.TOP_SELLERS_MONTH;
 		case WEEK:
-			query = "SELECT * FROM top_selling_products_day";
-			break;
+			return Query.TOP_SELLERS_WEEK;
 		case DAY:
-			query = "SELECT * FROM top_selling_products_day";
-			break;
+			return Query.TOP_SELLERS_DAY;
 		default:
-			query = "SELECT * FROM top_selling_products";
-			break;
+			return Query.TOP_SELLERS;
 		}
+	}
+	
+	/**
+	 * Show top sellers worked out in memory, with when their window starts
+	 * if showSince, and how far off the quantities may be when they aren't
+	 * exact.
+	 */
+	private Navigation showRanking(String title, TopSellers.Ranking ranking, boolean showSince) {
+		if (showSince && ranking.getSince() > 0) {
+			LocalDateTime since = LocalDateTime.ofInstant(Instant.ofEpochMilli(ranking.getSince()),
+					ZoneId.systemDefault());
+			title += " since " + Formats.date(since) + " " + Formats.time(since);
+		}
+		if (ranking.getMaxError() > 0) {
+			title += " - QTY within " + Formats.number(ranking.getMaxError());
+		}
+		Menu<ProductSale> sales = new Menu<>(title, ProductSale.HEADER, this);
 		
-		
-		try (Statement s = db.createStatement();
-				ResultSet r = s.executeQuery(query)) {
-			
-			Menu<ProductSale> sales = new Menu<>("Top sellers (" + timeFrame + ")", ProductSale.HEADER, this);
-			while (r.next()) {
-				ProductSale sale = new ProductSale(r);
-				
+		try {
+			for (ProductSale sale : productSales(ranking)) {
 				sales.addItem(sale);
 			}
-			
-			r.close();
-			
-			sales.display();
 		} catch (Exception e) {
 			handleException(e);
 		}
 		
+		sales.display();
+		
 		clear();
 		
-		showTopSellers();
+		return Navigation.stay();
+	}
+	
+	/**
+	 * The ranking's sellers with their product names.
+	 */
+	private List<ProductSale> productSales(TopSellers.Ranking ranking) throws SQLException {
+		List<TopSellers.Seller> sellers = ranking.getSellers();
+		int[] ids = new int[sellers.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = sellers.get(i).getProductId();
+		}
+		Map<Integer, String> names = new HashMap<>();
+		for (Product p : SearchService.forPool(pool).lookup(ids)) {
+			names.put(p.getId(), p.getName());
+		}
+		List<ProductSale> sales = new ArrayList<>(sellers.size());
+		for (TopSellers.Seller seller : sellers) {
+			String name = names.get(seller.getProductId());
+			if (name != null) {
+				sales.add(new ProductSale(seller.getProductId(), name,
+						(int) seller.getAmountSold(), seller.getTotalSales()));
+			}
+		}
+		return sales;
 	}
 	
-	public void showSalesTotals() {
+	public Navigation showSalesTotals() {
 		Menu<TimeFrame> timeFrameMenu = new Menu<>("Sales totals - Choose time frame", this);
 		timeFrameMenu.addItem("Per day", TimeFrame.DAY);
 		timeFrameMenu.addItem("Per week", TimeFrame.WEEK);
@@ -132,49 +229,354 @@ public class StatisticsInterface extends UserInterface {
 		
 		MenuItem<TimeFrame> frameChoice = timeFrameMenu.promptOptional();
 		if (frameChoice == null) {
-			return;
+			return Navigation.back();
 		}
 
 		TimeFrame timeFrame = frameChoice.get();
 		
-		String query;
+		List<SalesTotals> totals = Collections.emptyList();
+		try {
+			totals = salesTotals(timeFrame);
+		} catch (Exception e) {
+			handleException(e);
+		}
+		return showTotals("Sales totals (per " + timeFrame + ")", totals);
+	}
+	
+	/**
+	 * Sales totals from the sales columns, or the views (kept by
+	 * StatisticsCache) while the columns are loading or turned off.
+	 */
+	private List<SalesTotals> salesTotals(TimeFrame timeFrame) throws SQLException {
+		List<SalesTotals> inMemory = SalesColumns.forPool(pool).totals(period(timeFrame),
+				Long.MIN_VALUE, Long.MAX_VALUE);
+		if (inMemory != null) {
+			return inMemory;
+		}
+		return StatisticsCache.forPool(pool).totals(period(timeFrame));
+	}
+	
+	/**
+	 * The best count top sellers the same way showTopSellers finds them,
+	 * from the views while TopSellers is loading rather than waiting.
+	 */
+	private List<ProductSale> topSellers(TimeFrame timeFrame, int count) throws SQLException {
+		TopSellers.Window window = TopSellers.Window.valueOf(timeFrame.name());
+		TopSellers.Ranking ranking = TopSellers.forPool(pool).top(window, count);
+		if (ranking != null) {
+			return productSales(ranking);
+		}
+		List<ProductSale> sales = StatisticsCache.forPool(pool).topSellers(topSellersView(timeFrame));
+		return sales.subList(0, Math.min(count, sales.size()));
+	}
+	
+	/**
+	 * Top sellers and sales totals on one screen. They're loaded at the same
+	 * time by StatisticsCache.loadAll(), those read from the views each on
+	 * its own pooled connection, so it takes about as long as the slowest of
+	 * them rather than all of them added up.
+	 */
+	public Navigation showDashboard() {
+		List<Callable<Panel>> loads = new ArrayList<>();
+		for (TimeFrame timeFrame : new TimeFrame[] { TimeFrame.DAY, TimeFrame.WEEK, TimeFrame.MONTH }) {
+			loads.add(panel("Top sellers (past " + timeFrame + ")", ProductSale.HEADER,
+					() -> topSellers(timeFrame, DASHBOARD_ROWS)));
+		}
+		for (TimeFrame timeFrame : new TimeFrame[] { TimeFrame.DAY, TimeFrame.WEEK, TimeFrame.MONTH,
+				TimeFrame.QUARTER }) {
+			loads.add(panel("Sales totals (per " + timeFrame + ")", SalesTotals.HEADER,
+					() -> salesTotals(timeFrame)));
+		}
 		
+		clear();
+		try {
+			long start = System.nanoTime();
+			List<Panel> panels = StatisticsCache.forPool(pool).loadAll(loads);
+			long elapsed = System.nanoTime() - start;
+			long separately = 0;
+			for (Panel panel : panels) {
+				separately += panel.nanos;
+			}
+			out.printf("Dashboard - loaded in %,d ms (%,d ms one after another)%n",
+					elapsed / 1000000, separately / 1000000);
+			
+			for (Panel panel : panels) {
+				out.println();
+				out.println(panel.title);
+				out.println(panel.header);
+				for (int i = 0; i < Math.min(DASHBOARD_ROWS, panel.rows.size()); i++) {
+					out.println(panel.rows.get(i));
+				}
+				if (panel.rows.isEmpty()) {
+					out.println("No sales yet.");
+				}
+			}
+		} catch (Exception e) {
+			handleException(e);
+			return Navigation.back();
+		}
+		pause();
+		
+		return Navigation.back();
+	}
+	
+	private static Callable<Panel> panel(String title, String header, Callable<List<?>> rows) {
+		return () -> {
+			long start = System.nanoTime();
+			List<?> loaded = rows.call();
+			return new Panel(title, header, loaded, System.nanoTime() - start);
+		};
+	}
+	
+	/**
+	 * One of the dashboard's lists and how long it took to load.
+	 */
+	private static class Panel {
+		final String title;
+		final String header;
+		final List<?> rows;
+		final long nanos;
+		
+		Panel(String title, String header, List<?> rows, long nanos) {
+			this.title = title;
+			this.header = header;
+			this.rows = rows;
+			this.nanos = nanos;
+		}
+	}
+	
+	/**
+	 * Sales totals and top sellers between two dates, from the sales
+	 * columns only.
+	 */
+	public Navigation showDateRange() {
+		SalesColumns columns = SalesColumns.forPool(pool);
+		if (!columns.isEnabled()) {
+			out.println("Sales between dates needs the sales columns, which are turned off.");
+			pause();
+			return Navigation.back();
+		}
+		if (stillLoading(columns)) {
+			return Navigation.back();
+		}
+		
+		LocalDate from = promptDate("From date (MM/DD/YYYY)");
+		LocalDate to = promptDate("Through date (MM/DD/YYYY)");
+		if (to.isBefore(from)) {
+			LocalDate swap = from;
+			from = to;
+			to = swap;
+		}
+		
+		Menu<TimeFrame> timeFrameMenu = new Menu<>("Sales totals - Choose time frame", this);
+		timeFrameMenu.addItem("Per day", TimeFrame.DAY);
+		timeFrameMenu.addItem("Per week", TimeFrame.WEEK);
+		timeFrameMenu.addItem("Per month", TimeFrame.MONTH);
+		timeFrameMenu.addItem("Per quarter", TimeFrame.QUARTER);
+		
+		MenuItem<TimeFrame> frameChoice = timeFrameMenu.promptOptional();
+		if (frameChoice == null) {
+			return Navigation.back();
+		}
+		TimeFrame timeFrame = frameChoice.get();
+		
+		ZoneId zone = ZoneId.systemDefault();
+		long fromSecond = from.atStartOfDay(zone).toEpochSecond();
+		long toSecond = to.plusDays(1).atStartOfDay(zone).toEpochSecond();
+		String range = Formats.date(from) + " - " + Formats.date(to);
+		
+		showTotals("Sales totals (per " + timeFrame + ", " + range + ")",
+				columns.totals(period(timeFrame), fromSecond, toSecond));
+		return showRanking("Top sellers (" + range + ")",
+				columns.topSellers(fromSecond, toSecond, TOP_SELLERS_SHOWN), false);
+	}
+	
+	/**
+	 * Whether the sales columns are on but not loaded yet, telling the user
+	 * so if they are.
+	 */
+	private boolean stillLoading(SalesColumns columns) {
+		if (!columns.isEnabled() || columns.isReady()) {
+			return false;
+		}
+		out.println("Sales are still being loaded, please try again in a moment.");
+		pause();
+		return true;
+	}
+	
+	private Navigation showTotals(String title, List<SalesTotals> totals) {
+		Menu<SalesTotals> sales = new Menu<>(title, SalesTotals.HEADER, this);
+		for (SalesTotals t : totals) {
+			sales.addItem(t);
+		}
+		
+		sales.display();
+		
+		clear();
+		
+		return Navigation.stay();
+	}
+	
+	private static SalesColumns.Period period(TimeFrame timeFrame) {
 		switch (timeFrame) {
 		case DAY:
-			query = "SELECT * FROM sales_totals_per_day";
-			break;
+			return SalesColumns.Period.DAY;
 		case WEEK:
-			query = "SELECT * FROM sales_totals_per_week";
-			break;
+			return SalesColumns.Period.WEEK;
 		case MONTH:
-			query = "SELECT * FROM sales_totals_per_month";
-			break;
+			return SalesColumns.Period.MONTH;
 		default:
-			query = "SELECT * FROM sales_totals_per_quarter";
-			break;
+			return SalesColumns.Period.QUARTER;
+		}
+	}
+	
+	/**
+	 * Sales by category, location, product or period within a slice of
+	 * categories, locations and dates, from the in-memory SalesCube. Choosing
+	 * a category, location or period in a breakdown narrows the slice to it.
+	 */
+	public Navigation showSalesCube() {
+		SalesColumns columns = SalesColumns.forPool(pool);
+		SalesCube cube = SalesCube.forPool(pool);
+		if (!columns.isEnabled()) {
+			out.println("Slicing sales needs the sales columns, which are turned off.");
+			pause();
+			return Navigation.back();
+		}
+		if (stillLoading(columns)) {
+			return Navigation.back();
+		}
+		if (!cube.isReady()) {
+			out.println("The sales cube is turned off.");
+			pause();
+			return Navigation.back();
+		}
+		if (cubeSlice == null) {
+			cubeSlice = SalesCube.Slice.ALL;
 		}
 		
+		clear();
+		Menu<Screen> actions = new Menu<>("Sales of " + describe(cube, cubeSlice), this);
+		actions.addItem("By category", () -> showSlice(cube, SalesCube.By.CATEGORY));
+		actions.addItem("By location", () -> showSlice(cube, SalesCube.By.LOCATION));
+		actions.addItem("By product", () -> showSlice(cube, SalesCube.By.PRODUCT));
+		actions.addItem("Per day", () -> showSlice(cube, SalesCube.By.DAY));
+		actions.addItem("Per week", () -> showSlice(cube, SalesCube.By.WEEK));
+		actions.addItem("Per month", () -> showSlice(cube, SalesCube.By.MONTH));
+		actions.addItem("Per quarter", () -> showSlice(cube, SalesCube.By.QUARTER));
+		if (cubeSlice.getCategoryId() != SalesCube.ALL_CATEGORIES) {
+			actions.addItem("Up to the parent category", this::rollUpCategory);
+		}
+		if (cubeSlice.getLocationId() != SalesCube.ALL_LOCATIONS) {
+			actions.addItem("All locations", () -> {
+				cubeSlice = cubeSlice.withLocation(SalesCube.ALL_LOCATIONS);
+				return Navigation.stay();
+			});
+		}
+		actions.addItem("Between dates...", () -> {
+			LocalDate from = promptDate("From date (MM/DD/YYYY)");
+			LocalDate to = promptDate("Through date (MM/DD/YYYY)");
+			cubeSlice = to.isBefore(from) ? cubeSlice.between(to, from) : cubeSlice.between(from, to);
+			return Navigation.stay();
+		});
+		if (cubeSlice.getFrom() != null) {
+			actions.addItem("All dates", () -> {
+				cubeSlice = cubeSlice.between(null, null);
+				return Navigation.stay();
+			});
+		}
 		
-		try (Statement s = db.createStatement();
-				ResultSet r = s.executeQuery(query)) {
+		MenuItem<Screen> choice = actions.promptOptional();
+		if (choice == null) {
+			cubeSlice = null;
+			return Navigation.back();
+		}
+		choice.get().show();
+		return Navigation.stay();
+	}
+	
+	private Navigation showSlice(SalesCube cube, SalesCube.By by) {
+		try {
+			List<SalesCube.Cell> cells = cube.query(cubeSlice, by);
+			String title = "Sales by " + by.name().toLowerCase() + " of " + describe(cube, cubeSlice);
+			Menu<SliceTotals> rows = new Menu<>(title, SliceTotals.HEADER, this);
 			
-			Menu<SalesTotals> sales = new Menu<>("Sales totals (per " + timeFrame + ")", SalesTotals.HEADER, this);
-			while (r.next()) {
-				SalesTotals sale = new SalesTotals(r);
-				
-				sales.addItem(sale);
+			Map<Integer, String> names = new HashMap<>();
+			if (by == SalesCube.By.PRODUCT) {
+				// Names for the best 1,000, plenty to page through
+				int[] ids = new int[Math.min(cells.size(), 1000)];
+				for (int i = 0; i < ids.length; i++) {
+					ids[i] = cells.get(i).getKey();
+				}
+				for (Product p : SearchService.forPool(pool).lookup(ids)) {
+					names.put(p.getId(), p.getName());
+				}
+			}
+			for (SalesCube.Cell cell : cells) {
+				String name = by == SalesCube.By.PRODUCT ? names.get(cell.getKey()) : cell.getLabel();
+				if (name != null) {
+					rows.addItem(new SliceTotals(cell.getKey(), name, cell.getAmountSold(), cell.getTotalSales()));
+				}
+			}
+			if (rows.isEmpty()) {
+				out.println("No sales in " + describe(cube, cubeSlice) + ".");
+				pause();
+				return Navigation.stay();
 			}
 			
-			r.close();
-			
-			sales.display();
+			MenuItem<SliceTotals> chosen = by == SalesCube.By.PRODUCT ? rows.display() : rows.promptOptional();
+			if (chosen != null && chosen.get() != null) {
+				int key = chosen.get().getKey();
+				switch (by) {
+				case CATEGORY:
+					cubeSlice = cubeSlice.withCategory(key);
+					break;
+				case LOCATION:
+					cubeSlice = cubeSlice.withLocation(key);
+					break;
+				case PRODUCT:
+					break;
+				default:
+					LocalDate start = LocalDate.ofEpochDay(key);
+					cubeSlice = cubeSlice.between(start, SalesCube.lastDay(by, start));
+				}
+			}
 		} catch (Exception e) {
 			handleException(e);
 		}
-		
 		clear();
-		
-		showSalesTotals();
+		return Navigation.stay();
+	}
+	
+	private Navigation rollUpCategory() {
+		try {
+			CategoryTree tree = CategoryCache.forPool(pool).get();
+			int node = tree.node(cubeSlice.getCategoryId());
+			int parent = node < 0 ? -1 : tree.getParent(node);
+			cubeSlice = cubeSlice.withCategory(parent < 0 ? SalesCube.ALL_CATEGORIES
+					: tree.getCategory(parent).getId());
+		} catch (Exception e) {
+			handleException(e);
+		}
+		return Navigation.stay();
+	}
+	
+	private String describe(SalesCube cube, SalesCube.Slice slice) {
+		String category = "all categories";
+		if (slice.getCategoryId() != SalesCube.ALL_CATEGORIES) {
+			try {
+				CategoryTree tree = CategoryCache.forPool(pool).get();
+				int node = tree.node(slice.getCategoryId());
+				category = node < 0 ? "category " + slice.getCategoryId() : tree.getCategory(node).getName();
+			} catch (Exception e) {
+				category = "category " + slice.getCategoryId();
+			}
+		}
+		String location = slice.getLocationId() == SalesCube.ALL_LOCATIONS ? "all locations"
+				: cube.locationName(slice.getLocationId());
+		String dates = slice.getFrom() == null ? "all time"
+				: Formats.date(slice.getFrom()) + " - " + Formats.date(slice.getTo());
+		return category + ", " + location + ", " + dates;
 	}
 
 }
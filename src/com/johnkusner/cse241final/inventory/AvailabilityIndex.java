@@ -0,0 +1,231 @@
+package com.johnkusner.cse241final.inventory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.objects.Product;
+import com.johnkusner.cse241final.objects.Stock;
+
+/**
+ * Warehouse stock of each product as price tiers with summed quantities,
+ * what the warehouse_stock view computes, kept in memory. A product's tiers
+ * are read once with WAREHOUSE_TIERS and then kept up to date by the app's
+ * own changes: checkouts take what they bought off its tier, and ordering
+ * inventory or changing a price drops the product so it's read again.
+ * Products with no stock are kept too, so views of sold-out products don't
+ * query at all.
+ *
+ * Changes made outside this app are picked up when an entry is older than
+ * brc.availability.ttl seconds (default 60). At most brc.availability.size
+ * products (default 10000) are kept.
+ */
+public class AvailabilityIndex implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final long ttlMs;
+    private final int maxEntries;
+    private final ConcurrentHashMap<Integer, Tiers> products = new ConcurrentHashMap<>();
+    // Bumped by every change, a load that overlaps one isn't kept
+    private final AtomicLong changes = new AtomicLong();
+    // Checkouts between purchasing() and purchaseDone(), loads meanwhile
+    // may see stock that purchased() is about to take off again
+    private final AtomicInteger purchasing = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder soldOutHits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * An index keeping each product for ttlMs, and at most maxEntries of
+     * them. A maxEntries of 0 disables it.
+     */
+    public AvailabilityIndex(ConnectionPool pool, long ttlMs, int maxEntries) {
+        this.pool = pool;
+        this.ttlMs = ttlMs;
+        this.maxEntries = maxEntries;
+    }
+
+    public static AvailabilityIndex forPool(ConnectionPool pool) {
+        return pool.service(AvailabilityIndex.class, p -> new AvailabilityIndex(p,
+                Long.getLong("brc.availability.ttl", 60) * 1000,
+                Integer.getInteger("brc.availability.size", 10000)));
+    }
+
+    /**
+     * The product's warehouse stock, cheapest first, empty if it's sold out.
+     */
+    public List<Stock> warehouseStock(Product product) throws SQLException {
+        long now = System.currentTimeMillis();
+        Tiers tiers = products.get(product.getId());
+        if (tiers != null && ttlMs > 0 && now - tiers.loaded > ttlMs) {
+            products.remove(product.getId(), tiers);
+            expirations.increment();
+            tiers = null;
+        }
+        if (tiers == null) {
+            tiers = load(product.getId(), now);
+        } else if (tiers.prices.length == 0) {
+            soldOutHits.increment();
+        } else {
+            hits.increment();
+        }
+
+        List<Stock> stock = new ArrayList<>(tiers.prices.length);
+        for (int i = 0; i < tiers.prices.length; i++) {
+            stock.add(new Stock(product.getId(), product.getName(), tiers.qtys[i], tiers.prices[i]));
+        }
+        return stock;
+    }
+
+    /**
+     * A checkout is about to commit purchases from the warehouses. Call
+     * before committing, then purchased() for each line and purchaseDone(),
+     * also if the commit fails.
+     */
+    public void purchasing() {
+        purchasing.incrementAndGet();
+        changes.incrementAndGet();
+    }
+
+    /**
+     * A committed checkout bought qty of the product at unitPrice from the
+     * warehouses.
+     */
+    public void purchased(int productId, double unitPrice, int qty) {
+        changes.incrementAndGet();
+        products.computeIfPresent(productId, (id, tiers) -> {
+            updates.increment();
+            return tiers.minus(unitPrice, qty);
+        });
+    }
+
+    public void purchaseDone() {
+        changes.incrementAndGet();
+        purchasing.decrementAndGet();
+    }
+
+    /**
+     * The product's stock changed some other way, read it again next time.
+     */
+    public void stockChanged(int productId) {
+        changes.incrementAndGet();
+        if (products.remove(productId) != null) {
+            invalidations.increment();
+        }
+    }
+
+    private Tiers load(int productId, long now) throws SQLException {
+        long before = changes.get();
+        double[] prices = new double[4];
+        int[] qtys = new int[4];
+        int n = 0;
+        try (Connection db = pool.borrow();
+                PreparedStatement s = Query.WAREHOUSE_TIERS.prepare(db, productId);
+                ResultSet r = s.executeQuery()) {
+            while (r.next()) {
+                if (n == prices.length) {
+                    prices = Arrays.copyOf(prices, n * 2);
+                    qtys = Arrays.copyOf(qtys, n * 2);
+                }
+                prices[n] = r.getDouble(1);
+                qtys[n] = r.getInt(2);
+                n++;
+            }
+        }
+        loads.increment();
+
+        Tiers tiers = new Tiers(Arrays.copyOf(prices, n), Arrays.copyOf(qtys, n), now);
+        if (maxEntries > 0 && purchasing.get() == 0 && changes.get() == before) {
+            if (products.size() >= maxEntries) {
+                evict(now);
+            }
+            products.put(productId, tiers);
+        }
+        return tiers;
+    }
+
+    /**
+     * Make room: drop the expired entries, or any if none have.
+     */
+    private void evict(long now) {
+        int excess = products.size() - maxEntries + 1;
+        for (Iterator<Tiers> it = products.values().iterator(); it.hasNext();) {
+            if (now - it.next().loaded > ttlMs) {
+                it.remove();
+                expirations.increment();
+                excess--;
+            }
+        }
+        for (Iterator<Tiers> it = products.values().iterator(); excess > 0 && it.hasNext(); excess--) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    @Override
+    public void close() {
+        // Nothing runs in the background
+    }
+
+    public String toString() {
+        long soldOut = products.values().stream().filter(t -> t.prices.length == 0).count();
+        return String.format("%,d/%,d products (%,d sold out) | hits %,d, sold out hits %,d, loads %,d"
+                + " | updated %,d, invalidated %,d, expired %,d",
+                products.size(), maxEntries, soldOut, hits.sum(), soldOutHits.sum(), loads.sum(),
+                updates.sum(), invalidations.sum(), expirations.sum());
+    }
+
+    /**
+     * One product's tiers, never changed once made.
+     */
+    private static final class Tiers {
+        final double[] prices;
+        final int[] qtys;
+        final long loaded;
+
+        Tiers(double[] prices, int[] qtys, long loaded) {
+            this.prices = prices;
+            this.qtys = qtys;
+            this.loaded = loaded;
+        }
+
+        /**
+         * These tiers with qty fewer at unitPrice, dropping the tier once
+         * it's empty.
+         */
+        Tiers minus(double unitPrice, int qty) {
+            for (int i = 0; i < prices.length; i++) {
+                if (Math.round(prices[i] * 100) != Math.round(unitPrice * 100)) {
+                    continue;
+                }
+                if (qtys[i] > qty) {
+                    int[] left = qtys.clone();
+                    left[i] -= qty;
+                    return new Tiers(prices, left, loaded);
+                }
+                double[] p = new double[prices.length - 1];
+                int[] q = new int[prices.length - 1];
+                System.arraycopy(prices, 0, p, 0, i);
+                System.arraycopy(prices, i + 1, p, i, p.length - i);
+                System.arraycopy(qtys, 0, q, 0, i);
+                System.arraycopy(qtys, i + 1, q, i, q.length - i);
+                return new Tiers(p, q, loaded);
+            }
+            return this;
+        }
+    }
+}
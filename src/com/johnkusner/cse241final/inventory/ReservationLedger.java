@@ -0,0 +1,276 @@
+package com.johnkusner.cse241final.inventory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+
+/**
+ * Soft holds on stock for the carts of everyone using one connection pool.
+ * Adding to a cart holds that quantity of a (location, product, unit price)
+ * for a while, and nobody else is offered held units until the hold is
+ * released or expires. Holds live only in memory: they keep customers of
+ * this app from filling carts with the same units, so fewer checkouts find
+ * their items sold out and roll back.
+ *
+ * Location 0 stands for the warehouses as a whole, which is how online
+ * orders see stock. Expired holds are dropped whenever their stock is
+ * looked at, and by a background sweep.
+ */
+public class ReservationLedger implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final long ttlMs;
+    private final ConcurrentHashMap<Key, List<Hold>> holds = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+
+    private final LongAdder placed = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    // Checkouts whose every line still had its hold, and the rest
+    private final Outcomes held = new Outcomes();
+    private final Outcomes unheld = new Outcomes();
+
+    /**
+     * A ledger keeping holds for ttlMs, or not keeping any when it is 0.
+     */
+    public ReservationLedger(ConnectionPool pool, long ttlMs) {
+        this.pool = pool;
+        this.ttlMs = ttlMs;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reservation-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        if (ttlMs > 0) {
+            long every = Math.max(1000, Math.min(ttlMs, 60_000));
+            sweeper.scheduleWithFixedDelay(this::sweep, every, every, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Holds last brc.hold.ttl seconds (default 600), 0 turns them off.
+     */
+    public static ReservationLedger forPool(ConnectionPool pool) {
+        return pool.service(ReservationLedger.class,
+                p -> new ReservationLedger(p, Long.getLong("brc.hold.ttl", 600) * 1000));
+    }
+
+    /**
+     * How much of stockQty units the holder can have, after everyone
+     * else's holds.
+     */
+    public int available(Object holder, int locationId, int productId, double unitPrice, int stockQty) {
+        List<Hold> tier = holds.get(new Key(locationId, productId, unitPrice));
+        if (tier == null) {
+            return stockQty;
+        }
+        synchronized (tier) {
+            return Math.max(0, stockQty - heldByOthers(tier, holder, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Hold up to qty of the stockQty units for the holder, replacing any
+     * hold it already had on them and starting its TTL over. Returns how
+     * many were held, less than qty if others got to them first.
+     */
+    public int hold(Object holder, int locationId, int productId, double unitPrice, int qty, int stockQty) {
+        if (ttlMs <= 0) {
+            return Math.min(qty, stockQty);
+        }
+        Key key = new Key(locationId, productId, unitPrice);
+        while (true) {
+            List<Hold> tier = holds.computeIfAbsent(key, k -> new ArrayList<>());
+            synchronized (tier) {
+                // The sweep dropped this list while we waited, use the new one
+                if (holds.get(key) != tier) {
+                    continue;
+                }
+                long now = System.currentTimeMillis();
+                int granted = Math.min(qty, Math.max(0, stockQty - heldByOthers(tier, holder, now)));
+                tier.removeIf(h -> h.holder == holder);
+                if (granted > 0) {
+                    tier.add(new Hold(holder, granted, now + ttlMs));
+                    placed.increment();
+                }
+                if (granted < qty) {
+                    refused.increment();
+                }
+                return granted;
+            }
+        }
+    }
+
+    /**
+     * Whether the holder still has a live hold on at least qty units.
+     */
+    public boolean isHeld(Object holder, int locationId, int productId, double unitPrice, int qty) {
+        if (ttlMs <= 0) {
+            return false;
+        }
+        List<Hold> tier = holds.get(new Key(locationId, productId, unitPrice));
+        if (tier == null) {
+            return false;
+        }
+        synchronized (tier) {
+            long now = System.currentTimeMillis();
+            for (Hold h : tier) {
+                if (h.holder == holder && h.expires > now) {
+                    return h.qty >= qty;
+                }
+            }
+            return false;
+        }
+    }
+
+    public void release(Object holder, int locationId, int productId, double unitPrice) {
+        List<Hold> tier = holds.get(new Key(locationId, productId, unitPrice));
+        if (tier != null) {
+            synchronized (tier) {
+                if (tier.removeIf(h -> h.holder == holder)) {
+                    released.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop every hold the holder has, when it checks out or leaves.
+     */
+    public void releaseAll(Object holder) {
+        for (List<Hold> tier : holds.values()) {
+            synchronized (tier) {
+                for (Iterator<Hold> it = tier.iterator(); it.hasNext();) {
+                    if (it.next().holder == holder) {
+                        it.remove();
+                        released.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Count how a checkout went: whether all its lines were covered by live
+     * holds, and whether it bought everything, some of it, or nothing.
+     */
+    public void checkedOut(boolean allHeld, int wanted, int got) {
+        Outcomes o = allHeld ? held : unheld;
+        o.checkouts.increment();
+        if (got == 0) {
+            o.rolledBack.increment();
+        } else if (got < wanted) {
+            o.partial.increment();
+        }
+    }
+
+    private int heldByOthers(List<Hold> tier, Object holder, long now) {
+        int qty = 0;
+        for (Iterator<Hold> it = tier.iterator(); it.hasNext();) {
+            Hold h = it.next();
+            if (h.expires <= now) {
+                it.remove();
+                expired.increment();
+            } else if (h.holder != holder) {
+                qty += h.qty;
+            }
+        }
+        return qty;
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Key, List<Hold>> e : holds.entrySet()) {
+            List<Hold> tier = e.getValue();
+            synchronized (tier) {
+                heldByOthers(tier, null, now);
+                if (tier.isEmpty()) {
+                    holds.remove(e.getKey(), tier);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    public String toString() {
+        int count = 0;
+        int units = 0;
+        long now = System.currentTimeMillis();
+        for (List<Hold> tier : holds.values()) {
+            synchronized (tier) {
+                for (Hold h : tier) {
+                    if (h.expires > now) {
+                        count++;
+                        units += h.qty;
+                    }
+                }
+            }
+        }
+        return String.format("%s | %d holds on %,d units | placed %,d, short %,d, released %,d, expired %,d%n"
+                + "  checkouts with live holds: %s%n  checkouts without: %s",
+                ttlMs <= 0 ? "off" : (ttlMs / 1000) + "s TTL", count, units, placed.sum(), refused.sum(),
+                released.sum(), expired.sum(), held, unheld);
+    }
+
+    private static final class Key {
+        final int locationId;
+        final int productId;
+        final long cents;
+
+        Key(int locationId, int productId, double unitPrice) {
+            this.locationId = locationId;
+            this.productId = productId;
+            this.cents = Math.round(unitPrice * 100);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return locationId == k.locationId && productId == k.productId && cents == k.cents;
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * locationId + productId) * 31 + Long.hashCode(cents);
+        }
+    }
+
+    private static final class Hold {
+        final Object holder;
+        final int qty;
+        final long expires;
+
+        Hold(Object holder, int qty, long expires) {
+            this.holder = holder;
+            this.qty = qty;
+            this.expires = expires;
+        }
+    }
+
+    private static final class Outcomes {
+        final LongAdder checkouts = new LongAdder();
+        final LongAdder rolledBack = new LongAdder();
+        final LongAdder partial = new LongAdder();
+
+        public String toString() {
+            long n = checkouts.sum();
+            return String.format("%,d, %,d rolled back (%.1f%%), %,d short", n, rolledBack.sum(),
+                    n == 0 ? 0.0 : 100.0 * rolledBack.sum() / n, partial.sum());
+        }
+    }
+}
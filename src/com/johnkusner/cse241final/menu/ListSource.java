@@ -0,0 +1,25 @@
+package com.johnkusner.cse241final.menu;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The default source, items added to the Menu up front.
+ */
+class ListSource<T> implements MenuSource<T> {
+    private final List<MenuItem<T>> items = new ArrayList<>();
+
+    void add(MenuItem<T> item) {
+        items.add(item);
+    }
+
+    @Override
+    public MenuItem<T> get(int index) {
+        return index < items.size() ? items.get(index) : null;
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+}
@@ -1,25 +1,41 @@
 package com.johnkusner.cse241final.menu;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.johnkusner.cse241final.IOHandler;
 
 public class Menu<T> {
 
-    private final int PAGE_SIZE = 10;
+    public static final int PAGE_SIZE = 10;
+    
+    // Enough to page back and forth over a few pages without re-rendering
+    private static final int LABEL_CACHE_SIZE = PAGE_SIZE * 5;
     
     private final String NEXT_PAGE = "n";
     private final String PREV_PAGE = "p";
     private final String DONE = "x";
     
+    private static final int NEXT = -2;
+    private static final int PREV = -3;
+    
     private IOHandler io;
-    private List<MenuItem<T>> items;
+    private ListSource<T> items;
+    private MenuSource<T> source;
+    private Map<MenuItem<T>, String> labels = new LinkedHashMap<MenuItem<T>, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<MenuItem<T>, String> eldest) {
+            return size() > LABEL_CACHE_SIZE;
+        }
+    };
     private String prompt;
     private String header;
     
     public Menu(String prompt, String header, IOHandler io) {
-        items = new ArrayList<>();
+        items = new ListSource<>();
+        source = items;
         this.prompt = prompt;
         this.header = header;
         this.io = io;
@@ -39,6 +55,14 @@ public class Menu<T> {
     	return this;
     }
     
+    /**
+     * Load items from the given source instead of the ones added with addItem.
+     */
+    public Menu<T> setSource(MenuSource<T> source) {
+        this.source = source;
+        return this;
+    }
+    
     public Menu<T> addItem(MenuItem<T> item) {
         this.items.add(item);
         return this;
@@ -54,6 +78,17 @@ public class Menu<T> {
         return this;
     }
     
+    public boolean isEmpty() {
+        return source.get(0) == null;
+    }
+    
+    /**
+     * Number of items, or -1 if the source doesn't know yet.
+     */
+    public int size() {
+        return source.size();
+    }
+    
     public MenuItem<T> prompt() {
     	return prompt(false);
     }
@@ -63,43 +98,72 @@ public class Menu<T> {
     }
     
     private MenuItem<T> prompt(boolean showDone) {
-        if (items.isEmpty()) {
+        List<MenuItem<T>> first = loadPage(0);
+        if (first == null) {
+            return null;
+        } else if (first.isEmpty()) {
             io.out().println("Data is empty.");
             return null;
-        } else if (items.size() == 1 && !showDone) {
-            return items.get(0);
+        } else if (first.size() == 1 && !showDone) {
+            return first.get(0);
         }
         
         int choice = displayPage(0, showDone);
         if (choice >= 0) {
-        	return items.get(choice);        	
+        	return load(choice);        	
         }
         return null;
     }
     
     public MenuItem<T> display() {
-        if (items.isEmpty()) {
+        List<MenuItem<T>> first = loadPage(0);
+        if (first == null) {
+            return null;
+        } else if (first.isEmpty()) {
             io.out().println("Data is empty");
             return null;
         }
         int result = displayPage(0, true);
         if (result >= 0) {
-            return items.get(result);
+            return load(result);
         }
         return null;
     }
     
     private int displayPage(int startIndex, boolean showDone) {
-        io.clear();
-        io.out().println(prompt);
-
-        int pageSize = Math.min(items.size() - startIndex, PAGE_SIZE);
+        while (true) {
+            int choice = showPage(startIndex, showDone);
+            if (choice == NEXT) {
+                startIndex += PAGE_SIZE;
+            } else if (choice == PREV) {
+                startIndex -= PAGE_SIZE;
+            } else {
+                return choice;
+            }
+        }
+    }
+    
+    /**
+     * Show one page, returning the chosen index, -1 for exit, or NEXT/PREV.
+     */
+    private int showPage(int startIndex, boolean showDone) {
+        // Only this page (and whether there is another) is loaded from the source
+        List<MenuItem<T>> page = loadPage(startIndex);
+        if (page == null) {
+            return -1;
+        }
+        int pageSize = Math.min(page.size(), PAGE_SIZE);
         
-        boolean showNextPage = items.size() > PAGE_SIZE + startIndex;
+        boolean showNextPage = page.size() > PAGE_SIZE;
         boolean showPrevPage = startIndex > 0;
         
-        if (showNextPage || showPrevPage) {            
-            io.out().printf("Showing items %d to %d of %d\n\n", startIndex + 1, startIndex + pageSize, items.size());
+        io.clear();
+        io.out().println(prompt);
+        
+        if (showNextPage || showPrevPage) {
+            int total = source.size();
+            io.out().printf("Showing items %d to %d of %s\n\n", startIndex + 1, startIndex + pageSize,
+                    total >= 0 ? String.valueOf(total) : "more than " + (startIndex + pageSize));
         }
         
         if (this.header != null) {
@@ -109,7 +173,7 @@ public class Menu<T> {
         
         int i;
         for (i = 0; i < pageSize; i++) {
-            io.out().printf("%3d) %s\n", startIndex + i + 1, items.get(startIndex + i).getName());
+            io.out().printf("%3d) %s\n", startIndex + i + 1, label(page.get(i)));
         }
         i--;
         
@@ -131,15 +195,21 @@ public class Menu<T> {
         while (true) {
             String input = io.promptString("Select an option");
             if (showNextPage && input.equalsIgnoreCase(NEXT_PAGE)) {
-                return displayPage(startIndex + PAGE_SIZE, showDone);
+                return NEXT;
             } else if (showPrevPage && input.equalsIgnoreCase(PREV_PAGE)) {
-                return displayPage(startIndex - PAGE_SIZE, showDone);
+                return PREV;
             } else if (showDone && input.equalsIgnoreCase(DONE)) {
                 return -1;
             }
             try {
                 int chosen = Integer.parseInt(input);
-                if (chosen > 0 && chosen <= items.size()) {
+                if (chosen > startIndex && chosen <= startIndex + pageSize) {
+                    return chosen - 1;
+                }
+                // Off this page, only if the source knows it has that many,
+                // reaching an unknown index could read page after page
+                int total = source.size();
+                if (chosen > 0 && chosen <= total && load(chosen - 1) != null) {
                     return chosen - 1;
                 }
             } catch (Exception e) {
@@ -149,6 +219,40 @@ public class Menu<T> {
         }
     }
     
+    private String label(MenuItem<T> item) {
+        if (!item.isLazy()) {
+            return item.getName();
+        }
+        return labels.computeIfAbsent(item, MenuItem::getName);
+    }
+    
+    private MenuItem<T> load(int index) {
+        try {
+            return source.get(index);
+        } catch (RuntimeException e) {
+            io.out().println("Failed to load item: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private List<MenuItem<T>> loadPage(int startIndex) {
+        try {
+            // One extra item tells us whether there is a next page
+            List<MenuItem<T>> page = new ArrayList<>(PAGE_SIZE + 1);
+            while (page.size() < PAGE_SIZE + 1) {
+                MenuItem<T> item = source.get(startIndex + page.size());
+                if (item == null) {
+                    break;
+                }
+                page.add(item);
+            }
+            return page;
+        } catch (RuntimeException e) {
+            io.out().println("Failed to load items: " + e.getMessage());
+            return null;
+        }
+    }
+    
     private String getHR(int width) {
     	return new String(new char[width]).replace("\0", "-");
     }
@@ -7,11 +7,21 @@ public class MenuItem<T> {
         this.name = name;
         this.obj = obj;
     }
+    /**
+     * Item labelled with obj.toString(), which isn't called until the item is
+     * actually shown.
+     */
     public MenuItem(T obj) {
-        this(obj.toString(), obj);
+        this(null, obj);
     }
     public String getName() {
-        return name;
+        return name != null ? name : String.valueOf(obj);
+    }
+    /**
+     * True if the label has to be rendered from the object.
+     */
+    boolean isLazy() {
+        return name == null;
     }
     public T get() {
         return obj;
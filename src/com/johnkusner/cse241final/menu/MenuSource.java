@@ -0,0 +1,18 @@
+package com.johnkusner.cse241final.menu;
+
+/**
+ * Supplies the items shown by a {@link Menu}. Menus only ask for the items on
+ * the page being displayed, so a source can load them on demand.
+ */
+public interface MenuSource<T> {
+
+    /**
+     * The item at the given index, or null if the source has fewer items.
+     */
+    MenuItem<T> get(int index);
+
+    /**
+     * Total number of items, or -1 if it isn't known yet.
+     */
+    int size();
+}
@@ -0,0 +1,52 @@
+package com.johnkusner.cse241final.nav;
+
+/**
+ * Where the {@link Navigator} goes after a screen has been shown.
+ */
+public final class Navigation {
+
+    enum Kind {
+        STAY, BACK, PUSH
+    }
+
+    private static final Navigation STAY = new Navigation(Kind.STAY, null);
+    private static final Navigation BACK = new Navigation(Kind.BACK, null);
+
+    private final Kind kind;
+    private final Screen next;
+
+    private Navigation(Kind kind, Screen next) {
+        this.kind = kind;
+        this.next = next;
+    }
+
+    /**
+     * Show the same screen again.
+     */
+    public static Navigation stay() {
+        return STAY;
+    }
+
+    /**
+     * Leave this screen and return to the one that opened it.
+     */
+    public static Navigation back() {
+        return BACK;
+    }
+
+    /**
+     * Open another screen on top of this one. This screen is shown again once
+     * the new one goes back.
+     */
+    public static Navigation push(Screen next) {
+        return new Navigation(Kind.PUSH, next);
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    Screen getNext() {
+        return next;
+    }
+}
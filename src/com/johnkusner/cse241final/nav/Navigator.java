@@ -0,0 +1,34 @@
+package com.johnkusner.cse241final.nav;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Runs screens in a loop using an explicit stack instead of having each
+ * interface call itself (or the previous one) to show the next screen. A
+ * screen is dropped as soon as it goes back, so nothing it loaded is kept
+ * around for the rest of the session.
+ */
+public class Navigator {
+
+    private final Deque<Screen> stack = new ArrayDeque<>();
+
+    public void run(Screen root) {
+        stack.push(root);
+
+        while (!stack.isEmpty()) {
+            Navigation next = stack.peek().show();
+
+            switch (next.getKind()) {
+            case STAY:
+                break;
+            case BACK:
+                stack.pop();
+                break;
+            case PUSH:
+                stack.push(next.getNext());
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.johnkusner.cse241final.nav;
+
+/**
+ * One step of an interface. The {@link Navigator} calls show() and then acts
+ * on the result, so moving between screens never grows the call stack.
+ */
+public interface Screen {
+
+    /**
+     * Show this screen once, handle the user's choice, and say where to go
+     * next.
+     */
+    Navigation show();
+}
@@ -1,8 +1,5 @@
 package com.johnkusner.cse241final.objects;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
-
 public class Address {
 	private int addressId;
 	private String line1;
@@ -25,11 +22,6 @@ public class Address {
 		this.active = active;
 	}
 
-	public Address(ResultSet rs) throws SQLException {
-		this(rs.getInt("address_id"), rs.getString("line1"), rs.getString("line2"), rs.getString("line3"),
-				rs.getString("city"), rs.getString("state"), rs.getString("zip"), rs.getBoolean("active"));
-	}
-
 	public int getId() {
 	    return addressId;
 	}
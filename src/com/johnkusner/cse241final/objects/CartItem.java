@@ -1,24 +1,22 @@
 package com.johnkusner.cse241final.objects;
 
-import java.text.NumberFormat;
+import com.johnkusner.cse241final.Formats;
 
 public class CartItem {
 	private Stock stock;
 	private int qty;
 
-	private NumberFormat numFormat;
-	private NumberFormat currencyFormat;
-
 	public CartItem(Stock stock, int qty) {
 		this.stock = stock;
 		this.qty = qty;
-
-		numFormat = NumberFormat.getNumberInstance();
-		currencyFormat = NumberFormat.getCurrencyInstance();
 	}
 	
 	public String toString() {
-		return String.format("%30s | %6s | %9s | %9s", getProductName(), numFormat.format(qty), currencyFormat.format(getUnitPrice()), currencyFormat.format(getTotal()));
+		StringBuilder sb = new StringBuilder(68);
+		Formats.column(sb, getProductName(), 30).append(" | ");
+		Formats.numberColumn(sb, qty, 6).append(" | ");
+		Formats.moneyColumn(sb, getUnitPrice(), 9).append(" | ");
+		return Formats.moneyColumn(sb, getTotal(), 9).toString();
 	}
     
 	public double getUnitPrice() {
@@ -1,7 +1,6 @@
 package com.johnkusner.cse241final.objects;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import com.johnkusner.cse241final.Formats;
 
 public class Location {
 
@@ -23,14 +22,6 @@ public class Location {
 		this.locType = locType;
 	}
 
-	public Location(ResultSet rs, Type locType) throws SQLException {
-        this(rs.getInt("location_id"), rs.getString("location_name"), new Address(rs), locType);
-    }
-	
-	public Location(ResultSet rs) throws SQLException {
-        this(rs.getInt("location_id"), rs.getString("location_name"), new Address(rs), Type.BOTH);
-    }
-	
 	public int getId() {
 		return locationId;
 	}
@@ -44,7 +35,7 @@ public class Location {
 	}
 	
 	public String toString() {
-		return String.format("%20s", locationName);
+		return Formats.column(new StringBuilder(20), locationName, 20).toString();
 	}
 	
 	public Address getAddress() {
@@ -1,7 +1,6 @@
 package com.johnkusner.cse241final.objects;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import com.johnkusner.cse241final.Formats;
 
 public class Product {
     private int productId;
@@ -12,10 +11,6 @@ public class Product {
         this.productName = productName;
     }
     
-    public Product(ResultSet rs) throws SQLException {
-        this(rs.getInt("product_id"), rs.getString("product_name"));
-    }
-    
     public int getId() {
         return productId;
     }
@@ -25,6 +20,6 @@ public class Product {
     }
     
     public String toString() {
-        return String.format("%30s", productName);
+        return Formats.column(new StringBuilder(30), productName, 30).toString();
     }
 }
@@ -1,8 +1,6 @@
 package com.johnkusner.cse241final.objects;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.text.NumberFormat;
+import com.johnkusner.cse241final.Formats;
 
 public class ProductSale {
 	private int productId;
@@ -10,25 +8,19 @@ public class ProductSale {
 	private int amountSold;
 	private double totalSales;
 
-	private NumberFormat numFormat;
-	private NumberFormat currencyFormat;
-
 	public ProductSale(int productId, String productName, int amountSold, double totalSales) {
 		this.productId = productId;
 		this.productName = productName;
 		this.amountSold = amountSold;
 		this.totalSales = totalSales;
-		
-		numFormat = NumberFormat.getNumberInstance();
-		currencyFormat = NumberFormat.getCurrencyInstance();
-	}
-	
-	public ProductSale(ResultSet rs) throws SQLException {
-		this(rs.getInt("product_id"), rs.getString("product_name"), rs.getInt("amount_sold"), rs.getDouble("total_sales"));
 	}
 
 	public String toString() {
-		return String.format("%8d | %30s | %6s | %9s", productId, productName, numFormat.format(amountSold), currencyFormat.format(totalSales));
+		StringBuilder sb = new StringBuilder(68);
+		Formats.alignRight(sb.append(productId), 0, 8).append(" | ");
+		Formats.column(sb, productName, 30).append(" | ");
+		Formats.numberColumn(sb, amountSold, 6).append(" | ");
+		return Formats.moneyColumn(sb, totalSales, 9).toString();
 	}
 
 	public static final String HEADER = String.format("%8s | %30s | %6s | %9s", "ID", "Product Name", "QTY", "$ Spent");
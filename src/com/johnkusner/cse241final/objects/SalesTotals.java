@@ -1,34 +1,30 @@
 package com.johnkusner.cse241final.objects;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.text.NumberFormat;
+import com.johnkusner.cse241final.Formats;
 
 public class SalesTotals {
 	private String dateStr;
 	private double totalSales;
 	private int amountSold;
 	private int numTrans;
-
-	private NumberFormat numFormat;
-	private NumberFormat currencyFormat;
 	
 	public SalesTotals(String dateStr, double totalSales, int amountSold, int numTrans) {
 		this.dateStr = dateStr;
 		this.totalSales = totalSales;
 		this.amountSold = amountSold;
 		this.numTrans = numTrans;
-		
-		numFormat = NumberFormat.getNumberInstance();
-		currencyFormat = NumberFormat.getCurrencyInstance();
 	}
 	
-	public SalesTotals(ResultSet rs) throws SQLException {
-		this(rs.getString("date_str"), rs.getDouble("total_sales"), rs.getInt("amount_sold"), rs.getInt("num_trans"));
+	public String getDateStr() {
+		return dateStr;
 	}
 	
 	public String toString() {
-		return String.format("%15s | %10s | %10s | %13s", dateStr, numFormat.format(numTrans), numFormat.format(amountSold), currencyFormat.format(totalSales));
+		StringBuilder sb = new StringBuilder(56);
+		Formats.column(sb, dateStr, 15).append(" | ");
+		Formats.numberColumn(sb, numTrans, 10).append(" | ");
+		Formats.numberColumn(sb, amountSold, 10).append(" | ");
+		return Formats.moneyColumn(sb, totalSales, 13).toString();
 	}
 	
 	public static final String HEADER = String.format("%15s | %10s | %10s | %13s", "Time Frame", "# Trans", "# Items", "Revenue");
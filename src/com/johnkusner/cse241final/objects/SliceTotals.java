@@ -0,0 +1,37 @@
+package com.johnkusner.cse241final.objects;
+
+import com.johnkusner.cse241final.Formats;
+
+public class SliceTotals {
+	private int key;
+	private String name;
+	private long amountSold;
+	private double totalSales;
+
+	public SliceTotals(int key, String name, long amountSold, double totalSales) {
+		this.key = key;
+		this.name = name;
+		this.amountSold = amountSold;
+		this.totalSales = totalSales;
+	}
+
+	/**
+	 * The category, location or product id, or the epoch day of a period.
+	 */
+	public int getKey() {
+		return key;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String toString() {
+		StringBuilder sb = new StringBuilder(60);
+		Formats.column(sb, name, 30).append(" | ");
+		Formats.numberColumn(sb, amountSold, 10).append(" | ");
+		return Formats.moneyColumn(sb, totalSales, 14).toString();
+	}
+
+	public static final String HEADER = String.format("%30s | %10s | %14s", "Name", "QTY", "Revenue");
+}
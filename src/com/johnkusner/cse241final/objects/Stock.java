@@ -1,8 +1,6 @@
 package com.johnkusner.cse241final.objects;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.text.NumberFormat;
+import com.johnkusner.cse241final.Formats;
 
 public class Stock {
 	private int productId;
@@ -10,30 +8,28 @@ public class Stock {
 	private int qty;
 	private double unitPrice;
 
-	private NumberFormat numFormat;
-	private NumberFormat currencyFormat;
-
 	public Stock(int productId, String productName, int qty, double unitPrice) {
 		this.productId = productId;
 		this.productName = productName;
 		this.qty = qty;
 		this.unitPrice = unitPrice;
-		
-		numFormat = NumberFormat.getNumberInstance();
-		currencyFormat = NumberFormat.getCurrencyInstance();
-	}
-	
-	public Stock(ResultSet rs) throws SQLException {
-		this(rs.getInt("product_id"), rs.getString("product_name"), rs.getInt("qty"), rs.getDouble("unit_price"));
 	}
 
 	public String toString() {
-		return String.format("%30s | %6s | %9s", productName, numFormat.format(qty), currencyFormat.format(unitPrice));
+		StringBuilder sb = new StringBuilder(56);
+		Formats.column(sb, productName, 30).append(" | ");
+		Formats.numberColumn(sb, qty, 6).append(" | ");
+		return Formats.moneyColumn(sb, unitPrice, 9).toString();
 	}
 	
 	public String toSimpleString(boolean showTotal) {
-	    return numFormat.format(qty) + " from " + currencyFormat.format(unitPrice) + "/each"
-	            + (showTotal ? (" (" + currencyFormat.format(qty * unitPrice) + " total)") : "");
+	    StringBuilder sb = new StringBuilder(48);
+	    Formats.appendNumber(sb, qty).append(" from ");
+	    Formats.appendMoney(sb, unitPrice).append("/each");
+	    if (showTotal) {
+	        Formats.appendMoney(sb.append(" ("), qty * unitPrice).append(" total)");
+	    }
+	    return sb.toString();
 	}
     
     public int getQty() {
@@ -1,39 +1,23 @@
 package com.johnkusner.cse241final.objects;
 
-import java.sql.Date;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.text.NumberFormat;
-import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+
+import com.johnkusner.cse241final.Formats;
 
 public class Transaction {
     private int transactionId;
     private double subtotal;
     private double tax;
     private double total;
-    private Date timestamp;
-    
-    private SimpleDateFormat dateFormat;
-    private SimpleDateFormat timeFormat;
-    private NumberFormat currencyFormat;
+    private LocalDateTime timestamp;
     
     public Transaction(int transactionId, double subtotal, double tax,
-            double total, Date timestamp) {
+            double total, LocalDateTime timestamp) {
         this.transactionId = transactionId;
         this.subtotal = subtotal;
         this.tax = tax;
         this.total = total;
         this.timestamp = timestamp;
-        
-        dateFormat = new SimpleDateFormat("MM/dd/yyyy");
-        timeFormat = new SimpleDateFormat("hh:mm:ss a");
-        currencyFormat = NumberFormat.getCurrencyInstance();
-    }
-
-    public Transaction(ResultSet rs) throws SQLException {
-        this(rs.getInt("transaction_id"), rs.getDouble("subtotal"),
-                rs.getDouble("tax"), rs.getDouble("total"),
-                rs.getDate("timestamp"));
     }
 
     public int getId() {
@@ -52,17 +36,24 @@ public class Transaction {
         return total;
     }
 
-    public Date getTimestamp() {
+    public LocalDateTime getTimestamp() {
         return timestamp;
     }
     
     public String getFormattedTimestamp() {
-    	return dateFormat.format(timestamp) + ", at " + timeFormat.format(timestamp);
+    	StringBuilder sb = new StringBuilder(24);
+    	Formats.appendDate(sb, timestamp).append(", at ");
+    	return Formats.appendTime(sb, timestamp).toString();
     }
 
     public String toString() {
-        return String.format("%8d | %10s | %11s | %13s",
-                transactionId, dateFormat.format(timestamp), timeFormat.format(timestamp), currencyFormat.format(total));
+        StringBuilder sb = new StringBuilder(56);
+        Formats.alignRight(sb.append(transactionId), 0, 8).append(" | ");
+        int start = sb.length();
+        Formats.alignRight(Formats.appendDate(sb, timestamp), start, 10).append(" | ");
+        start = sb.length();
+        Formats.alignRight(Formats.appendTime(sb, timestamp), start, 11).append(" | ");
+        return Formats.moneyColumn(sb, total, 13).toString();
     }
 
     public static final String HEADER = String.format("%8s | %10s | %11s | %13s",
@@ -2,7 +2,8 @@ package com.johnkusner.cse241final.objects;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.text.NumberFormat;
+
+import com.johnkusner.cse241final.Formats;
 
 public class VendorSupply {
     private String vendorName;
@@ -11,18 +12,12 @@ public class VendorSupply {
     private int shipmentQty;
     private double shipmentPrice;
     
-    private NumberFormat numFormat;
-    private NumberFormat curFormat;
-    
     public VendorSupply(int vendorId, String vendorName, int productId, int shipmentQty, double shipmentPrice) {
         this.vendorId = vendorId;
         this.vendorName = vendorName;
         this.productId = productId;
         this.shipmentQty = shipmentQty;
         this.shipmentPrice = shipmentPrice;
-        
-        this.numFormat = NumberFormat.getNumberInstance();
-        this.curFormat = NumberFormat.getCurrencyInstance();
     }
     
     public VendorSupply(ResultSet rs) throws SQLException {
@@ -32,10 +27,11 @@ public class VendorSupply {
     }
     
     public String toString() {
-        return String.format("%sx for %s total (%s each) from \"%s\"", 
-                numFormat.format(shipmentQty), curFormat.format(shipmentPrice),
-                curFormat.format(shipmentPrice / shipmentQty),
-                vendorName);
+        StringBuilder sb = new StringBuilder(64);
+        Formats.appendNumber(sb, shipmentQty).append("x for ");
+        Formats.appendMoney(sb, shipmentPrice).append(" total (");
+        Formats.appendMoney(sb, shipmentPrice / shipmentQty).append(" each) from \"");
+        return sb.append(vendorName).append('"').toString();
     }
     
     public int getProductId() {
@@ -0,0 +1,79 @@
+package com.johnkusner.cse241final.search;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.johnkusner.cse241final.menu.MenuItem;
+import com.johnkusner.cse241final.menu.MenuSource;
+import com.johnkusner.cse241final.objects.Product;
+
+/**
+ * Menu source over a list of product ids. Names are looked up through
+ * SearchService.lookup a hundred ids at a time as the menu pages through
+ * them, and only a few of those chunks are kept.
+ */
+public class ProductIdSource implements MenuSource<Product> {
+    private static final int CHUNK = 100;
+    private static final int WINDOW_CHUNKS = 4;
+
+    private final SearchService search;
+    private final int[] ids;
+
+    private final Map<Integer, List<MenuItem<Product>>> window =
+            new LinkedHashMap<Integer, List<MenuItem<Product>>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, List<MenuItem<Product>>> eldest) {
+                    return size() > WINDOW_CHUNKS;
+                }
+            };
+
+    public ProductIdSource(SearchService search, int[] ids) {
+        this.search = search;
+        this.ids = ids;
+    }
+
+    @Override
+    public MenuItem<Product> get(int index) {
+        if (index >= ids.length) {
+            return null;
+        }
+        int chunk = index / CHUNK;
+        List<MenuItem<Product>> items = window.get(chunk);
+        if (items == null) {
+            items = load(chunk);
+            window.put(chunk, items);
+        }
+        return items.get(index % CHUNK);
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    private List<MenuItem<Product>> load(int chunk) {
+        int[] wanted = Arrays.copyOfRange(ids, chunk * CHUNK, Math.min(ids.length, (chunk + 1) * CHUNK));
+        List<Product> found;
+        try {
+            found = search.lookup(wanted);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+
+        // Keep every position, or the items after a deleted product would move
+        List<MenuItem<Product>> items = new ArrayList<>(wanted.length);
+        int f = 0;
+        for (int id : wanted) {
+            if (f < found.size() && found.get(f).getId() == id) {
+                items.add(new MenuItem<>(found.get(f++)));
+            } else {
+                items.add(new MenuItem<>(new Product(id, "(no longer available)")));
+            }
+        }
+        return items;
+    }
+}
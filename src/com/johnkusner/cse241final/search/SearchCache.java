@@ -0,0 +1,220 @@
+package com.johnkusner.cse241final.search;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of search results, keyed on the normalized search term and
+ * holding only the matching product ids. Least recently used entries are
+ * evicted once there are more than maxEntries of them or they take more than
+ * maxBytes, and entries older than the TTL are never returned. Everything is
+ * dropped by invalidate() when the product table changes.
+ *
+ * invalidate() also starts a new generation. A search takes generation()
+ * before it reads anything and passes it to put(), so results from a search
+ * that was running when the products changed are thrown away instead of
+ * being cached over the new ones.
+ */
+public class SearchCache {
+    // Rough per-entry cost besides the key's characters and the ids:
+    // the map entry, our Entry, and the String and array headers
+    private static final int ENTRY_OVERHEAD = 40 + 32 + 40 + 16;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long ttlMs;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+    private long stalePuts;
+
+    /**
+     * A cache holding at most maxEntries results taking at most maxBytes,
+     * each for at most ttlMs (0 for no TTL). A maxEntries of 0 disables it.
+     */
+    public SearchCache(int maxEntries, long maxBytes, long ttlMs) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Cache configured by brc.search.cache.size (entries, default 1000),
+     * brc.search.cache.kb (default 4096) and brc.search.cache.ttl (seconds,
+     * default 300).
+     */
+    public static SearchCache fromSystemProperties() {
+        return new SearchCache(Integer.getInteger("brc.search.cache.size", 1000),
+                Long.getLong("brc.search.cache.kb", 4096) * 1024,
+                Long.getLong("brc.search.cache.ttl", 300) * 1000);
+    }
+
+    /**
+     * The same normalization promptSqlSafeString applies, so terms from
+     * other callers share entries with the interface's.
+     */
+    public static String normalize(String term) {
+        return term.toLowerCase().replaceAll("[^a-z0-9_\\- #()]", "").trim();
+    }
+
+    /**
+     * The ids cached for term if they can answer a search for up to limit
+     * products, otherwise null.
+     */
+    public synchronized int[] get(String term, int limit) {
+        Entry e = entries.get(term);
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        if (ttlMs > 0 && System.currentTimeMillis() - e.created > ttlMs) {
+            remove(term, e);
+            expirations++;
+            misses++;
+            return null;
+        }
+        if (limit > e.limit && e.ids.length == e.limit) {
+            // There may be more matches than we kept
+            misses++;
+            return null;
+        }
+        hits++;
+        return e.ids;
+    }
+
+    /**
+     * The current generation, to pass to put() once the search is done.
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Cache the ids found searching for term with the given limit, unless
+     * the cache was invalidated since the search took its generation. The
+     * array is kept as-is, callers must not change it afterwards.
+     */
+    public synchronized void put(String term, int[] ids, int limit, long generation) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        if (generation != this.generation) {
+            stalePuts++;
+            return;
+        }
+        Entry old = entries.get(term);
+        if (old != null) {
+            remove(term, old);
+        }
+        Entry e = new Entry(ids, limit, System.currentTimeMillis(), size(term, ids));
+        if (e.bytes > maxBytes) {
+            return;
+        }
+        entries.put(term, e);
+        bytes += e.bytes;
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries || bytes > maxBytes) {
+            Map.Entry<String, Entry> victim = eldest.next();
+            bytes -= victim.getValue().bytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void invalidate() {
+        generation++;
+        if (!entries.isEmpty()) {
+            invalidations++;
+        }
+        entries.clear();
+        bytes = 0;
+    }
+
+    private void remove(String term, Entry e) {
+        entries.remove(term);
+        bytes -= e.bytes;
+    }
+
+    private static int size(String term, int[] ids) {
+        return ENTRY_OVERHEAD + term.length() + 4 * ids.length;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(entries.size(), maxEntries, bytes, maxBytes, hits, misses, evictions,
+                expirations, invalidations, stalePuts);
+    }
+
+    private static class Entry {
+        final int[] ids;
+        final int limit;
+        final long created;
+        final int bytes;
+
+        Entry(int[] ids, int limit, long created, int bytes) {
+            this.ids = ids;
+            this.limit = limit;
+            this.created = created;
+            this.bytes = bytes;
+        }
+    }
+
+    public static class Stats {
+        private final int entries;
+        private final int maxEntries;
+        private final long bytes;
+        private final long maxBytes;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long invalidations;
+        private final long stalePuts;
+
+        Stats(int entries, int maxEntries, long bytes, long maxBytes, long hits, long misses,
+                long evictions, long expirations, long invalidations, long stalePuts) {
+            this.entries = entries;
+            this.maxEntries = maxEntries;
+            this.bytes = bytes;
+            this.maxBytes = maxBytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.invalidations = invalidations;
+            this.stalePuts = stalePuts;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        public String toString() {
+            return String.format("%d/%d entries, %.1f/%.1f KB | hits %d, misses %d (%.1f%% hit rate) | "
+                    + "evictions %d, expired %d, invalidated %d times, %d stale results not kept",
+                    entries, maxEntries, bytes / 1024.0, maxBytes / 1024.0, hits, misses,
+                    getHitRate() * 100, evictions, expirations, invalidations, stalePuts);
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.johnkusner.cse241final.search;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Mappers;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.RowMapper;
+import com.johnkusner.cse241final.objects.Product;
+
+/**
+ * Product name search for one connection pool. Searches are served from a
+ * TrigramIndex held in memory, and type-ahead suggestions from a PrefixIndex
+ * weighted by how many of each product have sold. Both are built in the
+ * background when the pool is connected; until they are ready searches run
+ * the SQL query and suggest() returns null. Results for recent search terms
+ * are kept in a SearchCache in front of both.
+ *
+ * Changes to products are picked up by comparing a fingerprint of the
+ * product table, at most once per brc.search.refresh seconds (default 60),
+ * which empties the cache and rebuilds the index. Sales weights are read
+ * when the index is built and not kept up to date.
+ */
+public class SearchService implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(SearchService.class.getName());
+
+    // Slots in Query.PRODUCTS_BY_ID
+    private static final int ID_BATCH = 100;
+
+    private final ConnectionPool pool;
+    private final boolean indexed;
+    private final long refreshMs;
+    private final SearchCache cache;
+    private final ExecutorService builder;
+    // Set while a build or fingerprint check is queued or running
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    private volatile Snapshot snapshot;
+    private volatile String fingerprint;
+    private volatile long nextCheck;
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong suggestions = new AtomicLong();
+    private final AtomicLong suggestNanos = new AtomicLong();
+    private volatile long builds;
+    private volatile long lastBuildMs;
+
+    /**
+     * Search service for the given pool. Without indexed every search runs
+     * the SQL query, only the cache sits in front of it.
+     */
+    public SearchService(ConnectionPool pool, boolean indexed, long refreshMs, SearchCache cache) {
+        this.pool = pool;
+        this.indexed = indexed;
+        this.refreshMs = refreshMs;
+        this.cache = cache;
+        this.builder = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "product-search-index");
+            t.setDaemon(true);
+            return t;
+        });
+        this.nextCheck = System.currentTimeMillis() + refreshMs;
+    }
+
+    /**
+     * The search service for the given pool, created the first time it is
+     * asked for. The in-memory index can be turned off with
+     * -Dbrc.search.index=false, the cache is configured as described in
+     * SearchCache.fromSystemProperties.
+     */
+    public static SearchService forPool(ConnectionPool pool) {
+        return pool.service(SearchService.class, p -> {
+            SearchService service = new SearchService(p,
+                    Boolean.parseBoolean(System.getProperty("brc.search.index", "true")),
+                    Long.getLong("brc.search.refresh", 60) * 1000,
+                    SearchCache.fromSystemProperties());
+            service.start();
+            return service;
+        });
+    }
+
+    /**
+     * Build the index in the background, unless a build is already running.
+     */
+    public void start() {
+        if (indexed && building.compareAndSet(false, true)) {
+            builder.execute(this::rebuild);
+        }
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * Products whose name contains term, at most limit of them. Best matches
+     * come first (see TrigramIndex.search) once the index is built, before
+     * that they are in name order.
+     */
+    public List<Product> search(String term, int limit) throws SQLException {
+        checkForChanges();
+        String key = SearchCache.normalize(term);
+
+        long start = System.nanoTime();
+        // Before the snapshot, so a rebuild that lands meanwhile rejects the put
+        long generation = cache.generation();
+        Snapshot snap = snapshot;
+        List<Product> found = null;
+        int[] cached = cache.get(key, limit);
+        if (cached != null) {
+            found = snap != null ? snap.lookup(cached) : sqlLookup(cached);
+            if (found.size() < cached.length) {
+                // Some of them are gone, search again
+                found = null;
+            }
+        }
+        if (found == null) {
+            if (snap != null) {
+                found = snap.search(key, limit);
+            } else {
+                found = sqlSearch(key, limit);
+                fallbacks.incrementAndGet();
+            }
+            cache.put(key, ids(found), limit, generation);
+        }
+        if (found.size() > limit) {
+            found = found.subList(0, limit);
+        }
+        searchNanos.addAndGet(System.nanoTime() - start);
+        searches.incrementAndGet();
+        return found;
+    }
+
+    /**
+     * Best selling products whose name starts with prefix, or null if the
+     * index isn't built yet. Never touches the database.
+     */
+    public List<Product> suggest(String prefix, int limit) {
+        Snapshot snap = snapshot;
+        if (snap == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        List<Product> found = snap.suggest(prefix, limit);
+        suggestNanos.addAndGet(System.nanoTime() - start);
+        suggestions.incrementAndGet();
+        return found;
+    }
+
+    private void checkForChanges() {
+        long now = System.currentTimeMillis();
+        if (refreshMs <= 0 || now < nextCheck || building.get()) {
+            return;
+        }
+        nextCheck = now + refreshMs;
+        if (building.compareAndSet(false, true)) {
+            builder.execute(() -> {
+                try {
+                    String current = fingerprint();
+                    if (!current.equals(fingerprint)) {
+                        cache.invalidate();
+                        if (indexed) {
+                            rebuild();
+                            return;
+                        }
+                        fingerprint = current;
+                    }
+                } catch (SQLException e) {
+                    // Keep serving what we have, we'll check again later
+                }
+                building.set(false);
+            });
+        }
+    }
+
+    private void rebuild() {
+        try {
+            long start = System.currentTimeMillis();
+            String current = fingerprint();
+            snapshot = load();
+            fingerprint = current;
+            // Cached results came from the SQL query or the old index
+            cache.invalidate();
+            builds++;
+            lastBuildMs = System.currentTimeMillis() - start;
+            nextCheck = System.currentTimeMillis() + refreshMs;
+        } catch (SQLException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Could not build the product search index", e);
+        } finally {
+            building.set(false);
+        }
+    }
+
+    private Snapshot load() throws SQLException {
+        int[] ids = new int[1024];
+        String[] names = new String[1024];
+        int n = 0;
+        Map<Integer, Integer> sold = new HashMap<>();
+        try (Connection db = pool.borrow()) {
+            try (PreparedStatement s = Query.PRODUCT_NAMES.prepare(db)) {
+                s.setFetchSize(1000);
+                try (ResultSet r = s.executeQuery()) {
+                    while (r.next()) {
+                        if (n == ids.length) {
+                            ids = Arrays.copyOf(ids, n * 2);
+                            names = Arrays.copyOf(names, n * 2);
+                        }
+                        ids[n] = r.getInt(1);
+                        names[n] = r.getString(2);
+                        n++;
+                    }
+                }
+            }
+            try (PreparedStatement s = Query.PRODUCT_SALES_COUNTS.prepare(db)) {
+                s.setFetchSize(1000);
+                try (ResultSet r = s.executeQuery()) {
+                    while (r.next()) {
+                        sold.put(r.getInt(1), r.getInt(2));
+                    }
+                }
+            }
+        }
+
+        ids = Arrays.copyOf(ids, n);
+        names = Arrays.copyOf(names, n);
+        int[] weights = new int[n];
+        for (int i = 0; i < n; i++) {
+            weights[i] = sold.getOrDefault(ids[i], 0);
+        }
+        return new Snapshot(TrigramIndex.build(ids, names), PrefixIndex.build(ids, names, weights));
+    }
+
+    private String fingerprint() throws SQLException {
+        try (Connection db = pool.borrow();
+                PreparedStatement s = Query.PRODUCT_FINGERPRINT.prepare(db);
+                ResultSet r = s.executeQuery()) {
+            r.next();
+            return r.getLong(1) + ":" + r.getLong(2) + ":" + r.getLong(3);
+        }
+    }
+
+    private List<Product> sqlSearch(String term, int limit) throws SQLException {
+        List<Product> found = new ArrayList<>();
+        try (Connection db = pool.borrow();
+                PreparedStatement s = Query.PRODUCT_SEARCH.prepare(db, "%" + term + "%");
+                ResultSet r = s.executeQuery()) {
+            RowMapper.Bound<Product> rows = Mappers.PRODUCT.bind(r);
+            while (r.next() && found.size() < limit) {
+                found.add(rows.map());
+            }
+        }
+        return found;
+    }
+
+    /**
+     * The products with the given ids, in the same order. Ids of products
+     * that no longer exist are skipped. Names come from the index when it's
+     * built, otherwise from one query per hundred ids.
+     */
+    public List<Product> lookup(int[] ids) throws SQLException {
+        Snapshot snap = snapshot;
+        return snap != null ? snap.lookup(ids) : sqlLookup(ids);
+    }
+
+    private List<Product> sqlLookup(int[] ids) throws SQLException {
+        Map<Integer, String> names = new HashMap<>();
+        try (Connection db = pool.borrow();
+                PreparedStatement s = Query.PRODUCTS_BY_ID.prepare(db)) {
+            for (int from = 0; from < ids.length; from += ID_BATCH) {
+                for (int i = 0; i < ID_BATCH; i++) {
+                    s.setInt(i + 1, from + i < ids.length ? ids[from + i] : -1);
+                }
+                try (ResultSet r = s.executeQuery()) {
+                    while (r.next()) {
+                        names.put(r.getInt(1), r.getString(2));
+                    }
+                }
+            }
+        }
+        List<Product> found = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            String name = names.get(id);
+            if (name != null) {
+                found.add(new Product(id, name));
+            }
+        }
+        return found;
+    }
+
+    private static int[] ids(List<Product> products) {
+        int[] ids = new int[products.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = products.get(i).getId();
+        }
+        return ids;
+    }
+
+    @Override
+    public void close() {
+        builder.shutdownNow();
+    }
+
+    public Stats getStats() {
+        Snapshot snap = snapshot;
+        return new Stats(snap != null,
+                snap == null ? 0 : snap.index.size(),
+                snap == null ? 0 : snap.index.getMemoryBytes(),
+                snap == null ? 0 : snap.prefixes.getMemoryBytes(),
+                builds, lastBuildMs, searches.get(), searchNanos.get(), fallbacks.get(),
+                suggestions.get(), suggestNanos.get());
+    }
+
+    public SearchCache.Stats getCacheStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * The indexes from one build, swapped in whole.
+     */
+    private static class Snapshot {
+        final TrigramIndex index;
+        final PrefixIndex prefixes;
+
+        Snapshot(TrigramIndex index, PrefixIndex prefixes) {
+            this.index = index;
+            this.prefixes = prefixes;
+        }
+
+        List<Product> search(String term, int limit) {
+            int[] docs = index.search(term, limit);
+            List<Product> found = new ArrayList<>(docs.length);
+            for (int doc : docs) {
+                found.add(new Product(index.getId(doc), index.getName(doc)));
+            }
+            return found;
+        }
+
+        List<Product> lookup(int[] ids) {
+            List<Product> found = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                int doc = index.find(id);
+                if (doc >= 0) {
+                    found.add(new Product(id, index.getName(doc)));
+                }
+            }
+            return found;
+        }
+
+        List<Product> suggest(String prefix, int limit) {
+            int[] at = prefixes.suggest(prefix, limit);
+            List<Product> found = new ArrayList<>(at.length);
+            for (int i : at) {
+                found.add(new Product(prefixes.getId(i), prefixes.getName(i)));
+            }
+            return found;
+        }
+    }
+
+    public static class Stats {
+        private final boolean ready;
+        private final int products;
+        private final long memoryBytes;
+        private final long prefixMemoryBytes;
+        private final long builds;
+        private final long lastBuildMs;
+        private final long searches;
+        private final long searchNanos;
+        private final long fallbacks;
+        private final long suggestions;
+        private final long suggestNanos;
+
+        Stats(boolean ready, int products, long memoryBytes, long prefixMemoryBytes, long builds, long lastBuildMs, long searches, long searchNanos, long fallbacks,
+                long suggestions, long suggestNanos) {
+            this.ready = ready;
+            this.products = products;
+            this.memoryBytes = memoryBytes;
+            this.prefixMemoryBytes = prefixMemoryBytes;
+            this.builds = builds;
+            this.lastBuildMs = lastBuildMs;
+            this.searches = searches;
+            this.searchNanos = searchNanos;
+            this.fallbacks = fallbacks;
+            this.suggestions = suggestions;
+            this.suggestNanos = suggestNanos;
+        }
+
+        public int getProducts() {
+            return products;
+        }
+
+        public long getMemoryBytes() {
+            return memoryBytes + prefixMemoryBytes;
+        }
+
+        public double getAverageSearchMicros() {
+            return searches == 0 ? 0 : searchNanos / 1e3 / searches;
+        }
+
+        public String toString() {
+            if (!ready) {
+                return String.format("not built | %d searches, avg %.1fus, %d sent to the database",
+                        searches, getAverageSearchMicros(), fallbacks);
+            }
+            return String.format("%d products, trigrams %.1f MB, prefixes %.1f MB | "
+                    + "built %d times, last took %dms | %d searches, avg %.1fus, %d sent to the database | "
+                    + "%d suggestions, avg %.1fus",
+                    products, memoryBytes / 1048576.0, prefixMemoryBytes / 1048576.0,
+                    builds, lastBuildMs, searches, getAverageSearchMicros(), fallbacks,
+                    suggestions, suggestions == 0 ? 0 : suggestNanos / 1e3 / suggestions);
+        }
+    }
+}
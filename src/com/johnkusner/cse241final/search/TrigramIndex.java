@@ -0,0 +1,346 @@
+package com.johnkusner.cse241final.search;
+
+import java.util.Arrays;
+
+/**
+ * Immutable trigram index over product names, answering the same question as
+ * lower(product_name) like '%term%' without looking at every name.
+ *
+ * Every character is folded to a 6 bit code, so a trigram is an 18 bit key
+ * and the posting lists live in two flat arrays (compressed sparse rows):
+ * the products containing trigram k are postings[offsets[k]] up to
+ * postings[offsets[k + 1]]. Products are numbered in name order, so every
+ * posting list is sorted and ties in the ranking come out alphabetical.
+ *
+ * A search intersects the posting lists of the term's trigrams, starting
+ * from the shortest, then checks the survivors really contain the term (two
+ * characters can share a code). Terms shorter than a trigram scan the names.
+ */
+public final class TrigramIndex {
+    private static final int BITS = 6;
+    private static final int KEYS = 1 << (3 * BITS);
+    private static final int OTHER = (1 << BITS) - 1;
+
+    private final int[] ids;
+    private final String[] names;
+    private final int[] offsets;
+    private final int[] postings;
+    // Positions sorted by product id, for find()
+    private final int[] byId;
+
+    private TrigramIndex(int[] ids, String[] names, int[] offsets, int[] postings) {
+        this.ids = ids;
+        this.names = names;
+        this.offsets = offsets;
+        this.postings = postings;
+
+        long[] sorted = new long[ids.length];
+        for (int doc = 0; doc < ids.length; doc++) {
+            sorted[doc] = ((long) ids[doc] << 32) | doc;
+        }
+        Arrays.sort(sorted);
+        this.byId = new int[ids.length];
+        for (int i = 0; i < sorted.length; i++) {
+            byId[i] = (int) sorted[i];
+        }
+    }
+
+    /**
+     * Index the given products. They should already be sorted by lowercased
+     * name, which is the order matches are returned in within a rank.
+     */
+    public static TrigramIndex build(int[] ids, String[] names) {
+        if (ids.length != names.length) {
+            throw new IllegalArgumentException("ids and names differ in length");
+        }
+        int[] offsets = new int[KEYS + 1];
+        // Last product each key was seen in, so repeated trigrams count once
+        int[] seen = new int[KEYS];
+        Arrays.fill(seen, -1);
+
+        for (int doc = 0; doc < names.length; doc++) {
+            String name = names[doc];
+            for (int i = 0; i + 2 < name.length(); i++) {
+                int key = key(name, i);
+                if (seen[key] != doc) {
+                    seen[key] = doc;
+                    offsets[key + 1]++;
+                }
+            }
+        }
+        for (int k = 0; k < KEYS; k++) {
+            offsets[k + 1] += offsets[k];
+        }
+
+        int[] postings = new int[offsets[KEYS]];
+        int[] next = Arrays.copyOf(offsets, KEYS);
+        Arrays.fill(seen, -1);
+        for (int doc = 0; doc < names.length; doc++) {
+            String name = names[doc];
+            for (int i = 0; i + 2 < name.length(); i++) {
+                int key = key(name, i);
+                if (seen[key] != doc) {
+                    seen[key] = doc;
+                    postings[next[key]++] = doc;
+                }
+            }
+        }
+        return new TrigramIndex(ids, names, offsets, postings);
+    }
+
+    static int code(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 1;
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 1;
+        }
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 27;
+        }
+        switch (c) {
+            case ' ': return 37;
+            case '-': return 38;
+            case '_': return 39;
+            case '#': return 40;
+            case '(': return 41;
+            case ')': return 42;
+            case '\'': return 43;
+            case '&': return 44;
+            case '.': return 45;
+            case ',': return 46;
+            case '/': return 47;
+            default:
+                c = Character.toLowerCase(c);
+                return c < 128 ? OTHER : 48 + c % 15;
+        }
+    }
+
+    private static int key(CharSequence s, int i) {
+        return (code(s.charAt(i)) << (2 * BITS)) | (code(s.charAt(i + 1)) << BITS) | code(s.charAt(i + 2));
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int getId(int doc) {
+        return ids[doc];
+    }
+
+    public String getName(int doc) {
+        return names[doc];
+    }
+
+    /**
+     * Position of the product with the given id, or -1 if it isn't indexed.
+     */
+    public int find(int id) {
+        int lo = 0;
+        int hi = byId.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midId = ids[byId[mid]];
+            if (midId < id) {
+                lo = mid + 1;
+            } else if (midId > id) {
+                hi = mid - 1;
+            } else {
+                return byId[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Rough heap use of the index, including the product names.
+     */
+    public long getMemoryBytes() {
+        long bytes = 4L * (ids.length + offsets.length + postings.length + byId.length);
+        for (String name : names) {
+            // Header, array header and latin-1 characters
+            bytes += 24 + 16 + name.length();
+        }
+        return bytes + 8L * names.length;
+    }
+
+    /**
+     * Products whose name contains term (ignoring case), best matches first:
+     * the whole name, then names starting with the term, then names with a
+     * word starting with it, then everything else. At most limit products,
+     * returned as positions for getId and getName.
+     */
+    public int[] search(String term, int limit) {
+        Ranked ranked = new Ranked(limit);
+        if (term.isEmpty() || limit <= 0) {
+            return ranked.toArray();
+        }
+        if (term.length() < 3) {
+            for (int doc = 0; doc < names.length; doc++) {
+                ranked.offer(doc, rank(names[doc], term, ranked.worstWanted()));
+            }
+            return ranked.toArray();
+        }
+
+        int[] lists = distinctKeys(term);
+        // Shortest list first, it bounds the number of candidates
+        int[][] bySize = new int[lists.length][];
+        for (int i = 0; i < lists.length; i++) {
+            int k = lists[i];
+            if (offsets[k] == offsets[k + 1]) {
+                return ranked.toArray();
+            }
+            bySize[i] = new int[] { offsets[k + 1] - offsets[k], k };
+        }
+        Arrays.sort(bySize, (a, b) -> Integer.compare(a[0], b[0]));
+
+        int[] from = new int[bySize.length];
+        int[] to = new int[bySize.length];
+        for (int i = 0; i < bySize.length; i++) {
+            from[i] = offsets[bySize[i][1]];
+            to[i] = offsets[bySize[i][1] + 1];
+        }
+
+        candidates:
+        for (int p = from[0]; p < to[0]; p++) {
+            int doc = postings[p];
+            for (int i = 1; i < bySize.length; i++) {
+                from[i] = seek(from[i], to[i], doc);
+                if (from[i] == to[i]) {
+                    break candidates;
+                }
+                if (postings[from[i]] != doc) {
+                    continue candidates;
+                }
+            }
+            ranked.offer(doc, rank(names[doc], term, ranked.worstWanted()));
+        }
+        return ranked.toArray();
+    }
+
+    /**
+     * First position in [lo, hi) holding a product at or after doc, galloping
+     * forward since the intersection only ever moves ahead.
+     */
+    private int seek(int lo, int hi, int doc) {
+        int step = 1;
+        int probe = lo;
+        while (probe < hi && postings[probe] < doc) {
+            lo = probe + 1;
+            probe += step;
+            step <<= 1;
+        }
+        hi = Math.min(probe + 1, hi);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (postings[mid] < doc) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static int[] distinctKeys(String term) {
+        int[] keys = new int[term.length() - 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = key(term, i);
+        }
+        Arrays.sort(keys);
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (n == 0 || keys[n - 1] != keys[i]) {
+                keys[n++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, n);
+    }
+
+    static final int EXACT = 0;
+    static final int PREFIX = 1;
+    static final int WORD = 2;
+    static final int CONTAINS = 3;
+    static final int NO_MATCH = 4;
+
+    /**
+     * How well name matches term, one of EXACT to NO_MATCH. Anything worse
+     * than worst counts as NO_MATCH, which saves looking past the start of
+     * the name once the results are full of prefix matches.
+     */
+    static int rank(String name, String term, int worst) {
+        int n = term.length();
+        int best = NO_MATCH;
+        int end = worst <= PREFIX ? Math.min(1, name.length() - n + 1) : name.length() - n + 1;
+        for (int i = 0; i < end; i++) {
+            if (i > 0 && worst < CONTAINS && Character.isLetterOrDigit(name.charAt(i - 1))) {
+                continue;
+            }
+            if (!name.regionMatches(true, i, term, 0, n)) {
+                continue;
+            }
+            if (i == 0) {
+                return n == name.length() ? EXACT : PREFIX;
+            }
+            if (!Character.isLetterOrDigit(name.charAt(i - 1))) {
+                return WORD;
+            }
+            best = CONTAINS;
+        }
+        return best <= worst ? best : NO_MATCH;
+    }
+
+    /**
+     * The first limit matches of each rank, in the order offered.
+     */
+    static class Ranked {
+        private final int limit;
+        private final int[][] hits = new int[NO_MATCH][];
+        private final int[] counts = new int[NO_MATCH];
+
+        Ranked(int limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * The worst rank that could still make it into the results.
+         */
+        int worstWanted() {
+            int n = 0;
+            for (int r = 0; r < NO_MATCH; r++) {
+                n += counts[r];
+                if (n >= limit) {
+                    return r;
+                }
+            }
+            return CONTAINS;
+        }
+
+        void offer(int doc, int rank) {
+            if (rank >= NO_MATCH || counts[rank] >= limit) {
+                return;
+            }
+            if (hits[rank] == null) {
+                hits[rank] = new int[Math.min(limit, 16)];
+            } else if (counts[rank] == hits[rank].length) {
+                hits[rank] = Arrays.copyOf(hits[rank], Math.min(limit, counts[rank] * 2));
+            }
+            hits[rank][counts[rank]++] = doc;
+        }
+
+        int[] toArray() {
+            int[] out = new int[0];
+            int n = 0;
+            for (int r = 0; r < NO_MATCH && n < limit; r++) {
+                int take = Math.min(counts[r], limit - n);
+                if (take == 0) {
+                    continue;
+                }
+                out = Arrays.copyOf(out, n + take);
+                System.arraycopy(hits[r], 0, out, n, take);
+                n += take;
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.johnkusner.cse241final.stats;
+
+import java.util.Arrays;
+
+/**
+ * Quantity and cents per (member, location, day), where a member is a
+ * product or a category node. Each (member, location) pair has a Series of
+ * day totals kept in day order in primitive arrays, so a date range is a
+ * binary search and a walk. Pairs are found through open-addressed long
+ * keys, and each member's pairs are linked together so a slice on one
+ * member doesn't look at the others.
+ */
+final class Cuboid {
+    private long[] keys;
+    private Series[] series;
+    private int size;
+
+    private long[] memberKeys;
+    private Series[] heads;
+    private int members;
+
+    private long cells;
+
+    Cuboid() {
+        keys = new long[64];
+        series = new Series[64];
+        memberKeys = new long[64];
+        heads = new Series[64];
+    }
+
+    void add(int member, int location, int day, long qty, long cents) {
+        long key = ((long) member << 32) | (location & 0xFFFFFFFFL);
+        int i = slot(keys, series, key);
+        Series s = series[i];
+        if (s == null) {
+            s = new Series(member, location);
+            keys[i] = key;
+            series[i] = s;
+            int h = slot(memberKeys, heads, member);
+            memberKeys[h] = member;
+            s.next = heads[h];
+            if (heads[h] == null) {
+                members++;
+            }
+            heads[h] = s;
+            if (++size * 2 > keys.length) {
+                growSeries();
+            }
+            if (members * 2 > memberKeys.length) {
+                growMembers();
+            }
+        }
+        if (s.add(day, qty, cents)) {
+            cells++;
+        }
+    }
+
+    /**
+     * The first of member's series, the rest follow through Series.next.
+     */
+    Series first(int member) {
+        return heads[slot(memberKeys, heads, member)];
+    }
+
+    /**
+     * Every member that has sales.
+     */
+    int[] members() {
+        int[] out = new int[members];
+        int n = 0;
+        for (int i = 0; i < heads.length; i++) {
+            if (heads[i] != null) {
+                out[n++] = (int) memberKeys[i];
+            }
+        }
+        return out;
+    }
+
+    int seriesCount() {
+        return size;
+    }
+
+    long cellCount() {
+        return cells;
+    }
+
+    private static int slot(long[] keys, Series[] values, long key) {
+        int mask = keys.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int i = (int) (h ^ (h >>> 32)) & mask;
+        while (values[i] != null && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void growSeries() {
+        long[] oldKeys = keys;
+        Series[] old = series;
+        keys = new long[oldKeys.length * 2];
+        series = new Series[oldKeys.length * 2];
+        for (int i = 0; i < old.length; i++) {
+            if (old[i] != null) {
+                int j = slot(keys, series, oldKeys[i]);
+                keys[j] = oldKeys[i];
+                series[j] = old[i];
+            }
+        }
+    }
+
+    private void growMembers() {
+        long[] oldKeys = memberKeys;
+        Series[] old = heads;
+        memberKeys = new long[oldKeys.length * 2];
+        heads = new Series[oldKeys.length * 2];
+        for (int i = 0; i < old.length; i++) {
+            if (old[i] != null) {
+                int j = slot(memberKeys, heads, oldKeys[i]);
+                memberKeys[j] = oldKeys[i];
+                heads[j] = old[i];
+            }
+        }
+    }
+
+    interface DayVisitor {
+        void accept(int day, long qty, long cents);
+    }
+
+    /**
+     * Day totals of one member at one location.
+     */
+    static final class Series {
+        final int member;
+        final int location;
+        Series next;
+
+        private int[] days = new int[4];
+        private long[] qty = new long[4];
+        private long[] cents = new long[4];
+        private int size;
+
+        Series(int member, int location) {
+            this.member = member;
+            this.location = location;
+        }
+
+        /**
+         * Add to day's totals, returning whether it's a new day.
+         */
+        boolean add(int day, long addQty, long addCents) {
+            // Almost always the newest day, late rows go in their place
+            int i = size == 0 || days[size - 1] < day ? -size - 1
+                    : days[size - 1] == day ? size - 1 : Arrays.binarySearch(days, 0, size, day);
+            boolean added = i < 0;
+            if (added) {
+                i = -i - 1;
+                if (size == days.length) {
+                    days = Arrays.copyOf(days, size * 2);
+                    qty = Arrays.copyOf(qty, size * 2);
+                    cents = Arrays.copyOf(cents, size * 2);
+                }
+                System.arraycopy(days, i, days, i + 1, size - i);
+                System.arraycopy(qty, i, qty, i + 1, size - i);
+                System.arraycopy(cents, i, cents, i + 1, size - i);
+                days[i] = day;
+                qty[i] = 0;
+                cents[i] = 0;
+                size++;
+            }
+            qty[i] += addQty;
+            cents[i] += addCents;
+            return added;
+        }
+
+        /**
+         * Visit each day from fromDay through toDay that has sales.
+         */
+        void forEach(int fromDay, int toDay, DayVisitor visitor) {
+            for (int i = lowerBound(fromDay); i < size && days[i] <= toDay; i++) {
+                visitor.accept(days[i], qty[i], cents[i]);
+            }
+        }
+
+        /**
+         * Add the totals from fromDay through toDay to totals under key.
+         */
+        void sumInto(int fromDay, int toDay, GroupTotals totals, int key) {
+            long q = 0;
+            long c = 0;
+            for (int i = lowerBound(fromDay); i < size && days[i] <= toDay; i++) {
+                q += qty[i];
+                c += cents[i];
+            }
+            if (q != 0 || c != 0) {
+                totals.add(key, q, c, 0);
+            }
+        }
+
+        /**
+         * Copy every day into another cuboid under member.
+         */
+        void copyTo(Cuboid into, int member) {
+            for (int i = 0; i < size; i++) {
+                into.add(member, location, days[i], qty[i], cents[i]);
+            }
+        }
+
+        private int lowerBound(int day) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (days[mid] < day) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
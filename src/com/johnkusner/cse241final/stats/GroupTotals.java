@@ -0,0 +1,94 @@
+package com.johnkusner.cse241final.stats;
+
+import java.util.Arrays;
+
+/**
+ * Quantity, cents and transaction count summed per int group key (a product
+ * id or a period number), in open-addressed primitive arrays so adding up
+ * millions of rows doesn't box anything.
+ */
+final class GroupTotals {
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private long[] qty;
+    private long[] cents;
+    private long[] trans;
+    private int size;
+
+    GroupTotals() {
+        allocate(16);
+    }
+
+    void add(int key, long addQty, long addCents, long addTrans) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (keys[i] != key) {
+            if (keys[i] == EMPTY) {
+                if (size * 2 >= keys.length) {
+                    grow();
+                    add(key, addQty, addCents, addTrans);
+                    return;
+                }
+                keys[i] = key;
+                size++;
+                break;
+            }
+            i = (i + 1) & mask;
+        }
+        qty[i] += addQty;
+        cents[i] += addCents;
+        trans[i] += addTrans;
+    }
+
+    void addAll(GroupTotals other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != EMPTY) {
+                add(other.keys[i], other.qty[i], other.cents[i], other.trans[i]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                visitor.accept(keys[i], qty[i], cents[i], trans[i]);
+            }
+        }
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        long[] oldQty = qty;
+        long[] oldCents = cents;
+        long[] oldTrans = trans;
+        allocate(oldKeys.length * 2);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                add(oldKeys[i], oldQty[i], oldCents[i], oldTrans[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        qty = new long[capacity];
+        cents = new long[capacity];
+        trans = new long[capacity];
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    interface Visitor {
+        void accept(int key, long qty, long cents, long trans);
+    }
+}
@@ -0,0 +1,664 @@
+package com.johnkusner.cse241final.stats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.objects.SalesTotals;
+
+/**
+ * Every purchase line joined with its transaction, held in memory as
+ * primitive columns (transaction id, epoch second, location, product id,
+ * quantity and cents) for the statistics screens. Filtered group-bys are
+ * split over ForkJoinPool.commonPool(), so they use every core, and rows are
+ * kept in time order so a date range is found by binary search.
+ *
+ * The columns are loaded in the background the first time they're asked for,
+ * when the statistics interface is opened, on one thread and so one pooled
+ * connection at a time. After that, checkouts made by this app are appended
+ * as they commit, and rows added by anyone else are read every
+ * brc.analytics.refresh seconds (default 60) by asking only for rows newer
+ * than the latest one. Rows that came in out of time order are merged back
+ * into place on each of those reads. Until the load is done the query
+ * methods return null. -Dbrc.analytics=false turns this off, and the
+ * statistics screens read the SQL views instead. Each row takes 32 bytes.
+ *
+ * Other summaries of the same rows can be kept by a RowListener instead of
+ * reading them again.
+ */
+public class SalesColumns implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(SalesColumns.class.getName());
+
+    // Rows per fork-join leaf
+    private static final int LEAF_ROWS = 1 << 15;
+    // How far back to look for rows already appended. A transaction is
+    // stamped when it starts, so one that commits late can be older than
+    // rows already read.
+    private static final long MARGIN_SECONDS = 60 * 60;
+
+    public enum Period {
+        DAY, WEEK, MONTH, QUARTER
+    }
+
+    private final ConnectionPool pool;
+    private final boolean enabled;
+    private final long refreshMs;
+    private final ScheduledExecutorService loader;
+
+    // Appended to under this' lock, readers only see up to columns.size
+    private Rows rows;
+    private volatile Columns columns;
+    // Checkouts made while loading, null when not loading
+    private List<Rows> pending;
+    private final List<RowListener> listeners = new ArrayList<>();
+
+    private volatile long loadMs;
+    private volatile String loadError;
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong queryNanos = new AtomicLong();
+
+    public SalesColumns(ConnectionPool pool, boolean enabled, long refreshMs) {
+        this.pool = pool;
+        this.enabled = enabled;
+        this.refreshMs = refreshMs;
+        this.loader = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sales-columns");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * The engine for the given pool, loading in the background the first
+     * time it is asked for.
+     */
+    public static SalesColumns forPool(ConnectionPool pool) {
+        return pool.service(SalesColumns.class, p -> {
+            SalesColumns engine = new SalesColumns(p,
+                    Boolean.parseBoolean(System.getProperty("brc.analytics", "true")),
+                    Long.getLong("brc.analytics.refresh", 60) * 1000);
+            engine.start();
+            return engine;
+        });
+    }
+
+    /**
+     * Load the columns in the background, then keep reading new rows.
+     */
+    public synchronized void start() {
+        if (!enabled || columns != null || pending != null) {
+            return;
+        }
+        pending = new ArrayList<>();
+        loader.execute(this::load);
+        if (refreshMs > 0) {
+            loader.scheduleWithFixedDelay(this::refresh, refreshMs, refreshMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isReady() {
+        return columns != null;
+    }
+
+    /**
+     * Tell listener about every row, those loaded so far right away and the
+     * rest as they're added.
+     */
+    public synchronized void addListener(RowListener listener) {
+        listeners.add(listener);
+        if (rows != null) {
+            tell(listener, 0, rows.size);
+        }
+    }
+
+    /**
+     * A checkout committed at location (0 for shipped orders): paid[i] for
+     * qtys[i] of productIds[i], skipping lines where nothing was bought.
+     */
+    public void recordCheckout(int transId, long timestamp, int location, int[] productIds, int[] qtys,
+            double[] paid) {
+        Rows checkout = new Rows(productIds.length);
+        long second = Math.floorDiv(timestamp, 1000);
+        for (int i = 0; i < productIds.length; i++) {
+            if (qtys[i] > 0) {
+                checkout.add(transId, second, location, productIds[i], qtys[i], Math.round(paid[i] * 100));
+            }
+        }
+        synchronized (this) {
+            if (columns == null) {
+                if (pending != null) {
+                    pending.add(checkout);
+                }
+                return;
+            }
+            appendNew(checkout);
+        }
+    }
+
+    /**
+     * Sales per period from fromSecond up to toSecond, newest first, or null
+     * until loaded.
+     */
+    public List<SalesTotals> totals(Period period, long fromSecond, long toSecond) {
+        Columns c = columns;
+        if (c == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        List<SalesTotals> totals = new ArrayList<>();
+        long first = Math.max(fromSecond, c.minSecond);
+        long last = Math.min(toSecond - 1, c.maxSecond);
+        if (c.size > 0 && first <= last) {
+            ZoneId zone = ZoneId.systemDefault();
+            List<LocalDate> starts = new ArrayList<>();
+            LocalDate day = periodStart(period, Instant.ofEpochSecond(first).atZone(zone).toLocalDate());
+            long[] bounds = new long[16];
+            int n = 0;
+            while (true) {
+                long bound = day.atStartOfDay(zone).toEpochSecond();
+                if (n == bounds.length) {
+                    bounds = Arrays.copyOf(bounds, n * 2);
+                }
+                bounds[n++] = bound;
+                if (bound > last) {
+                    break;
+                }
+                starts.add(day);
+                day = nextPeriod(period, day);
+            }
+            long[] b = Arrays.copyOf(bounds, n);
+
+            GroupTotals groups = aggregate(c, fromSecond, toSecond, row -> {
+                int i = Arrays.binarySearch(b, c.seconds[row]);
+                return i >= 0 ? i : -i - 2;
+            });
+            SalesTotals[] byPeriod = new SalesTotals[starts.size()];
+            groups.forEach((key, qty, cents, trans) -> byPeriod[key] = new SalesTotals(
+                    label(period, starts.get(key)), cents / 100.0, (int) qty, (int) trans));
+            for (int i = byPeriod.length - 1; i >= 0; i--) {
+                if (byPeriod[i] != null) {
+                    totals.add(byPeriod[i]);
+                }
+            }
+        }
+        queries.incrementAndGet();
+        queryNanos.addAndGet(System.nanoTime() - start);
+        return totals;
+    }
+
+    /**
+     * The n best sellers from fromSecond up to toSecond, exactly, or null
+     * until loaded.
+     */
+    public TopSellers.Ranking topSellers(long fromSecond, long toSecond, int n) {
+        Columns c = columns;
+        if (c == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        GroupTotals groups = aggregate(c, fromSecond, toSecond, row -> c.products[row]);
+        int[] ids = new int[groups.size()];
+        long[] qtys = new long[groups.size()];
+        long[] cents = new long[groups.size()];
+        int[] count = { 0 };
+        groups.forEach((key, qty, amount, trans) -> {
+            ids[count[0]] = key;
+            qtys[count[0]] = qty;
+            cents[count[0]++] = amount;
+        });
+        Integer[] order = new Integer[ids.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> qtys[a] != qtys[b] ? Long.compare(qtys[b], qtys[a])
+                : Integer.compare(ids[a], ids[b]));
+        List<TopSellers.Seller> sellers = new ArrayList<>(Math.min(n, order.length));
+        for (int i = 0; i < order.length && i < n; i++) {
+            int o = order[i];
+            sellers.add(new TopSellers.Seller(ids[o], qtys[o], cents[o] / 100.0, 0));
+        }
+        queries.incrementAndGet();
+        queryNanos.addAndGet(System.nanoTime() - start);
+        return new TopSellers.Ranking(sellers, 0, Math.max(0, fromSecond) * 1000);
+    }
+
+    /**
+     * The n best sellers in one of the top sellers screen's windows, counted
+     * back from now the way the views do.
+     */
+    public TopSellers.Ranking topSellers(TopSellers.Window window, int n) {
+        long now = System.currentTimeMillis();
+        long from = window == TopSellers.Window.ALL_TIME ? Long.MIN_VALUE
+                : Math.floorDiv(TopSellers.start(window, now), 1000) + 1;
+        return topSellers(from, Long.MAX_VALUE, n);
+    }
+
+    /**
+     * Sum the rows from fromSecond up to toSecond into groups, in parallel.
+     */
+    private static GroupTotals aggregate(Columns c, long fromSecond, long toSecond, GroupKey key) {
+        // The time ordered rows in range, then the few that came in late
+        int lo = lowerBound(c, fromSecond);
+        int hi = lowerBound(c, toSecond);
+        ForkJoinPool fj = ForkJoinPool.commonPool();
+        GroupTotals totals = fj.invoke(new Aggregation(c, lo, hi, fromSecond, toSecond, key));
+        if (c.sorted < c.size) {
+            totals.addAll(fj.invoke(new Aggregation(c, c.sorted, c.size, fromSecond, toSecond, key)));
+        }
+        return totals;
+    }
+
+    /**
+     * The first time ordered row at or after second.
+     */
+    private static int lowerBound(Columns c, long second) {
+        int lo = 0;
+        int hi = c.sorted;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (c.seconds[mid] < second) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    static LocalDate periodStart(Period period, LocalDate day) {
+        switch (period) {
+        case WEEK:
+            // Oracle's WW: week 1 is January 1st to 7th
+            return day.withDayOfYear((day.getDayOfYear() - 1) / 7 * 7 + 1);
+        case MONTH:
+            return day.withDayOfMonth(1);
+        case QUARTER:
+            return LocalDate.of(day.getYear(), (day.getMonthValue() - 1) / 3 * 3 + 1, 1);
+        default:
+            return day;
+        }
+    }
+
+    static LocalDate nextPeriod(Period period, LocalDate start) {
+        switch (period) {
+        case WEEK:
+            LocalDate next = start.plusDays(7);
+            return next.getYear() != start.getYear() ? LocalDate.of(next.getYear(), 1, 1) : next;
+        case MONTH:
+            return start.plusMonths(1);
+        case QUARTER:
+            return start.plusMonths(3);
+        default:
+            return start.plusDays(1);
+        }
+    }
+
+    /**
+     * The period's name, as the sales_totals_per_X views write it.
+     */
+    static String label(Period period, LocalDate start) {
+        String month = start.getMonth().getDisplayName(TextStyle.SHORT, Locale.US).toUpperCase(Locale.US);
+        switch (period) {
+        case WEEK:
+            return String.format("Week %02d, %d", (start.getDayOfYear() - 1) / 7 + 1, start.getYear());
+        case MONTH:
+            return month + " " + start.getYear();
+        case QUARTER:
+            return "Q" + ((start.getMonthValue() - 1) / 3 + 1) + ", " + start.getYear();
+        default:
+            return String.format("%s %02d, %d", month, start.getDayOfMonth(), start.getYear());
+        }
+    }
+
+    private void load() {
+        long begin = System.currentTimeMillis();
+        try {
+            Rows loaded = new Rows(1 << 16);
+            read(loaded, Query.SALES_COLUMNS, null);
+            synchronized (this) {
+                rows = loaded;
+                // Before the rows are visible, so listeners are ready as soon
+                // as the columns are
+                for (RowListener listener : listeners) {
+                    tell(listener, 0, rows.size);
+                }
+                columns = rows.snapshot();
+                for (Rows checkout : pending) {
+                    appendNew(checkout);
+                }
+                pending = null;
+            }
+            loadMs = System.currentTimeMillis() - begin;
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                pending = null;
+            }
+            loadError = e.getMessage();
+            LOG.log(Level.WARNING, "Could not load the sales columns", e);
+        }
+    }
+
+    /**
+     * Append rows newer than what's loaded, from checkouts elsewhere.
+     */
+    private void refresh() {
+        Columns c = columns;
+        if (c == null) {
+            return;
+        }
+        try {
+            Rows newer = new Rows(1024);
+            read(newer, Query.SALES_COLUMNS_SINCE,
+                    new Timestamp((c.size == 0 ? 0 : c.maxSecond - MARGIN_SECONDS) * 1000));
+            synchronized (this) {
+                appendNew(newer);
+                if (rows.sorted < rows.size) {
+                    merged.addAndGet(rows.size - rows.sorted);
+                    rows.merge();
+                    columns = rows.snapshot();
+                }
+            }
+            refreshes.incrementAndGet();
+        } catch (SQLException | RuntimeException e) {
+            // Try again next time
+        }
+    }
+
+    private void read(Rows into, Query query, Timestamp since) throws SQLException {
+        try (Connection db = pool.borrow();
+                PreparedStatement s = since == null ? query.prepare(db) : query.prepare(db, since)) {
+            s.setFetchSize(10000);
+            try (ResultSet r = s.executeQuery()) {
+                while (r.next()) {
+                    into.add(r.getInt(1), Math.floorDiv(r.getTimestamp(2).getTime(), 1000), r.getInt(6),
+                            r.getInt(3), r.getInt(4), Math.round(r.getDouble(5) * 100) * r.getInt(4));
+                }
+            }
+        }
+    }
+
+    /**
+     * Append the transactions in batch that aren't here yet. Called with
+     * this' lock held.
+     */
+    private void appendNew(Rows batch) {
+        if (batch.size == 0) {
+            return;
+        }
+        long earliest = batch.seconds[0];
+        for (int i = 1; i < batch.size; i++) {
+            earliest = Math.min(earliest, batch.seconds[i]);
+        }
+        Set<Integer> present = rows.transactionsSince(earliest - MARGIN_SECONDS);
+        int before = rows.size;
+        for (int i = 0; i < batch.size; i++) {
+            if (!present.contains(batch.trans[i])) {
+                rows.add(batch.trans[i], batch.seconds[i], batch.locations[i], batch.products[i], batch.qtys[i],
+                        batch.cents[i]);
+            }
+        }
+        if (rows.size > before) {
+            columns = rows.snapshot();
+            appended.addAndGet(rows.size - before);
+            for (RowListener listener : listeners) {
+                tell(listener, before, rows.size);
+            }
+        }
+    }
+
+    /**
+     * Pass rows from up to to on. Called with this' lock held.
+     */
+    private void tell(RowListener listener, int from, int to) {
+        Rows r = rows;
+        for (int i = from; i < to; i++) {
+            listener.added(r.trans[i], r.seconds[i], r.locations[i], r.products[i], r.qtys[i], r.cents[i]);
+        }
+    }
+
+    @Override
+    public void close() {
+        loader.shutdownNow();
+    }
+
+    public String toString() {
+        Columns c = columns;
+        if (!enabled) {
+            return "off";
+        }
+        if (c == null) {
+            return loadError != null ? "not loaded: " + loadError : "loading...";
+        }
+        long q = queries.get();
+        return String.format("%,d rows, %,d KB, %d cores | loaded in %,d ms, %,d rows appended, %,d refreshes,"
+                + " %,d merged into place, %,d out of place | %,d queries, %.2f ms avg",
+                c.size, c.size * 32L / 1024, ForkJoinPool.commonPool().getParallelism(), loadMs,
+                appended.get(), refreshes.get(), merged.get(), c.size - c.sorted, q,
+                q == 0 ? 0.0 : queryNanos.get() / 1e6 / q);
+    }
+
+    /**
+     * Told about each row as it's added, once, while the columns' lock is
+     * held.
+     */
+    public interface RowListener {
+        void added(int transId, long second, int location, int productId, int qty, long cents);
+    }
+
+    private interface GroupKey {
+        int of(int row);
+    }
+
+    /**
+     * Sums one range of rows, splitting it in half until it's small. Splits
+     * are moved past the rest of a transaction's rows, so each transaction
+     * is counted once, by the first of its rows.
+     */
+    private static final class Aggregation extends RecursiveTask<GroupTotals> {
+        private static final long serialVersionUID = 1L;
+
+        private final Columns c;
+        private final int lo;
+        private final int hi;
+        private final long fromSecond;
+        private final long toSecond;
+        private final GroupKey key;
+
+        Aggregation(Columns c, int lo, int hi, long fromSecond, long toSecond, GroupKey key) {
+            this.c = c;
+            this.lo = lo;
+            this.hi = hi;
+            this.fromSecond = fromSecond;
+            this.toSecond = toSecond;
+            this.key = key;
+        }
+
+        @Override
+        protected GroupTotals compute() {
+            if (hi - lo > LEAF_ROWS) {
+                int mid = (lo + hi) >>> 1;
+                while (mid < hi && c.trans[mid] == c.trans[mid - 1]) {
+                    mid++;
+                }
+                Aggregation left = new Aggregation(c, lo, mid, fromSecond, toSecond, key);
+                left.fork();
+                GroupTotals right = new Aggregation(c, mid, hi, fromSecond, toSecond, key).compute();
+                GroupTotals totals = left.join();
+                if (totals.size() < right.size()) {
+                    right.addAll(totals);
+                    return right;
+                }
+                totals.addAll(right);
+                return totals;
+            }
+            GroupTotals totals = new GroupTotals();
+            for (int i = lo; i < hi; i++) {
+                long second = c.seconds[i];
+                if (second < fromSecond || second >= toSecond) {
+                    continue;
+                }
+                boolean firstRow = i == lo || c.trans[i] != c.trans[i - 1];
+                totals.add(key.of(i), c.qtys[i], c.cents[i], firstRow ? 1 : 0);
+            }
+            return totals;
+        }
+    }
+
+    /**
+     * Growable columns. Rows past a snapshot's size are never seen through
+     * it, so appending doesn't disturb anyone reading one.
+     */
+    private static final class Rows {
+        int[] trans;
+        long[] seconds;
+        int[] locations;
+        int[] products;
+        int[] qtys;
+        long[] cents;
+        int size;
+        // The first sorted rows are in time order
+        int sorted;
+        long minSecond = Long.MAX_VALUE;
+        long maxSecond = Long.MIN_VALUE;
+
+        Rows(int capacity) {
+            trans = new int[Math.max(1, capacity)];
+            seconds = new long[trans.length];
+            locations = new int[trans.length];
+            products = new int[trans.length];
+            qtys = new int[trans.length];
+            cents = new long[trans.length];
+        }
+
+        void add(int transId, long second, int location, int productId, int qty, long amount) {
+            if (size == trans.length) {
+                int n = size * 2;
+                trans = Arrays.copyOf(trans, n);
+                seconds = Arrays.copyOf(seconds, n);
+                locations = Arrays.copyOf(locations, n);
+                products = Arrays.copyOf(products, n);
+                qtys = Arrays.copyOf(qtys, n);
+                cents = Arrays.copyOf(cents, n);
+            }
+            if (sorted == size && (size == 0 || second >= seconds[size - 1])) {
+                sorted++;
+            }
+            trans[size] = transId;
+            seconds[size] = second;
+            locations[size] = location;
+            products[size] = productId;
+            qtys[size] = qty;
+            cents[size] = amount;
+            size++;
+            minSecond = Math.min(minSecond, second);
+            maxSecond = Math.max(maxSecond, second);
+        }
+
+        Set<Integer> transactionsSince(long second) {
+            Set<Integer> found = new HashSet<>();
+            for (int i = sorted - 1; i >= 0 && seconds[i] >= second; i--) {
+                found.add(trans[i]);
+            }
+            for (int i = sorted; i < size; i++) {
+                found.add(trans[i]);
+            }
+            return found;
+        }
+
+        /**
+         * Put the rows past the time ordered ones in their place, into new
+         * arrays so snapshots already handed out don't change. Sorting is
+         * stable, so each transaction's rows stay together.
+         */
+        void merge() {
+            Integer[] tail = new Integer[size - sorted];
+            for (int i = 0; i < tail.length; i++) {
+                tail[i] = sorted + i;
+            }
+            Arrays.sort(tail, (a, b) -> Long.compare(seconds[a], seconds[b]));
+
+            int[] t = new int[trans.length];
+            long[] s = new long[trans.length];
+            int[] l = new int[trans.length];
+            int[] p = new int[trans.length];
+            int[] q = new int[trans.length];
+            long[] c = new long[trans.length];
+            int i = 0;
+            int j = 0;
+            for (int to = 0; to < size; to++) {
+                int from = j == tail.length || (i < sorted && seconds[i] <= seconds[tail[j]]) ? i++ : tail[j++];
+                t[to] = trans[from];
+                s[to] = seconds[from];
+                l[to] = locations[from];
+                p[to] = products[from];
+                q[to] = qtys[from];
+                c[to] = cents[from];
+            }
+            trans = t;
+            seconds = s;
+            locations = l;
+            products = p;
+            qtys = q;
+            cents = c;
+            sorted = size;
+        }
+
+        Columns snapshot() {
+            return new Columns(trans, seconds, products, qtys, cents, size, sorted, minSecond, maxSecond);
+        }
+    }
+
+    private static final class Columns {
+        final int[] trans;
+        final long[] seconds;
+        final int[] products;
+        final int[] qtys;
+        final long[] cents;
+        final int size;
+        final int sorted;
+        final long minSecond;
+        final long maxSecond;
+
+        Columns(int[] trans, long[] seconds, int[] products, int[] qtys, long[] cents, int size, int sorted,
+                long minSecond, long maxSecond) {
+            this.trans = trans;
+            this.seconds = seconds;
+            this.products = products;
+            this.qtys = qtys;
+            this.cents = cents;
+            this.size = size;
+            this.sorted = sorted;
+            this.minSecond = minSecond;
+            this.maxSecond = maxSecond;
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package com.johnkusner.cse241final.stats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.johnkusner.cse241final.catalog.CategoryCache;
+import com.johnkusner.cse241final.catalog.CategoryTree;
+import com.johnkusner.cse241final.catalog.ProductCategoryIndex;
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Query;
+
+/**
+ * Sales summed per product, category, location and day, for slicing and
+ * dicing on the statistics screen. Three cuboids are kept:
+ *
+ *  - product x location x day, from every purchase line
+ *  - category x location x day, where a category counts every product in it
+ *    or under it once; derived from the first through CategoryCache's
+ *    product_category, and derived again when that changes
+ *  - location x day, for all categories
+ *
+ * Physical and pickup sales count at their store, shipped orders at the
+ * ONLINE location. The lines are SalesColumns' rows, passed on as it loads
+ * and adds them, so the cube is ready when the columns are. Until then
+ * query() returns null. -Dbrc.cube=false turns it off.
+ */
+public class SalesCube implements SalesColumns.RowListener, AutoCloseable {
+    public static final int ALL_CATEGORIES = 0;
+    public static final int ALL_LOCATIONS = -1;
+    public static final int ONLINE = 0;
+
+    /**
+     * What a query's rows are: the categories directly under the slice's,
+     * each location, each product or each period.
+     */
+    public enum By {
+        CATEGORY, LOCATION, PRODUCT, DAY, WEEK, MONTH, QUARTER
+    }
+
+    private final ConnectionPool pool;
+    private final SalesColumns columns;
+    private final boolean enabled;
+    private boolean started;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Guarded by lock
+    private final Cuboid products = new Cuboid();
+    private final Cuboid totals = new Cuboid();
+    private Cuboid categories;
+    // What categories was derived with, and each product's categories and
+    // their ancestors
+    private ProductCategoryIndex categoryIndex;
+    private Map<Integer, int[]> productCategories;
+    // Read the first time a query needs them
+    private Map<Integer, String> locationNames;
+    // The epoch day of the last line added, and the seconds it covers
+    private int day;
+    private long dayStart = Long.MAX_VALUE;
+    private long dayEnd = Long.MIN_VALUE;
+
+    private final AtomicLong lines = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong queryNanos = new AtomicLong();
+
+    public SalesCube(ConnectionPool pool, SalesColumns columns, boolean enabled) {
+        this.pool = pool;
+        this.columns = columns;
+        this.enabled = enabled;
+    }
+
+    /**
+     * The cube for the given pool, built from its SalesColumns.
+     */
+    public static SalesCube forPool(ConnectionPool pool) {
+        return pool.service(SalesCube.class, p -> {
+            SalesCube cube = new SalesCube(p, SalesColumns.forPool(p),
+                    Boolean.parseBoolean(System.getProperty("brc.cube", "true")));
+            cube.start();
+            return cube;
+        });
+    }
+
+    /**
+     * Start taking SalesColumns' rows, adding those it has loaded already.
+     */
+    public void start() {
+        synchronized (this) {
+            if (!enabled || started) {
+                return;
+            }
+            started = true;
+        }
+        columns.addListener(this);
+    }
+
+    public boolean isReady() {
+        return enabled && columns.isReady();
+    }
+
+    /**
+     * A purchase line from SalesColumns.
+     */
+    @Override
+    public void added(int transId, long second, int location, int productId, int qty, long cents) {
+        lock.writeLock().lock();
+        try {
+            if (second < dayStart || second >= dayEnd) {
+                ZoneId zone = ZoneId.systemDefault();
+                LocalDate date = Instant.ofEpochSecond(second).atZone(zone).toLocalDate();
+                day = (int) date.toEpochDay();
+                dayStart = date.atStartOfDay(zone).toEpochSecond();
+                dayEnd = date.plusDays(1).atStartOfDay(zone).toEpochSecond();
+            }
+            products.add(productId, location, day, qty, cents);
+            totals.add(0, location, day, qty, cents);
+            int[] cats = productCategories == null ? null : productCategories.get(productId);
+            if (cats != null) {
+                for (int cat : cats) {
+                    categories.add(cat, location, day, qty, cents);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        lines.incrementAndGet();
+    }
+
+    /**
+     * The slice's sales grouped by, or null until loaded. Categories and
+     * locations come most revenue first, products most sold first and
+     * periods newest first.
+     */
+    public List<Cell> query(Slice slice, By by) throws SQLException {
+        if (!isReady()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        boolean needsCategories = slice.getCategoryId() != ALL_CATEGORIES || by == By.CATEGORY;
+        ProductCategoryIndex index = needsCategories ? deriveCategories() : null;
+        if (by == By.LOCATION) {
+            readLocationNames();
+        }
+
+        int from = slice.getFrom() == null ? Integer.MIN_VALUE : (int) slice.getFrom().toEpochDay();
+        int to = slice.getTo() == null ? Integer.MAX_VALUE : (int) slice.getTo().toEpochDay();
+        int location = slice.getLocationId();
+        GroupTotals groups = new GroupTotals();
+        List<Cell> cells = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            CategoryTree tree = index == null ? null : index.getTree();
+            int node = -1;
+            if (slice.getCategoryId() != ALL_CATEGORIES) {
+                node = tree.node(slice.getCategoryId());
+                if (node < 0) {
+                    return cells;
+                }
+            }
+            Cuboid cuboid = node < 0 ? totals : categories;
+            int member = node < 0 ? 0 : slice.getCategoryId();
+
+            switch (by) {
+            case CATEGORY:
+                for (int i = 0; i < tree.getChildCount(node); i++) {
+                    int child = tree.getCategory(tree.getChild(node, i)).getId();
+                    sum(categories, child, location, from, to, groups, child);
+                }
+                break;
+            case LOCATION:
+                for (Cuboid.Series s = cuboid.first(member); s != null; s = s.next) {
+                    if (location == ALL_LOCATIONS || s.location == location) {
+                        s.sumInto(from, to, groups, s.location);
+                    }
+                }
+                break;
+            case PRODUCT:
+                int[] ids = node < 0 ? products.members() : index.productsUnder(node);
+                for (int id : ids) {
+                    sum(products, id, location, from, to, groups, id);
+                }
+                break;
+            default:
+                SalesColumns.Period period = SalesColumns.Period.valueOf(by.name());
+                int[] last = { Integer.MIN_VALUE, 0 };
+                for (Cuboid.Series s = cuboid.first(member); s != null; s = s.next) {
+                    if (location == ALL_LOCATIONS || s.location == location) {
+                        s.forEach(from, to, (day, qty, cents) -> {
+                            if (day != last[0]) {
+                                last[0] = day;
+                                last[1] = (int) SalesColumns.periodStart(period, LocalDate.ofEpochDay(day))
+                                        .toEpochDay();
+                            }
+                            groups.add(last[1], qty, cents, 0);
+                        });
+                    }
+                }
+            }
+
+            groups.forEach((key, qty, cents, trans) -> cells.add(new Cell(key, label(by, key, tree), qty,
+                    cents / 100.0)));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        switch (by) {
+        case CATEGORY:
+        case LOCATION:
+            cells.sort(Comparator.comparingDouble(Cell::getTotalSales).reversed());
+            break;
+        case PRODUCT:
+            cells.sort(Comparator.comparingLong(Cell::getAmountSold).reversed()
+                    .thenComparingInt(Cell::getKey));
+            break;
+        default:
+            cells.sort(Comparator.comparingInt(Cell::getKey).reversed());
+        }
+        queries.incrementAndGet();
+        queryNanos.addAndGet(System.nanoTime() - start);
+        return cells;
+    }
+
+    /**
+     * Name of a location, "Online" for ONLINE.
+     */
+    public String locationName(int location) {
+        if (location == ONLINE) {
+            return "Online";
+        }
+        String name;
+        lock.readLock().lock();
+        try {
+            name = locationNames == null ? null : locationNames.get(location);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return name != null ? name : "Location " + location;
+    }
+
+    private void readLocationNames() throws SQLException {
+        lock.readLock().lock();
+        try {
+            if (locationNames != null) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Map<Integer, String> names = new HashMap<>();
+        try (Connection db = pool.borrow();
+                PreparedStatement s = Query.ALL_LOCATIONS.prepare(db);
+                ResultSet r = s.executeQuery()) {
+            while (r.next()) {
+                names.put(r.getInt("location_id"), r.getString("location_name"));
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            locationNames = names;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The last day of the period by (DAY to QUARTER) starting on start.
+     */
+    public static LocalDate lastDay(By by, LocalDate start) {
+        return SalesColumns.nextPeriod(SalesColumns.Period.valueOf(by.name()), start).minusDays(1);
+    }
+
+    private static void sum(Cuboid cuboid, int member, int location, int from, int to, GroupTotals into,
+            int key) {
+        for (Cuboid.Series s = cuboid.first(member); s != null; s = s.next) {
+            if (location == ALL_LOCATIONS || s.location == location) {
+                s.sumInto(from, to, into, key);
+            }
+        }
+    }
+
+    private String label(By by, int key, CategoryTree tree) {
+        switch (by) {
+        case CATEGORY:
+            return tree.getCategory(tree.node(key)).getName();
+        case LOCATION:
+            return key == ONLINE ? "Online" : locationNames.getOrDefault(key, "Location " + key);
+        case PRODUCT:
+            // Names are looked up by the caller
+            return null;
+        default:
+            return SalesColumns.label(SalesColumns.Period.valueOf(by.name()), LocalDate.ofEpochDay(key));
+        }
+    }
+
+    /**
+     * The category index the category cuboid is derived with, deriving it
+     * again if CategoryCache has a newer one.
+     */
+    private ProductCategoryIndex deriveCategories() throws SQLException {
+        ProductCategoryIndex index = CategoryCache.forPool(pool).getProducts();
+        lock.readLock().lock();
+        try {
+            if (index == categoryIndex) {
+                return index;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (index != categoryIndex) {
+                CategoryTree tree = index.getTree();
+                Map<Integer, int[]> closure = new HashMap<>();
+                for (int node = 0; node < tree.size(); node++) {
+                    int[] in = index.productsIn(node);
+                    if (in.length == 0) {
+                        continue;
+                    }
+                    int[] path = ancestors(tree, node);
+                    for (int p : in) {
+                        int[] had = closure.get(p);
+                        if (had == null) {
+                            closure.put(p, path);
+                        } else {
+                            int[] both = Arrays.copyOf(had, had.length + path.length);
+                            System.arraycopy(path, 0, both, had.length, path.length);
+                            closure.put(p, both);
+                        }
+                    }
+                }
+                // A product in two categories under one counts there once
+                for (Map.Entry<Integer, int[]> e : closure.entrySet()) {
+                    e.setValue(Arrays.stream(e.getValue()).sorted().distinct().toArray());
+                }
+
+                Cuboid derived = new Cuboid();
+                for (int product : products.members()) {
+                    int[] cats = closure.get(product);
+                    if (cats == null) {
+                        continue;
+                    }
+                    for (Cuboid.Series s = products.first(product); s != null; s = s.next) {
+                        for (int cat : cats) {
+                            s.copyTo(derived, cat);
+                        }
+                    }
+                }
+                categories = derived;
+                productCategories = closure;
+                categoryIndex = index;
+            }
+            return categoryIndex;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The category ids of node and every category above it.
+     */
+    private static int[] ancestors(CategoryTree tree, int node) {
+        int depth = 0;
+        for (int n = node; n >= 0; n = tree.getParent(n)) {
+            depth++;
+        }
+        int[] ids = new int[depth];
+        int i = 0;
+        for (int n = node; n >= 0; n = tree.getParent(n)) {
+            ids[i++] = tree.getCategory(n).getId();
+        }
+        return ids;
+    }
+
+    @Override
+    public void close() {
+        // Nothing runs in the background, SalesColumns loads the lines
+    }
+
+    public String toString() {
+        if (!enabled) {
+            return "off";
+        }
+        if (!isReady()) {
+            return "waiting for the sales columns";
+        }
+        long series;
+        long cells;
+        lock.readLock().lock();
+        try {
+            series = products.seriesCount() + totals.seriesCount()
+                    + (categories == null ? 0 : categories.seriesCount());
+            cells = products.cellCount() + totals.cellCount() + (categories == null ? 0 : categories.cellCount());
+        } finally {
+            lock.readLock().unlock();
+        }
+        long q = queries.get();
+        // 20 bytes a cell, about 100 per series with its key and arrays
+        return String.format("%,d lines in %,d cells of %,d series, %,d KB | %,d queries, %.2f ms avg",
+                lines.get(), cells, series, (cells * 20 + series * 100) / 1024, q,
+                q == 0 ? 0.0 : queryNanos.get() / 1e6 / q);
+    }
+
+    /**
+     * Which sales to look at: those in a category (and the ones under it),
+     * at a location and between two days, inclusive. Nulls are open ends.
+     */
+    public static final class Slice {
+        public static final Slice ALL = new Slice(ALL_CATEGORIES, ALL_LOCATIONS, null, null);
+
+        private final int categoryId;
+        private final int locationId;
+        private final LocalDate from;
+        private final LocalDate to;
+
+        public Slice(int categoryId, int locationId, LocalDate from, LocalDate to) {
+            this.categoryId = categoryId;
+            this.locationId = locationId;
+            this.from = from;
+            this.to = to;
+        }
+
+        public int getCategoryId() {
+            return categoryId;
+        }
+
+        public int getLocationId() {
+            return locationId;
+        }
+
+        public LocalDate getFrom() {
+            return from;
+        }
+
+        public LocalDate getTo() {
+            return to;
+        }
+
+        public Slice withCategory(int categoryId) {
+            return new Slice(categoryId, locationId, from, to);
+        }
+
+        public Slice withLocation(int locationId) {
+            return new Slice(categoryId, locationId, from, to);
+        }
+
+        public Slice between(LocalDate from, LocalDate to) {
+            return new Slice(categoryId, locationId, from, to);
+        }
+    }
+
+    /**
+     * One row of a query: a category or location id, a product id, or the
+     * epoch day a period starts on.
+     */
+    public static final class Cell {
+        private final int key;
+        private final String label;
+        private final long amountSold;
+        private final double totalSales;
+
+        Cell(int key, String label, long amountSold, double totalSales) {
+            this.key = key;
+            this.label = label;
+            this.amountSold = amountSold;
+            this.totalSales = totalSales;
+        }
+
+        public int getKey() {
+            return key;
+        }
+
+        /**
+         * The category, location or period's name; null for products.
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        public long getAmountSold() {
+            return amountSold;
+        }
+
+        public double getTotalSales() {
+            return totalSales;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.johnkusner.cse241final.stats;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Query;
+
+/**
+ * Keeps sales_daily_rollup fit to answer the sales totals screen.
+ * checkout_cart adds every checkout to it, but sales that got in some other
+ * way, like the generator's data, aren't. The first time the screen asks,
+ * its totals are compared with purchased in the background, in one
+ * statement so a checkout can't land between the two sums. Until that
+ * finds them equal isReady() is false and the sales_totals_per_X views
+ * should be used.
+ *
+ * Rebuilding locks transaction while rebuild_sales_rollup runs, so it is
+ * only done when a manager asks for it (Manager interface, Check Sales
+ * Rollup).
+ */
+public class SalesRollup implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final ExecutorService checker;
+
+    private boolean started;
+    private volatile boolean ready;
+    private volatile String status = "not checked";
+
+    public SalesRollup(ConnectionPool pool) {
+        this.pool = pool;
+        this.checker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "sales-rollup-check");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static SalesRollup forPool(ConnectionPool pool) {
+        return pool.service(SalesRollup.class, SalesRollup::new);
+    }
+
+    /**
+     * Whether the rollup has been found to match purchased. The first call
+     * starts that check in the background.
+     */
+    public boolean isReady() {
+        synchronized (this) {
+            if (!started) {
+                started = true;
+                status = "checking...";
+                checker.execute(() -> {
+                    try {
+                        check();
+                    } catch (SQLException e) {
+                        status = "check failed: " + e.getMessage();
+                    }
+                });
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * Compare the rollup with purchased, returning whether it counts as many
+     * transactions and items.
+     */
+    public boolean check() throws SQLException {
+        long start = System.currentTimeMillis();
+        boolean matches;
+        try (Connection db = pool.borrow();
+                PreparedStatement s = Query.SALES_ROLLUP_CHECK.prepare(db);
+                ResultSet r = s.executeQuery()) {
+            r.next();
+            matches = r.getLong(1) == r.getLong(3) && r.getLong(2) == r.getLong(4);
+        }
+        long ms = System.currentTimeMillis() - start;
+        status = matches
+                ? String.format("up to date (checked in %,d ms)", ms)
+                : String.format("out of date, needs a rebuild (checked in %,d ms)", ms);
+        ready = matches;
+        return matches;
+    }
+
+    /**
+     * Build the rollup again from every purchase. Checkouts wait while it
+     * runs.
+     */
+    public void rebuild() throws SQLException {
+        long start = System.currentTimeMillis();
+        try (Connection db = pool.borrow()) {
+            db.setAutoCommit(false);
+            try (CallableStatement cs = Query.REBUILD_SALES_ROLLUP.call(db)) {
+                cs.execute();
+                db.commit();
+            } catch (SQLException e) {
+                db.rollback();
+                throw e;
+            } finally {
+                db.setAutoCommit(true);
+            }
+        }
+        status = String.format("rebuilt in %,d ms", System.currentTimeMillis() - start);
+        ready = true;
+    }
+
+    @Override
+    public void close() {
+        checker.shutdownNow();
+    }
+
+    public String toString() {
+        return status;
+    }
+}
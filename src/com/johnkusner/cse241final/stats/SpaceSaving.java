@@ -0,0 +1,197 @@
+package com.johnkusner.cse241final.stats;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Weighted Space-Saving summary (Metwally et al.) of how much of each
+ * product sold, keeping at most capacity counters. Fed directly, a
+ * product's count is never below what it really sold and at most its error
+ * above it, and any product that sold more than getMaxError() is sure to
+ * have a counter. Summaries added together with addAll also lose what the
+ * full ones had dropped, so there counts may be low too, by at most the
+ * sum of their getMaxError(), which is included in this one's.
+ *
+ * Counters sit in an indexed min-heap on count, so the smallest one, which
+ * a new product takes over when the summary is full, is found at once.
+ * The arrays grow as needed, an hour with a few sales stays small.
+ */
+final class SpaceSaving {
+    private final int capacity;
+
+    // Per counter slot
+    private int[] ids;
+    private long[] counts;
+    private long[] errors;
+    private double[] values;
+    private int[] heapIndex;
+    // heap[i] is a slot, heap[0] the one with the smallest count
+    private int[] heap;
+    private int size;
+    private final Map<Integer, Integer> slots = new HashMap<>();
+    // Uncounted sales of the summaries added with addAll
+    private long lost;
+    // Every counter, most first, until the next add
+    private Entry[] sorted;
+
+    SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        int initial = Math.min(capacity, 16);
+        ids = new int[initial];
+        counts = new long[initial];
+        errors = new long[initial];
+        values = new double[initial];
+        heapIndex = new int[initial];
+        heap = new int[initial];
+    }
+
+    /**
+     * Count qty more of the product, worth value. error is how much of qty
+     * may not really be there, when adding up other summaries.
+     */
+    void add(int id, long qty, long error, double value) {
+        sorted = null;
+        Integer slot = slots.get(id);
+        if (slot != null) {
+            counts[slot] += qty;
+            errors[slot] += error;
+            values[slot] += value;
+            siftDown(heapIndex[slot]);
+            return;
+        }
+        if (size < capacity) {
+            if (size == ids.length) {
+                grow();
+            }
+            int s = size++;
+            ids[s] = id;
+            counts[s] = qty;
+            errors[s] = error;
+            values[s] = value;
+            heap[s] = s;
+            heapIndex[s] = s;
+            slots.put(id, s);
+            siftUp(s);
+            return;
+        }
+        // Full: the least counted product gives up its counter, and the new
+        // one may have sold up to that much before we saw it
+        int s = heap[0];
+        long min = counts[s];
+        slots.remove(ids[s]);
+        ids[s] = id;
+        counts[s] = min + qty;
+        errors[s] = min + error;
+        // Its value isn't known either, only what's seen from now on
+        values[s] = value;
+        slots.put(id, s);
+        siftDown(0);
+    }
+
+    /**
+     * Add everything counted in other to this summary.
+     */
+    void addAll(SpaceSaving other) {
+        lost += other.getMaxError();
+        for (int s = 0; s < other.size; s++) {
+            add(other.ids[s], other.counts[s], other.errors[s], other.values[s]);
+        }
+    }
+
+    /**
+     * How far any count may be from the truth: the smallest count once the
+     * summary is full, plus what added summaries lost.
+     */
+    long getMaxError() {
+        return (size < capacity ? 0 : counts[heap[0]]) + lost;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * The n most sold products, most first.
+     */
+    Entry[] top(int n) {
+        Entry[] all = sorted;
+        if (all == null) {
+            all = new Entry[size];
+            for (int s = 0; s < size; s++) {
+                all[s] = new Entry(ids[s], counts[s], errors[s], values[s]);
+            }
+            Arrays.sort(all, (a, b) -> a.count != b.count ? Long.compare(b.count, a.count)
+                    : Integer.compare(a.productId, b.productId));
+            sorted = all;
+        }
+        return Arrays.copyOf(all, Math.min(n, all.length));
+    }
+
+    long getMemoryBytes() {
+        return 40L * ids.length + 48L * slots.size();
+    }
+
+    private void grow() {
+        int n = Math.min(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, n);
+        counts = Arrays.copyOf(counts, n);
+        errors = Arrays.copyOf(errors, n);
+        values = Arrays.copyOf(values, n);
+        heapIndex = Arrays.copyOf(heapIndex, n);
+        heap = Arrays.copyOf(heap, n);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (counts[heap[parent]] <= counts[heap[i]]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && counts[heap[left]] < counts[heap[smallest]]) {
+                smallest = left;
+            }
+            if (right < size && counts[heap[right]] < counts[heap[smallest]]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int t = heap[i];
+        heap[i] = heap[j];
+        heap[j] = t;
+        heapIndex[heap[i]] = i;
+        heapIndex[heap[j]] = j;
+    }
+
+    static final class Entry {
+        final int productId;
+        // Sold at least count - error, at most count
+        final long count;
+        final long error;
+        final double value;
+
+        Entry(int productId, long count, long error, double value) {
+            this.productId = productId;
+            this.count = count;
+            this.error = error;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.johnkusner.cse241final.stats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+import com.johnkusner.cse241final.db.Mappers;
+import com.johnkusner.cse241final.db.Query;
+import com.johnkusner.cse241final.db.RowMapper;
+import com.johnkusner.cse241final.objects.ProductSale;
+import com.johnkusner.cse241final.objects.SalesTotals;
+
+/**
+ * Rows of the sales totals and top sellers views, kept so the statistics
+ * screens don't run the whole view every time they're shown. A day, week,
+ * month or quarter that has ended doesn't change, so sales totals keep the
+ * closed periods for good and only add up the purchases since the open one
+ * started (sales_period_now) once it's older than the time to live or a
+ * checkout was made. When the open period ends the whole view is read again,
+ * once. The top sellers views' windows slide, so they are read again whole.
+ *
+ * loadAll() runs a dashboard's loads at the same time, on a fixed set of
+ * daemon threads, one per connection the pool can lend.
+ */
+public class StatisticsCache implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final boolean enabled;
+    private final long ttlMs;
+    // Made by the first loadAll()
+    private ExecutorService loaders;
+
+    private final Map<SalesColumns.Period, Totals> totals = new EnumMap<>(SalesColumns.Period.class);
+    private final Map<Query, Ranking> rankings = new EnumMap<>(Query.class);
+    // Bumped by each checkout, rows read before it are out of date
+    private final AtomicInteger checkouts = new AtomicInteger();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong openReads = new AtomicLong();
+    private final AtomicLong fullReads = new AtomicLong();
+
+    public StatisticsCache(ConnectionPool pool, boolean enabled, long ttlMs) {
+        this.pool = pool;
+        this.enabled = enabled;
+        this.ttlMs = ttlMs;
+        for (SalesColumns.Period period : SalesColumns.Period.values()) {
+            totals.put(period, new Totals());
+        }
+    }
+
+    /**
+     * The cache for the given pool. brc.statscache=false turns it off and
+     * brc.statscache.ttl sets how many seconds open periods and top sellers
+     * are kept.
+     */
+    public static StatisticsCache forPool(ConnectionPool pool) {
+        return pool.service(StatisticsCache.class, p -> new StatisticsCache(p,
+                Boolean.parseBoolean(System.getProperty("brc.statscache", "true")),
+                Long.getLong("brc.statscache.ttl", 30) * 1000));
+    }
+
+    /**
+     * Sales totals per period, newest first, from the rollup views once
+     * stats.SalesRollup has checked them, otherwise the ones that add up all
+     * of purchased.
+     */
+    public List<SalesTotals> totals(SalesColumns.Period period) throws SQLException {
+        boolean rollup = SalesRollup.forPool(pool).isReady();
+        Query view = view(period, rollup);
+        if (!enabled) {
+            try (Connection db = pool.borrow()) {
+                return read(db, view, Mappers.SALES_TOTALS);
+            }
+        }
+
+        Totals t = totals.get(period);
+        synchronized (t) {
+            long now = System.currentTimeMillis();
+            int seen = checkouts.get();
+            if (t.view == view && t.checkouts == seen && now - t.readAt < ttlMs) {
+                hits.incrementAndGet();
+                return t.rows;
+            }
+
+            try (Connection db = pool.borrow()) {
+                String open;
+                Timestamp openStart;
+                try (PreparedStatement s = Query.SALES_PERIOD_NOW.prepare(db);
+                        ResultSet r = s.executeQuery()) {
+                    r.next();
+                    // A label and start for each Period, in order
+                    open = r.getString(period.ordinal() * 2 + 1);
+                    openStart = r.getTimestamp(period.ordinal() * 2 + 2);
+                }
+                if (t.view != view || !open.equals(t.open)) {
+                    // First read, or the open period has ended since
+                    t.closed = new ArrayList<>();
+                    t.openRow = null;
+                    for (SalesTotals row : read(db, view, Mappers.SALES_TOTALS)) {
+                        if (open.equals(row.getDateStr())) {
+                            t.openRow = row;
+                        } else {
+                            t.closed.add(row);
+                        }
+                    }
+                    fullReads.incrementAndGet();
+                } else {
+                    Query since = rollup ? Query.SALES_ROLLUP_SINCE : Query.SALES_TOTALS_SINCE;
+                    try (PreparedStatement s = since.prepare(db, openStart);
+                            ResultSet r = s.executeQuery()) {
+                        r.next();
+                        t.openRow = r.getInt(3) == 0 ? null
+                                : new SalesTotals(open, r.getDouble(1), r.getInt(2), r.getInt(3));
+                    }
+                    openReads.incrementAndGet();
+                }
+                t.view = view;
+                t.open = open;
+                t.readAt = now;
+                t.checkouts = seen;
+            }
+
+            List<SalesTotals> rows = new ArrayList<>(t.closed.size() + 1);
+            if (t.openRow != null) {
+                rows.add(t.openRow);
+            }
+            rows.addAll(t.closed);
+            t.rows = Collections.unmodifiableList(rows);
+            return t.rows;
+        }
+    }
+
+    /**
+     * The rows of one of the top_selling_products views.
+     */
+    public List<ProductSale> topSellers(Query view) throws SQLException {
+        if (!enabled) {
+            try (Connection db = pool.borrow()) {
+                return read(db, view, Mappers.PRODUCT_SALE);
+            }
+        }
+
+        Ranking ranking;
+        synchronized (rankings) {
+            ranking = rankings.computeIfAbsent(view, v -> new Ranking());
+        }
+        synchronized (ranking) {
+            long now = System.currentTimeMillis();
+            int seen = checkouts.get();
+            if (ranking.rows != null && ranking.checkouts == seen && now - ranking.readAt < ttlMs) {
+                hits.incrementAndGet();
+                return ranking.rows;
+            }
+            try (Connection db = pool.borrow()) {
+                ranking.rows = Collections.unmodifiableList(read(db, view, Mappers.PRODUCT_SALE));
+            }
+            ranking.readAt = now;
+            ranking.checkouts = seen;
+            fullReads.incrementAndGet();
+            return ranking.rows;
+        }
+    }
+
+    /**
+     * A checkout was made, so open periods and top sellers are read again
+     * the next time they're asked for.
+     */
+    public void salesRecorded() {
+        checkouts.incrementAndGet();
+    }
+
+    /**
+     * Run every load at the same time and wait for them all, returning what
+     * each returned in the same order.
+     */
+    public <T> List<T> loadAll(List<? extends Callable<T>> loads) throws SQLException {
+        ExecutorService loaders = loaders();
+        List<Future<T>> futures = new ArrayList<>(loads.size());
+        for (Callable<T> load : loads) {
+            futures.add(loaders.submit(load));
+        }
+        List<T> results = new ArrayList<>(loads.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while loading statistics", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Could not load statistics: " + cause, cause);
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The threads loadAll() runs on, made the first time they're needed.
+     * More than the pool's connections would only wait in borrow().
+     */
+    private synchronized ExecutorService loaders() {
+        if (loaders == null) {
+            AtomicInteger threads = new AtomicInteger();
+            loaders = Executors.newFixedThreadPool(pool.getMaxSize(), r -> {
+                Thread t = new Thread(r, "statistics-load-" + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return loaders;
+    }
+
+    private static <T> List<T> read(Connection db, Query query, RowMapper<T> mapper) throws SQLException {
+        try (PreparedStatement s = query.prepare(db);
+                ResultSet r = s.executeQuery()) {
+            return mapper.list(r);
+        }
+    }
+
+    private static Query view(SalesColumns.Period period, boolean rollup) {
+        switch (period) {
+        case DAY:
+            return rollup ? Query.SALES_ROLLUP_PER_DAY : Query.SALES_PER_DAY;
+        case WEEK:
+            return rollup ? Query.SALES_ROLLUP_PER_WEEK : Query.SALES_PER_WEEK;
+        case MONTH:
+            return rollup ? Query.SALES_ROLLUP_PER_MONTH : Query.SALES_PER_MONTH;
+        default:
+            return rollup ? Query.SALES_ROLLUP_PER_QUARTER : Query.SALES_PER_QUARTER;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (loaders != null) {
+            loaders.shutdownNow();
+        }
+    }
+
+    public synchronized String toString() {
+        String threads = loaders == null ? "no threads yet" : pool.getMaxSize() + " threads";
+        if (!enabled) {
+            return "off | loads on " + threads;
+        }
+        return String.format("%,d hits, %,d open period reads, %,d full reads | kept %,d s | loads on %s",
+                hits.get(), openReads.get(), fullReads.get(), ttlMs / 1000, threads);
+    }
+
+    /**
+     * One period's totals: closed periods, newest first, and the open one.
+     */
+    private static final class Totals {
+        Query view;
+        String open;
+        SalesTotals openRow;
+        List<SalesTotals> closed;
+        List<SalesTotals> rows;
+        long readAt;
+        int checkouts;
+    }
+
+    private static final class Ranking {
+        List<ProductSale> rows;
+        long readAt;
+        int checkouts;
+    }
+}
@@ -0,0 +1,332 @@
+package com.johnkusner.cse241final.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import com.johnkusner.cse241final.db.ConnectionPool;
+
+/**
+ * Top selling products over the windows the statistics screen shows, kept
+ * in memory instead of grouping all of purchased for every request. Sales
+ * are counted into SpaceSaving summaries of brc.topsellers.k products
+ * (default 1000, 0 turns this off): one per hour for the past 8 days, one per
+ * day for the past year, and one for all time. A window is the buckets it
+ * covers added together, kept until its first bucket slides out and updated
+ * by every sale after that, so a top N sorts at most k counters however
+ * much has sold.
+ *
+ * The sales are SalesColumns' rows, passed on as it loads and adds them, so
+ * the rankings are ready when the columns are. Until then, or when the
+ * columns are turned off, top() returns null and the SQL views should be
+ * used.
+ *
+ * Windows start at the top of an hour (day and week) or at midnight UTC
+ * (month and longer), so they can take in up to that much more than the
+ * views; each Ranking says when its window started. Quantities since then
+ * are within the reported error of the truth, amounts spent only count
+ * what sold while a product had a counter and may be low.
+ */
+public class TopSellers implements SalesColumns.RowListener, AutoCloseable {
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+
+    public enum Window {
+        ALL_TIME, YEAR, QUARTER, MONTH, WEEK, DAY
+    }
+
+    private final SalesColumns columns;
+    private final int k;
+    private boolean started;
+
+    // Rings of buckets by hour and day number, hourOf and dayOf say which
+    // number each slot holds now
+    private final SpaceSaving[] hours = new SpaceSaving[8 * 24];
+    private final long[] hourOf = new long[hours.length];
+    private final SpaceSaving[] days = new SpaceSaving[368];
+    private final long[] dayOf = new long[days.length];
+    private final SpaceSaving allTime;
+    // Per Window, null until first asked for, and the bucket each starts at
+    private final SpaceSaving[] windows = new SpaceSaving[Window.values().length];
+    private final long[] windowFrom = new long[windows.length];
+
+    private long recorded;
+    private long queries;
+    private long merges;
+
+    public TopSellers(SalesColumns columns, int k) {
+        this.columns = columns;
+        this.k = k;
+        this.allTime = new SpaceSaving(Math.max(1, k));
+        Arrays.fill(hourOf, Long.MIN_VALUE);
+        Arrays.fill(dayOf, Long.MIN_VALUE);
+    }
+
+    /**
+     * The engine for the given pool, counting its SalesColumns' rows.
+     */
+    public static TopSellers forPool(ConnectionPool pool) {
+        return pool.service(TopSellers.class, p -> {
+            TopSellers engine = new TopSellers(SalesColumns.forPool(p),
+                    Integer.getInteger("brc.topsellers.k", 1000));
+            engine.start();
+            return engine;
+        });
+    }
+
+    /**
+     * Start taking SalesColumns' rows, counting those it has loaded already.
+     */
+    public void start() {
+        synchronized (this) {
+            if (k <= 0 || started) {
+                return;
+            }
+            started = true;
+        }
+        columns.addListener(this);
+    }
+
+    /**
+     * Whether rankings come from here at all, rather than the views.
+     */
+    public boolean isEnabled() {
+        return k > 0 && columns.isEnabled();
+    }
+
+    public boolean isReady() {
+        return k > 0 && columns.isReady();
+    }
+
+    /**
+     * A purchase line from SalesColumns.
+     */
+    @Override
+    public void added(int transId, long second, int location, int productId, int qty, long cents) {
+        recordSale(productId, qty, cents / 100.0, second * 1000);
+    }
+
+    private synchronized void recordSale(int productId, int qty, double amount, long timestamp) {
+        count(productId, qty, amount, timestamp);
+        allTime.add(productId, qty, 0, amount);
+        for (Window w : Window.values()) {
+            SpaceSaving window = windows[w.ordinal()];
+            if (window != null && bucketOf(w, timestamp) >= windowFrom[w.ordinal()]) {
+                window.add(productId, qty, 0, amount);
+            }
+        }
+        recorded++;
+    }
+
+    /**
+     * The n best sellers in the window, most sold first, or null until the
+     * sales columns have loaded.
+     */
+    public synchronized Ranking top(Window window, int n) {
+        if (!isReady()) {
+            return null;
+        }
+        queries++;
+        SpaceSaving summary = allTime;
+        long since = 0;
+        if (window != Window.ALL_TIME) {
+            summary = window(window, System.currentTimeMillis());
+            since = windowFrom[window.ordinal()] * (hourly(window) ? HOUR : DAY);
+        }
+        SpaceSaving.Entry[] top = summary.top(n);
+        List<Seller> sellers = new ArrayList<>(top.length);
+        for (SpaceSaving.Entry e : top) {
+            sellers.add(new Seller(e.productId, e.count, e.value, e.error));
+        }
+        return new Ranking(sellers, summary.getMaxError(), since);
+    }
+
+    private SpaceSaving window(Window w, long now) {
+        long from = bucketOf(w, start(w, now));
+        SpaceSaving window = windows[w.ordinal()];
+        if (window != null && windowFrom[w.ordinal()] == from) {
+            return window;
+        }
+        boolean hourly = hourly(w);
+        SpaceSaving[] ring = hourly ? hours : days;
+        long[] of = hourly ? hourOf : dayOf;
+        window = new SpaceSaving(k);
+        for (long b = from, to = bucketOf(w, now); b <= to; b++) {
+            int i = (int) Math.floorMod(b, (long) ring.length);
+            if (of[i] == b) {
+                window.addAll(ring[i]);
+            }
+        }
+        windows[w.ordinal()] = window;
+        windowFrom[w.ordinal()] = from;
+        merges++;
+        return window;
+    }
+
+    /**
+     * Add a sale to its hour and day buckets, if they are still kept.
+     */
+    private void count(int productId, int qty, double amount, long timestamp) {
+        SpaceSaving hour = bucket(hours, hourOf, Math.floorDiv(timestamp, HOUR));
+        if (hour != null) {
+            hour.add(productId, qty, 0, amount);
+        }
+        SpaceSaving day = bucket(days, dayOf, Math.floorDiv(timestamp, DAY));
+        if (day != null) {
+            day.add(productId, qty, 0, amount);
+        }
+    }
+
+    private SpaceSaving bucket(SpaceSaving[] ring, long[] of, long number) {
+        int i = (int) Math.floorMod(number, (long) ring.length);
+        if (of[i] > number) {
+            // Older than the ring goes back
+            return null;
+        }
+        if (of[i] != number) {
+            ring[i] = new SpaceSaving(k);
+            of[i] = number;
+        }
+        return ring[i];
+    }
+
+    private static boolean hourly(Window w) {
+        return w == Window.DAY || w == Window.WEEK;
+    }
+
+    private static long bucketOf(Window w, long timestamp) {
+        return Math.floorDiv(timestamp, hourly(w) ? HOUR : DAY);
+    }
+
+    /**
+     * When the window starts, as the views count it back from now.
+     */
+    static long start(Window w, long now) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(now);
+        switch (w) {
+        case YEAR:
+            c.add(Calendar.YEAR, -1);
+            break;
+        case QUARTER:
+            c.add(Calendar.MONTH, -3);
+            break;
+        case MONTH:
+            c.add(Calendar.MONTH, -1);
+            break;
+        case WEEK:
+            c.add(Calendar.DAY_OF_MONTH, -7);
+            break;
+        case DAY:
+            c.add(Calendar.DAY_OF_MONTH, -1);
+            break;
+        default:
+            return Long.MIN_VALUE;
+        }
+        return c.getTimeInMillis();
+    }
+
+    @Override
+    public void close() {
+        // Nothing of its own to stop, SalesColumns reads the rows
+    }
+
+    public synchronized String toString() {
+        if (k <= 0) {
+            return "off";
+        }
+        if (!columns.isEnabled()) {
+            return "off, the sales columns are turned off";
+        }
+        if (!columns.isReady()) {
+            return "waiting for the sales columns...";
+        }
+        int hourBuckets = 0;
+        int dayBuckets = 0;
+        long bytes = allTime.getMemoryBytes();
+        for (SpaceSaving b : hours) {
+            if (b != null) {
+                hourBuckets++;
+                bytes += b.getMemoryBytes();
+            }
+        }
+        for (SpaceSaving b : days) {
+            if (b != null) {
+                dayBuckets++;
+                bytes += b.getMemoryBytes();
+            }
+        }
+        for (SpaceSaving w : windows) {
+            if (w != null) {
+                bytes += w.getMemoryBytes();
+            }
+        }
+        return String.format("k %d | %d hour and %d day buckets, %,d KB | %,d sales recorded, %,d queries,"
+                + " %,d windows merged",
+                k, hourBuckets, dayBuckets, bytes / 1024, recorded, queries, merges);
+    }
+
+    /**
+     * A window's best sellers. Each one's amount sold may be off by up to
+     * getMaxError(), and a product not listed sold at most that much.
+     */
+    public static final class Ranking {
+        private final List<Seller> sellers;
+        private final long maxError;
+        private final long since;
+
+        Ranking(List<Seller> sellers, long maxError, long since) {
+            this.sellers = sellers;
+            this.maxError = maxError;
+            this.since = since;
+        }
+
+        public List<Seller> getSellers() {
+            return sellers;
+        }
+
+        public long getMaxError() {
+            return maxError;
+        }
+
+        /**
+         * When the counted sales start, in epoch millis, 0 for all time.
+         */
+        public long getSince() {
+            return since;
+        }
+    }
+
+    public static final class Seller {
+        private final int productId;
+        private final long amountSold;
+        private final double totalSales;
+        private final long error;
+
+        Seller(int productId, long amountSold, double totalSales, long error) {
+            this.productId = productId;
+            this.amountSold = amountSold;
+            this.totalSales = totalSales;
+            this.error = error;
+        }
+
+        public int getProductId() {
+            return productId;
+        }
+
+        public long getAmountSold() {
+            return amountSold;
+        }
+
+        public double getTotalSales() {
+            return totalSales;
+        }
+
+        /**
+         * How much of getAmountSold() may have been other products'.
+         */
+        public long getError() {
+            return error;
+        }
+    }}